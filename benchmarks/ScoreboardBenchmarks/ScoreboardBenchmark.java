@@ -0,0 +1,313 @@
+package ScoreboardBenchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ScoreboardLib.api.MatchIndex;
+import ScoreboardLib.api.MatchStorage;
+import ScoreboardLib.api.ScoreUpdate;
+import ScoreboardLib.api.Scoreboard;
+
+/**
+ * JMH benchmarks of the hot paths of the {@link Scoreboard} class.
+ * <p>
+ * Each benchmark runs against a board which already contains {@code liveMatches} ongoing
+ * matches with random scores. The single-operation benchmarks can be run with several
+ * thread counts ({@code -t 1}, {@code -t 4}, {@code -t 8}...), while the benchmark groups
+ * run writers and readers concurrently with a fixed read/write ratio:
+ * <ul>
+ *   <li>{@code readHeavy}: 1 writer for 7 readers</li>
+ *   <li>{@code balanced}: 4 writers for 4 readers</li>
+ *   <li>{@code writeHeavy}: 7 writers for 1 reader</li>
+ * </ul>
+ * The allocation rate is reported by running the benchmarks with the GC profiler
+ * ({@code -prof gc}), which is what {@code buildRunBenchmarks.sh} does by default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoreboardBenchmark {
+
+    /** A channel accepting and discarding all the bytes written to it. */
+    private static final WritableByteChannel DISCARDING_CHANNEL = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer source) {
+            int nbBytes = source.remaining();
+            source.position(source.limit());
+            return nbBytes;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /** Number of ongoing matches on the board when the benchmark starts. */
+    @Param({"10", "1000", "100000", "1000000"})
+    public int liveMatches;
+
+    /** How the board stores its matches (the compact storage is selected with {@code -p storage=COMPACT}). */
+    @Param({"OBJECTS"})
+    public MatchStorage storage;
+
+    /**
+     * The secondary index enabled on the board: {@code NONE}, {@code ALL}, or the name of
+     * a {@link MatchIndex} (for instance {@code -p index=NONE,TEAM,ALL}), so the
+     * maintenance cost of each index shows in {@link #startAndTerminateMatchByTeamIds}.
+     */
+    @Param({"NONE"})
+    public String index;
+
+    /**
+     * Whether the metrics of the board are enabled ({@code -p metrics=false,true}), so their
+     * overhead shows in every benchmark.
+     */
+    @Param({"false"})
+    public boolean metrics;
+
+    /** The benchmarked board. */
+    private Scoreboard board;
+
+    /** IDs of the matches started during the setup, which are never terminated. */
+    private Integer[] matchIds;
+
+    /** Same IDs as {@link #matchIds}, unboxed. */
+    private int[] unboxedMatchIds;
+
+    /** IDs of the registered teams of the matches started and terminated by the benchmarks. */
+    private int homeTeamId;
+    private int visitorTeamId;
+
+    /**
+     * Per-thread state, so that each benchmark thread walks through the matches of the board
+     * on its own, without any shared counter perturbing the measurement.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /** Index of the next match to update. */
+        private int nextMatch;
+
+        /** Pseudo-random generator (xorshift) used to pick the new scores. */
+        private int seed;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            this.nextMatch = (int) Thread.currentThread().getId();
+            this.seed = 0x9E3779B9 ^ this.nextMatch;
+        }
+
+        /**
+         * Returns the index of the next match to update.
+         *
+         * @param nbMatches the number of matches to choose from
+         * @return an index between 0 and nbMatches - 1
+         */
+        int nextMatchIndex(int nbMatches) {
+            this.nextMatch++;
+            if (this.nextMatch >= nbMatches) {
+                this.nextMatch = 0;
+            }
+            return this.nextMatch;
+        }
+
+        /**
+         * Returns a pseudo-random score, between 0 and 7.
+         *
+         * @return a new score
+         */
+        int nextScore() {
+            this.seed ^= this.seed << 13;
+            this.seed ^= this.seed >>> 17;
+            this.seed ^= this.seed << 5;
+            return this.seed & 7;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.board = Scoreboard.withStorage(this.storage);
+        this.homeTeamId = this.board.registerTeam("France");
+        this.visitorTeamId = this.board.registerTeam("Argentina");
+        this.matchIds = new Integer[this.liveMatches];
+        this.unboxedMatchIds = new int[this.liveMatches];
+        Cursor cursor = new Cursor();
+        cursor.setUp();
+        for (int i = 0; i < this.liveMatches; i++) {
+            this.matchIds[i] = this.board.startMatch("Home" + i, "Visitor" + i);
+            this.unboxedMatchIds[i] = this.matchIds[i];
+            this.board.updateScore(this.matchIds[i], cursor.nextScore(), cursor.nextScore());
+        }
+        for (MatchIndex matchIndex : MatchIndex.values()) {
+            if (this.index.equals("ALL") || this.index.equals(matchIndex.name())) {
+                this.board.enableIndex(matchIndex);
+            }
+        }
+        if (this.metrics) {
+            this.board.enableMetrics();
+        }
+    }
+
+    private void updateRandomMatch(Cursor cursor) {
+        Integer matchId = this.matchIds[cursor.nextMatchIndex(this.liveMatches)];
+        this.board.updateScore(matchId, cursor.nextScore(), cursor.nextScore());
+    }
+
+    @Benchmark
+    public void updateScore(Cursor cursor) {
+        this.updateRandomMatch(cursor);
+    }
+
+    /**
+     * Allocation-free update path: gc.alloc.rate.norm is expected to be 0 B/op.
+     */
+    @Benchmark
+    public void updateScoreUnboxed(Cursor cursor) {
+        int matchId = this.unboxedMatchIds[cursor.nextMatchIndex(this.liveMatches)];
+        this.board.updateScoreUnboxed(matchId, cursor.nextScore(), cursor.nextScore());
+    }
+
+    /**
+     * Applies 32 updates at once; to be compared with 32 times the cost of {@link #updateScore}.
+     */
+    @Benchmark
+    public void applyUpdatesBatchOf32(Cursor cursor) {
+        ScoreUpdate[] batch = new ScoreUpdate[32];
+        for (int i = 0; i < batch.length; i++) {
+            int matchId = this.unboxedMatchIds[cursor.nextMatchIndex(this.liveMatches)];
+            batch[i] = new ScoreUpdate(matchId, cursor.nextScore(), cursor.nextScore());
+        }
+        this.board.applyUpdates(batch);
+    }
+
+    /**
+     * Starts a match and terminates it right away, so the size of the board
+     * stays the same during the whole benchmark.
+     */
+    @Benchmark
+    public Integer startAndTerminateMatch() {
+        Integer matchId = this.board.startMatch("France", "Argentina");
+        this.board.terminateMatch(matchId);
+        return matchId;
+    }
+
+    /**
+     * Same as {@link #startAndTerminateMatch}, with teams registered beforehand: the names
+     * are neither trimmed, compared nor hashed.
+     */
+    @Benchmark
+    public int startAndTerminateMatchByTeamIds() {
+        int matchId = this.board.startMatch(this.homeTeamId, this.visitorTeamId);
+        this.board.terminateMatch(matchId);
+        return matchId;
+    }
+
+    /**
+     * Duplicate check before starting a match: O(1) with {@code -p index=TEAMS_PAIR},
+     * a scan of the whole board otherwise.
+     */
+    @Benchmark
+    public Integer findActiveMatch() {
+        return this.board.findActiveMatch("Home7", "Visitor7");
+    }
+
+    /**
+     * Summary of a board which does not change: served from the summary cache.
+     */
+    @Benchmark
+    public String getMatchesSummary() {
+        return this.board.getMatchesSummary();
+    }
+
+    /**
+     * Summary right after a modification of the board, which always has to be rendered.
+     */
+    @Benchmark
+    public String getMatchesSummaryAfterUpdate(Cursor cursor) {
+        this.updateRandomMatch(cursor);
+        return this.board.getMatchesSummary();
+    }
+
+    /**
+     * Summary of the 10 highest ranked matches, whose cost should not depend on liveMatches.
+     */
+    @Benchmark
+    public String getTopMatches() {
+        return this.board.getTopMatches(10);
+    }
+
+    /**
+     * Streams the summary to a channel discarding the bytes, to be compared with
+     * {@link #getMatchesSummary()}.
+     */
+    @Benchmark
+    public void writeMatchesSummaryToChannel() throws IOException {
+        this.board.writeMatchesSummary(DISCARDING_CHANNEL);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public void readHeavyWriter(Cursor cursor) {
+        this.updateRandomMatch(cursor);
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(7)
+    public String readHeavyReader() {
+        return this.board.getMatchesSummary();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(4)
+    public void balancedWriter(Cursor cursor) {
+        this.updateRandomMatch(cursor);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(4)
+    public String balancedReader() {
+        return this.board.getMatchesSummary();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(7)
+    public void writeHeavyWriter(Cursor cursor) {
+        this.updateRandomMatch(cursor);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public String writeHeavyReader() {
+        return this.board.getMatchesSummary();
+    }
+}
@@ -0,0 +1,245 @@
+package ScoreboardBenchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import ScoreboardLib.api.Scoreboard;
+import ScoreboardLib.api.ScoreboardServer;
+import ScoreboardLib.internal.LatencyHistogram;
+
+/**
+ * Load test of the {@link ScoreboardServer} over the loopback interface: a board serves
+ * many connected clients while one writer updates its scores at a fixed rate, and the
+ * latency from each update to its reception by each client is measured.
+ * <p>
+ * All the clients are served by a single {@link Selector} thread of the load test, which
+ * only decodes the header of the frames, so the measured latency is the one of the server
+ * (and of the loopback interface) rather than the one of a decoding client. The writer and
+ * the clients run in the same process, so they share the clock of
+ * {@link System#nanoTime()}. Each connection uses two file descriptors (one per end), so
+ * the limit of open files ({@code ulimit -n}) must be above twice the number of
+ * connections. Usage:
+ * <pre>
+ * java ScoreboardBenchmarks.ServerLoadTest [connections [updates [updatesPerSecond [matches]]]]
+ * </pre>
+ * The defaults are 10000 connections, 2000 updates, 500 updates per second and 100 matches.
+ */
+public class ServerLoadTest {
+
+    /** Number of connections opened before waiting for them to be accepted. */
+    private static final int CONNECTION_WAVE = 1000;
+
+    /** Duration without any received frame after which the clients stop waiting. */
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** Number of connected clients. */
+    private final int nbConnections;
+
+    /** Number of score updates. */
+    private final int nbUpdates;
+
+    /** Number of score updates per second. */
+    private final int updateRate;
+
+    /** Number of matches on the board. */
+    private final int nbMatches;
+
+    /** The version of the board before the first update. */
+    private long firstVersion;
+
+    /** The time each update was made, by update number, or 0 if it is not made yet. */
+    private final AtomicLongArray updateNanos;
+
+    /** Latencies from the updates to their reception by the clients. */
+    private final LatencyHistogram latencies;
+
+    /** Number of updates received by the clients. */
+    private long receivedUpdates;
+
+    /** Number of snapshots received by the clients. */
+    private long receivedSnapshots;
+
+    /**
+     * Constructs the load test.
+     *
+     * @param nbConnections the number of connected clients
+     * @param nbUpdates the number of score updates
+     * @param updateRate the number of score updates per second
+     * @param nbMatches the number of matches on the board
+     */
+    private ServerLoadTest(int nbConnections, int nbUpdates, int updateRate, int nbMatches) {
+        this.nbConnections = nbConnections;
+        this.nbUpdates = nbUpdates;
+        this.updateRate = updateRate;
+        this.nbMatches = nbMatches;
+        this.updateNanos = new AtomicLongArray(nbUpdates);
+        this.latencies = new LatencyHistogram();
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the number of connections, updates, updates per second and matches
+     * @throws Exception if the load test fails
+     */
+    public static void main(String[] args) throws Exception {
+        int nbConnections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int nbUpdates = args.length > 1 ? Integer.parseInt(args[1]) : 2_000;
+        int updateRate = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        int nbMatches = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        new ServerLoadTest(nbConnections, nbUpdates, updateRate, nbMatches).run();
+    }
+
+    /**
+     * Connects the clients, makes the updates while the clients receive them, and prints
+     * the latencies.
+     *
+     * @throws Exception if the load test fails
+     */
+    private void run() throws Exception {
+        Scoreboard board = new Scoreboard();
+        int[] matchIds = new int[this.nbMatches];
+        for (int i = 0; i < matchIds.length; i++) {
+            matchIds[i] = board.startMatch("Home " + i, "Visitor " + i);
+        }
+        try (ScoreboardServer server = new ScoreboardServer(board,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+             Selector selector = Selector.open()) {
+            long start = System.nanoTime();
+            this.connect(selector, server);
+            System.out.printf("%d clients connected in %d ms%n", server.countConnections(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            this.firstVersion = board.getVersion();
+            Thread clients = new Thread(() -> this.receive(selector), "load-test-clients");
+            clients.start();
+            Random random = new Random(42);
+            int[] goals = new int[this.nbMatches];
+            long period = TimeUnit.SECONDS.toNanos(1) / this.updateRate;
+            long next = System.nanoTime();
+            for (int i = 0; i < this.nbUpdates; i++) {
+                LockSupport.parkNanos(next - System.nanoTime());
+                int match = random.nextInt(this.nbMatches);
+                goals[match]++;
+                // The writer is alone, so the update number i gives the version firstVersion + i + 1
+                this.updateNanos.set(i, System.nanoTime());
+                board.updateScore(matchIds[match], goals[match], 0);
+                next += period;
+            }
+            clients.join();
+
+            long expected = (long) this.nbConnections * this.nbUpdates;
+            System.out.printf("updates: %d at %d/s, received %d of %d (%.2f%%, the others were coalesced)%n",
+                this.nbUpdates, this.updateRate, this.receivedUpdates, expected,
+                100.0 * this.receivedUpdates / expected);
+            System.out.printf("update-to-client latency: p50 %d us, p99 %d us, p99.9 %d us, max %d us%n",
+                this.latencies.getPercentileNanos(50.0) / 1000, this.latencies.getPercentileNanos(99.0) / 1000,
+                this.latencies.getPercentileNanos(99.9) / 1000, this.latencies.getMaxNanos() / 1000);
+            System.out.printf("snapshots: %d, resynchronizations: %d, disconnections: %d%n", this.receivedSnapshots,
+                server.getResynchronizations(), server.getDisconnections());
+        }
+    }
+
+    /**
+     * Opens the connections of the clients, by waves, and waits until the server accepts
+     * them all.
+     *
+     * @param selector the selector of the clients
+     * @param server the server
+     * @throws IOException if a connection fails
+     */
+    private void connect(Selector selector, ScoreboardServer server) throws IOException {
+        InetSocketAddress address = server.getAddress();
+        for (int i = 0; i < this.nbConnections; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(4096));
+            if ((i + 1) % ServerLoadTest.CONNECTION_WAVE == 0) {
+                while (server.countConnections() < i + 1) {
+                    LockSupport.parkNanos(1_000_000L);
+                }
+            }
+        }
+        while (server.countConnections() < this.nbConnections) {
+            LockSupport.parkNanos(1_000_000L);
+        }
+    }
+
+    /**
+     * Receives the frames sent to all the clients, until every client received every
+     * update, or nothing is received for {@link #IDLE_TIMEOUT_NANOS}.
+     *
+     * @param selector the selector of the clients
+     */
+    private void receive(Selector selector) {
+        long expected = (long) this.nbConnections * this.nbUpdates;
+        long lastReception = System.nanoTime();
+        try {
+            while (this.receivedUpdates < expected && System.nanoTime() - lastReception < ServerLoadTest.IDLE_TIMEOUT_NANOS) {
+                if (selector.select(100) == 0) {
+                    continue;
+                }
+                lastReception = System.nanoTime();
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    ByteBuffer buffer = (ByteBuffer) key.attachment();
+                    if (((SocketChannel) key.channel()).read(buffer) < 0) {
+                        key.cancel();
+                        continue;
+                    }
+                    key.attach(this.decode(buffer, System.nanoTime()));
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Decodes the complete frames received by a client, and records the latency of the
+     * score updates.
+     *
+     * @param buffer the bytes received by the client, and not decoded yet
+     * @param now the reception time
+     * @return the buffer, compacted, or a larger one if a frame does not fit in it
+     */
+    private ByteBuffer decode(ByteBuffer buffer, long now) {
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (buffer.remaining() < 4 + length) {
+                break;
+            }
+            byte type = buffer.get(buffer.position() + 4);
+            if (type == ScoreboardServer.SCORE_UPDATED_FRAME) {
+                long update = buffer.getLong(buffer.position() + 5) - this.firstVersion - 1;
+                if (update >= 0 && update < this.nbUpdates) {
+                    this.latencies.record(now - this.updateNanos.get((int) update));
+                    this.receivedUpdates++;
+                }
+            } else if (type == ScoreboardServer.SNAPSHOT_FRAME) {
+                this.receivedSnapshots++;
+            }
+            buffer.position(buffer.position() + 4 + length);
+        }
+        if (buffer.remaining() >= 4 && buffer.capacity() < 4 + buffer.getInt(buffer.position())) {
+            // A snapshot larger than the buffer
+            return ByteBuffer.allocate(4 + buffer.getInt(buffer.position())).put(buffer);
+        }
+        return buffer.compact();
+    }
+}
@@ -0,0 +1,96 @@
+package ScoreboardBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ScoreboardLib.api.ShardedScoreboard;
+
+/**
+ * JMH benchmarks of the {@link ShardedScoreboard} class, to be run with several thread
+ * counts ({@code -t 1}, {@code -t 4}, {@code -t 8}...): the write throughput is expected to
+ * grow with the number of shards, as long as there are enough processors, while the
+ * merged summary costs an additional O(n log k) for k shards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedScoreboardBenchmark {
+
+    /** Number of shards of the board. */
+    @Param({"1", "4", "8"})
+    public int shards;
+
+    /** Number of ongoing matches on the board when the benchmark starts. */
+    @Param({"1000", "100000"})
+    public int liveMatches;
+
+    /** The benchmarked board. */
+    private ShardedScoreboard board;
+
+    /** IDs of the matches started during the setup, which are never terminated. */
+    private int[] matchIds;
+
+    /** IDs of the registered teams of the matches started and terminated by the benchmarks. */
+    private int homeTeamId;
+    private int visitorTeamId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.board = new ShardedScoreboard(this.shards);
+        this.homeTeamId = this.board.registerTeam("France");
+        this.visitorTeamId = this.board.registerTeam("Argentina");
+        this.matchIds = new int[this.liveMatches];
+        ScoreboardBenchmark.Cursor cursor = new ScoreboardBenchmark.Cursor();
+        cursor.setUp();
+        for (int i = 0; i < this.liveMatches; i++) {
+            this.matchIds[i] = this.board.startMatch("Home" + i, "Visitor" + i);
+            this.board.updateScoreUnboxed(this.matchIds[i], cursor.nextScore(), cursor.nextScore());
+        }
+    }
+
+    @Benchmark
+    public void updateScoreUnboxed(ScoreboardBenchmark.Cursor cursor) {
+        int matchId = this.matchIds[cursor.nextMatchIndex(this.liveMatches)];
+        this.board.updateScoreUnboxed(matchId, cursor.nextScore(), cursor.nextScore());
+    }
+
+    @Benchmark
+    public int startAndTerminateMatchByTeamIds() {
+        int matchId = this.board.startMatch(this.homeTeamId, this.visitorTeamId);
+        this.board.terminateMatch(matchId);
+        return matchId;
+    }
+
+    /**
+     * Merged summary right after a modification of the board, which always has to be
+     * merged and rendered again.
+     */
+    @Benchmark
+    public String getMatchesSummaryAfterUpdate(ScoreboardBenchmark.Cursor cursor) {
+        this.updateScoreUnboxed(cursor);
+        return this.board.getMatchesSummary();
+    }
+
+    /**
+     * Summary of the 10 highest ranked matches, merging the 10 highest ranked matches of
+     * each shard.
+     */
+    @Benchmark
+    public String getTopMatches() {
+        return this.board.getTopMatches(10);
+    }
+}
@@ -0,0 +1,74 @@
+package ScoreboardBenchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ScoreboardLib.internal.HeapMatchStore;
+import ScoreboardLib.internal.Match;
+import ScoreboardLib.internal.RankingSnapshot;
+import ScoreboardLib.internal.TeamRegistry;
+
+/**
+ * JMH benchmarks of the rendering of the lines of a summary, sequentially and in the
+ * common fork-join pool, which tell from which number of matches the parallel rendering
+ * pays off on a given machine (see {@link RankingSnapshot#renderLines(RankingSnapshot, int)}).
+ * <p>
+ * Each invocation renders all the lines of a new snapshot of {@code liveMatches} ongoing
+ * matches with random scores, as the first summary of a board does. The parallelism is
+ * set with {@code -Djava.util.concurrent.ForkJoinPool.common.parallelism}, for instance
+ * {@code -jvmArgsAppend -Djava.util.concurrent.ForkJoinPool.common.parallelism=4}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryRenderBenchmark {
+
+    /** Number of ongoing matches of the rendered snapshot. */
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int liveMatches;
+
+    /** Whether the lines are rendered in the common fork-join pool. */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    /** The matches of the rendered snapshots. */
+    private HeapMatchStore store;
+
+    /**
+     * Fills the store with {@code liveMatches} ongoing matches with random scores.
+     */
+    @Setup
+    public void setUp() {
+        TeamRegistry teams = new TeamRegistry();
+        this.store = new HeapMatchStore(teams);
+        Random random = new Random(42);
+        for (int i = 0; i < this.liveMatches; i++) {
+            int handle = this.store.add(i + 1, i, teams.intern("Home " + i), teams.intern("Visitor " + i));
+            this.store.setScores(handle, Match.packScores(random.nextInt(10), random.nextInt(10)));
+        }
+    }
+
+    /**
+     * Renders all the lines of a new snapshot.
+     *
+     * @return the lines, so they are not eliminated as dead code
+     */
+    @Benchmark
+    public String[] renderLines() {
+        return new RankingSnapshot(this.store).renderLines(null, this.parallel ? 0 : Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,173 @@
+package ScoreboardBenchmarks;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ScoreboardLib.api.Scoreboard;
+import ScoreboardLib.api.ScoreboardIngestor;
+
+/**
+ * JMH benchmark of a single {@link Scoreboard} hammered by 100k threads at once, each one
+ * updating a score: the time of an invocation is the time taken to apply (or shed) all
+ * the updates.
+ * <p>
+ * The threads are virtual threads when the JVM supports them (Java 21 and later), and a
+ * pool of 256 platform threads otherwise, as the library itself only requires Java 17.
+ * The {@code mode} parameter selects how the threads update the board:
+ * <ul>
+ *   <li>{@code BLOCKING}: {@link Scoreboard#updateScoreUnboxed(int, int, int)}, waiting
+ *   for the lock as long as needed</li>
+ *   <li>{@code TRY}: {@link Scoreboard#tryUpdateScore(int, int, int, Duration)}, giving up
+ *   after 1 ms (the number of shed updates is printed at the end of each trial)</li>
+ *   <li>{@code ASYNC}: {@link Scoreboard#updateScoreAsync(Integer, Integer, Integer)},
+ *   the threads only waiting for their futures</li>
+ *   <li>{@code INGEST}: {@link ScoreboardIngestor#publishUpdate(int, int, int)}, the
+ *   threads only publishing their updates, which the owner thread of the ingestor applies
+ *   (the invocation includes the wait for all of them to be applied)</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    /** Number of threads updating the board at once. */
+    private static final int NB_THREADS = 100_000;
+
+    /** Number of platform threads used when the JVM does not support virtual threads. */
+    private static final int NB_PLATFORM_THREADS = 256;
+
+    /** Timeout of the updates of the {@code TRY} mode. */
+    private static final Duration TRY_TIMEOUT = Duration.ofMillis(1);
+
+    /** How the threads update the board. */
+    @Param({"BLOCKING", "TRY", "ASYNC", "INGEST"})
+    public String mode;
+
+    /** Number of ongoing matches on the board. */
+    @Param({"1000"})
+    public int liveMatches;
+
+    /** The benchmarked board. */
+    private Scoreboard board;
+
+    /** The ingestor feeding the board in the {@code INGEST} mode. */
+    private ScoreboardIngestor ingestor;
+
+    /** IDs of the matches of the board. */
+    private int[] matchIds;
+
+    /** Number of updates given up by the {@code TRY} mode during the trial. */
+    private LongAdder shedUpdates;
+
+    /** The executor running one thread per update, created for each invocation. */
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.board = new Scoreboard();
+        this.matchIds = new int[this.liveMatches];
+        for (int i = 0; i < this.liveMatches; i++) {
+            this.matchIds[i] = this.board.startMatch("Home" + i, "Visitor" + i);
+        }
+        this.shedUpdates = new LongAdder();
+        this.ingestor = new ScoreboardIngestor(this.board);
+    }
+
+    @Setup(Level.Invocation)
+    public void createExecutor() {
+        this.executor = VirtualThreadBenchmark.newThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.ingestor.close();
+        System.out.println("Shed updates: " + this.shedUpdates.sum());
+        System.out.println("Ingestion: " + this.ingestor.getStats());
+    }
+
+    @Benchmark
+    public void hammerOneBoard() throws InterruptedException {
+        for (int i = 0; i < VirtualThreadBenchmark.NB_THREADS; i++) {
+            int matchId = this.matchIds[i % this.liveMatches];
+            int score = i & 7;
+            this.executor.execute(() -> this.update(matchId, score));
+        }
+        this.executor.shutdown();
+        this.executor.awaitTermination(1, TimeUnit.MINUTES);
+        if (this.mode.equals("INGEST")) {
+            this.ingestor.flush();
+        }
+    }
+
+    /**
+     * Updates a score as selected by the {@code mode} parameter.
+     *
+     * @param matchId the ID of the match
+     * @param score the new score of both teams
+     */
+    private void update(int matchId, int score) {
+        try {
+            switch (this.mode) {
+                case "BLOCKING":
+                    this.board.updateScoreUnboxed(matchId, score, score);
+                    break;
+                case "TRY":
+                    if (!this.board.tryUpdateScore(matchId, score, score, VirtualThreadBenchmark.TRY_TIMEOUT)) {
+                        this.shedUpdates.increment();
+                    }
+                    break;
+                case "INGEST":
+                    this.ingestor.publishUpdate(matchId, score, score);
+                    break;
+                default:
+                    CompletableFuture<Void> future = this.board.updateScoreAsync(matchId, score, score);
+                    if (future.isCompletedExceptionally()) {
+                        // The queue of the writer thread is full
+                        this.shedUpdates.increment();
+                    } else {
+                        future.join();
+                    }
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns an executor running each task in a new virtual thread, if the JVM supports
+     * them (looked up by reflection, so the benchmarks still compile with Java 17), or in a
+     * pool of platform threads otherwise.
+     *
+     * @return the executor
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(VirtualThreadBenchmark.NB_PLATFORM_THREADS);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# Usage: ./buildRunBenchmarks.sh [JMH options]
+# e.g. ./buildRunBenchmarks.sh -p liveMatches=1000 -t 8 "ScoreboardBenchmark.updateScore"
+# The GC profiler is always enabled, so the allocation rate (gc.alloc.rate.norm)
+# is reported for every benchmark.
+
+SRC_DIR="$PWD/src"
+BENCH_DIR="$PWD/benchmarks"
+BIN_DIR="$PWD/bin/benchmarks"
+# Directory containing jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 JARs
+JMH_DIR="${JMH_DIR:-/home/edouard/libs/jmh}"
+JMH_CP="$(find "$JMH_DIR" -name "*.jar" | tr '\n' ':')"
+
+# Create the bin directory if it doesn't exist
+mkdir -p "$BIN_DIR"
+
+# Compile the library
+echo "Compiling main source code..."
+javac -d "$BIN_DIR" $(find "$SRC_DIR/ScoreboardLib" -name "*.java" ! -name "module-info.java") || { echo "Main source code compilation failed!"; exit 1; }
+
+# Compile the benchmarks (the JMH annotation processor generates the benchmark harness)
+echo "Compiling benchmarks..."
+javac -cp "$BIN_DIR:$JMH_CP" -processorpath "$JMH_CP" -d "$BIN_DIR" $(find "$BENCH_DIR" -name "*.java") || { echo "Benchmarks compilation failed!"; exit 1; }
+
+# Run the benchmarks
+echo "Running benchmarks..."
+java -cp "$BIN_DIR:$JMH_CP" org.openjdk.jmh.Main -prof gc "$@"
@@ -0,0 +1,22 @@
+#!/bin/bash
+
+# Usage: ./buildRunLoadTest.sh [connections [updates [updatesPerSecond [matches]]]]
+# e.g. ./buildRunLoadTest.sh 10000 2000 500 100
+# Each connection uses two file descriptors, so the limit of open files is raised first.
+
+SRC_DIR="$PWD/src"
+BENCH_DIR="$PWD/benchmarks"
+BIN_DIR="$PWD/bin/loadtest"
+
+# Create the bin directory if it doesn't exist
+mkdir -p "$BIN_DIR"
+
+# Compile the library and the load test (which does not need JMH)
+echo "Compiling the load test..."
+javac -d "$BIN_DIR" $(find "$SRC_DIR/ScoreboardLib" -name "*.java" ! -name "module-info.java") \
+    "$BENCH_DIR/ScoreboardBenchmarks/ServerLoadTest.java" || { echo "Load test compilation failed!"; exit 1; }
+
+# Run the load test
+ulimit -n "$(ulimit -Hn)" 2>/dev/null
+echo "Running the load test..."
+java -cp "$BIN_DIR" ScoreboardBenchmarks.ServerLoadTest "$@"
@@ -0,0 +1,35 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code BackpressurePolicy} enumeration defines what happens when a subscriber of a
+ * {@link Scoreboard} consumes its events slower than they are produced, and its bounded
+ * queue of pending events is full.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * The oldest pending event is dropped to make room for the new one. The writers of the
+     * scoreboard are never slowed down, but the subscriber may miss events (it can then
+     * resynchronize with {@link Scoreboard#snapshot()}).
+     */
+    DROP_OLDEST,
+
+    /**
+     * The operation modifying the scoreboard waits until the subscriber makes room in its
+     * queue. No event is ever lost, but a slow subscriber slows down all the writers of the
+     * scoreboard. The operation waits once its change is applied and its lock released, so
+     * the readers are never blocked, and the subscriber may read or modify the scoreboard
+     * from its {@code onNext} method. The queue may briefly hold more events than its
+     * capacity: the events of the operations waiting for room.
+     */
+    BLOCK,
+
+    /**
+     * A pending {@link ScoreboardEvent.ScoreUpdated} (or {@link ScoreboardEvent.RankChanged})
+     * event is replaced by a newer one for the same match, which is moved to the end of the
+     * queue, so the subscriber only receives the latest scores of each match. The queue then
+     * grows with the number of distinct changed matches rather than with the number of
+     * updates; if it is still full, the oldest pending event is dropped.
+     */
+    COALESCE
+}
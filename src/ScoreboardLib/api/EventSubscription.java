@@ -0,0 +1,357 @@
+package ScoreboardLib.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code EventSubscription} class links a {@link Scoreboard} to one of its subscribers.
+ * <p>
+ * The events are pushed by the writers of the scoreboard into a bounded queue, within their
+ * critical section, and delivered asynchronously to the subscriber by an executor, according
+ * to the demand of the subscriber, once the writer has released the lock of the board (see
+ * {@link #flush()}). When the queue is full, the {@link BackpressurePolicy} of the
+ * subscription applies: with {@link BackpressurePolicy#BLOCK}, the event is queued anyway,
+ * and the writer waits for room in {@link #flush()}, so a subscriber without demand never
+ * blocks the readers nor the other writers while they hold the lock. The queue is protected
+ * by a lock (rather than a monitor), so a writer waiting for room in the queue never pins
+ * the carrier of a virtual thread.
+ * <p>
+ * The signals of the subscriber (including {@code onError} and {@code onComplete}) are all
+ * sent by the delivery, a single one running at a time, so they never overlap.
+ */
+class EventSubscription implements Flow.Subscription {
+
+    /** The scoreboard publishing the events. */
+    private final Scoreboard board;
+
+    /** The subscriber receiving the events. */
+    private final Flow.Subscriber<? super ScoreboardEvent> subscriber;
+
+    /** Maximal number of pending events. */
+    private final int capacity;
+
+    /** What happens when the queue of pending events is full. */
+    private final BackpressurePolicy policy;
+
+    /** Executor delivering the events to the subscriber. */
+    private final Executor executor;
+
+    /** Counter of the events dropped by all the subscriptions of the scoreboard. */
+    private final LongAdder droppedEvents;
+
+    /** Lock protecting the queue of pending events. */
+    private final ReentrantLock queueLock;
+
+    /** Signaled each time an event is removed from the queue, or the subscription is cancelled. */
+    private final Condition notFull;
+
+    /**
+     * The pending events, in their delivery order, indexed by their coalescing key. The
+     * events which are never coalesced get a unique (negative) key.
+     */
+    private final LinkedHashMap<Long, ScoreboardEvent> pendingEvents;
+
+    /** Sequence generating the unique keys of the events which are never coalesced. */
+    private long nextUniqueKey;
+
+    /** Number of events requested by the subscriber, and not delivered yet. */
+    private final AtomicLong demand;
+
+    /** Number of delivery requests not processed yet (the delivery runs when it leaves 0). */
+    private final AtomicInteger pendingDrains;
+
+    /** Whether the subscription has been cancelled. */
+    private volatile boolean cancelled;
+
+    /**
+     * The terminal signal to send to the subscriber once the pending deliveries are done:
+     * {@link #COMPLETE}, or the error to signal, or null while the subscription is active.
+     */
+    private final AtomicReference<Object> terminalSignal;
+
+    /** Whether the terminal signal has been sent (only accessed by the delivery). */
+    private boolean terminated;
+
+    /** The thread delivering the events, or null if no delivery is running. */
+    private volatile Thread deliveringThread;
+
+    /** The terminal signal of a subscription completed normally. */
+    private static final Object COMPLETE = new Object();
+
+    /**
+     * Constructs a new subscription.
+     *
+     * @param board the scoreboard publishing the events
+     * @param subscriber the subscriber receiving the events
+     * @param capacity the maximal number of pending events
+     * @param policy what happens when the queue of pending events is full
+     * @param executor the executor delivering the events
+     * @param droppedEvents the counter of dropped events of the scoreboard
+     */
+    EventSubscription(Scoreboard board, Flow.Subscriber<? super ScoreboardEvent> subscriber, int capacity,
+                      BackpressurePolicy policy, Executor executor, LongAdder droppedEvents) {
+        this.board = board;
+        this.subscriber = subscriber;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.executor = executor;
+        this.droppedEvents = droppedEvents;
+        this.queueLock = new ReentrantLock();
+        this.notFull = this.queueLock.newCondition();
+        this.pendingEvents = new LinkedHashMap<>();
+        this.nextUniqueKey = -1L;
+        this.demand = new AtomicLong(0L);
+        this.pendingDrains = new AtomicInteger(0);
+        this.cancelled = false;
+        this.terminalSignal = new AtomicReference<>();
+    }
+
+    /**
+     * Returns the subscriber of this subscription.
+     *
+     * @return the subscriber
+     */
+    Flow.Subscriber<? super ScoreboardEvent> getSubscriber() {
+        return this.subscriber;
+    }
+
+    /**
+     * Adds an event to the queue of pending events, applying the backpressure policy if the
+     * queue is full. Called by the writers within the critical section of the board, so it
+     * never waits: the delivery is scheduled by {@link #flush()}.
+     *
+     * @param event the event to publish
+     */
+    void offer(ScoreboardEvent event) {
+        this.queueLock.lock();
+        try {
+            if (this.cancelled) {
+                return;
+            }
+
+            Long key = this.coalescingKeyOf(event);
+            ScoreboardEvent coalesced = (this.policy == BackpressurePolicy.COALESCE)
+                ? this.pendingEvents.remove(key) : null;
+            if (coalesced != null) {
+                // The newer event replaces the pending one, at the end of the queue
+                this.pendingEvents.put(key, EventSubscription.merge(coalesced, event));
+            } else {
+                // With the blocking policy, the queue exceeds its capacity until the writer
+                // waits for room, once the lock of the board is released
+                while (this.policy != BackpressurePolicy.BLOCK && this.pendingEvents.size() >= this.capacity) {
+                    Iterator<ScoreboardEvent> oldest = this.pendingEvents.values().iterator();
+                    oldest.next();
+                    oldest.remove();
+                    this.droppedEvents.increment();
+                }
+                this.pendingEvents.put(key, event);
+            }
+        } finally {
+            this.queueLock.unlock();
+        }
+    }
+
+    /**
+     * Schedules the delivery of the events offered so far and, with the blocking policy,
+     * waits until the subscriber makes room in the queue. Called by the writers once they
+     * have released the lock of the board. A writer called back by the delivery of this
+     * subscription (from {@code onNext}) does not wait, as it would wait for itself.
+     */
+    void flush() {
+        this.scheduleDrain();
+        if (this.policy != BackpressurePolicy.BLOCK || this.deliveringThread == Thread.currentThread()) {
+            return;
+        }
+        this.queueLock.lock();
+        try {
+            while (!this.cancelled && this.pendingEvents.size() > this.capacity) {
+                this.notFull.awaitUninterruptibly();
+            }
+        } finally {
+            this.queueLock.unlock();
+        }
+    }
+
+    /**
+     * Completes the subscription, as the board is closed: the events already requested are
+     * delivered, the others are discarded, and the subscriber then receives
+     * {@code onComplete}.
+     */
+    void complete() {
+        this.terminate(EventSubscription.COMPLETE);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            // The error is signaled by the delivery, which may be running onNext right now
+            this.terminate(new IllegalArgumentException("Trying to request a non-positive number of events"));
+            return;
+        }
+        // The demand is capped at Long.MAX_VALUE, meaning "unbounded"
+        this.demand.getAndUpdate(current -> (current + n < 0) ? Long.MAX_VALUE : current + n);
+        this.scheduleDrain();
+    }
+
+    @Override
+    public void cancel() {
+        this.queueLock.lock();
+        try {
+            this.cancelled = true;
+            this.pendingEvents.clear();
+            // The writers waiting for room in the queue must not wait forever
+            this.notFull.signalAll();
+        } finally {
+            this.queueLock.unlock();
+        }
+        this.board.unsubscribe(this);
+    }
+
+    /**
+     * Ends the subscription with a terminal signal, unless it already has one: the pending
+     * events are discarded once the delivery has sent the ones already requested, and the
+     * delivery then sends the signal.
+     *
+     * @param signal {@link #COMPLETE}, or the error to signal
+     */
+    private void terminate(Object signal) {
+        if (this.terminalSignal.compareAndSet(null, signal)) {
+            this.board.unsubscribe(this);
+            this.scheduleDrain();
+        }
+    }
+
+    /**
+     * Schedules the delivery of the pending events, unless a delivery is already running,
+     * in which case it will deliver them. If the executor rejects the delivery, the
+     * subscription is cancelled, and the subscriber receives the rejection as an error, from
+     * the calling thread (no delivery can be running then).
+     */
+    private void scheduleDrain() {
+        if (this.pendingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            this.executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            this.terminalSignal.compareAndSet(null, e);
+            this.board.unsubscribe(this);
+            this.drain();
+        }
+    }
+
+    /**
+     * Delivers the pending events to the subscriber, as long as it requests some, and then
+     * the terminal signal, if any. A single drain runs at a time, so the subscriber receives
+     * the signals sequentially.
+     */
+    private void drain() {
+        int missedDrains = 1;
+        do {
+            this.deliveringThread = Thread.currentThread();
+            while (!this.cancelled && this.demand.get() > 0 && !(this.terminalSignal.get() instanceof Throwable)) {
+                ScoreboardEvent event = this.poll();
+                if (event == null) {
+                    break;
+                }
+                this.demand.getAndUpdate(current -> (current == Long.MAX_VALUE) ? current : current - 1);
+                try {
+                    this.subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    // A failing subscriber is considered as having cancelled its subscription
+                    this.cancel();
+                }
+            }
+            Object signal = this.terminalSignal.get();
+            if (signal != null && !this.terminated) {
+                // A subscriber which cancelled its subscription is not signaled anymore
+                boolean cancelledBySubscriber = this.cancelled;
+                this.terminated = true;
+                this.cancel();
+                if (!cancelledBySubscriber) {
+                    this.signal(signal);
+                }
+            }
+            // Cleared before leaving, so a writer never mistakes the next delivery for its own
+            this.deliveringThread = null;
+            missedDrains = this.pendingDrains.addAndGet(-missedDrains);
+        } while (missedDrains != 0);
+    }
+
+    /**
+     * Sends a terminal signal to the subscriber, which has not cancelled its subscription.
+     *
+     * @param signal {@link #COMPLETE}, or the error to signal
+     */
+    private void signal(Object signal) {
+        try {
+            if (signal == EventSubscription.COMPLETE) {
+                this.subscriber.onComplete();
+            } else {
+                this.subscriber.onError((Throwable) signal);
+            }
+        } catch (RuntimeException e) {
+            // The subscription is over anyway
+        }
+    }
+
+    /**
+     * Removes the oldest pending event from the queue.
+     *
+     * @return the oldest pending event, or null if the queue is empty
+     */
+    private ScoreboardEvent poll() {
+        this.queueLock.lock();
+        try {
+            Iterator<ScoreboardEvent> oldest = this.pendingEvents.values().iterator();
+            if (!oldest.hasNext()) {
+                return null;
+            }
+            ScoreboardEvent event = oldest.next();
+            oldest.remove();
+            this.notFull.signal();
+            return event;
+        } finally {
+            this.queueLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the key identifying the events which can be coalesced with the given one:
+     * with the coalescing policy, the updates of the same match share a key, and so do its
+     * rank changes. The other events get a unique key.
+     */
+    private Long coalescingKeyOf(ScoreboardEvent event) {
+        if (this.policy == BackpressurePolicy.COALESCE) {
+            if (event instanceof ScoreboardEvent.ScoreUpdated) {
+                return 2L * event.matchId();
+            }
+            if (event instanceof ScoreboardEvent.RankChanged) {
+                return 2L * event.matchId() + 1;
+            }
+        }
+        return this.nextUniqueKey--;
+    }
+
+    /**
+     * Merges a pending event with a newer event for the same match.
+     */
+    private static ScoreboardEvent merge(ScoreboardEvent pending, ScoreboardEvent newer) {
+        if (pending instanceof ScoreboardEvent.RankChanged pendingMove
+                && newer instanceof ScoreboardEvent.RankChanged newerMove) {
+            // The subscriber has not seen the match leave its original position yet
+            return new ScoreboardEvent.RankChanged(newerMove.version(), newerMove.matchId(),
+                pendingMove.oldPosition(), newerMove.newPosition());
+        }
+        return newer;
+    }
+}
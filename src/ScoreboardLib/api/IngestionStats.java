@@ -0,0 +1,36 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code IngestionStats} record holds the metrics of a {@link ScoreboardIngestor}, as
+ * they were when {@link ScoreboardIngestor#getStats()} was called.
+ * <p>
+ * A drain is one cycle of the owner thread of the ingestor: taking all the commands
+ * waiting in its ring, applying them to the scoreboard, and publishing the new snapshot of
+ * the scoreboard. Its latency is measured from the moment the commands are taken, to the
+ * moment the snapshot is published.
+ *
+ * @param queueDepth the number of commands waiting to be drained
+ * @param drains the number of drains which applied at least one command
+ * @param appliedCommands the number of commands applied to the scoreboard
+ * @param coalescedUpdates the number of score updates skipped because a later update of the
+ *        same match was drained with them
+ * @param rejectedCommands the number of commands skipped because they were invalid once
+ *        drained (typically the update of a match terminated in the meantime)
+ * @param maxDrainSize the largest number of commands taken by a single drain
+ * @param lastDrainNanos the latency of the last drain, in nanoseconds
+ * @param maxDrainNanos the highest latency of a drain, in nanoseconds
+ * @param totalDrainNanos the sum of the latencies of all the drains, in nanoseconds
+ */
+public record IngestionStats(int queueDepth, long drains, long appliedCommands, long coalescedUpdates,
+                             long rejectedCommands, int maxDrainSize, long lastDrainNanos, long maxDrainNanos,
+                             long totalDrainNanos) {
+
+    /**
+     * Returns the mean latency of the drains.
+     *
+     * @return the mean latency of a drain, in nanoseconds (0 if there was no drain)
+     */
+    public long meanDrainNanos() {
+        return this.drains == 0L ? 0L : this.totalDrainNanos / this.drains;
+    }
+}
@@ -0,0 +1,28 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code LatencyStats} record holds the statistics of the durations measured by a
+ * timer of the {@link ScoreboardMetrics}, as they were when they were requested.
+ * <p>
+ * The percentiles are estimated from a histogram of logarithmic buckets, and are at most
+ * 12.5% above the actual durations.
+ *
+ * @param count the number of measured durations
+ * @param totalNanos the sum of the measured durations, in nanoseconds
+ * @param maxNanos the highest measured duration, in nanoseconds
+ * @param p50Nanos the median duration, in nanoseconds
+ * @param p99Nanos the 99th percentile of the durations, in nanoseconds
+ * @param p999Nanos the 99.9th percentile of the durations, in nanoseconds
+ */
+public record LatencyStats(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos,
+                           long p999Nanos) {
+
+    /**
+     * Returns the mean of the measured durations.
+     *
+     * @return the mean duration, in nanoseconds (0 if no duration was measured)
+     */
+    public long meanNanos() {
+        return this.count == 0L ? 0L : this.totalNanos / this.count;
+    }
+}
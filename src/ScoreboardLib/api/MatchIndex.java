@@ -0,0 +1,31 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code MatchIndex} enumeration defines the secondary indexes which a
+ * {@link Scoreboard} can maintain on its ongoing matches, to answer some queries without
+ * scanning all the matches.
+ * <p>
+ * Every index is disabled by default: once enabled with
+ * {@link Scoreboard#enableIndex(MatchIndex)}, it is updated by every start and termination
+ * of a match, which makes them slightly more expensive. A query whose index is disabled
+ * returns the same result, by scanning all the ongoing matches.
+ */
+public enum MatchIndex {
+
+    /**
+     * Indexes the matches by team (home or visiting), for
+     * {@link Scoreboard#findMatchesByTeam(String)}.
+     */
+    TEAM,
+
+    /**
+     * Indexes the matches by pair of home and visiting teams, for
+     * {@link Scoreboard#findActiveMatch(String, String)}.
+     */
+    TEAMS_PAIR,
+
+    /**
+     * Indexes the matches by start order, for {@link Scoreboard#getMatchIdsStartedAfter(int)}.
+     */
+    START_ORDER
+}
@@ -0,0 +1,26 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code MatchStorage} enumeration defines how a {@link Scoreboard} stores its ongoing
+ * matches in memory. Both storages have the same behavior (IDs, scores and summary order):
+ * they only differ by their memory footprint and their garbage collection cost.
+ */
+public enum MatchStorage {
+
+    /**
+     * Each match is an object, indexed in a hash table, and linked to its neighbors in the
+     * summary order. This is the default storage, which suits the boards of up to a few
+     * hundred thousand matches.
+     */
+    OBJECTS,
+
+    /**
+     * The matches are records in a few parallel arrays of primitive values, whose records
+     * are reused when matches are terminated. A match takes 40 to 50 bytes instead of about
+     * 60, and above all the garbage collector has no object to trace per match (a full
+     * collection with a million matches takes a few milliseconds instead of a few hundred),
+     * which suits the boards holding millions of matches (simulations, for instance). The
+     * operations are at least as fast as with {@link #OBJECTS}.
+     */
+    COMPACT
+}
@@ -0,0 +1,28 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code MatchSummary} record is an immutable view of an ongoing match, as it was when
+ * the summary was generated. It is the structured counterpart of one line of
+ * {@link Scoreboard#getMatchesSummary()}.
+ *
+ * @param matchId the unique ID of the match
+ * @param nameHomeTeam the name of the home team
+ * @param scoreHomeTeam the score of the home team
+ * @param nameVisitorTeam the name of the visiting team
+ * @param scoreVisitorTeam the score of the visiting team
+ */
+public record MatchSummary(int matchId, String nameHomeTeam, int scoreHomeTeam,
+                           String nameVisitorTeam, int scoreVisitorTeam) {
+
+    /**
+     * Returns the match in the format of the summary:
+     * "HomeTeam HomeScore - VisitorTeam VisitorScore".
+     *
+     * @return the summary line of the match
+     */
+    @Override
+    public String toString() {
+        return this.nameHomeTeam + " " + this.scoreHomeTeam + " - " +
+                this.nameVisitorTeam + " " + this.scoreVisitorTeam;
+    }
+}
@@ -0,0 +1,20 @@
+package ScoreboardLib.api;
+
+import java.util.List;
+
+/**
+ * The {@code MatchTimeline} record is the immutable timeline of a match, as recorded by the
+ * history of a {@link Scoreboard} (see {@link Scoreboard#getTimeline(int)}).
+ * <p>
+ * The timeline of a match which was already ongoing when the history was enabled starts
+ * with its first change recorded afterwards.
+ *
+ * @param matchId the unique ID of the match
+ * @param nameHomeTeam the name of the home team
+ * @param nameVisitorTeam the name of the visiting team
+ * @param ongoing whether the match is still ongoing
+ * @param events the recorded changes of the match, in chronological order
+ */
+public record MatchTimeline(int matchId, String nameHomeTeam, String nameVisitorTeam, boolean ongoing,
+                            List<TimelineEvent> events) {
+}
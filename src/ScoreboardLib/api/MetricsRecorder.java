@@ -0,0 +1,134 @@
+package ScoreboardLib.api;
+
+import ScoreboardLib.internal.LatencyHistogram;
+import ScoreboardLib.internal.OperationEvent;
+import ScoreboardLib.internal.SummaryEvent;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The {@code MetricsRecorder} class collects the metrics of a {@link Scoreboard}, and
+ * emits them as JFR events while a recording enables them.
+ * <p>
+ * Recording a duration is lock-free, and does not allocate any memory unless a JFR event
+ * is emitted. This class is thread-safe.
+ */
+class MetricsRecorder implements ScoreboardMetrics {
+
+    /** The timers, by ordinal. */
+    private static final Timer[] TIMERS = Timer.values();
+
+    /** The type of the JFR events of the operations, telling whether a recording enables them. */
+    private static final EventType OPERATION_EVENT_TYPE = MetricsRecorder.registerEvent(OperationEvent.class);
+
+    /** The type of the JFR events of the summaries. */
+    private static final EventType SUMMARY_EVENT_TYPE = MetricsRecorder.registerEvent(SummaryEvent.class);
+
+    /** The scoreboard whose metrics are collected. */
+    private final Scoreboard board;
+
+    /** The histograms of the durations, by timer ordinal. */
+    private final LatencyHistogram[] histograms;
+
+    /** Length of the last summary returned. */
+    private volatile int lastSummaryLength;
+
+    /** Length of the longest summary returned. */
+    private final AtomicInteger maxSummaryLength;
+
+    /**
+     * Constructs the recorder of the metrics of a scoreboard.
+     *
+     * @param board the scoreboard
+     */
+    MetricsRecorder(Scoreboard board) {
+        this.board = board;
+        this.histograms = new LatencyHistogram[MetricsRecorder.TIMERS.length];
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new LatencyHistogram();
+        }
+        this.maxSummaryLength = new AtomicInteger();
+    }
+
+    /**
+     * Records the duration of a timed operation, which started at the given time.
+     *
+     * @param timer the timer of the operation
+     * @param matchId the ID of the match of the operation, or -1
+     * @param startNanos the start of the operation, as returned by {@link System#nanoTime()}
+     */
+    void record(Timer timer, int matchId, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        this.histograms[timer.ordinal()].record(duration);
+        if (MetricsRecorder.OPERATION_EVENT_TYPE.isEnabled()) {
+            OperationEvent event = new OperationEvent();
+            event.operation = timer.name();
+            event.matchId = matchId;
+            event.latency = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the duration and the size of a summary, which started at the given time.
+     *
+     * @param nbMatches the number of matches of the summary
+     * @param length the number of characters of the summary
+     * @param cached whether the summary was already rendered
+     * @param startNanos the start of the summary, as returned by {@link System#nanoTime()}
+     */
+    void recordSummary(int nbMatches, int length, boolean cached, long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        this.histograms[Timer.GET_MATCHES_SUMMARY.ordinal()].record(duration);
+        this.lastSummaryLength = length;
+        this.maxSummaryLength.accumulateAndGet(length, Math::max);
+        if (MetricsRecorder.SUMMARY_EVENT_TYPE.isEnabled()) {
+            SummaryEvent event = new SummaryEvent();
+            event.matches = nbMatches;
+            event.length = length;
+            event.cached = cached;
+            event.latency = duration;
+            event.commit();
+        }
+    }
+
+    /**
+     * Registers a class of JFR events, so the recordings can enable its events before the
+     * first one is emitted.
+     *
+     * @param eventClass the class of the events
+     * @return the type of the events
+     */
+    private static EventType registerEvent(Class<? extends Event> eventClass) {
+        FlightRecorder.register(eventClass);
+        return EventType.getEventType(eventClass);
+    }
+
+    @Override
+    public LatencyStats getLatency(Timer timer) {
+        if (timer == null) {
+            throw new IllegalArgumentException("Trying to get the latency of a null timer");
+        }
+        LatencyHistogram histogram = this.histograms[timer.ordinal()];
+        return new LatencyStats(histogram.getCount(), histogram.getTotalNanos(), histogram.getMaxNanos(),
+            histogram.getPercentileNanos(50.0), histogram.getPercentileNanos(99.0),
+            histogram.getPercentileNanos(99.9));
+    }
+
+    @Override
+    public int getLiveMatches() {
+        return this.board.countMatches();
+    }
+
+    @Override
+    public int getLastSummaryLength() {
+        return this.lastSummaryLength;
+    }
+
+    @Override
+    public int getMaxSummaryLength() {
+        return this.maxSummaryLength.get();
+    }
+}
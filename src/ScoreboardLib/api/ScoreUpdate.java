@@ -0,0 +1,12 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code ScoreUpdate} record describes a pair of absolute scores to apply to an
+ * ongoing match, as part of a batch given to {@link Scoreboard#applyUpdates(ScoreUpdate...)}.
+ *
+ * @param matchId the unique ID of the match
+ * @param scoreHomeTeam the updated score for the home team
+ * @param scoreVisitorTeam the updated score for the visiting team
+ */
+public record ScoreUpdate(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+}
@@ -1,32 +1,360 @@
 package ScoreboardLib.api;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.*;
-import java.util.stream.Collectors;
+import ScoreboardLib.internal.CommandRing;
+import ScoreboardLib.internal.CompactMatchStore;
+import ScoreboardLib.internal.HeapMatchStore;
 import ScoreboardLib.internal.Match;
-import java.util.concurrent.Semaphore;
+import ScoreboardLib.internal.MatchHistory;
+import ScoreboardLib.internal.MatchIdAllocator;
+import ScoreboardLib.internal.MatchIdMultimap;
+import ScoreboardLib.internal.MatchIdSet;
+import ScoreboardLib.internal.MatchStore;
+import ScoreboardLib.internal.RankingSnapshot;
+import ScoreboardLib.internal.ScoreboardJournal;
+import ScoreboardLib.internal.SnapshotCodec;
+import ScoreboardLib.internal.TeamRegistry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * The {@code Scoreboard} class manages ongoing football matches.
  * It allows starting, updating, terminating matches, and retrieving match summaries.
- * Thread safety is ensured using a semaphore for synchronization.
+ * <p>
+ * The class is thread-safe. Match IDs are allocated without any lock, by each scoreboard
+ * independently (they are never negative, and the IDs of the terminated matches can be
+ * recycled, see {@link #withRecycledMatchIds(MatchStorage)}), and the two scores
+ * of a match are always published together. The ranking of the matches is a single ordered
+ * structure, so the operations modifying it (start, update, terminate) hold an exclusive
+ * lock for the duration of the lookup and of the O(log n) repositioning: the writers of a
+ * single scoreboard take turns, even when they update unrelated matches. The writes are
+ * striped by {@link ShardedScoreboard}, whose shards are written in parallel. The
+ * summaries are generated from immutable snapshots (see {@link #snapshot()}), which are
+ * taken without acquiring the lock in the common case, so the readers neither block each
+ * other nor the writers. The validation of the arguments and the allocation of the match IDs are done
+ * outside of the critical sections.
+ * <p>
+ * Updating a score through {@link #updateScoreUnboxed(int, int, int)} does not allocate
+ * any memory.
+ * <p>
+ * Every operation is linearizable: in particular, {@link #updateScore} takes effect
+ * atomically at a single point between its invocation and its return. Both scores are
+ * changed together, a summary started after {@code updateScore} returned always reflects
+ * the new scores, and no summary can ever show only one of the two new scores, or the
+ * match at a position which is not consistent with its displayed scores.
+ * <p>
+ * A scoreboard constructed with a journal directory is persistent: every change is
+ * journaled, and is durable when the operation returns, so the ongoing matches (with their
+ * IDs) are restored when a scoreboard is constructed again on the same directory, after a
+ * restart or a crash. The concurrent operations share the writes to the storage device
+ * (group commit), and a snapshot of the board is regularly written, so that the recovery
+ * only replays the changes following it. A change is visible to the readers (and to the
+ * subscribers) as soon as it is applied, which is slightly before it is durable. If the
+ * journal fails to write, the changes which are not durable yet are rolled back (as new
+ * versions of the board), their operations throw an {@link UncheckedIOException}, and the
+ * scoreboard refuses any further change, before applying it.
+ * <p>
+ * The matches are stored either as objects (the default), or in compact arrays of
+ * primitive values for the boards holding millions of matches (see {@link MatchStorage}),
+ * with the same behavior.
+ * <p>
+ * The latencies of the operations can be measured, and emitted as JFR events, once the
+ * metrics are enabled (see {@link #enableMetrics()}).
+ * <p>
+ * The history of the matches can be recorded once enabled (see {@link #enableHistory()}):
+ * the timeline of each ongoing or recently terminated match, and the recent changes of the
+ * board, which can be replayed from a given version.
+ * <p>
+ * The scoreboard suits the virtual threads: its locks park the waiting threads rather than
+ * pinning them to their carrier thread (there is no {@code synchronized} block nor
+ * {@code Object.wait()}). The callers which must not wait for the lock can update scores
+ * with a timeout ({@link #tryUpdateScore(int, int, int, Duration)}), or submit their
+ * modifications asynchronously ({@link #startMatchAsync(String, String)},
+ * {@link #updateScoreAsync(Integer, Integer, Integer)} and
+ * {@link #terminateMatchAsync(Integer)}), to a single writer thread applying them in
+ * submission order.
  */
-public class Scoreboard {
+public class Scoreboard implements Closeable {
 
-    /** A semaphore used for synchronizing access to the scoreboard's match data. */
-    private Semaphore mutex;
+    /** Default number of journaled changes after which a snapshot of the board is written. */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100_000;
 
-    /** A map storing matches, indexed by their unique match ID. */
-    private Map<Integer, Match> listMatches;
+    /**
+     * Maximal number of asynchronous modifications waiting for the writer thread, beyond
+     * which the new ones are rejected rather than queued.
+     */
+    public static final int ASYNC_QUEUE_CAPACITY = 65_536;
+
+    /** Delay after which the idle writer thread of the asynchronous modifications stops. */
+    private static final long ASYNC_WRITER_KEEP_ALIVE_MILLIS = 1_000L;
+
+    /** Number of optimistic copies of the ranking attempted before taking the shared lock. */
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 3;
+
+    /** Default minimal number of most recent changes held by the history (about 10 MB). */
+    public static final int DEFAULT_HISTORY_EVENTS = 1 << 18;
+
+    /** Default maximal number of terminated matches whose timeline is kept by the history. */
+    public static final int DEFAULT_ARCHIVED_MATCHES = 10_000;
+
+    /** Default maximal duration the timeline of a terminated match is kept by the history. */
+    public static final Duration DEFAULT_ARCHIVE_AGE = Duration.ofHours(24);
+
+    /** Number of changes copied by each critical section of a replay of the history. */
+    private static final int REPLAY_BATCH_SIZE = 1024;
+
+    /**
+     * Lock protecting the ranking of the matches: exclusive for the operations modifying
+     * it, optimistic (or shared, as a fallback) for the summaries.
+     */
+    private StampedLock lock;
+
+    /**
+     * Version of the scoreboard, increased by every operation modifying it. It is only
+     * written under the exclusive lock, and can be read at any time.
+     */
+    private volatile long version;
+
+    /**
+     * The most recent snapshot taken, which is returned again as long as the scoreboard is
+     * not modified. As the snapshot memoizes its rendered summary, the summaries requested
+     * between two modifications are computed only once.
+     */
+    private AtomicReference<ScoreboardSnapshot> latestSnapshot;
+
+    /** Number of summaries returned from the cache, without any rendering. */
+    private LongAdder summaryCacheHits;
+
+    /** Number of summaries which had to be rendered. */
+    private LongAdder summaryCacheMisses;
+
+    /**
+     * The subscriptions to the changes of the scoreboard. The array is replaced (never
+     * modified) when a subscriber joins or leaves, so the writers can publish their events
+     * without any additional synchronization.
+     */
+    private AtomicReference<EventSubscription[]> subscriptions;
+
+    /** Number of events dropped because of the backpressure policies of the subscribers. */
+    private LongAdder droppedEvents;
+
+    /**
+     * The ongoing matches, indexed by their unique match ID (primitive lookups), and kept
+     * sorted in the summary order. Each operation repositions only the match it affects,
+     * so the summary never has to sort the matches.
+     */
+    private MatchStore listMatches;
+
+    /** Registry of the teams, holding a single copy of the name of each team. */
+    private TeamRegistry teams;
+
+    /** The allocator of the IDs and start orders of the matches. */
+    private MatchIdAllocator matchIds;
+
+    /** The journal making the changes durable, or null if the scoreboard is not persistent. */
+    private ScoreboardJournal journal;
+
+    /**
+     * The changes journaled, and not known to be durable yet, oldest first, which are rolled
+     * back if the journal fails to write them (null if the scoreboard is not persistent).
+     * Only accessed under the exclusive lock.
+     */
+    private ArrayDeque<JournaledChange> undoLog;
+
+    /** The IDs of the ongoing matches of each team ID, or null if the index is disabled. */
+    private MatchIdMultimap teamIndex;
+
+    /**
+     * The IDs of the ongoing matches of each pair of team IDs (see {@link #teamsPairOf(int, int)}),
+     * or null if the index is disabled.
+     */
+    private MatchIdMultimap teamsPairIndex;
+
+    /** The IDs of the ongoing matches, in start order, or null if the index is disabled. */
+    private MatchIdSet startOrderIndex;
+
+    /**
+     * The single writer thread applying the asynchronous modifications, in submission
+     * order. The thread is only started by the first submission, and stops when it has been
+     * idle for a while, so an unused (or forgotten) scoreboard does not keep any thread.
+     * Its queue is linked, so a scoreboard never modified asynchronously does not pay for
+     * {@link #ASYNC_QUEUE_CAPACITY} slots either.
+     */
+    private ThreadPoolExecutor asyncWriter;
+
+    /**
+     * The recorder of the metrics, or null if they are disabled. The timed operations read
+     * it once, so they only pay a null check while the metrics are disabled.
+     */
+    private volatile MetricsRecorder metrics;
+
+    /**
+     * The history of the matches, or null if it is disabled. It is only read and written
+     * under the lock, as the ranking.
+     */
+    private MatchHistory history;
 
     /**
      * Constructs a new {@code Scoreboard} instance.
      */
     public Scoreboard() {
-        listMatches = new HashMap<>();
-        this.mutex = new Semaphore(1);
+        this(MatchStorage.OBJECTS);
+    }
+
+    /**
+     * Constructs a new {@code Scoreboard} instance, storing its matches as requested.
+     *
+     * @param storage how the matches are stored in memory
+     * @throws IllegalArgumentException if the storage is null
+     */
+    private Scoreboard(MatchStorage storage) {
+        this(storage, new TeamRegistry(), new MatchIdAllocator(false));
+    }
+
+    /**
+     * Constructs a new {@code Scoreboard} instance, storing its matches as requested, and
+     * sharing its registry of teams and its allocator of match IDs with other scoreboards
+     * (the shards of a {@link ShardedScoreboard}).
+     *
+     * @param storage how the matches are stored in memory
+     * @param teams the registry of the teams
+     * @param matchIds the allocator of the IDs of the matches
+     * @throws IllegalArgumentException if the storage is null
+     */
+    Scoreboard(MatchStorage storage, TeamRegistry teams, MatchIdAllocator matchIds) {
+        if (storage == null) {
+            throw new IllegalArgumentException("Trying to store the matches in a null storage");
+        }
+        this.teams = teams;
+        this.matchIds = matchIds;
+        listMatches = (storage == MatchStorage.COMPACT)
+            ? new CompactMatchStore(this.teams) : new HeapMatchStore(this.teams);
+        this.lock = new StampedLock();
+        this.latestSnapshot = new AtomicReference<>();
+        this.summaryCacheHits = new LongAdder();
+        this.summaryCacheMisses = new LongAdder();
+        this.subscriptions = new AtomicReference<>(new EventSubscription[0]);
+        this.droppedEvents = new LongAdder();
+        this.asyncWriter = new ThreadPoolExecutor(1, 1, Scoreboard.ASYNC_WRITER_KEEP_ALIVE_MILLIS,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Scoreboard.ASYNC_QUEUE_CAPACITY), runnable -> {
+                Thread writer = new Thread(runnable, "scoreboard-writer");
+                writer.setDaemon(true);
+                return writer;
+            });
+        this.asyncWriter.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a new {@code Scoreboard}, storing its matches as requested. A scoreboard
+     * created with {@link MatchStorage#COMPACT} behaves as the one created by
+     * {@link #Scoreboard()}, with a much smaller memory footprint per match.
+     *
+     * @param storage how the matches are stored in memory
+     * @return the new scoreboard
+     * @throws IllegalArgumentException if the storage is null
+     */
+    public static Scoreboard withStorage(MatchStorage storage) {
+        return new Scoreboard(storage);
+    }
+
+    /**
+     * Creates a new {@code Scoreboard}, storing its matches as requested, which allocates
+     * the IDs of the terminated matches again to the next started matches, oldest first.
+     * <p>
+     * This suits the simulations starting and terminating matches endlessly: the IDs stay
+     * close to the number of ongoing matches, rather than growing forever, which keeps the
+     * structures indexed by ID dense (such as the {@link MatchIndex#START_ORDER} index, or
+     * the arrays of a client). The summary order is unchanged: the matches having the same
+     * total score are still ranked by start order, whatever their IDs. However, the IDs no
+     * longer follow the start order, so a client must not keep the ID of a terminated match,
+     * and the queries listing matches by ID ({@link #findMatchesByTeam(String)},
+     * {@link #findActiveMatch(String, String)} and {@link #getMatchIdsStartedAfter(int)})
+     * order them by ID rather than by start order.
+     *
+     * @param storage how the matches are stored in memory
+     * @return the new scoreboard
+     * @throws IllegalArgumentException if the storage is null
+     */
+    public static Scoreboard withRecycledMatchIds(MatchStorage storage) {
+        return new Scoreboard(storage, new TeamRegistry(), new MatchIdAllocator(true));
+    }
+
+    /**
+     * Constructs a persistent {@code Scoreboard}, journaling its changes in the given
+     * directory, and restores the ongoing matches previously journaled there.
+     *
+     * @param journalDirectory the directory of the journal (created if it does not exist)
+     * @throws IOException if the journal cannot be read or written, or is corrupted
+     * @throws IllegalArgumentException if the directory is null
+     */
+    public Scoreboard(Path journalDirectory) throws IOException {
+        this(journalDirectory, Scoreboard.DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Constructs a persistent {@code Scoreboard}, journaling its changes in the given
+     * directory, and restores the ongoing matches previously journaled there.
+     * <p>
+     * A snapshot of the board is written every {@code checkpointInterval} changes, which
+     * bounds the number of changes to replay at the next recovery. Writing a snapshot copies
+     * the board within the critical section, so a lower interval makes the recovery faster
+     * at the expense of the writers.
+     *
+     * @param journalDirectory the directory of the journal (created if it does not exist)
+     * @param checkpointInterval the number of changes after which a snapshot is written
+     * @throws IOException if the journal cannot be read or written, or is corrupted
+     * @throws IllegalArgumentException if the directory is null, or the interval is not positive
+     */
+    public Scoreboard(Path journalDirectory, int checkpointInterval) throws IOException {
+        this(journalDirectory, checkpointInterval, MatchStorage.OBJECTS);
+    }
+
+    /**
+     * Constructs a persistent {@code Scoreboard}, storing its matches as requested, and
+     * journaling its changes in the given directory (see {@link #Scoreboard(Path, int)}).
+     * The journal does not depend on the storage, so a board journaled with a storage can
+     * be restored with the other one.
+     *
+     * @param journalDirectory the directory of the journal (created if it does not exist)
+     * @param checkpointInterval the number of changes after which a snapshot is written
+     * @param storage how the matches are stored in memory
+     * @throws IOException if the journal cannot be read or written, or is corrupted
+     * @throws IllegalArgumentException if the directory or the storage is null, or the
+     *         interval is not positive
+     */
+    public Scoreboard(Path journalDirectory, int checkpointInterval, MatchStorage storage) throws IOException {
+        this(storage);
+        if (journalDirectory == null) {
+            throw new IllegalArgumentException("Trying to journal the scoreboard in a null directory");
+        }
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("The checkpoint interval must be positive");
+        }
+        this.journal = ScoreboardJournal.open(journalDirectory, checkpointInterval, this.listMatches, this.matchIds);
+        this.undoLog = new ArrayDeque<>();
+        this.version = this.journal.getRecoveredVersion();
     }
 
     /**
@@ -36,6 +364,7 @@ public class Scoreboard {
      * @param nameVisitorTeam the name of the visiting team
      * @return the unique match ID of the created match
      * @throws IllegalArgumentException if team names are null, empty, or identical
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
      */
     public Integer startMatch(String nameHomeTeam, String nameVisitorTeam) {
         if (nameHomeTeam == null || nameVisitorTeam == null) {
@@ -55,18 +384,223 @@ public class Scoreboard {
             throw new IllegalArgumentException("Invalid team names (the same for both teams)");
         }
         
-        Match newMatch = new Match(trimmedNameHome, trimmedNameVisitor);
-        Integer idNewMatch = newMatch.getMatchUniqueId();
-        
-        // We edit the list of the matches within a critical section
-        // to avoid any race conditions.
-        this.mutex.acquireUninterruptibly();
-        this.listMatches.put(idNewMatch, newMatch);
-        this.mutex.release();
+        return this.startNewMatch(this.teams.intern(trimmedNameHome), this.teams.intern(trimmedNameVisitor));
+    }
+
+    /**
+     * Submits the start of a new match to the writer thread of the scoreboard (see
+     * {@link #startMatch(String, String)}), without waiting for it.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return a future completed with the unique match ID of the created match, or completed
+     *         exceptionally with the exception thrown by the start, or with a
+     *         {@link RejectedExecutionException} if {@link #ASYNC_QUEUE_CAPACITY}
+     *         modifications are already waiting, or if the scoreboard is closed
+     */
+    public CompletableFuture<Integer> startMatchAsync(String nameHomeTeam, String nameVisitorTeam) {
+        return this.submitWrite(() -> this.startMatch(nameHomeTeam, nameVisitorTeam));
+    }
+
+    /**
+     * Starts a new match between two teams registered with {@link #registerTeam(String)}.
+     * <p>
+     * This is the fast variant of {@link #startMatch(String, String)}, for the callers
+     * starting matches at a high rate: the teams are identified by their IDs, so their
+     * names are neither trimmed, compared nor hashed, and the match ID is not boxed.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the created match
+     * @throws IllegalArgumentException if a team ID is not registered, or both IDs are identical
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    public int startMatch(int homeTeamId, int visitorTeamId) {
+        if (!this.teams.contains(homeTeamId) || !this.teams.contains(visitorTeamId)) {
+            throw new IllegalArgumentException("Invalid team ID");
+        }
+        if (homeTeamId == visitorTeamId) {
+            throw new IllegalArgumentException("Invalid team IDs (the same for both teams)");
+        }
+        return this.startNewMatch(homeTeamId, visitorTeamId);
+    }
+
+    /**
+     * Allocates the ID of a new match between two validated teams, and starts it. In the
+     * unlikely case where the ID is taken by an ongoing match in the meantime, the match is
+     * started with the next free ID instead.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the created match
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    private int startNewMatch(int homeTeamId, int visitorTeamId) {
+        int idNewMatch;
+        do {
+            long startOrder = this.matchIds.allocateStartOrder();
+            idNewMatch = this.startRegisteredMatch(this.allocateMatchId(startOrder), startOrder, homeTeamId,
+                visitorTeamId);
+        } while (idNewMatch < 0);
+        return idNewMatch;
+    }
+
+    /**
+     * Registers a team, so its matches can be started with {@link #startMatch(int, int)}.
+     * The name is trimmed, and registering the same name again returns the same ID. The
+     * teams of the matches started with {@link #startMatch(String, String)} are registered
+     * as well, so all the matches of a team share a single copy of its name.
+     *
+     * @param nameTeam the name of the team
+     * @return the ID of the team
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    public int registerTeam(String nameTeam) {
+        return this.teams.intern(Scoreboard.trimTeamName(nameTeam));
+    }
+
+    /**
+     * Returns the name of a registered team.
+     *
+     * @param teamId the ID of the team
+     * @return the (trimmed) name of the team
+     * @throws IllegalArgumentException if the team ID is not registered
+     */
+    public String getTeamName(int teamId) {
+        if (!this.teams.contains(teamId)) {
+            throw new IllegalArgumentException("Invalid team ID");
+        }
+        return this.teams.getName(teamId);
+    }
+
+    /**
+     * Allocates the ID of a new match, without any lock. Once the IDs have wrapped around,
+     * the IDs still used by an ongoing match are skipped: the check is optimistic, but
+     * another thread can only be allocated the same ID after a whole lap of the IDs (and
+     * the critical section detects this unlikely collision anyway, see
+     * {@link #startRegisteredMatch(int, long, int, int)}).
+     *
+     * @param startOrder the start order allocated to the match
+     * @return the ID of the new match
+     */
+    int allocateMatchId(long startOrder) {
+        int idNewMatch = this.matchIds.allocateMatchId(startOrder);
+        while (this.matchIds.hasWrapped() && this.isOngoing(idNewMatch)) {
+            idNewMatch = this.matchIds.allocateMatchId(this.matchIds.allocateStartOrder());
+        }
+        return idNewMatch;
+    }
+
+    /**
+     * Allocates the start order of a new match, whose ID is then allocated by
+     * {@link #allocateMatchId(long)}, as the starts published to a {@link ScoreboardIngestor}.
+     *
+     * @return the start order of the new match
+     */
+    long allocateStartOrder() {
+        return this.matchIds.allocateStartOrder();
+    }
+
+    /**
+     * Tells whether a match is ongoing, read optimistically first, as the snapshots.
+     *
+     * @param matchId the ID of the match
+     * @return true if the match is ongoing
+     */
+    boolean isOngoing(int matchId) {
+        long stamp = this.lock.tryOptimisticRead();
+        boolean ongoing = this.listMatches.find(matchId) >= 0;
+        if (this.lock.validate(stamp)) {
+            return ongoing;
+        }
+        stamp = this.lock.readLock();
+        try {
+            return this.listMatches.find(matchId) >= 0;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Starts a new match between two validated teams, unless its ID is still used by an
+     * ongoing match (which can only happen once the IDs have wrapped around), in which case
+     * the board is left unchanged and the caller allocates another ID.
+     *
+     * @param idNewMatch the unique match ID allocated to the match by {@link #allocateMatchId(long)}
+     * @param startOrder the start order allocated to the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the created match, or -1 if the ID is used by an ongoing match
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    int startRegisteredMatch(int idNewMatch, long startOrder, int homeTeamId, int visitorTeamId) {
+        // The match is published in the table and in the ranking within the same
+        // critical section, so a summary never sees it in only one of them.
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        long journalPosition;
+        ScoreboardSnapshot checkpoint = null;
+        long stamp = this.acquireWriteLock();
+        try {
+            this.checkJournalLocked();
+            if (this.matchIds.hasWrapped() && this.listMatches.find(idNewMatch) >= 0) {
+                return -1;
+            }
+            journalPosition = this.startLocked(idNewMatch, startOrder, homeTeamId, visitorTeamId);
+            if (this.journal != null) {
+                checkpoint = this.rotateJournalIfNeeded();
+            }
+        } finally {
+            this.unlockWriteAndDeliver(stamp);
+        }
+        if (this.journal != null) {
+            this.syncJournal(journalPosition, checkpoint);
+        }
+        if (metrics != null) {
+            metrics.record(ScoreboardMetrics.Timer.START_MATCH, idNewMatch, start);
+        }
         
         return idNewMatch;
     }
 
+    /**
+     * Starts a match between two registered teams, the exclusive lock being held. The change
+     * is journaled, but not yet durable.
+     *
+     * @param idNewMatch the unique ID of the new match
+     * @param startOrder the start order allocated to the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the position of the record of the change in the journal (0 if not persistent)
+     * @throws IllegalArgumentException if the ID is still used by an ongoing match (which can
+     *         only happen once the IDs have wrapped around)
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    private long startLocked(int idNewMatch, long startOrder, int homeTeamId, int visitorTeamId) {
+        if (this.matchIds.hasWrapped() && this.listMatches.find(idNewMatch) >= 0) {
+            throw new IllegalArgumentException("Trying to start a match with the ID of an ongoing match");
+        }
+        long journalPosition = 0L;
+        int newMatch = this.listMatches.add(idNewMatch, startOrder, homeTeamId, visitorTeamId);
+        this.indexMatch(idNewMatch, homeTeamId, visitorTeamId);
+        this.version++;
+        if (this.history != null) {
+            this.recordHistory(MatchHistory.STARTED, idNewMatch, homeTeamId, visitorTeamId,
+                this.listMatches.getScores(newMatch));
+        }
+        if (this.journal != null) {
+            journalPosition = this.journal.appendStart(idNewMatch, this.listMatches.getStartOrder(newMatch),
+                homeTeamId, visitorTeamId);
+            this.recordUndo(journalPosition, MatchHistory.STARTED, idNewMatch, newMatch, 0L);
+        }
+        if (this.hasSubscribers()) {
+            this.publish(new ScoreboardEvent.MatchStarted(this.version, idNewMatch,
+                this.teams.getName(homeTeamId), this.teams.getName(visitorTeamId),
+                this.listMatches.rankOf(newMatch)));
+        }
+        return journalPosition;
+    }
+
     /**
      * Updates the score of an ongoing match.
      *
@@ -74,6 +608,7 @@ public class Scoreboard {
      * @param scoreHomeTeam the updated score for the home team
      * @param scoreVisitorTeam the updated score for the visiting team
      * @throws IllegalArgumentException if the match ID is null, invalid, or scores are negative
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
      */
     public void updateScore(Integer matchId, Integer scoreHomeTeam, Integer scoreVisitorTeam) {
         if (matchId == null) {
@@ -82,21 +617,344 @@ public class Scoreboard {
         if (scoreHomeTeam == null || scoreVisitorTeam == null) {
             throw new IllegalArgumentException("Trying to update a match with null scores");
         }
-        if (!this.listMatches.containsKey(matchId)) {
+        this.updateScoreUnboxed(matchId, scoreHomeTeam, scoreVisitorTeam);
+    }
+
+    /**
+     * Updates the score of an ongoing match, without boxing any of the arguments.
+     * This is the allocation-free variant of {@link #updateScore(Integer, Integer, Integer)},
+     * intended for the callers updating scores at a high rate.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @throws IllegalArgumentException if the match ID is invalid, or scores are negative
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    public void updateScoreUnboxed(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        this.updateScoreLocked(this.acquireWriteLock(), matchId, scoreHomeTeam, scoreVisitorTeam);
+        if (metrics != null) {
+            metrics.record(ScoreboardMetrics.Timer.UPDATE_SCORE, matchId, start);
+        }
+    }
+
+    /**
+     * Updates the score of an ongoing match, unless the exclusive lock of the scoreboard
+     * cannot be acquired within the given timeout, typically because of a heavy contention,
+     * in which case the update is given up (the caller may drop it, or retry it later).
+     * <p>
+     * Only the wait for the lock is bounded: once acquired, the update completes as
+     * {@link #updateScoreUnboxed(int, int, int)} does (including the journal write of a
+     * persistent scoreboard). The wait is interruptible.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @param timeout the maximal time to wait for the lock (zero or negative to not wait at all)
+     * @return true if the score was updated, false if the timeout elapsed first
+     * @throws IllegalArgumentException if the timeout is null, the match ID is invalid, or
+     *         scores are negative
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    public boolean tryUpdateScore(int matchId, int scoreHomeTeam, int scoreVisitorTeam, Duration timeout)
+            throws InterruptedException {
+        if (timeout == null) {
+            throw new IllegalArgumentException("Trying to update a match with a null timeout");
+        }
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        long stamp = this.lock.tryWriteLock(Scoreboard.toNanos(timeout), TimeUnit.NANOSECONDS);
+        if (stamp == 0L) {
+            return false;
+        }
+        this.updateScoreLocked(stamp, matchId, scoreHomeTeam, scoreVisitorTeam);
+        if (metrics != null) {
+            metrics.record(ScoreboardMetrics.Timer.UPDATE_SCORE, matchId, start);
+        }
+        return true;
+    }
+
+    /**
+     * Submits the update of the score of an ongoing match to the writer thread of the
+     * scoreboard (see {@link #updateScore(Integer, Integer, Integer)}), without waiting
+     * for it.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @return a future completed once the score is updated, or completed exceptionally with
+     *         the exception thrown by the update, or with a {@link RejectedExecutionException}
+     *         if {@link #ASYNC_QUEUE_CAPACITY} modifications are already waiting, or if the
+     *         scoreboard is closed
+     */
+    public CompletableFuture<Void> updateScoreAsync(Integer matchId, Integer scoreHomeTeam, Integer scoreVisitorTeam) {
+        return this.submitWrite(() -> {
+            this.updateScore(matchId, scoreHomeTeam, scoreVisitorTeam);
+            return null;
+        });
+    }
+
+    /**
+     * Updates the score of an ongoing match, the exclusive lock being already acquired.
+     * The lock is released by this method.
+     *
+     * @param stamp the stamp of the exclusive lock
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @throws IllegalArgumentException if the match ID is invalid, or scores are negative
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    private void updateScoreLocked(long stamp, int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        // The match may be terminated at any time by another thread, so it is looked up
+        // and validated within the critical section. Releasing the exclusive lock is the
+        // linearization point of the update.
+        long journalPosition;
+        ScoreboardSnapshot checkpoint = null;
+        try {
+            this.checkJournalLocked();
+            journalPosition = this.updateLocked(matchId, scoreHomeTeam, scoreVisitorTeam);
+            if (this.journal != null) {
+                checkpoint = this.rotateJournalIfNeeded();
+            }
+        } finally {
+            this.unlockWriteAndDeliver(stamp);
+        }
+        if (this.journal != null) {
+            this.syncJournal(journalPosition, checkpoint);
+        }
+    }
+
+    /**
+     * Updates the score of an ongoing match, the exclusive lock being held. The change is
+     * journaled, but not yet durable.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @return the position of the record of the change in the journal (0 if not persistent)
+     * @throws IllegalArgumentException if the match ID is invalid, or scores are negative
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    private long updateLocked(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        int match = this.listMatches.find(matchId);
+        if (match < 0) {
             throw new IllegalArgumentException("Trying to update an invalid match");
         }
         if (scoreHomeTeam < 0 || scoreVisitorTeam < 0) {
             throw new IllegalArgumentException("Trying to provide a negative score");
         }
-        
-        // As we can potentially be in a multi-threaded environment,
-        // the list of the matches (and all the matches it contains)
-        // are updated within a semaphore-protected critical section
-        this.mutex.acquireUninterruptibly();
-        Match match = this.listMatches.get(matchId);
-        match.setHomeScore(scoreHomeTeam);
-        match.setVisitorScore(scoreVisitorTeam);
-        this.mutex.release();
+        long scores = Match.packScores(scoreHomeTeam, scoreVisitorTeam);
+        long journalPosition = 0L;
+        if (this.journal != null) {
+            journalPosition = this.journal.appendUpdate(matchId, scores);
+            this.recordUndo(journalPosition, MatchHistory.SCORE_CHANGED, matchId, match,
+                this.listMatches.getScores(match));
+        }
+        this.setScoresLocked(matchId, match, scores);
+        return journalPosition;
+    }
+
+    /**
+     * Sets the scores of an ongoing match, the exclusive lock being held, and records and
+     * publishes the change.
+     *
+     * @param matchId the unique ID of the match
+     * @param match the handle of the match
+     * @param scores the new packed scores of the match
+     */
+    private void setScoresLocked(int matchId, int match, long scores) {
+        // The position of the match depends on its score, so the match is taken out of the
+        // ranking while its score changes, and then inserted back.
+        // The positions are only computed when somebody listens to the changes
+        boolean notify = this.hasSubscribers();
+        int oldPosition = notify ? this.listMatches.rankOf(match) : -1;
+        long oldScores = this.listMatches.getScores(match);
+        this.listMatches.setScores(match, scores);
+        this.version++;
+        if (this.history != null && scores != oldScores) {
+            this.recordHistory(MatchHistory.SCORE_CHANGED, matchId, this.listMatches.getHomeTeamId(match),
+                this.listMatches.getVisitorTeamId(match), scores);
+        }
+        if (notify) {
+            this.publishScoreChange(matchId, match, Match.homeScoreOf(scores), Match.visitorScoreOf(scores),
+                oldPosition);
+        }
+    }
+
+    /**
+     * Applies a batch of score updates atomically.
+     * <p>
+     * The whole batch is validated before any score is modified: if one of the updates is
+     * invalid, an exception is thrown and none of them is applied. The updates are then
+     * applied within a single critical section, so no summary can see only a part of the
+     * batch, and the summary ordering is adjusted once for the whole batch. If several
+     * updates target the same match, the last one wins.
+     *
+     * @param batch the score updates to apply
+     * @throws IllegalArgumentException if the batch or one of its updates is null, if a
+     *         match ID is invalid, or if a score is negative
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    public void applyUpdates(ScoreUpdate... batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Trying to apply a null batch of updates");
+        }
+        for (ScoreUpdate update : batch) {
+            if (update == null) {
+                throw new IllegalArgumentException("Trying to apply a null update");
+            }
+            if (update.scoreHomeTeam() < 0 || update.scoreVisitorTeam() < 0) {
+                throw new IllegalArgumentException("Trying to provide a negative score");
+            }
+        }
+
+        int[] matches = new int[batch.length];
+        long journalPosition = 0L;
+        ScoreboardSnapshot checkpoint = null;
+        long stamp = this.acquireWriteLock();
+        try {
+            this.checkJournalLocked();
+            // All the matches are looked up before the first modification,
+            // so an invalid match ID leaves the scoreboard untouched.
+            for (int i = 0; i < batch.length; i++) {
+                matches[i] = this.listMatches.find(batch[i].matchId());
+                if (matches[i] < 0) {
+                    throw new IllegalArgumentException("Trying to update an invalid match");
+                }
+            }
+
+            // The positions before the batch are only computed when somebody listens to the changes
+            boolean notify = this.hasSubscribers();
+            int[] oldPositions = notify ? new int[batch.length] : null;
+            for (int i = 0; notify && i < batch.length; i++) {
+                oldPositions[i] = this.listMatches.rankOf(matches[i]);
+            }
+
+            // The scores before the batch are only kept when the history records the changes,
+            // or when the batch may have to be rolled back
+            long[] oldScores = (this.history != null || this.journal != null) ? new long[batch.length] : null;
+            for (int i = 0; oldScores != null && i < batch.length; i++) {
+                oldScores[i] = this.listMatches.getScores(matches[i]);
+            }
+
+            // Each affected match is taken out of the ranking once, whatever the number
+            // of updates it receives, and inserted back once all the scores are set.
+            for (int match : matches) {
+                if (this.listMatches.isRanked(match)) {
+                    this.listMatches.unrank(match);
+                }
+            }
+            for (int i = 0; i < batch.length; i++) {
+                this.listMatches.setScores(matches[i],
+                    Match.packScores(batch[i].scoreHomeTeam(), batch[i].scoreVisitorTeam()));
+            }
+            boolean[] firstOccurrences = new boolean[batch.length];
+            for (int i = 0; i < batch.length; i++) {
+                if (!this.listMatches.isRanked(matches[i])) {
+                    this.listMatches.rank(matches[i]);
+                    firstOccurrences[i] = true;
+                }
+            }
+            this.version++;
+            // A single change per match, with its final scores, whatever the number of updates
+            for (int i = 0; this.history != null && i < batch.length; i++) {
+                long scores = this.listMatches.getScores(matches[i]);
+                if (firstOccurrences[i] && scores != oldScores[i]) {
+                    this.recordHistory(MatchHistory.SCORE_CHANGED, batch[i].matchId(),
+                        this.listMatches.getHomeTeamId(matches[i]), this.listMatches.getVisitorTeamId(matches[i]),
+                        scores);
+                }
+            }
+            if (this.journal != null) {
+                // Each update is journaled with the final scores of its match
+                int[] matchIds = new int[batch.length];
+                long[] scores = new long[batch.length];
+                for (int i = 0; i < batch.length; i++) {
+                    matchIds[i] = batch[i].matchId();
+                    scores[i] = this.listMatches.getScores(matches[i]);
+                }
+                journalPosition = this.journal.appendUpdates(matchIds, scores);
+                for (int i = 0; i < batch.length; i++) {
+                    if (firstOccurrences[i]) {
+                        this.recordUndo(journalPosition, MatchHistory.SCORE_CHANGED, matchIds[i], matches[i],
+                            oldScores[i]);
+                    }
+                }
+                checkpoint = this.rotateJournalIfNeeded();
+            }
+
+            // A single event per match, with its final scores, whatever the number of updates
+            for (int i = 0; notify && i < batch.length; i++) {
+                if (firstOccurrences[i]) {
+                    long scores = this.listMatches.getScores(matches[i]);
+                    this.publishScoreChange(batch[i].matchId(), matches[i], Match.homeScoreOf(scores),
+                        Match.visitorScoreOf(scores), oldPositions[i]);
+                }
+            }
+        } finally {
+            this.unlockWriteAndDeliver(stamp);
+        }
+        if (this.journal != null) {
+            this.syncJournal(journalPosition, checkpoint);
+        }
+    }
+
+    /**
+     * Applies a sequence of commands drained from a {@link CommandRing} by a
+     * {@link ScoreboardIngestor}, in order, within a single critical section: the readers
+     * see either none or all of them. The commands are applied independently, so an invalid
+     * command (for instance the update of a terminated match) is skipped, without undoing
+     * the others. A persistent scoreboard waits only once for the whole sequence to be
+     * durable.
+     *
+     * @param kinds the kinds of the commands (see {@link CommandRing#START})
+     * @param matchIds the match IDs of the commands
+     * @param args1 the first arguments of the commands
+     * @param args2 the second arguments of the commands
+     * @param startOrders the start orders allocated to the matches started by the commands
+     * @param count the number of commands to apply
+     * @return the number of invalid commands, which were skipped
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    int applyCommands(int[] kinds, int[] matchIds, int[] args1, int[] args2, long[] startOrders, int count) {
+        long journalPosition = 0L;
+        ScoreboardSnapshot checkpoint = null;
+        int nbInvalid = 0;
+        long stamp = this.acquireWriteLock();
+        try {
+            this.checkJournalLocked();
+            for (int i = 0; i < count; i++) {
+                try {
+                    switch (kinds[i]) {
+                        case CommandRing.START:
+                            journalPosition = this.startLocked(matchIds[i], startOrders[i], args1[i], args2[i]);
+                            break;
+                        case CommandRing.UPDATE:
+                            journalPosition = this.updateLocked(matchIds[i], args1[i], args2[i]);
+                            break;
+                        default:
+                            journalPosition = this.terminateLocked(matchIds[i]);
+                            break;
+                    }
+                } catch (IllegalArgumentException e) {
+                    nbInvalid++;
+                }
+            }
+            // A single snapshot covers all the commands journaled above
+            if (this.journal != null) {
+                checkpoint = this.rotateJournalIfNeeded();
+            }
+        } finally {
+            this.unlockWriteAndDeliver(stamp);
+        }
+        if (this.journal != null) {
+            this.syncJournal(journalPosition, checkpoint);
+        }
+        return nbInvalid;
     }
 
     /**
@@ -104,39 +962,1462 @@ public class Scoreboard {
      *
      * @param matchId the unique ID of the match to be terminated
      * @throws IllegalArgumentException if the match ID is null or invalid
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
      */
     public void terminateMatch(Integer matchId) {
         if (matchId == null) {
             throw new IllegalArgumentException("Trying to terminate a match with null ID");
         }
-        if (!this.listMatches.containsKey(matchId)) {
+
+        // The match is looked up and removed from the table within the critical section,
+        // so when two threads terminate the same match, only one of them succeeds.
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        long journalPosition;
+        ScoreboardSnapshot checkpoint = null;
+        long stamp = this.acquireWriteLock();
+        try {
+            this.checkJournalLocked();
+            journalPosition = this.terminateLocked(matchId);
+            if (this.journal != null) {
+                checkpoint = this.rotateJournalIfNeeded();
+            }
+        } finally {
+            this.unlockWriteAndDeliver(stamp);
+        }
+        if (this.journal != null) {
+            this.syncJournal(journalPosition, checkpoint);
+        }
+        if (metrics != null) {
+            metrics.record(ScoreboardMetrics.Timer.TERMINATE_MATCH, matchId, start);
+        }
+    }
+
+    /**
+     * Terminates an ongoing match, the exclusive lock being held. The change is journaled,
+     * but not yet durable.
+     *
+     * @param matchId the unique ID of the match to be terminated
+     * @return the position of the record of the change in the journal (0 if not persistent)
+     * @throws IllegalArgumentException if the match ID is invalid
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal fails to write
+     */
+    private long terminateLocked(int matchId) {
+        int match = this.listMatches.find(matchId);
+        if (match < 0) {
             throw new IllegalArgumentException("Trying to terminate a match with invalid ID");
         }
-        
-        // As we can potentially be in a multi-threaded environment,
-        // the list of the matches (and all the matches it contains)
-        // are updated within a semaphore-protected critical section
-        this.mutex.acquireUninterruptibly();
-        this.listMatches.remove(matchId);
-        this.mutex.release();
+        long journalPosition = 0L;
+        if (this.journal != null) {
+            journalPosition = this.journal.appendTerminate(matchId);
+            this.recordUndo(journalPosition, MatchHistory.TERMINATED, matchId, match,
+                this.listMatches.getScores(match));
+        }
+        this.removeLocked(matchId, match);
+        return journalPosition;
     }
 
     /**
-     * Retrieves a summary of all ongoing matches, sorted by total score in descending order.
-     * If multiple matches have the same score, they are sorted by most recent start time.
+     * Removes an ongoing match from the scoreboard, the exclusive lock being held, and
+     * records and publishes its termination.
      *
-     * @return a formatted string containing match summaries, separated by new lines
+     * @param matchId the unique ID of the match
+     * @param match the handle of the match
      */
-    public String getMatchesSummary() {
-        // Taking a snapshot of the list of the matches and their results
-        this.mutex.acquireUninterruptibly();
-        List<Match> matches = new ArrayList<>(this.listMatches.values());
-        this.mutex.release();
-
-        // the sorting relies on the Match.compareTo method, which compares Matches
-        // per total number of scored goals, and then by starting order, if they have
-        // the same number of goals.
-        Collections.sort(matches);
-        return matches.stream().map(Match::toString).collect(Collectors.joining("\n"));
+    private void removeLocked(int matchId, int match) {
+        int lastPosition = this.hasSubscribers() ? this.listMatches.rankOf(match) : -1;
+        int homeTeamId = this.listMatches.getHomeTeamId(match);
+        int visitorTeamId = this.listMatches.getVisitorTeamId(match);
+        long finalScores = this.listMatches.getScores(match);
+        this.unindexMatch(matchId, homeTeamId, visitorTeamId);
+        this.listMatches.removeAt(match);
+        this.matchIds.release(matchId);
+        this.version++;
+        if (this.history != null) {
+            this.recordHistory(MatchHistory.TERMINATED, matchId, homeTeamId, visitorTeamId, finalScores);
+        }
+        if (lastPosition >= 0) {
+            this.publish(new ScoreboardEvent.MatchTerminated(this.version, matchId, lastPosition));
+        }
+    }
+
+    /**
+     * Enables a secondary index of the ongoing matches, built from the current matches in
+     * O(n), and then maintained by every start and termination of a match. Does nothing if
+     * the index is already enabled.
+     *
+     * @param index the index to enable
+     * @throws IllegalArgumentException if the index is null
+     */
+    public void enableIndex(MatchIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("Trying to enable a null index");
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.isIndexEnabledLocked(index)) {
+                return;
+            }
+            int size = this.listMatches.size();
+            int[] matchIds = new int[size];
+            int[] homeTeamIds = new int[size];
+            int[] visitorTeamIds = new int[size];
+            int nbMatches = this.listMatches.copyTo(0, matchIds, new long[size], homeTeamIds, visitorTeamIds,
+                new long[size]);
+            switch (index) {
+                case TEAM:
+                    this.teamIndex = new MatchIdMultimap();
+                    for (int i = 0; i < nbMatches; i++) {
+                        this.teamIndex.add(homeTeamIds[i], matchIds[i]);
+                        this.teamIndex.add(visitorTeamIds[i], matchIds[i]);
+                    }
+                    break;
+                case TEAMS_PAIR:
+                    this.teamsPairIndex = new MatchIdMultimap();
+                    for (int i = 0; i < nbMatches; i++) {
+                        this.teamsPairIndex.add(Scoreboard.teamsPairOf(homeTeamIds[i], visitorTeamIds[i]), matchIds[i]);
+                    }
+                    break;
+                default:
+                    this.startOrderIndex = new MatchIdSet();
+                    for (int i = 0; i < nbMatches; i++) {
+                        this.startOrderIndex.add(matchIds[i]);
+                    }
+                    break;
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Disables a secondary index of the ongoing matches, and releases its memory. Its
+     * queries keep working, by scanning all the ongoing matches. Does nothing if the index
+     * is not enabled.
+     *
+     * @param index the index to disable
+     * @throws IllegalArgumentException if the index is null
+     */
+    public void disableIndex(MatchIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("Trying to disable a null index");
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            switch (index) {
+                case TEAM:
+                    this.teamIndex = null;
+                    break;
+                case TEAMS_PAIR:
+                    this.teamsPairIndex = null;
+                    break;
+                default:
+                    this.startOrderIndex = null;
+                    break;
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Tells whether a secondary index of the ongoing matches is enabled.
+     *
+     * @param index the index
+     * @return true if the index is enabled
+     * @throws IllegalArgumentException if the index is null
+     */
+    public boolean isIndexEnabled(MatchIndex index) {
+        if (index == null) {
+            throw new IllegalArgumentException("Trying to query a null index");
+        }
+        long stamp = this.lock.readLock();
+        try {
+            return this.isIndexEnabledLocked(index);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the IDs of the ongoing matches of a team, whether it plays at home or as
+     * visitor. The cost is O(k log k) for the k matches of the team when the
+     * {@link MatchIndex#TEAM} index is enabled, and O(n) otherwise.
+     *
+     * @param nameTeam the name of the team
+     * @return the IDs of the matches of the team, in start order (empty if the team is unknown)
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    public List<Integer> findMatchesByTeam(String nameTeam) {
+        int teamId = this.teams.find(Scoreboard.trimTeamName(nameTeam));
+        if (teamId < 0) {
+            return List.of();
+        }
+        int[] matchIds;
+        long stamp = this.lock.readLock();
+        try {
+            matchIds = (this.teamIndex != null)
+                ? this.teamIndex.get(teamId)
+                : this.scanMatchIds(teamId, -1, Integer.MIN_VALUE);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+        return Scoreboard.toList(matchIds);
+    }
+
+    /**
+     * Returns the ongoing match between two teams, typically to check that a match is not
+     * started twice. The cost is O(1) when the {@link MatchIndex#TEAMS_PAIR} index is
+     * enabled, and O(n) otherwise.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return the ID of the most recently started ongoing match between these home and
+     *         visiting teams, or null if there is none
+     * @throws IllegalArgumentException if a team name is null or empty
+     */
+    public Integer findActiveMatch(String nameHomeTeam, String nameVisitorTeam) {
+        int homeTeamId = this.teams.find(Scoreboard.trimTeamName(nameHomeTeam));
+        int visitorTeamId = this.teams.find(Scoreboard.trimTeamName(nameVisitorTeam));
+        if (homeTeamId < 0 || visitorTeamId < 0) {
+            return null;
+        }
+        int matchId;
+        long stamp = this.lock.readLock();
+        try {
+            if (this.teamsPairIndex != null) {
+                matchId = this.teamsPairIndex.getLast(Scoreboard.teamsPairOf(homeTeamId, visitorTeamId));
+            } else {
+                int[] matchIds = this.scanMatchIds(homeTeamId, visitorTeamId, Integer.MIN_VALUE);
+                matchId = (matchIds.length == 0) ? -1 : matchIds[matchIds.length - 1];
+            }
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+        return (matchId < 0) ? null : matchId;
+    }
+
+    /**
+     * Returns the IDs of the ongoing matches started after a given match, that is, whose ID
+     * is greater (the given match does not need to be ongoing). This lets a client fetch
+     * only the matches started since its last query (unless the IDs are recycled, see
+     * {@link #withRecycledMatchIds(MatchStorage)}). The cost is O(k + r / 64) for k
+     * returned matches, r being the range of IDs of the ongoing matches, when the
+     * {@link MatchIndex#START_ORDER} index is enabled, and O(n) otherwise.
+     *
+     * @param matchId the ID of the match after which the matches are returned
+     * @return the IDs of the matches started after the given one, in start order
+     */
+    public List<Integer> getMatchIdsStartedAfter(int matchId) {
+        int[] matchIds;
+        long stamp = this.lock.readLock();
+        try {
+            matchIds = (this.startOrderIndex != null)
+                ? this.startOrderIndex.idsAfter(matchId)
+                : this.scanMatchIds(-1, -1, matchId);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+        return Scoreboard.toList(matchIds);
+    }
+
+    /**
+     * Submits the termination of a match to the writer thread of the scoreboard (see
+     * {@link #terminateMatch(Integer)}), without waiting for it.
+     *
+     * @param matchId the unique ID of the match to be terminated
+     * @return a future completed once the match is terminated, or completed exceptionally
+     *         with the exception thrown by the termination, or with a
+     *         {@link RejectedExecutionException} if {@link #ASYNC_QUEUE_CAPACITY}
+     *         modifications are already waiting, or if the scoreboard is closed
+     */
+    public CompletableFuture<Void> terminateMatchAsync(Integer matchId) {
+        return this.submitWrite(() -> {
+            this.terminateMatch(matchId);
+            return null;
+        });
+    }
+
+    /**
+     * Closes the scoreboard: the asynchronous modifications already submitted are applied,
+     * and the new ones are rejected. The subscriptions to the changes are then completed:
+     * each subscriber receives the events it already requested, and then {@code onComplete}.
+     * The journal of a persistent scoreboard is then closed,
+     * after writing a final snapshot of the board, so the next recovery does not have to
+     * replay anything. The scoreboard must not be modified afterwards.
+     *
+     * @throws IOException if the journal or the snapshot fails to write, or if the thread is
+     *         interrupted while waiting for the asynchronous modifications
+     */
+    @Override
+    public void close() throws IOException {
+        this.asyncWriter.shutdown();
+        try {
+            // The pending modifications are applied, however long it takes
+            this.asyncWriter.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while applying the asynchronous modifications");
+        }
+        for (EventSubscription subscription : this.subscriptions.get()) {
+            subscription.complete();
+        }
+        if (this.journal == null) {
+            return;
+        }
+        ScoreboardSnapshot checkpoint;
+        long stamp = this.lock.writeLock();
+        try {
+            this.journal.rotate(this.version);
+            checkpoint = new ScoreboardSnapshot(this.version, new RankingSnapshot(this.listMatches));
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.journal.writeCheckpoint(checkpoint.getVersion(), checkpoint.getRanking());
+        this.journal.close();
+    }
+
+    /**
+     * Retrieves a summary of all ongoing matches, sorted by total score in descending order.
+     * If multiple matches have the same score, they are sorted by most recent start time.
+     * <p>
+     * The rendered summary is cached until the next modification of the scoreboard, so the
+     * repeated calls between two modifications are O(1) and do not allocate anything.
+     *
+     * @return a formatted string containing match summaries, separated by new lines
+     */
+    public String getMatchesSummary() {
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        ScoreboardSnapshot snapshot = this.snapshot();
+        boolean cached = snapshot.isSummaryRendered();
+        if (cached) {
+            this.summaryCacheHits.increment();
+        } else {
+            this.summaryCacheMisses.increment();
+        }
+        String summary = snapshot.getMatchesSummary();
+        if (metrics != null) {
+            metrics.recordSummary(snapshot.size(), summary.length(), cached, start);
+        }
+        return summary;
+    }
+
+    /**
+     * Returns the number of calls to {@link #getMatchesSummary()} which were served from the
+     * cache, since the creation of the scoreboard.
+     *
+     * @return the number of summary cache hits
+     */
+    public long getSummaryCacheHits() {
+        return this.summaryCacheHits.sum();
+    }
+
+    /**
+     * Returns the number of calls to {@link #getMatchesSummary()} which had to render the
+     * summary, since the creation of the scoreboard.
+     *
+     * @return the number of summary cache misses
+     */
+    public long getSummaryCacheMisses() {
+        return this.summaryCacheMisses.sum();
+    }
+
+    /**
+     * Enables the metrics of the scoreboard (see {@link ScoreboardMetrics}): the durations of
+     * its operations are measured from now on, and emitted as JFR events during the
+     * recordings enabling them. Returns the current metrics if they are already enabled.
+     * <p>
+     * While the metrics are disabled (the default), the timed operations only check that
+     * they are, and do not read the clock.
+     *
+     * @return the metrics of the scoreboard
+     */
+    public ScoreboardMetrics enableMetrics() {
+        long stamp = this.lock.writeLock();
+        try {
+            if (this.metrics == null) {
+                this.metrics = new MetricsRecorder(this);
+            }
+            return this.metrics;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Disables the metrics of the scoreboard. The metrics previously returned keep their
+     * values, but are no longer updated. Does nothing if the metrics are already disabled.
+     */
+    public void disableMetrics() {
+        this.metrics = null;
+    }
+
+    /**
+     * Returns the metrics of the scoreboard, if they are enabled.
+     *
+     * @return the metrics of the scoreboard, or null if they are disabled
+     */
+    public ScoreboardMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Enables the history of the matches, with the default retention (see
+     * {@link #enableHistory(int, int, Duration)}).
+     */
+    public void enableHistory() {
+        this.enableHistory(Scoreboard.DEFAULT_HISTORY_EVENTS, Scoreboard.DEFAULT_ARCHIVED_MATCHES,
+            Scoreboard.DEFAULT_ARCHIVE_AGE);
+    }
+
+    /**
+     * Enables the history of the matches: from now on, the starts, the changes of scores and
+     * the terminations are recorded, with their version and their time, so that the
+     * timeline of a match can be retrieved (see {@link #getTimeline(int)}) while it is
+     * ongoing, and for a while after its termination, and the recent changes of the board
+     * can be replayed (see {@link #replay(long, Consumer)}). If the history is already
+     * enabled, it is replaced by an empty one.
+     * <p>
+     * The history takes a bounded amount of memory: the changes are held in chunks of
+     * primitive values, reused once the given number of most recent changes is reached, the
+     * timeline of a match keeps its 1024 most recent changes, and the timelines of the
+     * terminated matches are evicted, earliest terminated first, beyond the given number of
+     * matches or after the given duration. An update which does not change the scores of its
+     * match is not recorded. The history is not persistent.
+     *
+     * @param maxEvents the minimal number of most recent changes which can be replayed
+     * @param maxArchivedMatches the maximal number of terminated matches whose timeline is kept
+     * @param maxArchiveAge the maximal duration the timeline of a terminated match is kept
+     * @throws IllegalArgumentException if the number of changes is not positive, if the
+     *         number of matches is negative, or if the duration is null or negative
+     */
+    public void enableHistory(int maxEvents, int maxArchivedMatches, Duration maxArchiveAge) {
+        if (maxEvents < 1) {
+            throw new IllegalArgumentException("Trying to keep less than one change in the history");
+        }
+        if (maxArchivedMatches < 0) {
+            throw new IllegalArgumentException("Trying to keep a negative number of terminated matches");
+        }
+        if (maxArchiveAge == null || maxArchiveAge.isNegative()) {
+            throw new IllegalArgumentException("Trying to keep the terminated matches for a null or negative duration");
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            this.history = new MatchHistory(maxEvents, maxArchivedMatches,
+                Scoreboard.toNanos(maxArchiveAge) / 1_000_000L);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Disables the history of the matches, and releases its memory. Does nothing if the
+     * history is already disabled.
+     */
+    public void disableHistory() {
+        long stamp = this.lock.writeLock();
+        try {
+            this.history = null;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Tells whether the history of the matches is enabled.
+     *
+     * @return true if the history is enabled
+     */
+    public boolean isHistoryEnabled() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.history != null;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Retrieves the timeline of an ongoing match, or of a terminated match still kept by the
+     * history (see {@link #enableHistory(int, int, Duration)}).
+     *
+     * @param matchId the unique ID of the match
+     * @return the timeline of the match
+     * @throws IllegalArgumentException if the match is neither ongoing nor kept by the history
+     * @throws IllegalStateException if the history is not enabled
+     */
+    public MatchTimeline getTimeline(int matchId) {
+        long stamp = this.lock.readLock();
+        try {
+            MatchHistory history = this.requireHistory();
+            MatchHistory.Timeline timeline = history.getTimeline(matchId, System.currentTimeMillis());
+            if (timeline == null) {
+                int match = this.listMatches.find(matchId);
+                if (match < 0) {
+                    throw new IllegalArgumentException("Trying to get the timeline of an unknown match");
+                }
+                // The match was ongoing before the history was enabled, and has not changed since
+                return new MatchTimeline(matchId, this.teams.getName(this.listMatches.getHomeTeamId(match)),
+                    this.teams.getName(this.listMatches.getVisitorTeamId(match)), true, List.of());
+            }
+            List<TimelineEvent> events = new ArrayList<>(timeline.size());
+            timeline.visit((version, timestamp, kind, id, homeTeamId, visitorTeamId, scores) ->
+                events.add(this.toTimelineEvent(version, timestamp, kind, id, homeTeamId, visitorTeamId, scores)));
+            return new MatchTimeline(matchId, this.teams.getName(timeline.getHomeTeamId()),
+                this.teams.getName(timeline.getVisitorTeamId()), !timeline.isTerminated(),
+                Collections.unmodifiableList(events));
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Replays the changes recorded by the history (see {@link #enableHistory(int, int, Duration)})
+     * whose version is at least the given version, in the order they were applied, to the
+     * changes applied before this call.
+     * <p>
+     * The changes are copied by batches, each one within a short critical section, and
+     * passed to the consumer outside of it, so the consumer may query or modify the
+     * scoreboard, and a long replay does not block the writers. The changes no longer held
+     * by the history, including the ones dropped during the replay, are skipped. A replay
+     * stops early if the history is disabled or replaced in the meantime.
+     * <p>
+     * The returned version resumes the replay after the last replayed change: a consumer
+     * following the board replays again from it.
+     *
+     * @param fromVersion the version of the first changes to replay
+     * @param consumer the consumer of the changes
+     * @return the version following the last replayed change, or {@code fromVersion} if no
+     *         change was replayed
+     * @throws IllegalArgumentException if the consumer is null
+     * @throws IllegalStateException if the history is not enabled
+     */
+    public long replay(long fromVersion, Consumer<? super TimelineEvent> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Trying to replay the history to a null consumer");
+        }
+        List<TimelineEvent> batch = new ArrayList<>(Scoreboard.REPLAY_BATCH_SIZE);
+        MatchHistory history;
+        long sequence;
+        long endSequence;
+        long stamp = this.lock.readLock();
+        try {
+            history = this.requireHistory();
+            sequence = history.findSequence(fromVersion);
+            endSequence = history.getNextSequence();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+
+        long nextVersion = fromVersion;
+        while (sequence < endSequence) {
+            stamp = this.lock.readLock();
+            try {
+                if (this.history != history) {
+                    break;
+                }
+                sequence = history.visitEvents(sequence, endSequence, Scoreboard.REPLAY_BATCH_SIZE,
+                    (version, timestamp, kind, matchId, homeTeamId, visitorTeamId, scores) -> batch.add(
+                        this.toTimelineEvent(version, timestamp, kind, matchId, homeTeamId, visitorTeamId, scores)));
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+            for (TimelineEvent event : batch) {
+                consumer.accept(event);
+            }
+            if (!batch.isEmpty()) {
+                nextVersion = batch.get(batch.size() - 1).version() + 1;
+                batch.clear();
+            }
+        }
+        return nextVersion;
+    }
+
+    /**
+     * Retrieves a summary of the {@code k} highest ranked ongoing matches, in the same order and
+     * format as {@link #getMatchesSummary()}. The cost is O(log n + k), whatever the number
+     * n of ongoing matches.
+     *
+     * @param k the maximal number of matches of the summary
+     * @return a formatted string containing match summaries, separated by new lines
+     * @throws IllegalArgumentException if k is negative
+     */
+    public String getTopMatches(int k) {
+        return this.getMatchesPage(0, k);
+    }
+
+    /**
+     * Retrieves a page of the summary of the ongoing matches: at most {@code limit} matches,
+     * starting with the match at position {@code offset} (0 being the highest ranked match),
+     * in the same order and format as {@link #getMatchesSummary()}. The cost is
+     * O(log n + limit), whatever the number n of ongoing matches.
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return a formatted string containing match summaries, separated by new lines
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public String getMatchesPage(int offset, int limit) {
+        return ScoreboardSnapshot.renderSummary(this.takeSnapshot(offset, limit).getRanking());
+    }
+
+    /**
+     * Retrieves the {@code k} highest ranked ongoing matches, as immutable records, in the
+     * order of {@link #getMatchesSummary()}. The cost is O(log n + k).
+     *
+     * @param k the maximal number of returned matches
+     * @return an immutable list of match summaries
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<MatchSummary> getTopMatchSummaries(int k) {
+        return this.getMatchSummariesPage(0, k);
+    }
+
+    /**
+     * Retrieves a page of the ongoing matches, as immutable records: at most {@code limit}
+     * matches, starting with the match at position {@code offset}, in the order of
+     * {@link #getMatchesSummary()}. The cost is O(log n + limit).
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return an immutable list of match summaries
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public List<MatchSummary> getMatchSummariesPage(int offset, int limit) {
+        return ScoreboardSnapshot.toMatchSummaries(this.takeSnapshot(offset, limit).getRanking());
+    }
+
+    /**
+     * Writes the summary of all ongoing matches to a character sink, line by line, without
+     * building the whole summary in memory. The output is the same as the one of
+     * {@link #getMatchesSummary()}.
+     *
+     * @param out the destination of the summary
+     * @throws IOException if the destination fails to write
+     * @throws IllegalArgumentException if the destination is null
+     */
+    public void writeMatchesSummary(Appendable out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.snapshot().writeMatchesSummary(out);
+    }
+
+    /**
+     * Writes the UTF-8 encoded summary of all ongoing matches to a byte channel (for instance
+     * a socket), without building any intermediate string. The output is the same as the
+     * one of {@link #getMatchesSummary()}. The channel should be in blocking mode.
+     *
+     * @param channel the destination of the summary
+     * @throws IOException if the channel fails to write
+     * @throws IllegalArgumentException if the channel is null
+     */
+    public void writeMatchesSummary(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.snapshot().writeMatchesSummary(channel);
+    }
+
+    /**
+     * Takes an immutable, consistent snapshot of the scoreboard.
+     * <p>
+     * The snapshot is normally taken without acquiring any lock, so it does not block the
+     * writers: the ranking is copied optimistically, and the copy is discarded and retried
+     * if a writer modified the scoreboard in the meantime. Only a reader failing several
+     * times in a row (a very large board under a continuous flow of updates) falls back to
+     * the shared lock, which briefly delays the writers.
+     * <p>
+     * The snapshot is reused as long as the scoreboard is not modified, in which case this
+     * method is O(1).
+     *
+     * @return the snapshot of the scoreboard, with its version
+     */
+    public ScoreboardSnapshot snapshot() {
+        ScoreboardSnapshot latest = this.latestSnapshot.get();
+        if (latest != null && latest.getVersion() == this.version) {
+            return latest;
+        }
+
+        ScoreboardSnapshot copy = this.takeSnapshot(0, Integer.MAX_VALUE);
+        ScoreboardSnapshot snapshot = new ScoreboardSnapshot(copy.getVersion(), copy.getRanking(), latest);
+        // Concurrent readers may race to publish their snapshot: the one which is kept does
+        // not matter, as long as a more recent snapshot is never replaced by an older one,
+        // so the snapshot is only published over an older one, compared and set atomically.
+        ScoreboardSnapshot published = latest;
+        while ((published == null || snapshot.getVersion() > published.getVersion())
+                && !this.latestSnapshot.compareAndSet(published, snapshot)) {
+            published = this.latestSnapshot.get();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the current version of the scoreboard. The version is increased by every
+     * operation modifying the scoreboard.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Tells whether the scoreboard was modified since the given version, typically the
+     * version of a previously taken snapshot. This check is O(1) and never blocks.
+     *
+     * @param version a version previously returned by {@link #getVersion()} or
+     *                {@link ScoreboardSnapshot#getVersion()}
+     * @return true if the scoreboard has been modified since this version
+     */
+    public boolean hasChangedSince(long version) {
+        return this.version != version;
+    }
+
+    /**
+     * Exports the whole scoreboard (matches, IDs, scores and version) to a byte channel, in
+     * a compact binary layout, which {@link #importSnapshot(ReadableByteChannel)} loads back.
+     * The layout starts with a dictionary of the team names, followed by a fixed-width record
+     * per match, in the summary order. The exported board is a consistent snapshot, taken
+     * without blocking the writers (see {@link #snapshot()}). The channel should be in
+     * blocking mode.
+     *
+     * @param channel the destination of the exported board
+     * @throws IOException if the channel fails to write
+     * @throws IllegalArgumentException if the channel is null
+     */
+    public void exportSnapshot(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Trying to export the scoreboard to a null destination");
+        }
+        this.exportSnapshot(this.snapshot(), channel);
+    }
+
+    /**
+     * Exports a snapshot of the scoreboard to a byte channel, in the layout of
+     * {@link #exportSnapshot(WritableByteChannel)}.
+     *
+     * @param snapshot a snapshot of the scoreboard
+     * @param channel the destination of the exported board
+     * @throws IOException if the channel fails to write
+     */
+    void exportSnapshot(ScoreboardSnapshot snapshot, WritableByteChannel channel) throws IOException {
+        SnapshotCodec.write(snapshot.getVersion(), snapshot.getRanking(), this.matchIds, channel);
+    }
+
+    /**
+     * Creates a scoreboard from a board exported by {@link #exportSnapshot(WritableByteChannel)},
+     * possibly by another process. The matches keep their IDs, scores and positions, and the
+     * scoreboard has the version of the exported board. The IDs of the matches started
+     * afterwards do not collide with the imported ones. The channel should be in blocking mode.
+     * <p>
+     * The team names are decoded once each, and the ranking is rebuilt in linear time, as
+     * the matches are exported in the summary order.
+     *
+     * @param channel the source of the exported board
+     * @return the imported scoreboard (which is not persistent)
+     * @throws IOException if the channel fails to read, or does not contain a valid board
+     * @throws IllegalArgumentException if the channel is null
+     */
+    public static Scoreboard importSnapshot(ReadableByteChannel channel) throws IOException {
+        return Scoreboard.importSnapshot(channel, MatchStorage.OBJECTS);
+    }
+
+    /**
+     * Creates a scoreboard storing its matches as requested, from a board exported by
+     * {@link #exportSnapshot(WritableByteChannel)} (see {@link #importSnapshot(ReadableByteChannel)}).
+     *
+     * @param channel the source of the exported board
+     * @param storage how the matches of the imported scoreboard are stored in memory
+     * @return the imported scoreboard (which is not persistent)
+     * @throws IOException if the channel fails to read, or does not contain a valid board
+     * @throws IllegalArgumentException if the channel or the storage is null
+     */
+    public static Scoreboard importSnapshot(ReadableByteChannel channel, MatchStorage storage) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Trying to import a scoreboard from a null source");
+        }
+        Scoreboard board = new Scoreboard(storage);
+        board.version = SnapshotCodec.read(channel, board.listMatches, board.matchIds);
+        return board;
+    }
+
+    /**
+     * Creates a scoreboard from an exported board, sharing its registry of teams and its
+     * allocator of match IDs with other scoreboards (the boards of a tenant of a
+     * {@link ScoreboardRegistry}).
+     *
+     * @param channel the source of the exported board
+     * @param storage how the matches of the imported scoreboard are stored in memory
+     * @param teams the registry of the teams
+     * @param matchIds the allocator of the IDs of the matches
+     * @return the imported scoreboard (which is not persistent)
+     * @throws IOException if the channel fails to read, or does not contain a valid board
+     */
+    static Scoreboard importSnapshot(ReadableByteChannel channel, MatchStorage storage, TeamRegistry teams,
+                                     MatchIdAllocator matchIds) throws IOException {
+        Scoreboard board = new Scoreboard(storage, teams, matchIds);
+        board.version = SnapshotCodec.read(channel, board.listMatches, board.matchIds);
+        return board;
+    }
+
+    /**
+     * Subscribes to the changes of the scoreboard, delivered by the common fork-join pool.
+     * See {@link #subscribe(Flow.Subscriber, int, BackpressurePolicy, Executor)}.
+     *
+     * @param subscriber the subscriber receiving the events
+     * @param queueCapacity the maximal number of events waiting to be delivered to the subscriber
+     * @param policy what happens when the subscriber is too slow, and its queue is full
+     * @throws IllegalArgumentException if an argument is null, or the capacity is not positive
+     */
+    public void subscribe(Flow.Subscriber<? super ScoreboardEvent> subscriber, int queueCapacity,
+                          BackpressurePolicy policy) {
+        this.subscribe(subscriber, queueCapacity, policy, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Subscribes to the changes of the scoreboard: every match started, score updated, match
+     * moved in the summary and match terminated after the subscription is published to the
+     * subscriber, as a {@link ScoreboardEvent}, following the {@link Flow} protocol.
+     * <p>
+     * The events are queued in a bounded queue, and delivered asynchronously by the given
+     * executor, according to the demand of the subscriber. To get the full state of the
+     * board, a subscriber typically takes a {@link #snapshot()} and applies the events whose
+     * version is greater than the version of the snapshot. When nobody subscribes, the
+     * operations modifying the scoreboard do not pay anything for this feature.
+     *
+     * @param subscriber the subscriber receiving the events
+     * @param queueCapacity the maximal number of events waiting to be delivered to the subscriber
+     * @param policy what happens when the subscriber is too slow, and its queue is full
+     * @param executor the executor delivering the events to the subscriber
+     * @throws IllegalArgumentException if an argument is null, or the capacity is not positive
+     */
+    public void subscribe(Flow.Subscriber<? super ScoreboardEvent> subscriber, int queueCapacity,
+                          BackpressurePolicy policy, Executor executor) {
+        if (subscriber == null || policy == null || executor == null) {
+            throw new IllegalArgumentException("Trying to subscribe with null arguments");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the event queue must be positive");
+        }
+
+        EventSubscription subscription = new EventSubscription(this, subscriber, queueCapacity, policy, executor,
+            this.droppedEvents);
+        this.subscriptions.updateAndGet(current -> {
+            EventSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            return updated;
+        });
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Returns a {@link Flow.Publisher} of the changes of the scoreboard, whose subscribers
+     * all get a queue of the given capacity, and the given backpressure policy.
+     *
+     * @param queueCapacity the maximal number of events waiting to be delivered to each subscriber
+     * @param policy what happens when a subscriber is too slow, and its queue is full
+     * @return the publisher of the changes of the scoreboard
+     * @throws IllegalArgumentException if the policy is null, or the capacity is not positive
+     */
+    public Flow.Publisher<ScoreboardEvent> asPublisher(int queueCapacity, BackpressurePolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("Trying to subscribe with null arguments");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the event queue must be positive");
+        }
+        return subscriber -> this.subscribe(subscriber, queueCapacity, policy);
+    }
+
+    /**
+     * Returns the number of events which were dropped, since the creation of the scoreboard,
+     * because subscribers were too slow to consume them.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedEvents() {
+        return this.droppedEvents.sum();
+    }
+
+    /**
+     * Removes a cancelled subscription, which will not receive any new event.
+     *
+     * @param subscription the cancelled subscription
+     */
+    void unsubscribe(EventSubscription subscription) {
+        this.subscriptions.updateAndGet(current -> {
+            int index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) {
+                return current;
+            }
+            EventSubscription[] updated = new EventSubscription[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            return updated;
+        });
+    }
+
+    /**
+     * Tells whether somebody listens to the changes of the scoreboard.
+     *
+     * @return true if there is at least one subscription
+     */
+    private boolean hasSubscribers() {
+        return this.subscriptions.get().length > 0;
+    }
+
+    /**
+     * Publishes an event to all the subscribers. Called by the writers, within the exclusive
+     * critical section, so the subscribers receive the events in the order of the versions.
+     * The events are only queued: they are delivered once the lock is released (see
+     * {@link #unlockWriteAndDeliver(long)}).
+     *
+     * @param event the event to publish
+     */
+    private void publish(ScoreboardEvent event) {
+        for (EventSubscription subscription : this.subscriptions.get()) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Releases the exclusive lock of an operation which may have published events, and then
+     * schedules their delivery. A writer waiting for room in the queue of a subscriber with
+     * the {@link BackpressurePolicy#BLOCK} policy waits here, without holding the lock, so
+     * the readers and the other writers are never blocked by a slow subscriber.
+     *
+     * @param stamp the stamp of the exclusive lock
+     */
+    private void unlockWriteAndDeliver(long stamp) {
+        this.lock.unlockWrite(stamp);
+        if (this.hasSubscribers()) {
+            for (EventSubscription subscription : this.subscriptions.get()) {
+                subscription.flush();
+            }
+        }
+    }
+
+    /**
+     * Publishes the events describing the new scores of a match, and its move in the summary
+     * if its position changed.
+     *
+     * @param matchId the unique ID of the updated match
+     * @param match the handle of the updated match, already inserted back in the ranking
+     * @param scoreHomeTeam the new score of the home team
+     * @param scoreVisitorTeam the new score of the visiting team
+     * @param oldPosition the position of the match before the update
+     */
+    private void publishScoreChange(int matchId, int match, int scoreHomeTeam, int scoreVisitorTeam,
+                                    int oldPosition) {
+        this.publish(new ScoreboardEvent.ScoreUpdated(this.version, matchId, scoreHomeTeam, scoreVisitorTeam));
+        int newPosition = this.listMatches.rankOf(match);
+        if (newPosition != oldPosition) {
+            this.publish(new ScoreboardEvent.RankChanged(this.version, matchId, oldPosition, newPosition));
+        }
+    }
+
+    /**
+     * Records a change of a match in the history, which must be enabled. Called by the
+     * writers, within the exclusive critical section, after increasing the version.
+     *
+     * @param kind the kind of the change (see {@link MatchHistory#STARTED})
+     * @param matchId the unique ID of the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @param scores the packed scores of the match after the change
+     */
+    private void recordHistory(int kind, int matchId, int homeTeamId, int visitorTeamId, long scores) {
+        this.history.record(this.version, System.currentTimeMillis(), kind, matchId, homeTeamId, visitorTeamId,
+            scores);
+    }
+
+    /**
+     * Returns the history of the matches. The caller must hold the lock.
+     *
+     * @return the history
+     * @throws IllegalStateException if the history is not enabled
+     */
+    private MatchHistory requireHistory() {
+        if (this.history == null) {
+            throw new IllegalStateException("The history of the scoreboard is not enabled");
+        }
+        return this.history;
+    }
+
+    /**
+     * Converts a change recorded by the history into an event. The caller must hold the lock.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param timestamp the time of the change, in milliseconds since the epoch
+     * @param kind the kind of the change
+     * @param matchId the unique ID of the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @param scores the packed scores of the match after the change
+     * @return the event
+     */
+    private TimelineEvent toTimelineEvent(long version, long timestamp, int kind, int matchId, int homeTeamId,
+                                          int visitorTeamId, long scores) {
+        TimelineEvent.Kind eventKind = (kind == MatchHistory.STARTED) ? TimelineEvent.Kind.STARTED
+            : (kind == MatchHistory.SCORE_CHANGED) ? TimelineEvent.Kind.SCORE_CHANGED : TimelineEvent.Kind.TERMINATED;
+        return new TimelineEvent(version, Instant.ofEpochMilli(timestamp), matchId, eventKind,
+            this.teams.getName(homeTeamId), this.teams.getName(visitorTeamId), Match.homeScoreOf(scores),
+            Match.visitorScoreOf(scores));
+    }
+
+    /**
+     * Starts a new journal file when enough changes were journaled since the last snapshot,
+     * and copies the board, whose snapshot is written once the critical section is left.
+     * Must be called within the exclusive critical section, after journaling a change.
+     *
+     * @return the copy of the board to write as a snapshot, or null if no snapshot is due
+     * @throws UncheckedIOException if the journal fails to write
+     */
+    private ScoreboardSnapshot rotateJournalIfNeeded() {
+        if (!this.journal.needsCheckpoint()) {
+            return null;
+        }
+        try {
+            this.journal.rotate(this.version);
+        } catch (IOException e) {
+            this.rollbackLocked();
+            throw new UncheckedIOException(e);
+        }
+        return new ScoreboardSnapshot(this.version, new RankingSnapshot(this.listMatches));
+    }
+
+    /**
+     * Waits until a journaled change is durable, and writes the snapshot of the board if
+     * one is due. Called after the critical section in which the change was journaled. If
+     * the journal fails to write, the changes which are not durable (including this one)
+     * are rolled back.
+     *
+     * @param journalPosition the position of the record of the change in the journal
+     * @param checkpoint the copy of the board to write as a snapshot, or null
+     * @throws UncheckedIOException if the journal or the snapshot fails to write
+     */
+    private void syncJournal(long journalPosition, ScoreboardSnapshot checkpoint) {
+        try {
+            this.journal.awaitDurable(journalPosition);
+        } catch (IOException e) {
+            long stamp = this.lock.writeLock();
+            try {
+                this.rollbackLocked();
+            } finally {
+                this.unlockWriteAndDeliver(stamp);
+            }
+            throw new UncheckedIOException(e);
+        }
+        try {
+            if (checkpoint != null) {
+                this.journal.writeCheckpoint(checkpoint.getVersion(), checkpoint.getRanking());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Makes sure that the journal of a persistent scoreboard did not fail, before applying
+     * a change. Must be called within the exclusive critical section.
+     *
+     * @throws UncheckedIOException if the journal previously failed to write
+     */
+    private void checkJournalLocked() {
+        if (this.journal == null) {
+            return;
+        }
+        try {
+            this.journal.checkUsable();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records how to undo a journaled change, until it is durable, and forgets the changes
+     * which became durable. Must be called within the exclusive critical section, before
+     * applying the change.
+     *
+     * @param journalPosition the position of the record of the change in the journal
+     * @param kind the kind of the change (see {@link MatchHistory#STARTED})
+     * @param matchId the unique ID of the match
+     * @param match the handle of the match, after its start, or before its update or termination
+     * @param scores the packed scores of the match before the change
+     */
+    private void recordUndo(long journalPosition, int kind, int matchId, int match, long scores) {
+        long durablePosition = this.journal.getDurablePosition();
+        while (!this.undoLog.isEmpty() && this.undoLog.peekFirst().journalPosition <= durablePosition) {
+            this.undoLog.pollFirst();
+        }
+        this.undoLog.addLast(new JournaledChange(journalPosition, kind, matchId,
+            this.listMatches.getStartOrder(match), this.listMatches.getHomeTeamId(match),
+            this.listMatches.getVisitorTeamId(match), scores));
+    }
+
+    /**
+     * Rolls back the changes which the journal failed to make durable, newest first, so the
+     * board is back to its durable state. Each undone change increases the version, and is
+     * recorded and published as a new change. Must be called within the exclusive critical
+     * section, once the journal failed.
+     */
+    private void rollbackLocked() {
+        long durablePosition = this.journal.getDurablePosition();
+        while (!this.undoLog.isEmpty() && this.undoLog.peekLast().journalPosition > durablePosition) {
+            JournaledChange change = this.undoLog.pollLast();
+            int match = this.listMatches.find(change.matchId);
+            if (change.kind == MatchHistory.STARTED) {
+                this.removeLocked(change.matchId, match);
+            } else if (change.kind == MatchHistory.SCORE_CHANGED) {
+                this.setScoresLocked(change.matchId, match, change.scores);
+            } else {
+                // The terminated match is started again, with its start order and scores
+                int restored = this.listMatches.add(change.matchId, change.startOrder, change.homeTeamId,
+                    change.visitorTeamId);
+                this.listMatches.setScores(restored, change.scores);
+                this.indexMatch(change.matchId, change.homeTeamId, change.visitorTeamId);
+                this.version++;
+                if (this.history != null) {
+                    this.recordHistory(MatchHistory.STARTED, change.matchId, change.homeTeamId,
+                        change.visitorTeamId, change.scores);
+                }
+                if (this.hasSubscribers()) {
+                    this.publish(new ScoreboardEvent.MatchStarted(this.version, change.matchId,
+                        this.teams.getName(change.homeTeamId), this.teams.getName(change.visitorTeamId),
+                        this.listMatches.rankOf(restored)));
+                    this.publish(new ScoreboardEvent.ScoreUpdated(this.version, change.matchId,
+                        Match.homeScoreOf(change.scores), Match.visitorScoreOf(change.scores)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Submits a modification to the writer thread of the asynchronous modifications.
+     *
+     * @param <T> the type of the result of the modification
+     * @param modification the modification to apply
+     * @return a future completed with the result of the modification, or exceptionally with
+     *         its exception, or with a {@link RejectedExecutionException} if the
+     *         modification cannot be queued
+     */
+    <T> CompletableFuture<T> submitWrite(Supplier<T> modification) {
+        try {
+            return CompletableFuture.supplyAsync(modification, this.asyncWriter);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Acquires the exclusive lock, measuring the wait for it when the metrics are enabled
+     * and the lock is held by another thread.
+     *
+     * @return the stamp of the exclusive lock
+     */
+    private long acquireWriteLock() {
+        MetricsRecorder metrics = this.metrics;
+        if (metrics == null) {
+            return this.lock.writeLock();
+        }
+        long stamp = this.lock.tryWriteLock();
+        if (stamp == 0L) {
+            long start = System.nanoTime();
+            stamp = this.lock.writeLock();
+            metrics.record(ScoreboardMetrics.Timer.LOCK_WAIT, -1, start);
+        }
+        return stamp;
+    }
+
+    /**
+     * Converts a timeout to nanoseconds, saturating the timeouts too long to be represented.
+     *
+     * @param timeout the timeout
+     * @return the timeout in nanoseconds
+     */
+    private static long toNanos(Duration timeout) {
+        try {
+            return timeout.toNanos();
+        } catch (ArithmeticException e) {
+            return timeout.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Tells whether a secondary index is enabled. The caller must hold the lock.
+     *
+     * @param index the index
+     * @return true if the index is enabled
+     */
+    private boolean isIndexEnabledLocked(MatchIndex index) {
+        switch (index) {
+            case TEAM:
+                return this.teamIndex != null;
+            case TEAMS_PAIR:
+                return this.teamsPairIndex != null;
+            default:
+                return this.startOrderIndex != null;
+        }
+    }
+
+    /**
+     * Adds a new match to the enabled secondary indexes. The caller must hold the
+     * exclusive lock.
+     *
+     * @param matchId the unique ID of the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     */
+    private void indexMatch(int matchId, int homeTeamId, int visitorTeamId) {
+        if (this.teamIndex != null) {
+            this.teamIndex.add(homeTeamId, matchId);
+            this.teamIndex.add(visitorTeamId, matchId);
+        }
+        if (this.teamsPairIndex != null) {
+            this.teamsPairIndex.add(Scoreboard.teamsPairOf(homeTeamId, visitorTeamId), matchId);
+        }
+        if (this.startOrderIndex != null) {
+            this.startOrderIndex.add(matchId);
+        }
+    }
+
+    /**
+     * Removes a terminated match from the enabled secondary indexes. The caller must hold
+     * the exclusive lock.
+     *
+     * @param matchId the unique ID of the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     */
+    private void unindexMatch(int matchId, int homeTeamId, int visitorTeamId) {
+        if (this.teamIndex != null) {
+            this.teamIndex.remove(homeTeamId, matchId);
+            this.teamIndex.remove(visitorTeamId, matchId);
+        }
+        if (this.teamsPairIndex != null) {
+            this.teamsPairIndex.remove(Scoreboard.teamsPairOf(homeTeamId, visitorTeamId), matchId);
+        }
+        if (this.startOrderIndex != null) {
+            this.startOrderIndex.remove(matchId);
+        }
+    }
+
+    /**
+     * Scans all the ongoing matches, for the queries whose secondary index is disabled.
+     * The caller must hold the lock.
+     *
+     * @param teamId the ID of a team of the matches (the home team if visitorTeamId is
+     *        not negative), or a negative value for any team
+     * @param visitorTeamId the ID of the visiting team of the matches, or a negative value
+     *        for any team
+     * @param afterMatchId the ID after which the IDs of the matches must be
+     * @return the IDs of the matching matches, in ascending order
+     */
+    private int[] scanMatchIds(int teamId, int visitorTeamId, int afterMatchId) {
+        int size = this.listMatches.size();
+        int[] matchIds = new int[size];
+        int[] homeTeamIds = new int[size];
+        int[] visitorTeamIds = new int[size];
+        int nbMatches = this.listMatches.copyTeamsTo(matchIds, homeTeamIds, visitorTeamIds);
+        int nbFound = 0;
+        for (int i = 0; i < nbMatches; i++) {
+            boolean found;
+            if (visitorTeamId >= 0) {
+                found = homeTeamIds[i] == teamId && visitorTeamIds[i] == visitorTeamId;
+            } else {
+                found = teamId < 0 || homeTeamIds[i] == teamId || visitorTeamIds[i] == teamId;
+            }
+            if (found && matchIds[i] > afterMatchId) {
+                // The matches are no longer needed once scanned, so their array is reused
+                matchIds[nbFound++] = matchIds[i];
+            }
+        }
+        int[] foundMatchIds = Arrays.copyOf(matchIds, nbFound);
+        Arrays.sort(foundMatchIds);
+        return foundMatchIds;
+    }
+
+    /**
+     * Trims and validates the name of a team, as {@link #startMatch(String, String)} does.
+     *
+     * @param nameTeam the name of the team
+     * @return the trimmed name
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    static String trimTeamName(String nameTeam) {
+        if (nameTeam == null) {
+            throw new IllegalArgumentException("Team names must be non-null");
+        }
+        String trimmedName = nameTeam.trim();
+        if (trimmedName.isEmpty()) {
+            throw new IllegalArgumentException("Team names must be non-empty");
+        }
+        return trimmedName;
+    }
+
+    /**
+     * Returns the key of a pair of home and visiting teams in the {@link #teamsPairIndex}.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the key of the pair of teams
+     */
+    private static long teamsPairOf(int homeTeamId, int visitorTeamId) {
+        return ((long) homeTeamId << 32) | (visitorTeamId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns an immutable list of match IDs.
+     *
+     * @param matchIds the match IDs
+     * @return the list of the match IDs
+     */
+    private static List<Integer> toList(int[] matchIds) {
+        Integer[] boxedMatchIds = new Integer[matchIds.length];
+        for (int i = 0; i < matchIds.length; i++) {
+            boxedMatchIds[i] = matchIds[i];
+        }
+        return List.of(boxedMatchIds);
+    }
+
+    /**
+     * Returns the number of ongoing matches, read optimistically first, as the snapshots.
+     *
+     * @return the number of ongoing matches
+     */
+    int countMatches() {
+        long stamp = this.lock.tryOptimisticRead();
+        int nbMatches = this.listMatches.size();
+        if (this.lock.validate(stamp)) {
+            return nbMatches;
+        }
+        stamp = this.lock.readLock();
+        try {
+            return this.listMatches.size();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies a page of the current ranking of the matches, with their scores.
+     * <p>
+     * The ranking is already sorted with the Match.compareTo method (per total number of
+     * scored goals, and then by starting order), so we only have to walk it. The copy is
+     * first taken in optimistic mode, without holding the lock: if a writer acquired the
+     * lock in the meantime, the copy may be inconsistent (or even fail) and is retried. The
+     * walk of a tree being modified is bounded by the number of its nodes, so it fails
+     * rather than looping, and its recursion overflowing the stack is a failure as well.
+     * After {@link #OPTIMISTIC_READ_ATTEMPTS} failures, the copy is taken under the shared
+     * lock.
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return the snapshot of the page
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    ScoreboardSnapshot takeSnapshot(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Trying to get a page with a negative offset");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Trying to get a negative number of matches");
+        }
+
+        MetricsRecorder metrics = this.metrics;
+        long start = (metrics == null) ? 0L : System.nanoTime();
+        ScoreboardSnapshot snapshot = this.copyRanking(offset, limit);
+        if (metrics != null) {
+            metrics.record(ScoreboardMetrics.Timer.RANKING_COPY, -1, start);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Copies a page of the ranking, optimistically first (see {@link #takeSnapshot(int, int)}).
+     *
+     * @param offset the rank of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return the snapshot of the page
+     */
+    private ScoreboardSnapshot copyRanking(int offset, int limit) {
+        for (int attempt = 0; attempt < Scoreboard.OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+            long stamp = this.lock.tryOptimisticRead();
+            if (stamp == 0L) {
+                // A writer currently holds the lock, its critical section is short
+                Thread.onSpinWait();
+                continue;
+            }
+            long snapshotVersion = this.version;
+            RankingSnapshot ranking;
+            try {
+                ranking = new RankingSnapshot(this.listMatches, offset, limit);
+            } catch (RuntimeException | StackOverflowError e) {
+                // The ranking was modified while being copied
+                continue;
+            }
+            if (this.lock.validate(stamp)) {
+                return new ScoreboardSnapshot(snapshotVersion, ranking);
+            }
+        }
+
+        long stamp = this.lock.readLock();
+        try {
+            return new ScoreboardSnapshot(this.version, new RankingSnapshot(this.listMatches, offset, limit));
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * The {@code JournaledChange} class describes how to undo a journaled change, which is
+     * not known to be durable yet.
+     */
+    private static final class JournaledChange {
+
+        /** The position of the record of the change in the journal. */
+        private final long journalPosition;
+
+        /** The kind of the change (see {@link MatchHistory#STARTED}). */
+        private final int kind;
+
+        /** The unique ID of the match. */
+        private final int matchId;
+
+        /** The start order of the match. */
+        private final long startOrder;
+
+        /** The ID of the home team. */
+        private final int homeTeamId;
+
+        /** The ID of the visiting team. */
+        private final int visitorTeamId;
+
+        /** The packed scores of the match before the change. */
+        private final long scores;
+
+        /**
+         * Constructs the description of a journaled change.
+         *
+         * @param journalPosition the position of the record of the change in the journal
+         * @param kind the kind of the change
+         * @param matchId the unique ID of the match
+         * @param startOrder the start order of the match
+         * @param homeTeamId the ID of the home team
+         * @param visitorTeamId the ID of the visiting team
+         * @param scores the packed scores of the match before the change
+         */
+        private JournaledChange(long journalPosition, int kind, int matchId, long startOrder, int homeTeamId,
+                                int visitorTeamId, long scores) {
+            this.journalPosition = journalPosition;
+            this.kind = kind;
+            this.matchId = matchId;
+            this.startOrder = startOrder;
+            this.homeTeamId = homeTeamId;
+            this.visitorTeamId = visitorTeamId;
+            this.scores = scores;
+        }
     }
 }
@@ -0,0 +1,77 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code ScoreboardEvent} interface is the base of the changes published to the
+ * subscribers of a {@link Scoreboard} (see {@link Scoreboard#subscribe}).
+ * <p>
+ * Every event carries the version of the scoreboard right after the change, so a subscriber
+ * can relate the events to a {@link ScoreboardSnapshot}: the events whose version is lower
+ * than or equal to the version of the snapshot are already part of it. The positions are
+ * the positions of the matches in the summary (0 being the highest ranked match).
+ */
+public sealed interface ScoreboardEvent {
+
+    /**
+     * Returns the version of the scoreboard right after the change.
+     *
+     * @return the version of the scoreboard
+     */
+    long version();
+
+    /**
+     * Returns the unique ID of the match affected by the change.
+     *
+     * @return the unique match ID
+     */
+    int matchId();
+
+    /**
+     * A match has been started, with a score of 0 - 0.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param matchId the unique ID of the match
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @param position the position of the new match in the summary
+     */
+    record MatchStarted(long version, int matchId, String nameHomeTeam, String nameVisitorTeam, int position)
+        implements ScoreboardEvent {
+    }
+
+    /**
+     * The scores of a match have been updated.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the new score of the home team
+     * @param scoreVisitorTeam the new score of the visiting team
+     */
+    record ScoreUpdated(long version, int matchId, int scoreHomeTeam, int scoreVisitorTeam)
+        implements ScoreboardEvent {
+    }
+
+    /**
+     * A match moved in the summary after its scores have been updated. It always follows the
+     * corresponding {@link ScoreUpdated} event. The matches located between the old and the
+     * new positions are shifted by one position, which is not notified by any event.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param matchId the unique ID of the match
+     * @param oldPosition the position of the match before the update
+     * @param newPosition the position of the match after the update
+     */
+    record RankChanged(long version, int matchId, int oldPosition, int newPosition)
+        implements ScoreboardEvent {
+    }
+
+    /**
+     * A match has been terminated, and removed from the scoreboard.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param matchId the unique ID of the match
+     * @param lastPosition the position of the match before its termination
+     */
+    record MatchTerminated(long version, int matchId, int lastPosition)
+        implements ScoreboardEvent {
+    }
+}
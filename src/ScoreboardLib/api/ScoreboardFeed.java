@@ -0,0 +1,303 @@
+package ScoreboardLib.api;
+
+import ScoreboardLib.internal.HeapMatchStore;
+import ScoreboardLib.internal.Match;
+import ScoreboardLib.internal.MatchIdAllocator;
+import ScoreboardLib.internal.SnapshotCodec;
+import ScoreboardLib.internal.TeamRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The {@code ScoreboardFeed} class is a client of a {@link ScoreboardServer}, which keeps
+ * a copy of the served scoreboard up to date, typically for a display.
+ * <p>
+ * Each call to {@link #read()} receives one frame from the server: a snapshot replaces
+ * the copy of the board, and a change is applied to it, unless it is older than the last
+ * snapshot. The matches of the copy keep the start order of the served matches, so they
+ * are ranked as on the served board, whatever changes were coalesced by the server. The
+ * copy is meant for displays, whose boards hold a few hundred matches at most: it is
+ * sorted each time it is read.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ScoreboardFeed implements Closeable {
+
+    /** The ranking of the matches of the copy, as on the served board. */
+    private static final Comparator<MirroredMatch> SUMMARY_ORDER = (first, second) ->
+        Match.compare(first.startOrder, first.scores, second.startOrder, second.scores);
+
+    /** The connection to the server. */
+    private final SocketChannel channel;
+
+    /** Receives the frames. */
+    private ByteBuffer buffer;
+
+    /** The matches of the copy of the board, by match ID. */
+    private final Map<Integer, MirroredMatch> matches;
+
+    /** The version of the last received snapshot, or -1 before the first one. */
+    private long snapshotVersion;
+
+    /** The version of the copy of the board, or -1 before the first snapshot. */
+    private long version;
+
+    /** The start order of the next started match, higher than all the received ones. */
+    private long nextStartOrder;
+
+    /**
+     * Connects to a server of a scoreboard. The copy of the board is empty until its
+     * snapshot is read.
+     *
+     * @param address the address of the server
+     * @throws IOException if the connection fails
+     * @throws IllegalArgumentException if the address is null
+     */
+    public ScoreboardFeed(InetSocketAddress address) throws IOException {
+        if (address == null) {
+            throw new IllegalArgumentException("Trying to connect to a null address");
+        }
+        this.channel = SocketChannel.open(address);
+        this.buffer = ByteBuffer.allocate(4096).flip();
+        this.matches = new HashMap<>();
+        this.snapshotVersion = -1L;
+        this.version = -1L;
+    }
+
+    /**
+     * Receives the next frame from the server, and applies it to the copy of the board,
+     * waiting for it if needed.
+     *
+     * @return the received change, or null if the frame was a snapshot, or a change already
+     *         part of the last snapshot
+     * @throws IOException if the connection fails, or is closed by the server
+     */
+    public ScoreboardEvent read() throws IOException {
+        this.require(4);
+        int length = this.buffer.getInt();
+        if (length <= 0) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        this.require(length);
+        ByteBuffer frame = this.buffer.slice().limit(length);
+        this.buffer.position(this.buffer.position() + length);
+        byte type = frame.get();
+        if (type == ScoreboardServer.SNAPSHOT_FRAME) {
+            this.readSnapshot(frame);
+            return null;
+        }
+        long eventVersion = frame.getLong();
+        int matchId = frame.getInt();
+        ScoreboardEvent event;
+        switch (type) {
+            case ScoreboardServer.MATCH_STARTED_FRAME:
+                int position = frame.getInt();
+                event = new ScoreboardEvent.MatchStarted(eventVersion, matchId, ScoreboardFeed.readName(frame),
+                    ScoreboardFeed.readName(frame), position);
+                break;
+            case ScoreboardServer.SCORE_UPDATED_FRAME:
+                event = new ScoreboardEvent.ScoreUpdated(eventVersion, matchId, frame.getInt(), frame.getInt());
+                break;
+            case ScoreboardServer.RANK_CHANGED_FRAME:
+                event = new ScoreboardEvent.RankChanged(eventVersion, matchId, frame.getInt(), frame.getInt());
+                break;
+            case ScoreboardServer.MATCH_TERMINATED_FRAME:
+                event = new ScoreboardEvent.MatchTerminated(eventVersion, matchId, frame.getInt());
+                break;
+            default:
+                throw new IOException("Unknown frame type " + type);
+        }
+        if (eventVersion <= this.snapshotVersion) {
+            return null;
+        }
+        this.apply(event);
+        this.version = Math.max(this.version, eventVersion);
+        return event;
+    }
+
+    /**
+     * Returns the version of the copy of the board: the version of the served board after
+     * the last change received.
+     *
+     * @return the version of the copy, or -1 before the first snapshot
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the matches of the copy of the board, in the summary order.
+     *
+     * @return the matches, as they were when the last frame was read
+     */
+    public List<MatchSummary> getMatches() {
+        List<MirroredMatch> ranking = new ArrayList<>(this.matches.values());
+        ranking.sort(ScoreboardFeed.SUMMARY_ORDER);
+        List<MatchSummary> summaries = new ArrayList<>(ranking.size());
+        for (MirroredMatch match : ranking) {
+            summaries.add(new MatchSummary(match.matchId, match.nameHomeTeam, Match.homeScoreOf(match.scores),
+                match.nameVisitorTeam, Match.visitorScoreOf(match.scores)));
+        }
+        return summaries;
+    }
+
+    /**
+     * Returns the summary of the copy of the board, in the format of
+     * {@link Scoreboard#getMatchesSummary()}.
+     *
+     * @return the summary of the matches
+     */
+    public String getMatchesSummary() {
+        return this.getMatches().stream().map(MatchSummary::toString).collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Closes the connection to the server.
+     *
+     * @throws IOException if the connection fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Replaces the copy of the board by a received snapshot.
+     *
+     * @param frame the content of the snapshot frame
+     * @throws IOException if the snapshot is invalid
+     */
+    private void readSnapshot(ByteBuffer frame) throws IOException {
+        byte[] content = new byte[frame.remaining()];
+        frame.get(content);
+        TeamRegistry teams = new TeamRegistry();
+        HeapMatchStore store = new HeapMatchStore(teams);
+        MatchIdAllocator allocator = new MatchIdAllocator(false);
+        long snapshotVersion = SnapshotCodec.read(Channels.newChannel(new ByteArrayInputStream(content)), store,
+            allocator);
+        int size = store.size();
+        int[] matchIds = new int[size];
+        long[] startOrders = new long[size];
+        int[] homeTeamIds = new int[size];
+        int[] visitorTeamIds = new int[size];
+        long[] scores = new long[size];
+        store.copyTo(0, matchIds, startOrders, homeTeamIds, visitorTeamIds, scores);
+        this.matches.clear();
+        for (int i = 0; i < size; i++) {
+            this.matches.put(matchIds[i], new MirroredMatch(matchIds[i], startOrders[i], teams.getName(homeTeamIds[i]),
+                teams.getName(visitorTeamIds[i]), scores[i]));
+        }
+        this.snapshotVersion = snapshotVersion;
+        this.version = snapshotVersion;
+        this.nextStartOrder = allocator.peekNextStartOrder();
+    }
+
+    /**
+     * Applies a change to the copy of the board. The positions are ignored, as the copy is
+     * ranked by scores and start orders.
+     *
+     * @param event the change
+     */
+    private void apply(ScoreboardEvent event) {
+        if (event instanceof ScoreboardEvent.MatchStarted started) {
+            this.matches.put(started.matchId(), new MirroredMatch(started.matchId(), this.nextStartOrder++,
+                started.nameHomeTeam(), started.nameVisitorTeam(), 0L));
+        } else if (event instanceof ScoreboardEvent.ScoreUpdated updated) {
+            MirroredMatch match = this.matches.get(updated.matchId());
+            if (match != null) {
+                match.scores = Match.packScores(updated.scoreHomeTeam(), updated.scoreVisitorTeam());
+            }
+        } else if (event instanceof ScoreboardEvent.MatchTerminated) {
+            this.matches.remove(event.matchId());
+        }
+    }
+
+    /**
+     * Makes sure the buffer holds at least the given number of bytes, receiving them from
+     * the server if needed.
+     *
+     * @param nbBytes the number of bytes
+     * @throws IOException if the connection fails, or is closed by the server
+     */
+    private void require(int nbBytes) throws IOException {
+        if (this.buffer.remaining() >= nbBytes) {
+            return;
+        }
+        if (this.buffer.capacity() < nbBytes) {
+            // A snapshot larger than the buffer
+            this.buffer = ByteBuffer.allocate(Math.max(nbBytes, 2 * this.buffer.capacity())).put(this.buffer);
+        } else {
+            this.buffer.compact();
+        }
+        while (this.buffer.position() < nbBytes) {
+            if (this.channel.read(this.buffer) < 0) {
+                throw new EOFException("The server closed the connection");
+            }
+        }
+        this.buffer.flip();
+    }
+
+    /**
+     * Decodes the name of a team.
+     *
+     * @param frame the frame, positioned at the length of the name
+     * @return the name
+     */
+    private static String readName(ByteBuffer frame) {
+        byte[] name = new byte[frame.getInt()];
+        frame.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The {@code MirroredMatch} class holds a match of the copy of the board.
+     */
+    private static final class MirroredMatch {
+
+        /** The unique ID of the match. */
+        private final int matchId;
+
+        /** The start order of the match, ranking the matches having the same total score. */
+        private final long startOrder;
+
+        /** The name of the home team. */
+        private final String nameHomeTeam;
+
+        /** The name of the visiting team. */
+        private final String nameVisitorTeam;
+
+        /** The packed scores of the match (see {@link Match#packScores(int, int)}). */
+        private long scores;
+
+        /**
+         * Constructs a match of the copy of the board.
+         *
+         * @param matchId the unique ID of the match
+         * @param startOrder the start order of the match
+         * @param nameHomeTeam the name of the home team
+         * @param nameVisitorTeam the name of the visiting team
+         * @param scores the packed scores of the match
+         */
+        private MirroredMatch(int matchId, long startOrder, String nameHomeTeam, String nameVisitorTeam,
+                              long scores) {
+            this.matchId = matchId;
+            this.startOrder = startOrder;
+            this.nameHomeTeam = nameHomeTeam;
+            this.nameVisitorTeam = nameVisitorTeam;
+            this.scores = scores;
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package ScoreboardLib.api;
+
+import ScoreboardLib.internal.CommandRing;
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code ScoreboardIngestor} class feeds a {@link Scoreboard} from many producer
+ * threads through a single owner thread, so the producers never contend for the lock of
+ * the scoreboard.
+ * <p>
+ * The producers publish their commands (start, update, terminate) into a ring buffer
+ * pre-allocated once for all, which costs a compare-and-set and never allocates any
+ * memory. The owner thread repeatedly drains all the waiting commands and applies them in
+ * publication order, as a single modification of the scoreboard: it takes its exclusive
+ * lock once per drain rather than once per command, and then publishes the new snapshot
+ * of the scoreboard (see {@link Scoreboard#snapshot()}), so the readers of the scoreboard
+ * are served from it without copying the matches again. When several updates of the same
+ * match are drained together, only the last one is applied, as the scores are absolute.
+ * <p>
+ * Publishing a command only validates its arguments: the command itself is applied later,
+ * and an invalid command (for instance the update of a match terminated in the meantime)
+ * is counted and skipped by the owner thread, rather than reported to its producer. Use
+ * {@link #flush()} to wait until the published commands are applied. The metrics of the
+ * ingestor (queue depth, drain latency...) are returned by {@link #getStats()}.
+ * <p>
+ * The scoreboard can still be read, and modified directly, while it is fed by the ingestor.
+ * This class is thread-safe.
+ */
+public final class ScoreboardIngestor implements Closeable {
+
+    /** Default number of commands the ring buffer can hold. */
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    /** Maximal number of commands the ring buffer can hold. */
+    public static final int MAX_CAPACITY = 1 << 28;
+
+    /** Number of empty polls of the ring after which the idle owner thread parks. */
+    private static final int IDLE_SPINS = 100;
+
+    /**
+     * Maximal duration of a park of the idle owner thread, after which it polls the ring
+     * again even if no producer woke it up.
+     */
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    /** Duration of a park of a producer waiting for a free slot in the full ring. */
+    private static final long FULL_RING_PARK_NANOS = 10_000L;
+
+    /** Duration of a park of a thread waiting for the commands to be applied. */
+    private static final long FLUSH_PARK_NANOS = 10_000L;
+
+    /** The scoreboard fed by the ingestor. */
+    private final Scoreboard board;
+
+    /** The ring buffer of the published commands. */
+    private final CommandRing ring;
+
+    /** The owner thread, the only one draining the ring and applying its commands. */
+    private final Thread owner;
+
+    /** The kinds of the commands of the current drain (only used by the owner thread). */
+    private final int[] kinds;
+
+    /** The match IDs of the commands of the current drain. */
+    private final int[] matchIds;
+
+    /** The first arguments of the commands of the current drain. */
+    private final int[] args1;
+
+    /** The second arguments of the commands of the current drain. */
+    private final int[] args2;
+
+    /** The start orders of the matches started by the commands of the current drain. */
+    private final long[] startOrders;
+
+    /**
+     * The match IDs of the commands of the current drain, as an open addressing hash table
+     * (of twice the capacity of the ring), used to coalesce their updates.
+     */
+    private final int[] updatedMatchIds;
+
+    /**
+     * Whether each entry of {@link #updatedMatchIds} has a later update kept, with no start
+     * nor termination of the match in between, which supersedes its earlier updates.
+     */
+    private final boolean[] supersedingUpdates;
+
+    /**
+     * The drain in which each entry of {@link #updatedMatchIds} was set: the entries of the
+     * previous drains are considered empty, so the table is never cleared.
+     */
+    private final int[] updatedMatchDrains;
+
+    /** The shift turning the hash of a match ID into a slot of {@link #updatedMatchIds}. */
+    private final int tableShift;
+
+    /** The number of the current drain, which identifies its entries in the hash table. */
+    private int drainNumber;
+
+    /** Whether the owner thread is parked (or about to park), waiting for commands. */
+    private volatile boolean ownerParked;
+
+    /** Whether the ingestor is closed, the owner thread stopping once the ring is empty. */
+    private volatile boolean closed;
+
+    /** The exception which stopped the owner thread, or null. */
+    private volatile RuntimeException failure;
+
+    /**
+     * The number of commands drained and applied (or skipped) by the owner thread. This
+     * counter and the metrics below are only written by the owner thread.
+     */
+    private volatile long drainedCommands;
+
+    /** Number of drains which applied at least one command. */
+    private volatile long drains;
+
+    /** Number of commands applied to the scoreboard. */
+    private volatile long appliedCommands;
+
+    /** Number of updates skipped because a later update of the same match was drained with them. */
+    private volatile long coalescedUpdates;
+
+    /** Number of commands skipped because they were invalid. */
+    private volatile long rejectedCommands;
+
+    /** Largest number of commands taken by a single drain. */
+    private volatile int maxDrainSize;
+
+    /** Latency of the last drain, in nanoseconds. */
+    private volatile long lastDrainNanos;
+
+    /** Highest latency of a drain, in nanoseconds. */
+    private volatile long maxDrainNanos;
+
+    /** Sum of the latencies of all the drains, in nanoseconds. */
+    private volatile long totalDrainNanos;
+
+    /**
+     * Constructs an ingestor feeding a scoreboard, with a ring buffer of
+     * {@link #DEFAULT_CAPACITY} commands, and starts its owner thread.
+     *
+     * @param board the scoreboard to feed
+     * @throws IllegalArgumentException if the scoreboard is null
+     */
+    public ScoreboardIngestor(Scoreboard board) {
+        this(board, ScoreboardIngestor.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an ingestor feeding a scoreboard, and starts its owner thread.
+     *
+     * @param board the scoreboard to feed
+     * @param capacity the minimal number of commands the ring buffer can hold (rounded up to
+     *        a power of 2), beyond which the producers wait for the owner thread
+     * @throws IllegalArgumentException if the scoreboard is null, or the capacity is not
+     *         positive or greater than {@link #MAX_CAPACITY}
+     */
+    public ScoreboardIngestor(Scoreboard board, int capacity) {
+        if (board == null) {
+            throw new IllegalArgumentException("Trying to feed a null scoreboard");
+        }
+        if (capacity <= 0 || capacity > ScoreboardIngestor.MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity of the ingestor is out of range");
+        }
+        this.board = board;
+        this.ring = new CommandRing(capacity);
+        int size = this.ring.capacity();
+        this.kinds = new int[size];
+        this.matchIds = new int[size];
+        this.args1 = new int[size];
+        this.args2 = new int[size];
+        this.startOrders = new long[size];
+        this.updatedMatchIds = new int[2 * size];
+        this.updatedMatchDrains = new int[2 * size];
+        this.supersedingUpdates = new boolean[2 * size];
+        this.tableShift = 32 - Integer.numberOfTrailingZeros(2 * size);
+        this.drainNumber = 0;
+        this.owner = new Thread(this::run, "scoreboard-ingestor");
+        this.owner.setDaemon(true);
+        this.owner.start();
+    }
+
+    /**
+     * Publishes the start of a new match with the given home and visitor team names. The
+     * match ID is allocated (and the teams registered) immediately, so the caller can
+     * publish the updates of the match right away.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return the unique match ID of the match to be created
+     * @throws IllegalArgumentException if team names are null, empty, or identical
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    public int publishStart(String nameHomeTeam, String nameVisitorTeam) {
+        if (nameHomeTeam == null || nameVisitorTeam == null) {
+            throw new IllegalArgumentException("Team names must be non-null");
+        }
+        int homeTeamId = this.board.registerTeam(nameHomeTeam);
+        int visitorTeamId = this.board.registerTeam(nameVisitorTeam);
+        if (homeTeamId == visitorTeamId) {
+            throw new IllegalArgumentException("Invalid team names (the same for both teams)");
+        }
+        return this.publishStartOfRegisteredTeams(homeTeamId, visitorTeamId);
+    }
+
+    /**
+     * Publishes the start of a new match between two teams registered with
+     * {@link Scoreboard#registerTeam(String)}. The match ID is allocated immediately.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the match to be created
+     * @throws IllegalArgumentException if a team ID is not registered, or both IDs are identical
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    public int publishStart(int homeTeamId, int visitorTeamId) {
+        // Looking up the names validates the IDs
+        this.board.getTeamName(homeTeamId);
+        this.board.getTeamName(visitorTeamId);
+        if (homeTeamId == visitorTeamId) {
+            throw new IllegalArgumentException("Invalid team IDs (the same for both teams)");
+        }
+        return this.publishStartOfRegisteredTeams(homeTeamId, visitorTeamId);
+    }
+
+    /**
+     * Publishes the update of the score of a match, waiting for a free slot if the ring
+     * buffer is full. The update is skipped if the match is not ongoing once drained.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @throws IllegalArgumentException if scores are negative
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    public void publishUpdate(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        if (scoreHomeTeam < 0 || scoreVisitorTeam < 0) {
+            throw new IllegalArgumentException("Trying to provide a negative score");
+        }
+        this.publish(CommandRing.UPDATE, matchId, scoreHomeTeam, scoreVisitorTeam, 0L);
+    }
+
+    /**
+     * Publishes the update of the score of a match, unless the ring buffer is full, in which
+     * case the update is given up (the caller may drop it, or retry it later).
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @return true if the update was published, false if the ring buffer is full
+     * @throws IllegalArgumentException if scores are negative
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    public boolean tryPublishUpdate(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        if (scoreHomeTeam < 0 || scoreVisitorTeam < 0) {
+            throw new IllegalArgumentException("Trying to provide a negative score");
+        }
+        this.checkOpen();
+        if (!this.ring.offer(CommandRing.UPDATE, matchId, scoreHomeTeam, scoreVisitorTeam, 0L)) {
+            return false;
+        }
+        this.wakeUpOwner();
+        return true;
+    }
+
+    /**
+     * Publishes the termination of a match, waiting for a free slot if the ring buffer is
+     * full. The termination is skipped if the match is not ongoing once drained.
+     *
+     * @param matchId the unique ID of the match to be terminated
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    public void publishTerminate(int matchId) {
+        this.publish(CommandRing.TERMINATE, matchId, 0, 0, 0L);
+    }
+
+    /**
+     * Waits until all the commands published before this call are applied to the
+     * scoreboard (or skipped), and the resulting snapshot is published.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalStateException if the owner thread stopped after a failure before
+     *         applying the commands
+     */
+    public void flush() throws InterruptedException {
+        long published = this.ring.getTail();
+        while (this.drainedCommands < published) {
+            this.checkNotFailed();
+            if (!this.owner.isAlive() && this.drainedCommands < published) {
+                throw new IllegalStateException("The ingestor is closed");
+            }
+            LockSupport.parkNanos(this, ScoreboardIngestor.FLUSH_PARK_NANOS);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Returns the current metrics of the ingestor. The metrics are read one by one, so they
+     * may be slightly inconsistent with each other while commands are drained.
+     *
+     * @return the metrics of the ingestor
+     */
+    public IngestionStats getStats() {
+        return new IngestionStats(this.ring.size(), this.drains, this.appliedCommands, this.coalescedUpdates,
+            this.rejectedCommands, this.maxDrainSize, this.lastDrainNanos, this.maxDrainNanos, this.totalDrainNanos);
+    }
+
+    /**
+     * Returns the number of commands waiting to be drained.
+     *
+     * @return the depth of the queue of the ingestor
+     */
+    public int getQueueDepth() {
+        return this.ring.size();
+    }
+
+    /**
+     * Closes the ingestor: the commands already published are applied, and the new ones are
+     * rejected. The commands must not be published concurrently with this call. The
+     * scoreboard itself is not closed.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the
+     *         published commands to be applied
+     * @throws UncheckedIOException if the scoreboard is persistent, and its journal failed to
+     *         write the commands
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        this.closed = true;
+        LockSupport.unpark(this.owner);
+        try {
+            this.owner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while applying the published commands");
+        }
+        RuntimeException failure = this.failure;
+        if (failure instanceof UncheckedIOException) {
+            throw (UncheckedIOException) failure;
+        }
+    }
+
+    /**
+     * Allocates the ID of a new match between two validated teams, and publishes its start.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the match to be created
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    private int publishStartOfRegisteredTeams(int homeTeamId, int visitorTeamId) {
+        this.checkOpen();
+        long startOrder = this.board.allocateStartOrder();
+        int idNewMatch = this.board.allocateMatchId(startOrder);
+        this.publish(CommandRing.START, idNewMatch, homeTeamId, visitorTeamId, startOrder);
+        return idNewMatch;
+    }
+
+    /**
+     * Publishes a command, waiting for a free slot if the ring buffer is full.
+     *
+     * @param kind the kind of the command
+     * @param matchId the ID of the match
+     * @param arg1 the first argument of the command
+     * @param arg2 the second argument of the command
+     * @param startOrder the start order allocated to the match started by the command (0
+     *        for the other commands)
+     * @throws IllegalStateException if the ingestor is closed
+     */
+    private void publish(int kind, int matchId, int arg1, int arg2, long startOrder) {
+        this.checkOpen();
+        while (!this.ring.offer(kind, matchId, arg1, arg2, startOrder)) {
+            // The owner thread is late: we leave it the processor rather than spinning
+            this.wakeUpOwner();
+            LockSupport.parkNanos(this, ScoreboardIngestor.FULL_RING_PARK_NANOS);
+            this.checkOpen();
+        }
+        this.wakeUpOwner();
+    }
+
+    /**
+     * Wakes up the owner thread if it is parked, waiting for commands.
+     */
+    private void wakeUpOwner() {
+        if (this.ownerParked) {
+            LockSupport.unpark(this.owner);
+        }
+    }
+
+    /**
+     * Checks that commands can still be published.
+     *
+     * @throws IllegalStateException if the ingestor is closed, or its owner thread stopped
+     *         after a failure
+     */
+    private void checkOpen() {
+        this.checkNotFailed();
+        if (this.closed) {
+            throw new IllegalStateException("Trying to publish a command to a closed ingestor");
+        }
+    }
+
+    /**
+     * Checks that the owner thread did not stop after a failure.
+     *
+     * @throws IllegalStateException if the owner thread stopped after a failure
+     */
+    private void checkNotFailed() {
+        RuntimeException failure = this.failure;
+        if (failure != null) {
+            throw new IllegalStateException("The ingestor stopped after a failure", failure);
+        }
+    }
+
+    /**
+     * The loop of the owner thread: drains the ring as long as it holds commands, parks
+     * when it stays empty, and stops once the ingestor is closed and the ring is empty.
+     */
+    private void run() {
+        int idlePolls = 0;
+        try {
+            while (true) {
+                int count = this.ring.drainTo(this.kinds, this.matchIds, this.args1, this.args2, this.startOrders,
+                    this.kinds.length);
+                if (count > 0) {
+                    this.drain(count);
+                    idlePolls = 0;
+                } else if (this.ring.getTail() != this.ring.getHead()) {
+                    // A producer claimed a slot, and is about to publish its command
+                    Thread.onSpinWait();
+                } else if (this.closed) {
+                    return;
+                } else if (++idlePolls < ScoreboardIngestor.IDLE_SPINS) {
+                    Thread.onSpinWait();
+                } else {
+                    // The flag is raised before checking the ring a last time, so a producer
+                    // claiming a slot afterwards sees it, and wakes us up
+                    this.ownerParked = true;
+                    if (this.ring.getTail() == this.ring.getHead() && !this.closed) {
+                        LockSupport.parkNanos(this, ScoreboardIngestor.IDLE_PARK_NANOS);
+                    }
+                    this.ownerParked = false;
+                }
+            }
+        } catch (RuntimeException e) {
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Applies the drained commands to the scoreboard, coalescing their updates, publishes
+     * the new snapshot of the scoreboard, and records the metrics of the drain.
+     *
+     * @param count the number of drained commands
+     */
+    private void drain(int count) {
+        long start = System.nanoTime();
+        int nbCoalesced = this.coalesceUpdates(count);
+        int nbCommands = count - nbCoalesced;
+        int nbInvalid = this.board.applyCommands(this.kinds, this.matchIds, this.args1, this.args2, this.startOrders,
+            nbCommands);
+        this.board.snapshot();
+        long latency = System.nanoTime() - start;
+
+        this.drainedCommands += count;
+        this.drains++;
+        this.appliedCommands += nbCommands - nbInvalid;
+        this.coalescedUpdates += nbCoalesced;
+        this.rejectedCommands += nbInvalid;
+        this.maxDrainSize = Math.max(this.maxDrainSize, count);
+        this.lastDrainNanos = latency;
+        this.maxDrainNanos = Math.max(this.maxDrainNanos, latency);
+        this.totalDrainNanos += latency;
+    }
+
+    /**
+     * Removes from the drained commands the updates followed by another update of the same
+     * match, and packs the remaining commands at the beginning of the arrays, in the same
+     * order. The result is the same, as the scores are absolute. An update followed by the
+     * termination of its match (or by the start of a match reusing its ID) is kept, even
+     * if the ID is updated again afterwards, as the termination records its scores.
+     *
+     * @param count the number of drained commands
+     * @return the number of removed updates
+     */
+    private int coalesceUpdates(int count) {
+        if (++this.drainNumber == 0) {
+            // The drain numbers wrapped around: the table is cleared once
+            Arrays.fill(this.updatedMatchDrains, 0);
+            this.drainNumber = 1;
+        }
+        int tableMask = this.updatedMatchIds.length - 1;
+        // The commands are scanned from the last one, so the last update of each match is
+        // the one kept, and the kept commands are packed from the end of the arrays
+        int first = count;
+        for (int i = count - 1; i >= 0; i--) {
+            int slot = (this.matchIds[i] * 0x9E3779B9) >>> this.tableShift;
+            while (this.updatedMatchDrains[slot] == this.drainNumber
+                    && this.updatedMatchIds[slot] != this.matchIds[i]) {
+                slot = (slot + 1) & tableMask;
+            }
+            boolean update = this.kinds[i] == CommandRing.UPDATE;
+            if (update && this.updatedMatchDrains[slot] == this.drainNumber && this.supersedingUpdates[slot]) {
+                continue;
+            }
+            // A start or a termination stops the coalescing of the updates of its ID
+            this.updatedMatchIds[slot] = this.matchIds[i];
+            this.updatedMatchDrains[slot] = this.drainNumber;
+            this.supersedingUpdates[slot] = update;
+            first--;
+            this.kinds[first] = this.kinds[i];
+            this.matchIds[first] = this.matchIds[i];
+            this.args1[first] = this.args1[i];
+            this.args2[first] = this.args2[i];
+            this.startOrders[first] = this.startOrders[i];
+        }
+        if (first > 0) {
+            System.arraycopy(this.kinds, first, this.kinds, 0, count - first);
+            System.arraycopy(this.matchIds, first, this.matchIds, 0, count - first);
+            System.arraycopy(this.args1, first, this.args1, 0, count - first);
+            System.arraycopy(this.args2, first, this.args2, 0, count - first);
+            System.arraycopy(this.startOrders, first, this.startOrders, 0, count - first);
+        }
+        return first;
+    }
+}
@@ -0,0 +1,83 @@
+package ScoreboardLib.api;
+
+/**
+ * The {@code ScoreboardMetrics} interface exposes the metrics of a {@link Scoreboard},
+ * collected once enabled with {@link Scoreboard#enableMetrics()}.
+ * <p>
+ * The durations are measured by timers (see {@link Timer}), each one holding a histogram
+ * of the durations, whose statistics are returned by {@link #getLatency(Timer)}. While
+ * they are enabled, the timed operations are also emitted as JFR events
+ * ({@code ScoreboardLib.Operation} and {@code ScoreboardLib.Summary}) during the
+ * recordings enabling them, so they can be correlated with the GC and lock profiling
+ * events of the JVM.
+ * <p>
+ * The metrics are updated concurrently with their reading, so they may be slightly
+ * inconsistent with each other.
+ */
+public interface ScoreboardMetrics {
+
+    /**
+     * The {@code Timer} enumeration defines the durations measured by the metrics of a
+     * {@link Scoreboard}.
+     */
+    enum Timer {
+
+        /**
+         * Duration of the start of a match, from the acquisition of the lock to the
+         * durability of the change (the validation of the names is not included).
+         */
+        START_MATCH,
+
+        /** Duration of the update of a score (including the wait for the lock). */
+        UPDATE_SCORE,
+
+        /** Duration of the termination of a match (including the wait for the lock). */
+        TERMINATE_MATCH,
+
+        /** Duration of {@link Scoreboard#getMatchesSummary()}, rendered or cached. */
+        GET_MATCHES_SUMMARY,
+
+        /**
+         * Wait for the exclusive lock, only measured when it is held by another thread (the
+         * other acquisitions do not wait, and are not counted).
+         */
+        LOCK_WAIT,
+
+        /**
+         * Duration of the copy of the ranking taken by a snapshot. The ranking is always
+         * kept sorted, so this copy is what the summaries pay instead of a sort.
+         */
+        RANKING_COPY
+    }
+
+    /**
+     * Returns the statistics of the durations measured by a timer.
+     *
+     * @param timer the timer
+     * @return the statistics of its durations
+     * @throws IllegalArgumentException if the timer is null
+     */
+    LatencyStats getLatency(Timer timer);
+
+    /**
+     * Returns the number of ongoing matches of the scoreboard.
+     *
+     * @return the number of ongoing matches
+     */
+    int getLiveMatches();
+
+    /**
+     * Returns the length of the last summary returned by {@link Scoreboard#getMatchesSummary()}.
+     *
+     * @return the number of characters of the last summary (0 if none was returned)
+     */
+    int getLastSummaryLength();
+
+    /**
+     * Returns the length of the longest summary returned by
+     * {@link Scoreboard#getMatchesSummary()}.
+     *
+     * @return the number of characters of the longest summary (0 if none was returned)
+     */
+    int getMaxSummaryLength();
+}
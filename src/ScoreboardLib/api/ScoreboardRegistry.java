@@ -0,0 +1,588 @@
+package ScoreboardLib.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import ScoreboardLib.internal.MatchIdAllocator;
+import ScoreboardLib.internal.TeamRegistry;
+
+/**
+ * The {@code ScoreboardRegistry} class hosts many independent scoreboards in a single
+ * process (leagues, fantasy rooms, simulations...), created on demand, and identified by a
+ * tenant and a key.
+ * <p>
+ * The scoreboards of a tenant share a single registry of teams, so each name is held once
+ * per tenant, and a single allocator of match IDs, so the IDs are unique across the boards
+ * of a tenant. The tenants are independent of each other.
+ * <p>
+ * The registry enforces a global memory budget: the memory taken by each board is
+ * estimated from its fixed cost and its number of matches once it is used (or from its
+ * exported size once evicted), the memory taken by each tenant from its fixed cost and its
+ * number of teams, and when the estimated total exceeds the budget, the boards which
+ * have been idle for the longest time are evicted, i.e. exported to the compact binary
+ * form of {@link Scoreboard#exportSnapshot} and released. An evicted board is imported
+ * back on its next use, with its matches, their IDs and scores, and its version. Only the
+ * matches are kept: the subscriptions, metrics, history and secondary indexes of an
+ * evicted board are lost. The teams of a tenant are only released with its last board, as
+ * the IDs of its registered teams must stay valid: a budget smaller than the tenants and
+ * the evicted boards is exceeded.
+ * <p>
+ * A board is only used through {@link #withBoard(String, String, Function)}, which pins
+ * it for the duration of the action, so a board is never evicted while it is used. The
+ * action must not keep the board once it returns. If all the boards exceeding the budget
+ * are in use, the budget is exceeded until they are released.
+ * <p>
+ * The class is thread-safe. The actions run concurrently (each board being thread-safe
+ * itself), but the creations and imports of the boards are serialized. The boards are
+ * closed and exported without holding the lock of the registry, so an eviction only
+ * delays the actions on the evicted board itself.
+ */
+public class ScoreboardRegistry {
+
+    /**
+     * Estimated memory taken by a resident board without any match (its lock, counters,
+     * empty tables, etc.), in bytes: about 1.1 KB measured on a 64-bit JVM.
+     */
+    private static final long BOARD_OVERHEAD_BYTES = 1152L;
+
+    /**
+     * Estimated memory taken by the entry of a board, resident or evicted (its key, its map
+     * node and the headers of its tenant and key strings), besides the characters of the
+     * strings, in bytes.
+     */
+    private static final long ENTRY_BYTES = 224L;
+
+    /**
+     * Estimated memory taken by a tenant without any team (its empty registry of teams, its
+     * allocator of match IDs, its map entry), in bytes.
+     */
+    private static final long TENANT_BYTES = 896L;
+
+    /** Estimated memory taken by a match stored as an object, in bytes. */
+    private static final long OBJECT_MATCH_BYTES = 72L;
+
+    /** Estimated memory taken by a match stored in compact arrays, in bytes. */
+    private static final long COMPACT_MATCH_BYTES = 48L;
+
+    /**
+     * Estimated memory taken by a team in the registry of its tenant (its map entry, its
+     * array slots and the headers of its name and encoded name), besides its name, in bytes.
+     */
+    private static final long TEAM_BYTES = 144L;
+
+    /** The memory budget of all the boards, in bytes. */
+    private final long memoryBudget;
+
+    /** How the matches of the boards are stored in memory. */
+    private final MatchStorage storage;
+
+    /** Lock serializing the creations, evictions and imports of the boards. */
+    private final ReentrantLock lock;
+
+    /** Signaled each time the eviction of a board is over. */
+    private final Condition evictionDone;
+
+    /** The tenants having at least one board, by name. */
+    private final Map<String, Tenant> tenants;
+
+    /** The boards, from the least recently used to the most recently used. */
+    private final LinkedHashMap<BoardKey, Entry> boards;
+
+    /**
+     * Estimated memory taken by all the boards, resident or evicted, and by the registries
+     * of teams of their tenants, in bytes.
+     */
+    private long estimatedMemory;
+
+    /** Number of boards evicted since the creation of the registry. */
+    private long evictions;
+
+    /** Number of evicted boards imported back since the creation of the registry. */
+    private long rehydrations;
+
+    /**
+     * Constructs a new, empty {@code ScoreboardRegistry}, whose boards store their matches
+     * as objects.
+     *
+     * @param memoryBudget the memory budget of all the boards, in bytes
+     * @throws IllegalArgumentException if the budget is negative
+     */
+    public ScoreboardRegistry(long memoryBudget) {
+        this(memoryBudget, MatchStorage.OBJECTS);
+    }
+
+    /**
+     * Constructs a new, empty {@code ScoreboardRegistry}, whose boards store their matches
+     * as requested.
+     *
+     * @param memoryBudget the memory budget of all the boards, in bytes
+     * @param storage how the matches of the boards are stored in memory
+     * @throws IllegalArgumentException if the budget is negative, or the storage is null
+     */
+    public ScoreboardRegistry(long memoryBudget, MatchStorage storage) {
+        if (memoryBudget < 0L) {
+            throw new IllegalArgumentException("Trying to create a registry with a negative memory budget");
+        }
+        if (storage == null) {
+            throw new IllegalArgumentException("Trying to store the matches in a null storage");
+        }
+        this.memoryBudget = memoryBudget;
+        this.storage = storage;
+        this.lock = new ReentrantLock();
+        this.evictionDone = this.lock.newCondition();
+        this.tenants = new HashMap<>();
+        this.boards = new LinkedHashMap<>(16, 0.75f, true);
+        this.estimatedMemory = 0L;
+        this.evictions = 0L;
+        this.rehydrations = 0L;
+    }
+
+    /**
+     * Runs an action on a board, which is created if it does not exist yet, or imported
+     * back if it was evicted (waiting for its eviction to be over if needed). The board
+     * cannot be evicted while the action runs, and boards may be evicted once it returns,
+     * if the budget is exceeded. The evictions never fail the action.
+     *
+     * @param <T> the type of the result of the action
+     * @param tenant the tenant of the board
+     * @param key the key of the board within its tenant
+     * @param action the action, which must not keep the board once it returns
+     * @return the result of the action
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public <T> T withBoard(String tenant, String key, Function<? super Scoreboard, ? extends T> action) {
+        if (tenant == null || key == null) {
+            throw new IllegalArgumentException("Trying to get a board with a null tenant or key");
+        }
+        if (action == null) {
+            throw new IllegalArgumentException("Trying to run a null action on a board");
+        }
+        Entry entry;
+        this.lock.lock();
+        try {
+            entry = this.pin(new BoardKey(tenant, key));
+        } finally {
+            this.lock.unlock();
+        }
+        T result;
+        try {
+            result = action.apply(entry.board);
+        } finally {
+            // The board is still pinned, so it is estimated without holding the lock
+            long boardMemory = this.estimateMemory(entry);
+            Scoreboard removedBoard = null;
+            this.lock.lock();
+            try {
+                entry.pins--;
+                if (entry.removed) {
+                    if (entry.pins == 0) {
+                        removedBoard = entry.board;
+                    }
+                } else {
+                    this.setEstimatedMemory(entry, boardMemory);
+                    this.updateTenantMemory(entry.tenant);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+            if (removedBoard != null) {
+                ScoreboardRegistry.close(removedBoard);
+            }
+        }
+        this.evictIfNeeded();
+        return result;
+    }
+
+    /**
+     * Removes a board, resident or evicted, and releases its memory. Does nothing if the
+     * board does not exist. A board in use is removed once its actions return, and a board
+     * being evicted once its eviction is over.
+     *
+     * @param tenant the tenant of the board
+     * @param key the key of the board within its tenant
+     * @return true if the board existed
+     * @throws IllegalArgumentException if the tenant or the key is null
+     */
+    public boolean removeBoard(String tenant, String key) {
+        if (tenant == null || key == null) {
+            throw new IllegalArgumentException("Trying to remove a board with a null tenant or key");
+        }
+        Scoreboard removedBoard = null;
+        this.lock.lock();
+        try {
+            Entry entry = this.boards.remove(new BoardKey(tenant, key));
+            if (entry == null) {
+                return false;
+            }
+            this.setEstimatedMemory(entry, 0L);
+            entry.removed = true;
+            // A board being evicted is already closed by its eviction
+            if (entry.board != null && entry.pins == 0 && !entry.evicting) {
+                removedBoard = entry.board;
+            }
+            // The tenant is forgotten with its last board, so its teams are released
+            if (--entry.tenant.nbBoards == 0) {
+                this.tenants.remove(tenant);
+                this.estimatedMemory -= entry.tenant.estimatedMemory;
+                entry.tenant.estimatedMemory = 0L;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        if (removedBoard != null) {
+            ScoreboardRegistry.close(removedBoard);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of boards of the registry, resident or evicted.
+     *
+     * @return the number of boards
+     */
+    public int countBoards() {
+        this.lock.lock();
+        try {
+            return this.boards.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of boards currently held in memory, not evicted.
+     *
+     * @return the number of resident boards
+     */
+    public int countResidentBoards() {
+        this.lock.lock();
+        try {
+            int nbResident = 0;
+            for (Entry entry : this.boards.values()) {
+                if (entry.board != null) {
+                    nbResident++;
+                }
+            }
+            return nbResident;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the estimated memory taken by all the boards, resident or evicted, as
+     * estimated when they were last used, and by the registries of teams of their tenants.
+     *
+     * @return the estimated memory, in bytes
+     */
+    public long getEstimatedMemory() {
+        this.lock.lock();
+        try {
+            return this.estimatedMemory;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of boards evicted since the creation of the registry.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        this.lock.lock();
+        try {
+            return this.evictions;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of evicted boards imported back since the creation of the registry.
+     *
+     * @return the number of rehydrations
+     */
+    public long getRehydrations() {
+        this.lock.lock();
+        try {
+            return this.rehydrations;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Pins a board, creating it or importing it back if needed. The caller must hold the
+     * lock, which is released while waiting for the eviction of the board to be over.
+     *
+     * @param boardKey the tenant and the key of the board
+     * @return the entry of the board, whose board is resident
+     * @throws UncheckedIOException if an evicted board cannot be imported back
+     */
+    private Entry pin(BoardKey boardKey) {
+        // Looking the board up marks it as the most recently used one
+        Entry entry = this.boards.get(boardKey);
+        while (entry != null && entry.evicting) {
+            this.evictionDone.awaitUninterruptibly();
+            entry = this.boards.get(boardKey);
+        }
+        if (entry == null) {
+            Tenant tenant = this.tenants.computeIfAbsent(boardKey.tenant(), name -> new Tenant());
+            tenant.nbBoards++;
+            entry = new Entry(tenant, new Scoreboard(this.storage, tenant.teams, tenant.matchIds),
+                ScoreboardRegistry.ENTRY_BYTES + boardKey.tenant().length() + boardKey.key().length());
+            this.boards.put(boardKey, entry);
+            this.setEstimatedMemory(entry, this.estimateMemory(entry));
+            this.updateTenantMemory(tenant);
+        } else if (entry.board == null) {
+            try {
+                entry.board = Scoreboard.importSnapshot(Channels.newChannel(new ByteArrayInputStream(entry.evicted)),
+                    this.storage, entry.tenant.teams, entry.tenant.matchIds);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            entry.evicted = null;
+            this.rehydrations++;
+            this.setEstimatedMemory(entry, this.estimateMemory(entry));
+            this.updateTenantMemory(entry.tenant);
+        }
+        entry.pins++;
+        return entry;
+    }
+
+    /**
+     * Evicts the least recently used boards which are not in use, until the estimated
+     * memory fits in the budget. The boards to evict are chosen under the lock, and marked
+     * as being evicted, so they are not used meanwhile; they are then closed and exported
+     * without holding the lock. A board which fails to be exported (the thread being
+     * interrupted while it is closed) stays resident.
+     */
+    private void evictIfNeeded() {
+        // An evicted board still takes the memory of its export, so the boards are evicted
+        // again until the estimate fits in the budget, or no board can be evicted anymore
+        List<Entry> evictedEntries = new ArrayList<>();
+        boolean interrupted = false;
+        do {
+            evictedEntries.clear();
+            this.lock.lock();
+            try {
+                long remainingMemory = this.estimatedMemory;
+                for (Entry entry : this.boards.values()) {
+                    if (remainingMemory <= this.memoryBudget) {
+                        break;
+                    }
+                    if (entry.board == null || entry.pins > 0 || entry.evicting) {
+                        continue;
+                    }
+                    entry.evicting = true;
+                    evictedEntries.add(entry);
+                    remainingMemory -= entry.estimatedMemory - entry.overheadMemory;
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            for (Entry entry : evictedEntries) {
+                byte[] exported = null;
+                try {
+                    exported = ScoreboardRegistry.export(entry.board);
+                } finally {
+                    this.lock.lock();
+                    try {
+                        entry.evicting = false;
+                        if (exported != null && !entry.removed) {
+                            entry.board = null;
+                            entry.evicted = exported;
+                            this.evictions++;
+                            this.setEstimatedMemory(entry, entry.overheadMemory + entry.evicted.length);
+                        }
+                        this.evictionDone.signalAll();
+                    } finally {
+                        this.lock.unlock();
+                    }
+                }
+                // If the thread was interrupted, the next actions evict the remaining boards
+                interrupted |= exported == null;
+            }
+        } while (!evictedEntries.isEmpty() && !interrupted);
+    }
+
+    /**
+     * Closes a board which is not used anymore, and exports it to its compact binary form.
+     *
+     * @param board the board
+     * @return the exported board, or null if the thread was interrupted while closing it
+     */
+    private static byte[] export(Scoreboard board) {
+        // The board is closed first, so the asynchronous modifications still pending
+        // are part of the export
+        if (!ScoreboardRegistry.close(board)) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            board.exportSnapshot(Channels.newChannel(out));
+        } catch (IOException e) {
+            // Writing to memory never fails
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Changes the estimated memory taken by a board. The caller must hold the lock.
+     *
+     * @param entry the entry of the board
+     * @param memory the new estimated memory of the board, in bytes
+     */
+    private void setEstimatedMemory(Entry entry, long memory) {
+        this.estimatedMemory += memory - entry.estimatedMemory;
+        entry.estimatedMemory = memory;
+    }
+
+    /**
+     * Updates the estimated memory taken by the registry of teams of a tenant, from its
+     * number of teams and the length of their names. The caller must hold the lock.
+     *
+     * @param tenant the tenant
+     */
+    private void updateTenantMemory(Tenant tenant) {
+        // Each name is held both as a string and encoded (mostly one byte per character)
+        long memory = ScoreboardRegistry.TENANT_BYTES + tenant.teams.size() * ScoreboardRegistry.TEAM_BYTES
+            + 2 * tenant.teams.getEncodedLength();
+        this.estimatedMemory += memory - tenant.estimatedMemory;
+        tenant.estimatedMemory = memory;
+    }
+
+    /**
+     * Estimates the memory taken by a resident board and its entry, from its number of matches.
+     *
+     * @param entry the entry of the board, which is resident
+     * @return the estimated memory, in bytes
+     */
+    private long estimateMemory(Entry entry) {
+        long matchBytes = (this.storage == MatchStorage.COMPACT) ? ScoreboardRegistry.COMPACT_MATCH_BYTES
+            : ScoreboardRegistry.OBJECT_MATCH_BYTES;
+        return entry.overheadMemory + ScoreboardRegistry.BOARD_OVERHEAD_BYTES + entry.board.countMatches() * matchBytes;
+    }
+
+    /**
+     * Closes a board which is not persistent, applying its pending asynchronous modifications.
+     * Called without holding the lock, as it waits for the writer thread of the board.
+     *
+     * @param board the board
+     * @return true if the board is closed, false if the thread was interrupted while waiting
+     *         for the asynchronous modifications (its interrupt status is then set again)
+     */
+    private static boolean close(Scoreboard board) {
+        try {
+            board.close();
+            return true;
+        } catch (InterruptedIOException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (IOException e) {
+            // Only a persistent board fails to write its journal
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The tenant and the key of a board.
+     *
+     * @param tenant the tenant of the board
+     * @param key the key of the board within its tenant
+     */
+    private record BoardKey(String tenant, String key) {
+    }
+
+    /**
+     * The {@code Tenant} class holds the structures shared by the boards of a tenant. It is
+     * only accessed under the lock of the registry.
+     */
+    private static final class Tenant {
+
+        /** Registry of the teams of the boards of the tenant. */
+        private final TeamRegistry teams;
+
+        /** The allocator of the IDs of the matches of the boards of the tenant. */
+        private final MatchIdAllocator matchIds;
+
+        /** Number of boards of the tenant. */
+        private int nbBoards;
+
+        /** Estimated memory taken by the tenant and its registry of teams, in bytes. */
+        private long estimatedMemory;
+
+        /**
+         * Constructs a tenant without any board.
+         */
+        private Tenant() {
+            this.teams = new TeamRegistry();
+            this.matchIds = new MatchIdAllocator(false);
+            this.nbBoards = 0;
+            this.estimatedMemory = 0L;
+        }
+    }
+
+    /**
+     * The {@code Entry} class holds a board of the registry, resident or evicted. It is only
+     * accessed under the lock of the registry.
+     */
+    private static final class Entry {
+
+        /** The tenant of the board. */
+        private final Tenant tenant;
+
+        /** The board, or null if it is evicted. */
+        private Scoreboard board;
+
+        /** The exported board, or null if it is resident. */
+        private byte[] evicted;
+
+        /** Number of actions currently running on the board. */
+        private int pins;
+
+        /** Estimated memory taken by the board and its entry, in bytes. */
+        private long estimatedMemory;
+
+        /** Estimated memory taken by the entry itself, whether the board is resident or not, in bytes. */
+        private final long overheadMemory;
+
+        /** Whether the board was removed from the registry. */
+        private boolean removed;
+
+        /** Whether the board is being closed and exported, without the lock of the registry. */
+        private boolean evicting;
+
+        /**
+         * Constructs the entry of a new resident board.
+         *
+         * @param tenant the tenant of the board
+         * @param board the board
+         * @param overheadMemory the estimated memory taken by the entry itself, in bytes
+         */
+        private Entry(Tenant tenant, Scoreboard board, long overheadMemory) {
+            this.tenant = tenant;
+            this.board = board;
+            this.overheadMemory = overheadMemory;
+            this.evicted = null;
+            this.pins = 0;
+            this.estimatedMemory = 0L;
+            this.removed = false;
+            this.evicting = false;
+        }
+    }
+}
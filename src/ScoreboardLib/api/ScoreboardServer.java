@@ -0,0 +1,643 @@
+package ScoreboardLib.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code ScoreboardServer} class serves a {@link Scoreboard} over TCP to many display
+ * clients, such as {@link ScoreboardFeed}: each client first receives a full snapshot of
+ * the board, and then the changes of the board as they happen, over the same long-lived
+ * connection.
+ * <p>
+ * The server subscribes once to the board (with the {@link BackpressurePolicy#COALESCE}
+ * policy), and encodes each change once, whatever the number of clients: the changes
+ * encoded since the last pass of the server thread are sent as a single shared buffer,
+ * each client only holding its own position in it. Likewise, the snapshot is encoded once
+ * per version of the board. A single thread serves all the connections with a
+ * {@link Selector}, and never blocks on a client.
+ * <p>
+ * A client too slow to receive the changes (more than {@code maxPendingBytes} waiting to
+ * be sent to it) is sent a new snapshot instead of the waiting changes, and is
+ * disconnected if it is still too slow to receive it. All the clients are sent a new
+ * snapshot when the board drops events, which may come from another of its subscribers.
+ * A client must ignore the changes whose version is lower than or equal to the version of
+ * the last snapshot it received.
+ * <p>
+ * Every message is a frame made of its length (int, not counting itself), its type (byte)
+ * and its content (big-endian):
+ * <ul>
+ * <li>{@link #SNAPSHOT_FRAME}: the board in the layout of
+ * {@link Scoreboard#exportSnapshot(java.nio.channels.WritableByteChannel)};</li>
+ * <li>{@link #MATCH_STARTED_FRAME}: version (long), match ID (int), position (int), then
+ * the length (int) and UTF-8 bytes of the names of the home and visiting teams;</li>
+ * <li>{@link #SCORE_UPDATED_FRAME}: version (long), match ID (int), scores of the home and
+ * visiting teams (int);</li>
+ * <li>{@link #RANK_CHANGED_FRAME}: version (long), match ID (int), old and new positions
+ * (int);</li>
+ * <li>{@link #MATCH_TERMINATED_FRAME}: version (long), match ID (int), last position (int).</li>
+ * </ul>
+ * The clients are not expected to send anything. This class is thread-safe.
+ */
+public class ScoreboardServer implements Closeable {
+
+    /** Type of the frame holding a full snapshot of the board. */
+    public static final byte SNAPSHOT_FRAME = 1;
+
+    /** Type of the frame of a {@link ScoreboardEvent.MatchStarted} event. */
+    public static final byte MATCH_STARTED_FRAME = 2;
+
+    /** Type of the frame of a {@link ScoreboardEvent.ScoreUpdated} event. */
+    public static final byte SCORE_UPDATED_FRAME = 3;
+
+    /** Type of the frame of a {@link ScoreboardEvent.RankChanged} event. */
+    public static final byte RANK_CHANGED_FRAME = 4;
+
+    /** Type of the frame of a {@link ScoreboardEvent.MatchTerminated} event. */
+    public static final byte MATCH_TERMINATED_FRAME = 5;
+
+    /** Default maximal number of events of the board waiting to be encoded. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 65_536;
+
+    /** Default maximal number of bytes waiting to be sent to a client. */
+    public static final int DEFAULT_MAX_PENDING_BYTES = 1 << 20;
+
+    /** Number of connections waiting to be accepted, beyond which the new ones are refused. */
+    private static final int ACCEPT_BACKLOG = 4096;
+
+    /** Size of the frame header: length (int) and type (byte). */
+    private static final int HEADER_SIZE = 4 + 1;
+
+    /** Initial size of the buffer of the encoded changes. */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    /**
+     * Maximal size of the buffer of the encoded changes, beyond which the changes are
+     * dropped, and all the clients are sent a new snapshot instead.
+     */
+    private static final int MAX_BATCH_SIZE = 16 << 20;
+
+    /** The served scoreboard. */
+    private final Scoreboard board;
+
+    /** Maximal number of bytes waiting to be sent to a client. */
+    private final int maxPendingBytes;
+
+    /** The channel accepting the connections. */
+    private final ServerSocketChannel serverChannel;
+
+    /** The selector of the server thread. */
+    private final Selector selector;
+
+    /** The thread serving all the connections. */
+    private final Thread thread;
+
+    /** The subscription of the server to the changes of the board. */
+    private volatile Flow.Subscription subscription;
+
+    /** Lock protecting the buffer of the encoded changes. */
+    private final ReentrantLock batchLock;
+
+    /** The changes encoded since the last pass of the server thread, in frames. */
+    private ByteBuffer batch;
+
+    /** Whether the encoded changes were dropped, so all the clients need a new snapshot. */
+    private boolean batchOverflow;
+
+    /** The last encoded snapshot, shared by all the clients (server thread only). */
+    private ByteBuffer snapshotFrame;
+
+    /** The version of the last encoded snapshot (server thread only). */
+    private long snapshotVersion;
+
+    /** Receives the bytes sent by the clients, which are ignored (server thread only). */
+    private final ByteBuffer ignoredBytes;
+
+    /** Number of dropped events of the board at the last pass of the server thread. */
+    private long droppedEvents;
+
+    /** Number of open connections. */
+    private final AtomicInteger connections;
+
+    /** Number of snapshots sent again to the clients, because they could have missed changes. */
+    private final AtomicLong resynchronizations;
+
+    /** Number of clients disconnected because they were too slow. */
+    private final AtomicLong disconnections;
+
+    /** Whether the server is closed. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a server of a scoreboard listening to the given address, with the default
+     * limits, and starts its thread.
+     *
+     * @param board the served scoreboard
+     * @param address the address to listen to (port 0 selects a free port)
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public ScoreboardServer(Scoreboard board, InetSocketAddress address) throws IOException {
+        this(board, address, ScoreboardServer.DEFAULT_QUEUE_CAPACITY, ScoreboardServer.DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    /**
+     * Constructs a server of a scoreboard listening to the given address, and starts its
+     * thread.
+     *
+     * @param board the served scoreboard
+     * @param address the address to listen to (port 0 selects a free port)
+     * @param queueCapacity the maximal number of events of the board waiting to be encoded
+     * @param maxPendingBytes the maximal number of bytes waiting to be sent to a client,
+     *        beyond which it is sent a new snapshot
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalArgumentException if an argument is null, or a limit is not positive
+     */
+    public ScoreboardServer(Scoreboard board, InetSocketAddress address, int queueCapacity, int maxPendingBytes)
+            throws IOException {
+        if (board == null || address == null) {
+            throw new IllegalArgumentException("Trying to serve a scoreboard with null arguments");
+        }
+        if (queueCapacity <= 0 || maxPendingBytes <= 0) {
+            throw new IllegalArgumentException("The limits of the server must be positive");
+        }
+        this.board = board;
+        this.maxPendingBytes = maxPendingBytes;
+        this.batchLock = new ReentrantLock();
+        this.batch = ByteBuffer.allocate(ScoreboardServer.BATCH_SIZE);
+        this.snapshotVersion = -1L;
+        this.ignoredBytes = ByteBuffer.allocate(256);
+        this.connections = new AtomicInteger();
+        this.resynchronizations = new AtomicLong();
+        this.disconnections = new AtomicLong();
+        this.selector = Selector.open();
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.bind(address, ScoreboardServer.ACCEPT_BACKLOG);
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            this.selector.close();
+            throw e;
+        }
+        // The changes published from now on are encoded, and the first snapshot sent to a
+        // client is taken afterwards, so it misses none of them
+        this.droppedEvents = board.getDroppedEvents();
+        board.subscribe(new EventEncoder(), queueCapacity, BackpressurePolicy.COALESCE);
+        this.thread = new Thread(this::run, "scoreboard-server");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the address the server listens to, with the selected port.
+     *
+     * @return the local address of the server
+     * @throws IOException if the address cannot be read
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) this.serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Returns the number of open connections.
+     *
+     * @return the number of connected clients
+     */
+    public int countConnections() {
+        return this.connections.get();
+    }
+
+    /**
+     * Returns the number of snapshots sent again to clients, because they were too slow or
+     * the board dropped events.
+     *
+     * @return the number of resynchronizations
+     */
+    public long getResynchronizations() {
+        return this.resynchronizations.get();
+    }
+
+    /**
+     * Returns the number of clients disconnected because they were too slow to receive a
+     * snapshot.
+     *
+     * @return the number of disconnected clients
+     */
+    public long getDisconnections() {
+        return this.disconnections.get();
+    }
+
+    /**
+     * Closes the server: it stops listening, unsubscribes from the board and closes all the
+     * connections. The scoreboard itself is not closed.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting for the
+     *         server thread to stop
+     */
+    @Override
+    public void close() throws InterruptedIOException {
+        this.closed = true;
+        Flow.Subscription current = this.subscription;
+        if (current != null) {
+            current.cancel();
+        }
+        this.selector.wakeup();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing the server");
+        }
+    }
+
+    /**
+     * Serves the connections until the server is closed: each pass sends the changes
+     * encoded since the previous one, accepts the new connections, and sends the waiting
+     * bytes to the clients ready to receive them.
+     */
+    private void run() {
+        try {
+            while (!this.closed) {
+                this.selector.select();
+                // The changes are taken before the new connections are accepted, so the
+                // snapshot they are sent includes all the changes they do not receive
+                this.broadcast();
+                Iterator<SelectionKey> selectedKeys = this.selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        this.accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) {
+                            this.read(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            this.flush(connection);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // The selector or the listening channel failed: the server stops
+        } finally {
+            for (SelectionKey key : this.selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    this.disconnect(connection);
+                }
+            }
+            ScoreboardServer.closeQuietly(this.serverChannel);
+            ScoreboardServer.closeQuietly(this.selector);
+        }
+    }
+
+    /**
+     * Sends the changes encoded since the last pass to all the clients, or a new snapshot
+     * if changes were dropped.
+     */
+    private void broadcast() {
+        ByteBuffer changes = null;
+        boolean resynchronize;
+        this.batchLock.lock();
+        try {
+            if (this.batch.position() > 0) {
+                // A single copy of the changes is shared by all the connections
+                changes = ByteBuffer.wrap(Arrays.copyOf(this.batch.array(), this.batch.position()))
+                    .asReadOnlyBuffer();
+                this.batch.clear();
+            }
+            resynchronize = this.batchOverflow;
+            this.batchOverflow = false;
+        } finally {
+            this.batchLock.unlock();
+        }
+        long dropped = this.board.getDroppedEvents();
+        if (dropped != this.droppedEvents) {
+            this.droppedEvents = dropped;
+            resynchronize = true;
+        }
+        if (changes == null && !resynchronize) {
+            return;
+        }
+        for (SelectionKey key : this.selector.keys()) {
+            if (key.isValid() && key.attachment() instanceof Connection connection) {
+                if (resynchronize) {
+                    // The new snapshot includes the changes
+                    this.resynchronize(connection);
+                } else {
+                    this.send(connection, changes.duplicate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts all the waiting connections, and sends them the snapshot of the board.
+     *
+     * @throws IOException if the listening channel fails
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.serverChannel.accept()) != null) {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Connection connection = new Connection(channel);
+                connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+                this.connections.incrementAndGet();
+                connection.awaitedSnapshot = this.encodeSnapshot();
+                this.send(connection, connection.awaitedSnapshot);
+            } catch (IOException e) {
+                ScoreboardServer.closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes sent by a client, which are ignored, to detect the closed connections.
+     *
+     * @param connection the connection of the client
+     */
+    private void read(Connection connection) {
+        try {
+            int nbBytes;
+            while ((nbBytes = connection.channel.read(this.ignoredBytes)) > 0) {
+                this.ignoredBytes.clear();
+            }
+            this.ignoredBytes.clear();
+            if (nbBytes < 0) {
+                this.disconnect(connection);
+            }
+        } catch (IOException e) {
+            this.disconnect(connection);
+        }
+    }
+
+    /**
+     * Queues frames for a client, and sends what it can receive right away. A client
+     * having too many bytes waiting is sent a new snapshot instead.
+     *
+     * @param connection the connection of the client
+     * @param frames the frames to send
+     */
+    private void send(Connection connection, ByteBuffer frames) {
+        connection.pending.addLast(frames);
+        connection.pendingBytes += frames.remaining();
+        if (connection.pendingBytes > this.maxPendingBytes && connection.pending.size() > 1) {
+            if (connection.awaitedSnapshot != null) {
+                // The client cannot even receive a snapshot
+                this.disconnections.incrementAndGet();
+                this.disconnect(connection);
+                return;
+            }
+            this.resynchronize(connection);
+            return;
+        }
+        this.flush(connection);
+    }
+
+    /**
+     * Replaces the frames waiting to be sent to a client by a new snapshot, keeping the
+     * frame partially sent, if any.
+     *
+     * @param connection the connection of the client
+     */
+    private void resynchronize(Connection connection) {
+        ByteBuffer head = connection.pending.peekFirst();
+        connection.pending.clear();
+        connection.pendingBytes = 0;
+        if (head != null && head.position() > 0) {
+            connection.pending.addLast(head);
+            connection.pendingBytes = head.remaining();
+        }
+        ByteBuffer snapshot = this.encodeSnapshot();
+        connection.awaitedSnapshot = snapshot;
+        connection.pending.addLast(snapshot);
+        connection.pendingBytes += snapshot.remaining();
+        this.resynchronizations.incrementAndGet();
+        this.flush(connection);
+    }
+
+    /**
+     * Sends the waiting frames to a client, as long as it can receive them, and selects the
+     * connection for writing if some are left.
+     *
+     * @param connection the connection of the client
+     */
+    private void flush(Connection connection) {
+        try {
+            ByteBuffer head;
+            while ((head = connection.pending.peekFirst()) != null) {
+                connection.pendingBytes -= connection.channel.write(head);
+                if (head.hasRemaining()) {
+                    connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.pending.pollFirst();
+                if (head == connection.awaitedSnapshot) {
+                    connection.awaitedSnapshot = null;
+                }
+            }
+            connection.key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            this.disconnect(connection);
+        }
+    }
+
+    /**
+     * Closes the connection of a client.
+     *
+     * @param connection the connection of the client
+     */
+    private void disconnect(Connection connection) {
+        if (connection.key.isValid()) {
+            connection.key.cancel();
+            this.connections.decrementAndGet();
+        }
+        connection.pending.clear();
+        ScoreboardServer.closeQuietly(connection.channel);
+    }
+
+    /**
+     * Returns the current snapshot of the board as a frame, encoded once per version of the
+     * board.
+     *
+     * @return a new view of the shared frame, positioned at its start
+     */
+    private ByteBuffer encodeSnapshot() {
+        ScoreboardSnapshot snapshot = this.board.snapshot();
+        if (this.snapshotFrame == null || this.snapshotVersion != snapshot.getVersion()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(ScoreboardServer.BATCH_SIZE);
+            output.write(new byte[ScoreboardServer.HEADER_SIZE], 0, ScoreboardServer.HEADER_SIZE);
+            try {
+                this.board.exportSnapshot(snapshot, Channels.newChannel(output));
+            } catch (IOException e) {
+                // The stream is in memory, and never fails
+                throw new IllegalStateException(e);
+            }
+            ByteBuffer frame = ByteBuffer.wrap(output.toByteArray());
+            frame.putInt(0, frame.capacity() - 4).put(4, ScoreboardServer.SNAPSHOT_FRAME);
+            this.snapshotFrame = frame.asReadOnlyBuffer();
+            this.snapshotVersion = snapshot.getVersion();
+        }
+        return this.snapshotFrame.duplicate();
+    }
+
+    /**
+     * Closes a channel or a selector, ignoring its failure.
+     *
+     * @param closeable the channel or selector
+     */
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing more can be done with it
+        }
+    }
+
+    /**
+     * The {@code Connection} class holds the state of the connection of a client, only
+     * accessed by the server thread.
+     */
+    private static final class Connection {
+
+        /** The channel of the client. */
+        private final SocketChannel channel;
+
+        /** The key of the channel in the selector. */
+        private SelectionKey key;
+
+        /** The frames waiting to be sent, each one a view of a shared buffer. */
+        private final ArrayDeque<ByteBuffer> pending;
+
+        /** Number of bytes waiting to be sent. */
+        private long pendingBytes;
+
+        /** The snapshot waiting to be sent, or null once it is sent. */
+        private ByteBuffer awaitedSnapshot;
+
+        /**
+         * Constructs the state of a new connection.
+         *
+         * @param channel the channel of the client
+         */
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.pending = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * The {@code EventEncoder} class receives the changes of the board, and encodes them in
+     * the buffer of the next pass of the server thread.
+     */
+    private final class EventEncoder implements Flow.Subscriber<ScoreboardEvent> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            ScoreboardServer.this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(ScoreboardEvent event) {
+            byte[] nameHomeTeam = null;
+            byte[] nameVisitorTeam = null;
+            int size = ScoreboardServer.HEADER_SIZE + 8 + 4 + 4;
+            if (event instanceof ScoreboardEvent.MatchStarted started) {
+                nameHomeTeam = started.nameHomeTeam().getBytes(StandardCharsets.UTF_8);
+                nameVisitorTeam = started.nameVisitorTeam().getBytes(StandardCharsets.UTF_8);
+                size += 4 + nameHomeTeam.length + 4 + nameVisitorTeam.length;
+            } else if (event instanceof ScoreboardEvent.ScoreUpdated || event instanceof ScoreboardEvent.RankChanged) {
+                size += 4;
+            }
+            boolean wakeUp;
+            ScoreboardServer server = ScoreboardServer.this;
+            server.batchLock.lock();
+            try {
+                wakeUp = server.batch.position() == 0;
+                if (server.batch.remaining() < size) {
+                    if (server.batch.position() + size > ScoreboardServer.MAX_BATCH_SIZE) {
+                        // The server thread is late: the clients will get a new snapshot
+                        server.batch.clear();
+                        server.batchOverflow = true;
+                        wakeUp = true;
+                    } else {
+                        int capacity = Math.max(2 * server.batch.capacity(), server.batch.position() + size);
+                        server.batch = ByteBuffer.wrap(Arrays.copyOf(server.batch.array(), capacity))
+                            .position(server.batch.position());
+                    }
+                }
+                ScoreboardServer.encode(event, nameHomeTeam, nameVisitorTeam, size, server.batch);
+            } finally {
+                server.batchLock.unlock();
+            }
+            if (wakeUp) {
+                server.selector.wakeup();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // The subscription only fails on an invalid request, which is never made
+        }
+
+        @Override
+        public void onComplete() {
+            // The board is closed: the connections keep its last state until the server is closed
+        }
+    }
+
+    /**
+     * Encodes an event as a frame.
+     *
+     * @param event the event
+     * @param nameHomeTeam the encoded name of the home team of a started match, or null
+     * @param nameVisitorTeam the encoded name of the visiting team of a started match, or null
+     * @param size the size of the frame
+     * @param buffer the buffer receiving the frame
+     */
+    private static void encode(ScoreboardEvent event, byte[] nameHomeTeam, byte[] nameVisitorTeam, int size,
+                               ByteBuffer buffer) {
+        buffer.putInt(size - 4);
+        if (event instanceof ScoreboardEvent.MatchStarted started) {
+            buffer.put(ScoreboardServer.MATCH_STARTED_FRAME).putLong(started.version()).putInt(started.matchId())
+                .putInt(started.position())
+                .putInt(nameHomeTeam.length).put(nameHomeTeam)
+                .putInt(nameVisitorTeam.length).put(nameVisitorTeam);
+        } else if (event instanceof ScoreboardEvent.ScoreUpdated updated) {
+            buffer.put(ScoreboardServer.SCORE_UPDATED_FRAME).putLong(updated.version()).putInt(updated.matchId())
+                .putInt(updated.scoreHomeTeam()).putInt(updated.scoreVisitorTeam());
+        } else if (event instanceof ScoreboardEvent.RankChanged moved) {
+            buffer.put(ScoreboardServer.RANK_CHANGED_FRAME).putLong(moved.version()).putInt(moved.matchId())
+                .putInt(moved.oldPosition()).putInt(moved.newPosition());
+        } else {
+            ScoreboardEvent.MatchTerminated terminated = (ScoreboardEvent.MatchTerminated) event;
+            buffer.put(ScoreboardServer.MATCH_TERMINATED_FRAME).putLong(terminated.version())
+                .putInt(terminated.matchId()).putInt(terminated.lastPosition());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ScoreboardLib.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import ScoreboardLib.internal.RankingSnapshot;
+
+/**
+ * The {@code ScoreboardSnapshot} class is an immutable, consistent view of a {@link Scoreboard}
+ * at a given version.
+ * <p>
+ * The version of a scoreboard is increased by every operation modifying it (starting a match,
+ * updating scores, terminating a match), so two snapshots with the same version show exactly
+ * the same board, and {@link Scoreboard#hasChangedSince(long)} tells in O(1) whether a
+ * snapshot is still up to date. A snapshot never changes after its creation, whatever
+ * happens to the scoreboard afterwards, and can be freely shared between threads.
+ */
+public class ScoreboardSnapshot {
+
+    /** Version of the scoreboard when the snapshot was taken. */
+    private final long version;
+
+    /** The ranked matches of the scoreboard, with their scores. */
+    private final RankingSnapshot ranking;
+
+    /** The rendered summary of the snapshot, computed on first use. */
+    private volatile String summary;
+
+    /**
+     * The ranking of the most recent previous snapshot of the board whose lines were
+     * rendered, from which the summary reuses the lines of the unchanged matches, or null.
+     * It is released once the summary is rendered, so the snapshots never form a chain.
+     */
+    private volatile RankingSnapshot renderedPredecessor;
+
+    /**
+     * Constructs a new snapshot. Snapshots are created by {@link Scoreboard#snapshot()}.
+     *
+     * @param version the version of the scoreboard
+     * @param ranking the copy of the ranking of the scoreboard at this version
+     */
+    ScoreboardSnapshot(long version, RankingSnapshot ranking) {
+        this(version, ranking, null);
+    }
+
+    /**
+     * Constructs a new snapshot following a previous snapshot of the same board, whose
+     * rendered lines are reused by the summary of the new snapshot.
+     *
+     * @param version the version of the scoreboard
+     * @param ranking the copy of the ranking of the scoreboard at this version
+     * @param predecessor the previous snapshot of the board, or null
+     */
+    ScoreboardSnapshot(long version, RankingSnapshot ranking, ScoreboardSnapshot predecessor) {
+        this.version = version;
+        this.ranking = ranking;
+        if (predecessor != null) {
+            // An unrendered predecessor is skipped, for its own rendered predecessor
+            this.renderedPredecessor = predecessor.ranking.hasRenderedLines() ? predecessor.ranking
+                : predecessor.renderedPredecessor;
+        }
+    }
+
+    /**
+     * Returns the version of the scoreboard when the snapshot was taken.
+     *
+     * @return the version of the snapshot
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Returns the number of ongoing matches of the snapshot.
+     *
+     * @return the number of matches
+     */
+    public int size() {
+        return this.ranking.size();
+    }
+
+    /**
+     * Returns the ongoing matches of the snapshot, in the summary order.
+     *
+     * @return an immutable list of match summaries
+     */
+    public List<MatchSummary> getMatches() {
+        return ScoreboardSnapshot.toMatchSummaries(this.ranking);
+    }
+
+    /**
+     * Returns the summary of the snapshot, in the format of {@link Scoreboard#getMatchesSummary()}.
+     * The summary is rendered once, and then returned as is by the following calls.
+     *
+     * @return a formatted string containing match summaries, separated by new lines
+     */
+    public String getMatchesSummary() {
+        // The snapshot is immutable, so concurrent first calls render the same
+        // summary, and it does not matter which one is kept.
+        String rendered = this.summary;
+        if (rendered == null) {
+            rendered = this.ranking.renderSummary(this.renderedPredecessor);
+            this.summary = rendered;
+            this.renderedPredecessor = null;
+        }
+        return rendered;
+    }
+
+    /**
+     * Tells whether the summary of the snapshot has already been rendered.
+     *
+     * @return true if {@link #getMatchesSummary()} returns without rendering anything
+     */
+    boolean isSummaryRendered() {
+        return this.summary != null;
+    }
+
+    /**
+     * Writes the summary of the snapshot to a character sink.
+     *
+     * @param out the destination of the summary
+     * @throws IOException if the destination fails to write
+     * @throws IllegalArgumentException if the destination is null
+     */
+    public void writeMatchesSummary(Appendable out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.ranking.appendTo(out);
+    }
+
+    /**
+     * Writes the UTF-8 encoded summary of the snapshot to a byte channel,
+     * which should be in blocking mode.
+     *
+     * @param channel the destination of the summary
+     * @throws IOException if the channel fails to write
+     * @throws IllegalArgumentException if the channel is null
+     */
+    public void writeMatchesSummary(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.ranking.writeTo(channel);
+    }
+
+    /**
+     * Returns the copy of the ranking held by the snapshot.
+     *
+     * @return the ranking of the snapshot
+     */
+    RankingSnapshot getRanking() {
+        return this.ranking;
+    }
+
+    /**
+     * Renders the summary of the matches of a ranking copy.
+     *
+     * @param ranking the matches to render
+     * @return a formatted string containing match summaries, separated by new lines
+     */
+    static String renderSummary(RankingSnapshot ranking) {
+        StringBuilder summary = new StringBuilder();
+        try {
+            ranking.appendTo(summary);
+        } catch (IOException e) {
+            // A StringBuilder never fails to append
+            throw new UncheckedIOException(e);
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Converts the matches of a ranking copy to immutable records.
+     *
+     * @param ranking the matches to convert
+     * @return an immutable list of match summaries
+     */
+    static List<MatchSummary> toMatchSummaries(RankingSnapshot ranking) {
+        MatchSummary[] summaries = new MatchSummary[ranking.size()];
+        for (int i = 0; i < summaries.length; i++) {
+            summaries[i] = new MatchSummary(ranking.getMatchId(i), ranking.getNameHomeTeam(i), ranking.getHomeScore(i),
+                ranking.getNameVisitorTeam(i), ranking.getVisitorScore(i));
+        }
+        return List.of(summaries);
+    }
+}
@@ -0,0 +1,703 @@
+package ScoreboardLib.api;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import ScoreboardLib.internal.MatchIdAllocator;
+import ScoreboardLib.internal.RankingMerge;
+import ScoreboardLib.internal.RankingSnapshot;
+import ScoreboardLib.internal.TeamRegistry;
+
+/**
+ * The {@code ShardedScoreboard} class manages ongoing football matches as the
+ * {@link Scoreboard} class does, with the same methods and the same results, but
+ * partitions them across several independent scoreboards (the shards), each one having
+ * its own lock.
+ * <p>
+ * A match lives in the shard given by its match ID, so the operations on a match (start,
+ * update, terminate) only lock its shard, and the operations on matches of different
+ * shards run in parallel: the write throughput grows with the number of shards, up to the
+ * number of available processors. The match IDs and start orders are allocated as for a
+ * {@link Scoreboard}, by a single allocator shared by the shards, so the IDs are unique
+ * across the shards, and the start orders, on which the summary order relies, are
+ * comparable across the shards. The shards share a single registry of teams, so a team
+ * has the same ID in all the shards.
+ * <p>
+ * The summaries merge the rankings of the shards, which are already sorted, in a
+ * fork-join k-way merge (see {@link RankingMerge}): the snapshots of the shards are taken,
+ * and then merged pairwise, in parallel. Each part of a summary is consistent with its
+ * shard, but the shards are not all copied at the same instant: a summary taken while
+ * matches of different shards are modified may show one modification without the other,
+ * even if the other one happened first.
+ * <p>
+ * The class is thread-safe. Unlike a {@link Scoreboard}, a sharded scoreboard is neither
+ * persistent nor observable (it does not offer journaling, exports, or change events),
+ * and a batch of updates ({@link #applyUpdates(ScoreUpdate...)}) is only atomic within
+ * each shard. Each shard has its own writer thread for the asynchronous modifications, so
+ * they are applied in parallel as well.
+ */
+public class ShardedScoreboard {
+
+    /** The shards, the match of ID {@code id} being stored by the shard {@code id % shards.length}. */
+    private final Scoreboard[] shards;
+
+    /** Registry of the teams, shared by all the shards. */
+    private final TeamRegistry teams;
+
+    /** The allocator of the IDs and start orders of the matches, shared by all the shards. */
+    private final MatchIdAllocator matchIds;
+
+    /**
+     * The most recent merged snapshot, which is returned again as long as no shard is
+     * modified.
+     */
+    private final AtomicReference<ScoreboardSnapshot> latestSnapshot;
+
+    /** Number of summaries returned from the cache, without any rendering. */
+    private final LongAdder summaryCacheHits;
+
+    /** Number of summaries which had to be rendered. */
+    private final LongAdder summaryCacheMisses;
+
+    /**
+     * Constructs a new {@code ShardedScoreboard}, storing its matches as objects.
+     *
+     * @param nbShards the number of shards, typically the number of processors
+     * @throws IllegalArgumentException if the number of shards is not positive
+     */
+    public ShardedScoreboard(int nbShards) {
+        this(nbShards, MatchStorage.OBJECTS);
+    }
+
+    /**
+     * Constructs a new {@code ShardedScoreboard}, storing the matches of its shards as
+     * requested.
+     *
+     * @param nbShards the number of shards, typically the number of processors
+     * @param storage how the matches are stored in memory
+     * @throws IllegalArgumentException if the number of shards is not positive, or the storage is null
+     */
+    public ShardedScoreboard(int nbShards, MatchStorage storage) {
+        this(nbShards, storage, new MatchIdAllocator(false));
+    }
+
+    /**
+     * Constructs a new {@code ShardedScoreboard}, whose shards allocate the IDs of their
+     * matches with the given allocator.
+     *
+     * @param nbShards the number of shards
+     * @param storage how the matches are stored in memory
+     * @param matchIds the allocator of the IDs of the matches
+     * @throws IllegalArgumentException if the number of shards is not positive, or the storage is null
+     */
+    private ShardedScoreboard(int nbShards, MatchStorage storage, MatchIdAllocator matchIds) {
+        if (nbShards <= 0) {
+            throw new IllegalArgumentException("The number of shards must be positive");
+        }
+        this.teams = new TeamRegistry();
+        this.latestSnapshot = new AtomicReference<>();
+        this.matchIds = matchIds;
+        this.shards = new Scoreboard[nbShards];
+        for (int i = 0; i < nbShards; i++) {
+            this.shards[i] = new Scoreboard(storage, this.teams, this.matchIds);
+        }
+        this.summaryCacheHits = new LongAdder();
+        this.summaryCacheMisses = new LongAdder();
+    }
+
+    /**
+     * Creates a new {@code ShardedScoreboard}, storing the matches of its shards as
+     * requested, which allocates the IDs of the terminated matches again to the next started
+     * matches, as {@link Scoreboard#withRecycledMatchIds(MatchStorage)} does.
+     *
+     * @param nbShards the number of shards, typically the number of processors
+     * @param storage how the matches are stored in memory
+     * @return the new sharded scoreboard
+     * @throws IllegalArgumentException if the number of shards is not positive, or the storage is null
+     */
+    public static ShardedScoreboard withRecycledMatchIds(int nbShards, MatchStorage storage) {
+        return new ShardedScoreboard(nbShards, storage, new MatchIdAllocator(true));
+    }
+
+    /**
+     * Returns the number of shards of the scoreboard.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Starts a new match with the given home and visitor team names.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return the unique match ID of the created match
+     * @throws IllegalArgumentException if team names are null, empty, or identical
+     */
+    public Integer startMatch(String nameHomeTeam, String nameVisitorTeam) {
+        int[] teamIds = this.registerTeams(nameHomeTeam, nameVisitorTeam);
+        long startOrder = this.matchIds.allocateStartOrder();
+        return this.startRegisteredMatch(this.allocateMatchId(startOrder), startOrder, teamIds[0], teamIds[1]);
+    }
+
+    /**
+     * Submits the start of a new match to the writer thread of its shard (see
+     * {@link Scoreboard#startMatchAsync(String, String)}), without waiting for it. The
+     * match ID is allocated at the submission, so the matches submitted one after the
+     * other keep their submission order, even if their shards start them in another order.
+     * The team names are validated beforehand, so invalid names never consume an ID.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return a future completed with the unique match ID of the created match, or completed
+     *         exceptionally with the exception thrown by the start
+     */
+    public CompletableFuture<Integer> startMatchAsync(String nameHomeTeam, String nameVisitorTeam) {
+        int[] teamIds;
+        try {
+            teamIds = this.registerTeams(nameHomeTeam, nameVisitorTeam);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long startOrder = this.matchIds.allocateStartOrder();
+        int idNewMatch = this.allocateMatchId(startOrder);
+        return this.shardOf(idNewMatch).submitWrite(() -> this.startRegisteredMatch(idNewMatch, startOrder,
+            teamIds[0], teamIds[1]));
+    }
+
+    /**
+     * Validates the names of the teams of a new match, and registers them, before any ID is
+     * allocated to the match.
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return the IDs of the home team and of the visiting team
+     * @throws IllegalArgumentException if team names are null, empty, or identical
+     */
+    private int[] registerTeams(String nameHomeTeam, String nameVisitorTeam) {
+        if (nameHomeTeam == null || nameVisitorTeam == null) {
+            throw new IllegalArgumentException("Team names must be non-null");
+        }
+        String trimmedNameHome = Scoreboard.trimTeamName(nameHomeTeam);
+        String trimmedNameVisitor = Scoreboard.trimTeamName(nameVisitorTeam);
+        if (trimmedNameHome.equals(trimmedNameVisitor)) {
+            throw new IllegalArgumentException("Invalid team names (the same for both teams)");
+        }
+        return new int[] {this.teams.intern(trimmedNameHome), this.teams.intern(trimmedNameVisitor)};
+    }
+
+    /**
+     * Starts a new match between two teams registered with {@link #registerTeam(String)},
+     * as {@link Scoreboard#startMatch(int, int)} does.
+     *
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the created match
+     * @throws IllegalArgumentException if a team ID is not registered, or both IDs are identical
+     */
+    public int startMatch(int homeTeamId, int visitorTeamId) {
+        if (!this.teams.contains(homeTeamId) || !this.teams.contains(visitorTeamId)) {
+            throw new IllegalArgumentException("Invalid team ID");
+        }
+        if (homeTeamId == visitorTeamId) {
+            throw new IllegalArgumentException("Invalid team IDs (the same for both teams)");
+        }
+        long startOrder = this.matchIds.allocateStartOrder();
+        return this.startRegisteredMatch(this.allocateMatchId(startOrder), startOrder, homeTeamId, visitorTeamId);
+    }
+
+    /**
+     * Starts a new match between two validated teams in the shard of its ID. In the unlikely
+     * case where the ID is taken by an ongoing match in the meantime, the match is started
+     * with the next free ID instead, possibly in another shard.
+     *
+     * @param idNewMatch the unique match ID allocated to the match
+     * @param startOrder the start order allocated to the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @return the unique match ID of the created match
+     */
+    private int startRegisteredMatch(int idNewMatch, long startOrder, int homeTeamId, int visitorTeamId) {
+        int startedMatchId = this.shardOf(idNewMatch).startRegisteredMatch(idNewMatch, startOrder, homeTeamId,
+            visitorTeamId);
+        while (startedMatchId < 0) {
+            long nextStartOrder = this.matchIds.allocateStartOrder();
+            int nextMatchId = this.allocateMatchId(nextStartOrder);
+            startedMatchId = this.shardOf(nextMatchId).startRegisteredMatch(nextMatchId, nextStartOrder, homeTeamId,
+                visitorTeamId);
+        }
+        return startedMatchId;
+    }
+
+    /**
+     * Allocates the ID of a new match, without any lock, skipping the IDs still used by an
+     * ongoing match once the IDs have wrapped around (see {@link Scoreboard#allocateMatchId(long)}).
+     *
+     * @param startOrder the start order allocated to the match
+     * @return the ID of the new match
+     */
+    private int allocateMatchId(long startOrder) {
+        int idNewMatch = this.matchIds.allocateMatchId(startOrder);
+        while (this.matchIds.hasWrapped() && this.shardOf(idNewMatch).isOngoing(idNewMatch)) {
+            idNewMatch = this.matchIds.allocateMatchId(this.matchIds.allocateStartOrder());
+        }
+        return idNewMatch;
+    }
+
+    /**
+     * Registers a team, so its matches can be started with {@link #startMatch(int, int)}.
+     *
+     * @param nameTeam the name of the team
+     * @return the ID of the team
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    public int registerTeam(String nameTeam) {
+        return this.teams.intern(Scoreboard.trimTeamName(nameTeam));
+    }
+
+    /**
+     * Returns the name of a registered team.
+     *
+     * @param teamId the ID of the team
+     * @return the (trimmed) name of the team
+     * @throws IllegalArgumentException if the team ID is not registered
+     */
+    public String getTeamName(int teamId) {
+        return this.shards[0].getTeamName(teamId);
+    }
+
+    /**
+     * Updates the score of an ongoing match.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @throws IllegalArgumentException if the match ID is null or invalid, or scores are null or negative
+     */
+    public void updateScore(Integer matchId, Integer scoreHomeTeam, Integer scoreVisitorTeam) {
+        if (matchId == null) {
+            throw new IllegalArgumentException("Trying to update a match with null ID");
+        }
+        this.shardOf(matchId).updateScore(matchId, scoreHomeTeam, scoreVisitorTeam);
+    }
+
+    /**
+     * Updates the score of an ongoing match, without boxing any of the arguments.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @throws IllegalArgumentException if the match ID is invalid, or scores are negative
+     */
+    public void updateScoreUnboxed(int matchId, int scoreHomeTeam, int scoreVisitorTeam) {
+        this.shardOf(matchId).updateScoreUnboxed(matchId, scoreHomeTeam, scoreVisitorTeam);
+    }
+
+    /**
+     * Updates the score of an ongoing match, unless the lock of its shard cannot be acquired
+     * within the given timeout (see {@link Scoreboard#tryUpdateScore(int, int, int, Duration)}).
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @param timeout the maximal time to wait for the lock (zero or negative to not wait at all)
+     * @return true if the score was updated, false if the timeout elapsed first
+     * @throws IllegalArgumentException if the timeout is null, the match ID is invalid, or
+     *         scores are negative
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+    public boolean tryUpdateScore(int matchId, int scoreHomeTeam, int scoreVisitorTeam, Duration timeout)
+            throws InterruptedException {
+        return this.shardOf(matchId).tryUpdateScore(matchId, scoreHomeTeam, scoreVisitorTeam, timeout);
+    }
+
+    /**
+     * Submits the update of the score of an ongoing match to the writer thread of its shard
+     * (see {@link Scoreboard#updateScoreAsync(Integer, Integer, Integer)}), without waiting
+     * for it.
+     *
+     * @param matchId the unique ID of the match
+     * @param scoreHomeTeam the updated score for the home team
+     * @param scoreVisitorTeam the updated score for the visiting team
+     * @return a future completed once the score is updated, or completed exceptionally with
+     *         the exception thrown by the update
+     */
+    public CompletableFuture<Void> updateScoreAsync(Integer matchId, Integer scoreHomeTeam, Integer scoreVisitorTeam) {
+        if (matchId == null) {
+            return CompletableFuture.failedFuture(
+                new IllegalArgumentException("Trying to update a match with null ID"));
+        }
+        return this.shardOf(matchId).updateScoreAsync(matchId, scoreHomeTeam, scoreVisitorTeam);
+    }
+
+    /**
+     * Applies a batch of score updates. The updates are grouped by shard, and each group is
+     * applied atomically by its shard (see {@link Scoreboard#applyUpdates(ScoreUpdate...)}),
+     * but the groups are applied one after the other: if a match ID is invalid, the groups
+     * of the shards preceding its own may already be applied.
+     *
+     * @param batch the score updates to apply
+     * @throws IllegalArgumentException if the batch or one of its updates is null, if a
+     *         match ID is invalid, or if a score is negative
+     */
+    public void applyUpdates(ScoreUpdate... batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Trying to apply a null batch of updates");
+        }
+        // The null updates and negative scores are rejected before any shard is modified
+        List<List<ScoreUpdate>> groups = new ArrayList<>();
+        for (int i = 0; i < this.shards.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (ScoreUpdate update : batch) {
+            if (update == null) {
+                throw new IllegalArgumentException("Trying to apply a null update");
+            }
+            if (update.scoreHomeTeam() < 0 || update.scoreVisitorTeam() < 0) {
+                throw new IllegalArgumentException("Trying to provide a negative score");
+            }
+            groups.get(Math.floorMod(update.matchId(), this.shards.length)).add(update);
+        }
+        for (int i = 0; i < this.shards.length; i++) {
+            if (!groups.get(i).isEmpty()) {
+                this.shards[i].applyUpdates(groups.get(i).toArray(new ScoreUpdate[0]));
+            }
+        }
+    }
+
+    /**
+     * Terminates a match and removes it from the scoreboard.
+     *
+     * @param matchId the unique ID of the match to be terminated
+     * @throws IllegalArgumentException if the match ID is null or invalid
+     */
+    public void terminateMatch(Integer matchId) {
+        if (matchId == null) {
+            throw new IllegalArgumentException("Trying to terminate a match with null ID");
+        }
+        this.shardOf(matchId).terminateMatch(matchId);
+    }
+
+    /**
+     * Submits the termination of a match to the writer thread of its shard (see
+     * {@link Scoreboard#terminateMatchAsync(Integer)}), without waiting for it.
+     *
+     * @param matchId the unique ID of the match to be terminated
+     * @return a future completed once the match is terminated, or completed exceptionally
+     *         with the exception thrown by the termination
+     */
+    public CompletableFuture<Void> terminateMatchAsync(Integer matchId) {
+        if (matchId == null) {
+            return CompletableFuture.failedFuture(
+                new IllegalArgumentException("Trying to terminate a match with null ID"));
+        }
+        return this.shardOf(matchId).terminateMatchAsync(matchId);
+    }
+
+    /**
+     * Enables a secondary index of the ongoing matches in all the shards (see
+     * {@link Scoreboard#enableIndex(MatchIndex)}).
+     *
+     * @param index the index to enable
+     * @throws IllegalArgumentException if the index is null
+     */
+    public void enableIndex(MatchIndex index) {
+        for (Scoreboard shard : this.shards) {
+            shard.enableIndex(index);
+        }
+    }
+
+    /**
+     * Disables a secondary index of the ongoing matches in all the shards (see
+     * {@link Scoreboard#disableIndex(MatchIndex)}).
+     *
+     * @param index the index to disable
+     * @throws IllegalArgumentException if the index is null
+     */
+    public void disableIndex(MatchIndex index) {
+        for (Scoreboard shard : this.shards) {
+            shard.disableIndex(index);
+        }
+    }
+
+    /**
+     * Tells whether a secondary index of the ongoing matches is enabled.
+     *
+     * @param index the index
+     * @return true if the index is enabled
+     * @throws IllegalArgumentException if the index is null
+     */
+    public boolean isIndexEnabled(MatchIndex index) {
+        return this.shards[0].isIndexEnabled(index);
+    }
+
+    /**
+     * Returns the IDs of the ongoing matches of a team, whether it plays at home or as
+     * visitor (see {@link Scoreboard#findMatchesByTeam(String)}).
+     *
+     * @param nameTeam the name of the team
+     * @return the IDs of the matches of the team, in start order (empty if the team is unknown)
+     * @throws IllegalArgumentException if the name is null or empty
+     */
+    public List<Integer> findMatchesByTeam(String nameTeam) {
+        List<Integer> matchIds = new ArrayList<>();
+        for (Scoreboard shard : this.shards) {
+            matchIds.addAll(shard.findMatchesByTeam(nameTeam));
+        }
+        matchIds.sort(null);
+        return List.copyOf(matchIds);
+    }
+
+    /**
+     * Returns the ongoing match between two teams (see
+     * {@link Scoreboard#findActiveMatch(String, String)}).
+     *
+     * @param nameHomeTeam the name of the home team
+     * @param nameVisitorTeam the name of the visiting team
+     * @return the ID of the most recently started ongoing match between these home and
+     *         visiting teams, or null if there is none
+     * @throws IllegalArgumentException if a team name is null or empty
+     */
+    public Integer findActiveMatch(String nameHomeTeam, String nameVisitorTeam) {
+        Integer lastMatchId = null;
+        for (Scoreboard shard : this.shards) {
+            Integer matchId = shard.findActiveMatch(nameHomeTeam, nameVisitorTeam);
+            if (matchId != null && (lastMatchId == null || matchId > lastMatchId)) {
+                lastMatchId = matchId;
+            }
+        }
+        return lastMatchId;
+    }
+
+    /**
+     * Returns the IDs of the ongoing matches started after a given match (see
+     * {@link Scoreboard#getMatchIdsStartedAfter(int)}).
+     *
+     * @param matchId the ID of the match after which the matches are returned
+     * @return the IDs of the matches started after the given one, in start order
+     */
+    public List<Integer> getMatchIdsStartedAfter(int matchId) {
+        List<Integer> matchIds = new ArrayList<>();
+        for (Scoreboard shard : this.shards) {
+            matchIds.addAll(shard.getMatchIdsStartedAfter(matchId));
+        }
+        matchIds.sort(null);
+        return List.copyOf(matchIds);
+    }
+
+    /**
+     * Retrieves a summary of all ongoing matches, in the order and format of
+     * {@link Scoreboard#getMatchesSummary()}.
+     * <p>
+     * The rendered summary is cached until the next modification of a shard.
+     *
+     * @return a formatted string containing match summaries, separated by new lines
+     */
+    public String getMatchesSummary() {
+        ScoreboardSnapshot snapshot = this.snapshot();
+        if (snapshot.isSummaryRendered()) {
+            this.summaryCacheHits.increment();
+        } else {
+            this.summaryCacheMisses.increment();
+        }
+        return snapshot.getMatchesSummary();
+    }
+
+    /**
+     * Returns the number of calls to {@link #getMatchesSummary()} which were served from the
+     * cache, since the creation of the scoreboard.
+     *
+     * @return the number of summary cache hits
+     */
+    public long getSummaryCacheHits() {
+        return this.summaryCacheHits.sum();
+    }
+
+    /**
+     * Returns the number of calls to {@link #getMatchesSummary()} which had to render the
+     * summary, since the creation of the scoreboard.
+     *
+     * @return the number of summary cache misses
+     */
+    public long getSummaryCacheMisses() {
+        return this.summaryCacheMisses.sum();
+    }
+
+    /**
+     * Retrieves a summary of the {@code k} highest ranked ongoing matches. Only the
+     * {@code k} highest ranked matches of each shard are copied and merged.
+     *
+     * @param k the maximal number of matches of the summary
+     * @return a formatted string containing match summaries, separated by new lines
+     * @throws IllegalArgumentException if k is negative
+     */
+    public String getTopMatches(int k) {
+        return this.getMatchesPage(0, k);
+    }
+
+    /**
+     * Retrieves a page of the summary of the ongoing matches, as
+     * {@link Scoreboard#getMatchesPage(int, int)} does. Only the {@code offset + limit}
+     * highest ranked matches of each shard are copied and merged.
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return a formatted string containing match summaries, separated by new lines
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public String getMatchesPage(int offset, int limit) {
+        return ScoreboardSnapshot.renderSummary(this.mergePage(offset, limit));
+    }
+
+    /**
+     * Retrieves the {@code k} highest ranked ongoing matches, as immutable records.
+     *
+     * @param k the maximal number of returned matches
+     * @return an immutable list of match summaries
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<MatchSummary> getTopMatchSummaries(int k) {
+        return this.getMatchSummariesPage(0, k);
+    }
+
+    /**
+     * Retrieves a page of the ongoing matches, as immutable records, as
+     * {@link Scoreboard#getMatchSummariesPage(int, int)} does.
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return an immutable list of match summaries
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    public List<MatchSummary> getMatchSummariesPage(int offset, int limit) {
+        return ScoreboardSnapshot.toMatchSummaries(this.mergePage(offset, limit));
+    }
+
+    /**
+     * Writes the summary of all ongoing matches to a character sink, line by line.
+     *
+     * @param out the destination of the summary
+     * @throws IOException if the destination fails to write
+     * @throws IllegalArgumentException if the destination is null
+     */
+    public void writeMatchesSummary(Appendable out) throws IOException {
+        if (out == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.snapshot().writeMatchesSummary(out);
+    }
+
+    /**
+     * Writes the UTF-8 encoded summary of all ongoing matches to a byte channel.
+     *
+     * @param channel the destination of the summary
+     * @throws IOException if the channel fails to write
+     * @throws IllegalArgumentException if the channel is null
+     */
+    public void writeMatchesSummary(WritableByteChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("Trying to write the summary to a null destination");
+        }
+        this.snapshot().writeMatchesSummary(channel);
+    }
+
+    /**
+     * Takes an immutable snapshot of the scoreboard, merging the snapshots of the shards.
+     * Each shard is copied consistently (see {@link Scoreboard#snapshot()}), and the
+     * version of the snapshot is the sum of the versions of the shard snapshots.
+     * <p>
+     * The snapshot is reused as long as no shard is modified, in which case this method
+     * is O(number of shards).
+     *
+     * @return the snapshot of the scoreboard, with its version
+     */
+    public ScoreboardSnapshot snapshot() {
+        ScoreboardSnapshot latest = this.latestSnapshot.get();
+        if (latest != null && latest.getVersion() == this.getVersion()) {
+            return latest;
+        }
+
+        long[] shardVersions = new long[this.shards.length];
+        RankingSnapshot ranking = RankingMerge.merge(shard -> {
+            ScoreboardSnapshot shardSnapshot = this.shards[shard].snapshot();
+            shardVersions[shard] = shardSnapshot.getVersion();
+            return shardSnapshot.getRanking();
+        }, this.shards.length, 0, Integer.MAX_VALUE);
+        long version = 0L;
+        for (long shardVersion : shardVersions) {
+            version += shardVersion;
+        }
+        ScoreboardSnapshot snapshot = new ScoreboardSnapshot(version, ranking, latest);
+        // The versions of the shards only increase, so a greater sum is a more recent snapshot,
+        // and the snapshot is only published over an older one, compared and set atomically
+        ScoreboardSnapshot published = latest;
+        while ((published == null || snapshot.getVersion() > published.getVersion())
+                && !this.latestSnapshot.compareAndSet(published, snapshot)) {
+            published = this.latestSnapshot.get();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the current version of the scoreboard, the sum of the versions of its shards.
+     * The version is increased by every operation modifying the scoreboard.
+     *
+     * @return the current version
+     */
+    public long getVersion() {
+        long version = 0L;
+        for (Scoreboard shard : this.shards) {
+            version += shard.getVersion();
+        }
+        return version;
+    }
+
+    /**
+     * Tells whether the scoreboard was modified since the given version.
+     *
+     * @param version a version previously returned by {@link #getVersion()} or
+     *                {@link ScoreboardSnapshot#getVersion()}
+     * @return true if the scoreboard has been modified since this version
+     */
+    public boolean hasChangedSince(long version) {
+        return this.getVersion() != version;
+    }
+
+    /**
+     * Returns the shard storing a match.
+     *
+     * @param matchId the unique ID of the match (possibly invalid)
+     * @return the shard of the match
+     */
+    private Scoreboard shardOf(int matchId) {
+        return this.shards[Math.floorMod(matchId, this.shards.length)];
+    }
+
+    /**
+     * Merges the highest ranked matches of the shards into a page of the summary.
+     *
+     * @param offset the position of the first match of the page
+     * @param limit the maximal number of matches of the page
+     * @return the page of the merged ranking
+     * @throws IllegalArgumentException if the offset or the limit is negative
+     */
+    private RankingSnapshot mergePage(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Trying to get a page with a negative offset");
+        }
+        if (limit < 0) {
+            throw new IllegalArgumentException("Trying to get a negative number of matches");
+        }
+        // Any match of the page is among the offset + limit highest ranked matches of its shard
+        int shardLimit = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        return RankingMerge.merge(shard -> this.shards[shard].takeSnapshot(0, shardLimit).getRanking(),
+            this.shards.length, offset, limit);
+    }
+}
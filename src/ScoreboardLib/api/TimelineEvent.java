@@ -0,0 +1,40 @@
+package ScoreboardLib.api;
+
+import java.time.Instant;
+
+/**
+ * The {@code TimelineEvent} record is a change of a match recorded by the history of a
+ * {@link Scoreboard} (see {@link Scoreboard#enableHistory()}): its start, a change of its
+ * scores (a goal, or a correction), or its termination.
+ * <p>
+ * As the {@link ScoreboardEvent}s, every event carries the version of the scoreboard right
+ * after the change. The changes applied together by {@link Scoreboard#applyUpdates} share
+ * the same version.
+ *
+ * @param version the version of the scoreboard right after the change
+ * @param timestamp the time of the change
+ * @param matchId the unique ID of the match
+ * @param kind the kind of the change
+ * @param nameHomeTeam the name of the home team
+ * @param nameVisitorTeam the name of the visiting team
+ * @param scoreHomeTeam the score of the home team after the change
+ * @param scoreVisitorTeam the score of the visiting team after the change
+ */
+public record TimelineEvent(long version, Instant timestamp, int matchId, Kind kind, String nameHomeTeam,
+                            String nameVisitorTeam, int scoreHomeTeam, int scoreVisitorTeam) {
+
+    /**
+     * The {@code Kind} enumeration defines the changes recorded by the history of a scoreboard.
+     */
+    public enum Kind {
+
+        /** The match has been started, with a score of 0 - 0. */
+        STARTED,
+
+        /** The scores of the match have changed. */
+        SCORE_CHANGED,
+
+        /** The match has been terminated, with its final scores. */
+        TERMINATED
+    }
+}
@@ -0,0 +1,199 @@
+package ScoreboardLib.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code CommandRing} class is a bounded queue of commands modifying a scoreboard,
+ * which any number of producer threads publish, and a single consumer thread drains.
+ * <p>
+ * A command is made of 4 integers (its kind, a match ID and two arguments) and the start
+ * order of the match it starts, if any, stored in arrays pre-allocated once for all, so publishing and draining commands never allocate
+ * any memory. Each slot of the ring holds a sequence number telling whether it is free or
+ * published: the producers claim their slots with a single compare-and-set of the tail of
+ * the ring, and publish the fields of their commands by releasing the sequence of their
+ * slots, so they never wait for each other, nor for the consumer (unless the ring is full).
+ * <p>
+ * The ring is thread-safe for the producers, but {@link #drainTo} must only be called by
+ * a single consumer thread.
+ */
+public class CommandRing {
+
+    /** Kind of the commands starting a match (the arguments are the IDs of the teams). */
+    public static final int START = 0;
+
+    /** Kind of the commands updating a score (the arguments are the new scores). */
+    public static final int UPDATE = 1;
+
+    /** Kind of the commands terminating a match (the arguments are ignored). */
+    public static final int TERMINATE = 2;
+
+    /** Number of slots of the ring (a power of 2). */
+    private final int capacity;
+
+    /** Mask turning a sequence number into the index of its slot. */
+    private final int mask;
+
+    /** The kinds of the commands, by slot. */
+    private final int[] kinds;
+
+    /** The match IDs of the commands, by slot. */
+    private final int[] matchIds;
+
+    /** The first arguments of the commands, by slot. */
+    private final int[] args1;
+
+    /** The second arguments of the commands, by slot. */
+    private final int[] args2;
+
+    /** The start orders of the matches started by the commands, by slot. */
+    private final long[] startOrders;
+
+    /**
+     * The sequence numbers of the slots: the slot of the sequence number {@code s} is free
+     * for the producer claiming {@code s} when it holds {@code s}, and published for the
+     * consumer when it holds {@code s + 1}.
+     */
+    private final AtomicLongArray sequences;
+
+    /** The sequence number of the next slot claimed by a producer. */
+    private final AtomicLong tail;
+
+    /** The sequence number of the next command drained by the consumer (only written by it). */
+    private volatile long head;
+
+    /**
+     * Constructs a new, empty {@code CommandRing}.
+     *
+     * @param minCapacity the minimal number of commands the ring can hold, rounded up to a
+     *        power of 2 (at least 1, at most 2^30)
+     */
+    public CommandRing(int minCapacity) {
+        this.capacity = Integer.highestOneBit(Math.max(1, minCapacity - 1)) << (minCapacity > 1 ? 1 : 0);
+        this.mask = this.capacity - 1;
+        this.kinds = new int[this.capacity];
+        this.matchIds = new int[this.capacity];
+        this.args1 = new int[this.capacity];
+        this.args2 = new int[this.capacity];
+        this.startOrders = new long[this.capacity];
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            this.sequences.set(i, i);
+        }
+        this.tail = new AtomicLong();
+        this.head = 0L;
+    }
+
+    /**
+     * Returns the number of commands the ring can hold.
+     *
+     * @return the capacity of the ring
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Publishes a command, unless the ring is full.
+     *
+     * @param kind the kind of the command ({@link #START}, {@link #UPDATE} or {@link #TERMINATE})
+     * @param matchId the ID of the match
+     * @param arg1 the first argument of the command
+     * @param arg2 the second argument of the command
+     * @param startOrder the start order allocated to the match started by the command (0
+     *        for the other commands)
+     * @return true if the command was published, false if the ring is full
+     */
+    public boolean offer(int kind, int matchId, int arg1, int arg2, long startOrder) {
+        while (true) {
+            long claimed = this.tail.get();
+            int slot = (int) claimed & this.mask;
+            long sequence = this.sequences.get(slot);
+            if (sequence < claimed) {
+                // The slot still holds the command published a lap before, not yet drained
+                return false;
+            }
+            if (sequence == claimed && this.tail.compareAndSet(claimed, claimed + 1)) {
+                this.kinds[slot] = kind;
+                this.matchIds[slot] = matchId;
+                this.args1[slot] = arg1;
+                this.args2[slot] = arg2;
+                this.startOrders[slot] = startOrder;
+                // Releasing the sequence publishes the fields written above
+                this.sequences.lazySet(slot, claimed + 1);
+                return true;
+            }
+            // Another producer claimed the slot first: we try the next one
+        }
+    }
+
+    /**
+     * Drains the published commands, in publication order, into the given arrays. Stops
+     * at the first slot claimed by a producer which has not published its command yet.
+     * Must only be called by the consumer thread.
+     *
+     * @param kinds receives the kinds of the commands
+     * @param matchIds receives the match IDs of the commands
+     * @param args1 receives the first arguments of the commands
+     * @param args2 receives the second arguments of the commands
+     * @param startOrders receives the start orders of the matches started by the commands
+     * @param maxCommands the maximal number of commands to drain
+     * @return the number of drained commands
+     */
+    public int drainTo(int[] kinds, int[] matchIds, int[] args1, int[] args2, long[] startOrders,
+            int maxCommands) {
+        long next = this.head;
+        int count = 0;
+        while (count < maxCommands) {
+            int slot = (int) next & this.mask;
+            if (this.sequences.get(slot) != next + 1) {
+                break;
+            }
+            kinds[count] = this.kinds[slot];
+            matchIds[count] = this.matchIds[slot];
+            args1[count] = this.args1[slot];
+            args2[count] = this.args2[slot];
+            startOrders[count] = this.startOrders[slot];
+            // The slot is freed for the producer claiming it at the next lap
+            this.sequences.lazySet(slot, next + this.capacity);
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            this.head = next;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sequence number of the next slot claimed by a producer, i.e. the number
+     * of commands claimed since the creation of the ring.
+     *
+     * @return the tail of the ring
+     */
+    public long getTail() {
+        return this.tail.get();
+    }
+
+    /**
+     * Returns the sequence number of the next command to drain, i.e. the number of
+     * commands drained since the creation of the ring.
+     *
+     * @return the head of the ring
+     */
+    public long getHead() {
+        return this.head;
+    }
+
+    /**
+     * Returns the number of commands waiting in the ring (including the ones claimed by a
+     * producer, and not yet published). The result is only an estimate while the ring is
+     * used concurrently.
+     *
+     * @return the number of waiting commands
+     */
+    public int size() {
+        long head = this.head;
+        return (int) Math.max(0L, Math.min(this.tail.get() - head, this.capacity));
+    }
+}
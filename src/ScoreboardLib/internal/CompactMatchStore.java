@@ -0,0 +1,499 @@
+package ScoreboardLib.internal;
+
+import java.util.Arrays;
+
+/**
+ * The {@code CompactMatchStore} class stores the ongoing matches in parallel arrays of
+ * primitive values, rather than as objects, for the boards holding millions of matches.
+ * <p>
+ * A match is a record spread over the arrays, at the same index (its handle): its ID, its
+ * start order, the IDs of its teams, its packed scores, and its links in the ranking, which is an
+ * order-statistic treap as in {@link MatchRanking} (same ordering, same priorities), whose
+ * children are designated by their index rather than by a reference. The records of the
+ * terminated matches are chained in a free list, and reused by the next started matches.
+ * The matches are indexed by their ID in an open-addressing table of indexes.
+ * <p>
+ * A match costs 40 bytes in the record arrays (plus the unused records following their
+ * last growth, at most a third of them), and 5 to 11 bytes in the index. The store is
+ * made of 9 arrays whatever its number of matches: neither starting, updating nor
+ * terminating a match allocates anything (besides the occasional growth of the arrays),
+ * and the garbage collector has no match object to trace.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class CompactMatchStore extends MatchStore {
+
+    /** Initial number of records of the arrays. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The index designating no record (the null link of the treap). */
+    private static final int NONE = -1;
+
+    /** The IDs of the matches, indexed by record. */
+    private int[] matchIds;
+
+    /** The start orders of the matches, indexed by record. */
+    private long[] startOrders;
+
+    /** The IDs of the home teams of the matches, indexed by record. */
+    private int[] homeTeamIds;
+
+    /** The IDs of the visiting teams of the matches, indexed by record. */
+    private int[] visitorTeamIds;
+
+    /** The packed scores of the matches, indexed by record. */
+    private long[] scores;
+
+    /** The left children of the records in the treap, or the next free record for a free record. */
+    private int[] rankLeft;
+
+    /** The right children of the records in the treap. */
+    private int[] rankRight;
+
+    /** The sizes of the subtrees rooted at the records (0 for a record which is not ranked). */
+    private int[] rankSize;
+
+    /**
+     * The open-addressing table indexing the records by match ID: each slot contains the
+     * index of a record plus one, 0 being an empty slot.
+     */
+    private int[] slots;
+
+    /** Root record of the treap, or {@link #NONE} if the ranking is empty. */
+    private int root;
+
+    /** Number of records used so far, stored matches and free records included. */
+    private int nbRecords;
+
+    /** First record of the free list, or {@link #NONE} if no record is free. */
+    private int firstFreeRecord;
+
+    /** Number of stored matches. */
+    private int nbMatches;
+
+    /**
+     * Constructs a new, empty {@code CompactMatchStore}.
+     *
+     * @param teams the registry of the teams of the stored matches
+     */
+    public CompactMatchStore(TeamRegistry teams) {
+        super(teams);
+        this.matchIds = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.startOrders = new long[CompactMatchStore.INITIAL_CAPACITY];
+        this.homeTeamIds = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.visitorTeamIds = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.scores = new long[CompactMatchStore.INITIAL_CAPACITY];
+        this.rankLeft = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.rankRight = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.rankSize = new int[CompactMatchStore.INITIAL_CAPACITY];
+        this.slots = new int[2 * CompactMatchStore.INITIAL_CAPACITY];
+        this.root = CompactMatchStore.NONE;
+        this.nbRecords = 0;
+        this.firstFreeRecord = CompactMatchStore.NONE;
+        this.nbMatches = 0;
+    }
+
+    @Override
+    public int find(int matchId) {
+        int mask = this.slots.length - 1;
+        for (int slot = MatchTable.hash(matchId) & mask; ; slot = (slot + 1) & mask) {
+            int record = this.slots[slot] - 1;
+            if (record < 0 || this.matchIds[record] == matchId) {
+                return record;
+            }
+        }
+    }
+
+    @Override
+    public int add(int matchId, long startOrder, int homeTeamId, int visitorTeamId) {
+        int record = this.allocateRecord(matchId, startOrder, homeTeamId, visitorTeamId, 0L);
+        this.rank(record);
+        return record;
+    }
+
+    @Override
+    public void removeAt(int record) {
+        if (this.isRanked(record)) {
+            this.unrank(record);
+        }
+
+        // As in a MatchTable, rather than leaving a tombstone, the following records of the
+        // probe sequence are shifted back, so the lookups never have to skip deleted slots.
+        int mask = this.slots.length - 1;
+        int slot = MatchTable.hash(this.matchIds[record]) & mask;
+        while (this.slots[slot] != record + 1) {
+            slot = (slot + 1) & mask;
+        }
+        int hole = slot;
+        for (int next = (hole + 1) & mask; this.slots[next] != 0; next = (next + 1) & mask) {
+            int home = MatchTable.hash(this.matchIds[this.slots[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.slots[hole] = this.slots[next];
+                hole = next;
+            }
+        }
+        this.slots[hole] = 0;
+
+        this.rankLeft[record] = this.firstFreeRecord;
+        this.firstFreeRecord = record;
+        this.nbMatches--;
+    }
+
+    @Override
+    public int getMatchId(int record) {
+        return this.matchIds[record];
+    }
+
+    @Override
+    public long getStartOrder(int record) {
+        return this.startOrders[record];
+    }
+
+    @Override
+    public int getHomeTeamId(int record) {
+        return this.homeTeamIds[record];
+    }
+
+    @Override
+    public int getVisitorTeamId(int record) {
+        return this.visitorTeamIds[record];
+    }
+
+    @Override
+    public long getScores(int record) {
+        return this.scores[record];
+    }
+
+    @Override
+    public void setScores(int record, long scores) {
+        boolean ranked = this.isRanked(record);
+        if (ranked) {
+            this.unrank(record);
+        }
+        this.scores[record] = scores;
+        if (ranked) {
+            this.rank(record);
+        }
+    }
+
+    @Override
+    public boolean isRanked(int record) {
+        return this.rankSize[record] > 0;
+    }
+
+    @Override
+    public void rank(int record) {
+        this.rankLeft[record] = CompactMatchStore.NONE;
+        this.rankRight[record] = CompactMatchStore.NONE;
+        this.rankSize[record] = 1;
+        this.root = this.insert(this.root, record);
+    }
+
+    @Override
+    public void unrank(int record) {
+        this.root = this.remove(this.root, record);
+        this.rankLeft[record] = CompactMatchStore.NONE;
+        this.rankRight[record] = CompactMatchStore.NONE;
+        this.rankSize[record] = 0;
+    }
+
+    @Override
+    public int rankOf(int record) {
+        int rank = 0;
+        int node = this.root;
+        while (node != CompactMatchStore.NONE) {
+            int comparison = this.compare(record, node);
+            if (comparison == 0) {
+                return rank + this.sizeOf(this.rankLeft[node]);
+            }
+            if (comparison < 0) {
+                node = this.rankLeft[node];
+            } else {
+                rank += this.sizeOf(this.rankLeft[node]) + 1;
+                node = this.rankRight[node];
+            }
+        }
+        throw new IllegalStateException("Trying to get the position of a match which is not ranked");
+    }
+
+    @Override
+    public int copyTo(int firstRank, int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                      long[] scores) {
+        // A consistent tree never needs more visits than it has records
+        int[] remainingVisits = {this.sizeOf(this.root)};
+        return this.copyTo(this.root, firstRank, matchIds, startOrders, homeTeamIds, visitorTeamIds, scores, 0,
+            remainingVisits);
+    }
+
+    @Override
+    public int copyTeamsTo(int[] matchIds, int[] homeTeamIds, int[] visitorTeamIds) {
+        int nbCopied = 0;
+        // The free records are not indexed, so the stored ones are found through the index
+        for (int slot = 0; slot < this.slots.length && nbCopied < matchIds.length; slot++) {
+            if (this.slots[slot] != 0) {
+                int record = this.slots[slot] - 1;
+                matchIds[nbCopied] = this.matchIds[record];
+                homeTeamIds[nbCopied] = this.homeTeamIds[record];
+                visitorTeamIds[nbCopied] = this.visitorTeamIds[record];
+                nbCopied++;
+            }
+        }
+        return nbCopied;
+    }
+
+    /**
+     * Fills an empty store with matches already sorted in the summary order. The records
+     * are allocated in the summary order, and the treap is built in O(n) as in
+     * {@link MatchRanking#buildFrom(Match[])}.
+     */
+    @Override
+    public void buildFrom(int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                          long[] scores) {
+        int[] spine = new int[matchIds.length];
+        int height = 0;
+        for (int i = 0; i < matchIds.length; i++) {
+            int record = this.allocateRecord(matchIds[i], startOrders[i], homeTeamIds[i], visitorTeamIds[i],
+                scores[i]);
+            int priority = MatchRanking.priorityOf(matchIds[i]);
+            this.rankRight[record] = CompactMatchStore.NONE;
+            this.rankSize[record] = 1;
+            int lastPopped = CompactMatchStore.NONE;
+            while (height > 0 && MatchRanking.priorityOf(this.matchIds[spine[height - 1]]) < priority) {
+                lastPopped = spine[--height];
+                this.updateSize(lastPopped);
+            }
+            this.rankLeft[record] = lastPopped;
+            if (height > 0) {
+                this.rankRight[spine[height - 1]] = record;
+            }
+            spine[height++] = record;
+        }
+        while (height > 0) {
+            this.updateSize(spine[--height]);
+        }
+        this.root = (matchIds.length > 0) ? spine[0] : CompactMatchStore.NONE;
+    }
+
+    @Override
+    public int size() {
+        return this.nbMatches;
+    }
+
+    /**
+     * Allocates the record of a new match, reusing a free record if there is one, and
+     * indexes it. The record is not ranked.
+     *
+     * @return the index of the record
+     */
+    private int allocateRecord(int matchId, long startOrder, int homeTeamId, int visitorTeamId, long scores) {
+        int record = this.firstFreeRecord;
+        if (record != CompactMatchStore.NONE) {
+            this.firstFreeRecord = this.rankLeft[record];
+        } else {
+            if (this.nbRecords == this.matchIds.length) {
+                this.growRecords();
+            }
+            record = this.nbRecords++;
+        }
+        this.matchIds[record] = matchId;
+        this.startOrders[record] = startOrder;
+        this.homeTeamIds[record] = homeTeamId;
+        this.visitorTeamIds[record] = visitorTeamId;
+        this.scores[record] = scores;
+        this.rankLeft[record] = CompactMatchStore.NONE;
+        this.rankRight[record] = CompactMatchStore.NONE;
+        this.rankSize[record] = 0;
+
+        // The load factor of the index is kept under 3/4, rather than 1/2 in a MatchTable,
+        // as its slots are a significant part of the memory of a match.
+        this.nbMatches++;
+        if (4 * this.nbMatches > 3 * this.slots.length) {
+            this.resizeSlots(2 * this.slots.length);
+        }
+        this.indexRecord(this.slots, record);
+        return record;
+    }
+
+    /**
+     * Grows the record arrays by half of their length, as the arrays of an {@code ArrayList},
+     * which bounds the unused records to a third of the arrays.
+     */
+    private void growRecords() {
+        int capacity = this.matchIds.length + (this.matchIds.length >> 1);
+        this.matchIds = Arrays.copyOf(this.matchIds, capacity);
+        this.startOrders = Arrays.copyOf(this.startOrders, capacity);
+        this.homeTeamIds = Arrays.copyOf(this.homeTeamIds, capacity);
+        this.visitorTeamIds = Arrays.copyOf(this.visitorTeamIds, capacity);
+        this.scores = Arrays.copyOf(this.scores, capacity);
+        this.rankLeft = Arrays.copyOf(this.rankLeft, capacity);
+        this.rankRight = Arrays.copyOf(this.rankRight, capacity);
+        this.rankSize = Arrays.copyOf(this.rankSize, capacity);
+    }
+
+    /**
+     * Reallocates the slots of the index.
+     *
+     * @param capacity the new number of slots (must be a power of 2)
+     */
+    private void resizeSlots(int capacity) {
+        int[] newSlots = new int[capacity];
+        for (int slot : this.slots) {
+            if (slot != 0) {
+                this.indexRecord(newSlots, slot - 1);
+            }
+        }
+        this.slots = newSlots;
+    }
+
+    private void indexRecord(int[] slots, int record) {
+        int mask = slots.length - 1;
+        int slot = MatchTable.hash(this.matchIds[record]) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = record + 1;
+    }
+
+    /**
+     * Compares two records in the summary order.
+     */
+    private int compare(int record, int otherRecord) {
+        return Match.compare(this.startOrders[record], this.scores[record], this.startOrders[otherRecord],
+            this.scores[otherRecord]);
+    }
+
+    private int priorityOf(int record) {
+        return MatchRanking.priorityOf(this.matchIds[record]);
+    }
+
+    private int sizeOf(int node) {
+        return (node == CompactMatchStore.NONE) ? 0 : this.rankSize[node];
+    }
+
+    private void updateSize(int node) {
+        this.rankSize[node] = 1 + this.sizeOf(this.rankLeft[node]) + this.sizeOf(this.rankRight[node]);
+    }
+
+    private int rotateRight(int node) {
+        int left = this.rankLeft[node];
+        this.rankLeft[node] = this.rankRight[left];
+        this.rankRight[left] = node;
+        this.updateSize(node);
+        this.updateSize(left);
+        return left;
+    }
+
+    private int rotateLeft(int node) {
+        int right = this.rankRight[node];
+        this.rankRight[node] = this.rankLeft[right];
+        this.rankLeft[right] = node;
+        this.updateSize(node);
+        this.updateSize(right);
+        return right;
+    }
+
+    private int insert(int node, int record) {
+        if (node == CompactMatchStore.NONE) {
+            return record;
+        }
+
+        // The new node is inserted as a leaf, then moved up with rotations
+        // until the heap property on the priorities is restored.
+        if (this.compare(record, node) < 0) {
+            this.rankLeft[node] = this.insert(this.rankLeft[node], record);
+            this.rankSize[node]++;
+            if (this.priorityOf(this.rankLeft[node]) > this.priorityOf(node)) {
+                node = this.rotateRight(node);
+            }
+        } else {
+            this.rankRight[node] = this.insert(this.rankRight[node], record);
+            this.rankSize[node]++;
+            if (this.priorityOf(this.rankRight[node]) > this.priorityOf(node)) {
+                node = this.rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    private int remove(int node, int record) {
+        if (node == CompactMatchStore.NONE) {
+            throw new IllegalStateException("Trying to remove a match which is not ranked");
+        }
+
+        // Start orders are unique, so the comparison only returns 0 for the record itself
+        int comparison = this.compare(record, node);
+        if (comparison == 0) {
+            return this.merge(this.rankLeft[node], this.rankRight[node]);
+        }
+        if (comparison < 0) {
+            this.rankLeft[node] = this.remove(this.rankLeft[node], record);
+        } else {
+            this.rankRight[node] = this.remove(this.rankRight[node], record);
+        }
+        this.rankSize[node]--;
+        return node;
+    }
+
+    /**
+     * Merges two treaps, all the records of {@code left} being ranked before
+     * all the records of {@code right}.
+     */
+    private int merge(int left, int right) {
+        if (left == CompactMatchStore.NONE) {
+            return right;
+        }
+        if (right == CompactMatchStore.NONE) {
+            return left;
+        }
+        if (this.priorityOf(left) > this.priorityOf(right)) {
+            this.rankRight[left] = this.merge(this.rankRight[left], right);
+            this.updateSize(left);
+            return left;
+        }
+        this.rankLeft[right] = this.merge(left, this.rankLeft[right]);
+        this.updateSize(right);
+        return right;
+    }
+
+    /**
+     * Copies the records of a subtree, starting at the given rank within the subtree,
+     * until the arrays are full, or the budget of visited records is exhausted.
+     *
+     * @return the index following the last copied match in the arrays
+     * @throws IllegalStateException if the budget of visited records is exhausted, which only
+     *         happens when the tree is modified while being copied
+     */
+    private int copyTo(int node, int firstRank, int[] matchIds, long[] startOrders, int[] homeTeamIds,
+                       int[] visitorTeamIds, long[] scores, int index, int[] remainingVisits) {
+        while (node != CompactMatchStore.NONE && index < matchIds.length) {
+            if (--remainingVisits[0] < 0) {
+                throw new IllegalStateException("The ranking was modified while being copied");
+            }
+            int leftSize = this.sizeOf(this.rankLeft[node]);
+            if (firstRank < leftSize) {
+                // The copy starts in the left subtree, and then goes on with this node
+                index = this.copyTo(this.rankLeft[node], firstRank, matchIds, startOrders, homeTeamIds,
+                    visitorTeamIds, scores, index, remainingVisits);
+                firstRank = 0;
+                if (index >= matchIds.length) {
+                    break;
+                }
+            } else {
+                firstRank -= leftSize;
+            }
+
+            if (firstRank == 0) {
+                matchIds[index] = this.matchIds[node];
+                startOrders[index] = this.startOrders[node];
+                homeTeamIds[index] = this.homeTeamIds[node];
+                visitorTeamIds[index] = this.visitorTeamIds[node];
+                scores[index] = this.scores[node];
+                index++;
+            } else {
+                firstRank--;
+            }
+            node = this.rankRight[node];
+        }
+        return index;
+    }
+}
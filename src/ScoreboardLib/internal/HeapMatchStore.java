@@ -0,0 +1,160 @@
+package ScoreboardLib.internal;
+
+/**
+ * The {@code HeapMatchStore} class stores each ongoing match as a {@link Match} object,
+ * indexed by a {@link MatchTable}, and ranked by a {@link MatchRanking} whose nodes are the
+ * matches themselves. A handle is the slot of the match in the table.
+ * <p>
+ * This is the default store: the matches are plain objects, and {@link #get(int)} returns
+ * copies of them, as the ranking is ordered by the objects themselves.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class HeapMatchStore extends MatchStore {
+
+    /** The matches, indexed by their unique match ID. */
+    private final MatchTable matches;
+
+    /** The ranked matches, in the summary order. */
+    private final MatchRanking ranking;
+
+    /**
+     * Constructs a new, empty {@code HeapMatchStore}.
+     *
+     * @param teams the registry of the teams of the stored matches
+     */
+    public HeapMatchStore(TeamRegistry teams) {
+        super(teams);
+        this.matches = new MatchTable();
+        this.ranking = new MatchRanking();
+    }
+
+    @Override
+    public int find(int matchId) {
+        return this.matches.slotOf(matchId);
+    }
+
+    @Override
+    public int add(int matchId, long startOrder, int homeTeamId, int visitorTeamId) {
+        Match match = new Match(matchId, startOrder, this.getTeams(), homeTeamId, visitorTeamId);
+        int handle = this.matches.add(match);
+        this.ranking.insert(match);
+        return handle;
+    }
+
+    @Override
+    public void removeAt(int handle) {
+        Match match = this.matches.getAt(handle);
+        if (this.ranking.contains(match)) {
+            this.ranking.remove(match);
+        }
+        this.matches.remove(match.getMatchUniqueId());
+    }
+
+    @Override
+    public int getMatchId(int handle) {
+        return this.matches.getAt(handle).getMatchUniqueId();
+    }
+
+    @Override
+    public long getStartOrder(int handle) {
+        return this.matches.getAt(handle).getStartOrder();
+    }
+
+    @Override
+    public int getHomeTeamId(int handle) {
+        return this.matches.getAt(handle).getHomeTeamId();
+    }
+
+    @Override
+    public int getVisitorTeamId(int handle) {
+        return this.matches.getAt(handle).getVisitorTeamId();
+    }
+
+    @Override
+    public long getScores(int handle) {
+        return this.matches.getAt(handle).getPackedScores();
+    }
+
+    @Override
+    public void setScores(int handle, long scores) {
+        // The position of the match depends on its score, so the match is taken out
+        // of the ranking while its score changes, and then inserted back.
+        Match match = this.matches.getAt(handle);
+        boolean ranked = this.ranking.contains(match);
+        if (ranked) {
+            this.ranking.remove(match);
+        }
+        match.setPackedScores(scores);
+        if (ranked) {
+            this.ranking.insert(match);
+        }
+    }
+
+    @Override
+    public boolean isRanked(int handle) {
+        return this.ranking.contains(this.matches.getAt(handle));
+    }
+
+    @Override
+    public void rank(int handle) {
+        this.ranking.insert(this.matches.getAt(handle));
+    }
+
+    @Override
+    public void unrank(int handle) {
+        this.ranking.remove(this.matches.getAt(handle));
+    }
+
+    @Override
+    public int rankOf(int handle) {
+        return this.ranking.rankOf(this.matches.getAt(handle));
+    }
+
+    @Override
+    public int copyTo(int firstRank, int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                      long[] scores) {
+        Match[] copiedMatches = new Match[matchIds.length];
+        int nbCopied = this.ranking.copyTo(firstRank, copiedMatches, scores);
+        for (int i = 0; i < nbCopied; i++) {
+            matchIds[i] = copiedMatches[i].getMatchUniqueId();
+            startOrders[i] = copiedMatches[i].getStartOrder();
+            homeTeamIds[i] = copiedMatches[i].getHomeTeamId();
+            visitorTeamIds[i] = copiedMatches[i].getVisitorTeamId();
+        }
+        return nbCopied;
+    }
+
+    @Override
+    public int copyTeamsTo(int[] matchIds, int[] homeTeamIds, int[] visitorTeamIds) {
+        int nbCopied = 0;
+        for (int slot = 0; slot < this.matches.capacity() && nbCopied < matchIds.length; slot++) {
+            Match match = this.matches.getAt(slot);
+            if (match != null) {
+                matchIds[nbCopied] = match.getMatchUniqueId();
+                homeTeamIds[nbCopied] = match.getHomeTeamId();
+                visitorTeamIds[nbCopied] = match.getVisitorTeamId();
+                nbCopied++;
+            }
+        }
+        return nbCopied;
+    }
+
+    @Override
+    public void buildFrom(int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                          long[] scores) {
+        Match[] sortedMatches = new Match[matchIds.length];
+        for (int i = 0; i < sortedMatches.length; i++) {
+            sortedMatches[i] = new Match(matchIds[i], startOrders[i], this.getTeams(), homeTeamIds[i],
+                visitorTeamIds[i]);
+            sortedMatches[i].setPackedScores(scores[i]);
+            this.matches.add(sortedMatches[i]);
+        }
+        this.ranking.buildFrom(sortedMatches);
+    }
+
+    @Override
+    public int size() {
+        return this.matches.size();
+    }
+}
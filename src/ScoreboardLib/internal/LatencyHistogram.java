@@ -0,0 +1,153 @@
+package ScoreboardLib.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code LatencyHistogram} class counts durations in buckets of logarithmic width, so
+ * their percentiles can be estimated at any time.
+ * <p>
+ * Each power of 2 is split into 8 buckets: the durations up to 7 ns are counted exactly,
+ * and the estimate of a percentile is at most 12.5% above the actual duration. Recording a
+ * duration is lock-free and never allocates any memory, and the histogram takes a fixed
+ * amount of memory (about 4 KB), whatever the number of recorded durations.
+ * <p>
+ * This class is thread-safe. The statistics are read one by one, so they may be slightly
+ * inconsistent with each other while durations are recorded.
+ */
+public class LatencyHistogram {
+
+    /** Number of bits of a duration, below its highest bit, which select its bucket. */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /** Number of buckets per power of 2. */
+    private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+
+    /** Number of buckets, enough for any positive {@code long}. */
+    private static final int NB_BUCKETS = (64 - LatencyHistogram.SUB_BUCKET_BITS) * LatencyHistogram.SUB_BUCKETS;
+
+    /** Number of recorded durations in each bucket. */
+    private final AtomicLongArray buckets;
+
+    /** Number of recorded durations. */
+    private final LongAdder count;
+
+    /** Sum of the recorded durations, in nanoseconds. */
+    private final LongAdder totalNanos;
+
+    /** Highest recorded duration, in nanoseconds. */
+    private final AtomicLong maxNanos;
+
+    /**
+     * Constructs a new, empty {@code LatencyHistogram}.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(LatencyHistogram.NB_BUCKETS);
+        this.count = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new AtomicLong();
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration, in nanoseconds (counted as 0 if negative)
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0L, nanos);
+        this.buckets.getAndIncrement(LatencyHistogram.bucketOf(duration));
+        this.count.increment();
+        this.totalNanos.add(duration);
+        long max = this.maxNanos.get();
+        while (duration > max && !this.maxNanos.compareAndSet(max, duration)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    /**
+     * Returns the number of recorded durations.
+     *
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the sum of the recorded durations.
+     *
+     * @return the sum of the recorded durations, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * Returns the highest recorded duration.
+     *
+     * @return the highest recorded duration, in nanoseconds (0 if none was recorded)
+     */
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations: the returned duration is the upper
+     * bound of the bucket holding the percentile, capped by the highest recorded duration.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the estimated percentile, in nanoseconds (0 if no duration was recorded)
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = 0L;
+        for (int i = 0; i < LatencyHistogram.NB_BUCKETS; i++) {
+            total += this.buckets.get(i);
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+        // The rank of the percentile, at least the first duration
+        long rank = Math.max(1L, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < LatencyHistogram.NB_BUCKETS; i++) {
+            seen += this.buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), this.getMaxNanos());
+            }
+        }
+        return this.getMaxNanos();
+    }
+
+    /**
+     * Returns the bucket of a duration.
+     *
+     * @param nanos the duration (positive or zero)
+     * @return the index of its bucket
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < LatencyHistogram.SUB_BUCKETS) {
+            return (int) nanos;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = highestBit - LatencyHistogram.SUB_BUCKET_BITS;
+        int subBucket = (int) (nanos >>> shift) & (LatencyHistogram.SUB_BUCKETS - 1);
+        return (shift + 1) * LatencyHistogram.SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the highest duration counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest duration of the bucket, in nanoseconds
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LatencyHistogram.SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / LatencyHistogram.SUB_BUCKETS - 1;
+        long subBucket = bucket % LatencyHistogram.SUB_BUCKETS;
+        long lowest = (LatencyHistogram.SUB_BUCKETS + subBucket) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -1,55 +1,82 @@
 /**
  * Represents a football match between two teams, tracking their scores and providing
- * functionality for sorting matches based on total goals and match ID.
+ * functionality for sorting matches based on total goals and start order.
  */
 package ScoreboardLib.internal;
 
-import java.util.concurrent.Semaphore;
-
 public class Match implements Comparable<Match> {
 
-    /** Semaphore for synchronizing access to the match counter. */
-    private static Semaphore mutex = new Semaphore(1);
-    
-    /** Counter to generate unique match IDs. */
-    private static int matchCounter = 1;
-    
     /** Unique identifier for the match. */
-    private final Integer matchId;
-    
-    /** Name of the home team. */
-    private final String nameHomeTeam;
-    
-    /** Name of the visiting team. */
-    private final String nameVisitorTeam;
+    private final int matchId;
+
+    /**
+     * Order in which the match was started on its board, allocated by a
+     * {@link MatchIdAllocator}: unlike the match IDs, which can wrap around or be recycled,
+     * the start orders always increase.
+     */
+    private final long startOrder;
     
-    /** Score of the home team. */
-    private Integer scoreHomeTeam;
+    /** Registry of the teams, holding the names of the teams of the match. */
+    private final TeamRegistry teams;
+
+    /** ID of the home team in the registry. */
+    private final int homeTeamId;
+
+    /** ID of the visiting team in the registry. */
+    private final int visitorTeamId;
     
-    /** Score of the visiting team. */
-    private Integer scoreVisitorTeam;
+    /**
+     * Scores of the match, packed in a single value (home team score in the high 32 bits,
+     * visiting team score in the low 32 bits), so both scores are always read and
+     * written together atomically.
+     */
+    private volatile long scores;
+
+    /** Left child of this match in the {@link MatchRanking} tree. */
+    Match rankLeft;
+
+    /** Right child of this match in the {@link MatchRanking} tree. */
+    Match rankRight;
+
+    /** Number of matches in the {@link MatchRanking} subtree rooted at this match. */
+    int rankSize;
 
     /**
-     * Constructs a new match with the given home and visitor team names.
-     * Assigns a unique match ID using a synchronized counter.
+     * Constructs a match having an ID and a start order already allocated by the
+     * {@link MatchIdAllocator} of its board, or restored from a journal or a snapshot.
      *
-     * @param homeTeamName the name of the home team
-     * @param visitorTeamName the name of the visiting team
+     * @param matchId the unique ID of the match
+     * @param startOrder the start order of the match on its board
+     * @param teams the registry of the teams
+     * @param homeTeamId the ID of the home team in the registry
+     * @param visitorTeamId the ID of the visiting team in the registry
      */
-    public Match(String homeTeamName, String visitorTeamName) {
+    public Match(int matchId, long startOrder, TeamRegistry teams, int homeTeamId, int visitorTeamId) {
+        this.matchId = matchId;
+        this.startOrder = startOrder;
+        this.teams = teams;
+        this.homeTeamId = homeTeamId;
+        this.visitorTeamId = visitorTeamId;
+        this.scores = 0L;
+    }
 
-        // We use and update the Match counter within a semaphore
-        // protected critical section, to avoid undefined
-        // behaviours in a multi-threaded environment
-        this.mutex.acquireUninterruptibly();
-        this.matchId = Match.matchCounter;
-        Match.matchCounter++;
-        this.mutex.release();
-        
-        this.nameHomeTeam = homeTeamName;
-        this.nameVisitorTeam = visitorTeamName;
-        this.scoreHomeTeam = 0;
-        this.scoreVisitorTeam = 0;
+    /**
+     * Sets the scores of both teams at once.
+     *
+     * @param homeScore the new score of the home team
+     * @param visitorScore the new score of the visiting team
+     */
+    public void setScores(int homeScore, int visitorScore) {
+        this.scores = Match.packScores(homeScore, visitorScore);
+    }
+
+    /**
+     * Sets the scores of both teams at once, from their packed value.
+     *
+     * @param scores the packed scores of both teams (see {@link #packScores(int, int)})
+     */
+    void setPackedScores(long scores) {
+        this.scores = scores;
     }
 
     /**
@@ -57,8 +84,8 @@ public class Match implements Comparable<Match> {
      *
      * @param homeScore the new score of the home team
      */
-    public void setHomeScore(Integer homeScore) {
-        this.scoreHomeTeam = homeScore;
+    public void setHomeScore(int homeScore) {
+        this.scores = Match.packScores(homeScore, Match.visitorScoreOf(this.scores));
     }
 
     /**
@@ -66,8 +93,8 @@ public class Match implements Comparable<Match> {
      *
      * @param visitorScore the new score of the visiting team
      */
-    public void setVisitorScore(Integer visitorScore) {
-        this.scoreVisitorTeam = visitorScore;
+    public void setVisitorScore(int visitorScore) {
+        this.scores = Match.packScores(Match.homeScoreOf(this.scores), visitorScore);
     }
 
     /**
@@ -75,17 +102,106 @@ public class Match implements Comparable<Match> {
      *
      * @return the unique match ID
      */
-    public Integer getMatchUniqueId() {
+    public int getMatchUniqueId() {
         return this.matchId;
     }
 
     /**
-     * Returns the total number of goals scored in the match.
+     * Returns the order in which the match was started on its board.
      *
+     * @return the start order of the match
+     */
+    public long getStartOrder() {
+        return this.startOrder;
+    }
+
+    /**
+     * Returns the scores of the match, packed in a single value.
+     * Use {@link #homeScoreOf(long)} and {@link #visitorScoreOf(long)} to unpack them.
+     *
+     * @return the packed scores of both teams
+     */
+    public long getPackedScores() {
+        return this.scores;
+    }
+
+    /**
+     * Returns the ID of the home team in the registry of the teams.
+     *
+     * @return the ID of the home team
+     */
+    int getHomeTeamId() {
+        return this.homeTeamId;
+    }
+
+    /**
+     * Returns the ID of the visiting team in the registry of the teams.
+     *
+     * @return the ID of the visiting team
+     */
+    int getVisitorTeamId() {
+        return this.visitorTeamId;
+    }
+
+    /**
+     * Returns the name of the home team, looked up in the registry of the teams.
+     *
+     * @return the name of the home team
+     */
+    String getNameHomeTeam() {
+        return this.teams.getName(this.homeTeamId);
+    }
+
+    /**
+     * Returns the name of the visiting team, looked up in the registry of the teams.
+     *
+     * @return the name of the visiting team
+     */
+    String getNameVisitorTeam() {
+        return this.teams.getName(this.visitorTeamId);
+    }
+
+    /**
+     * Returns the total number of goals scored in a match.
+     *
+     * The sum is computed on 64 bits, as it can exceed the maximal value of an int.
+     *
+     * @param scores the packed scores of the match
      * @return the sum of home and visitor team scores
      */
-    private Integer getTotalNumberGoals() {
-        return this.scoreHomeTeam + this.scoreVisitorTeam;
+    private static long totalGoalsOf(long scores) {
+        return (long) Match.homeScoreOf(scores) + Match.visitorScoreOf(scores);
+    }
+
+    /**
+     * Packs the scores of both teams in a single value.
+     *
+     * @param homeScore the score of the home team
+     * @param visitorScore the score of the visiting team
+     * @return the packed scores
+     */
+    public static long packScores(int homeScore, int visitorScore) {
+        return ((long) homeScore << 32) | (visitorScore & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the score of the home team from packed scores.
+     *
+     * @param scores the packed scores (see {@link #packScores(int, int)})
+     * @return the score of the home team
+     */
+    public static int homeScoreOf(long scores) {
+        return (int) (scores >>> 32);
+    }
+
+    /**
+     * Returns the score of the visiting team from packed scores.
+     *
+     * @param scores the packed scores (see {@link #packScores(int, int)})
+     * @return the score of the visiting team
+     */
+    public static int visitorScoreOf(long scores) {
+        return (int) scores;
     }
 
     /**
@@ -96,14 +212,16 @@ public class Match implements Comparable<Match> {
      */
     @Override
     public String toString() {
-        return this.nameHomeTeam + " " + this.scoreHomeTeam + " - " +
-                this.nameVisitorTeam + " " + this.scoreVisitorTeam;
+        long currentScores = this.scores;
+        return this.getNameHomeTeam() + " " + Match.homeScoreOf(currentScores) + " - " +
+                this.getNameVisitorTeam() + " " + Match.visitorScoreOf(currentScores);
     }
 
     /**
      * Compares this match to another match based on the total goals scored.
      * Matches with more goals are ranked higher. If two matches have the same total goals,
-     * the match that started later (higher match ID) is ranked higher.
+     * the match that started later (higher start order) is ranked higher, even if its ID
+     * wrapped around or was recycled.
      *
      * @param otherMatch the other match to compare to
      * @return a negative integer, zero, or a positive integer as this match is less than,
@@ -111,16 +229,32 @@ public class Match implements Comparable<Match> {
      */
     @Override
     public int compareTo(Match otherMatch) {
+        return Match.compare(this.startOrder, this.scores, otherMatch.startOrder, otherMatch.scores);
+    }
+
+    /**
+     * Compares two matches in the summary order, from their start orders and packed scores,
+     * which is the order of {@link #compareTo(Match)} for the stores which do not keep any
+     * {@code Match} object.
+     *
+     * @param startOrder the start order of the first match
+     * @param scores the packed scores of the first match
+     * @param otherStartOrder the start order of the second match
+     * @param otherScores the packed scores of the second match
+     * @return a negative integer, zero, or a positive integer as the first match is ranked
+     *         before, at the same position as, or after the second match
+     */
+    public static int compare(long startOrder, long scores, long otherStartOrder, long otherScores) {
 
         // As we want to sort the matches per descending number of goals, we swap
-        // this and otherMatch in the Integer comparison
-        int goalComparison = Integer.compare(otherMatch.getTotalNumberGoals(), this.getTotalNumberGoals());
+        // the first and the second match in the comparison
+        int goalComparison = Long.compare(Match.totalGoalsOf(otherScores), Match.totalGoalsOf(scores));
         if (goalComparison != 0) {
             return goalComparison;
         }
 
         // Similarly as above, as we want to sort the matches having the same number of scored goals
-        // having the most recent first, we swap other.matchId and this.matchId.
-        return Integer.compare(otherMatch.matchId, this.matchId);
+        // having the most recent first, we swap otherStartOrder and startOrder.
+        return Long.compare(otherStartOrder, startOrder);
     }
 }
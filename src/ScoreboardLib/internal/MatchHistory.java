@@ -0,0 +1,567 @@
+package ScoreboardLib.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@code MatchHistory} class records the changes of the matches of a scoreboard: an
+ * append-only log of all the changes, which can be replayed from any version it still
+ * holds, and the timeline of each ongoing or recently terminated match.
+ * <p>
+ * The log is a ring of chunks of at most {@link #CHUNK_SIZE} events, each chunk being made
+ * of arrays of primitive values (37 bytes per event), allocated once and then reused: when
+ * the log is full, its oldest chunk is dropped and refilled with the new events, so the log
+ * holds at least the given number of most recent events, and at most one chunk more.
+ * <p>
+ * The timelines do not depend on the log: each one holds the changes of a single match, in
+ * arrays of primitive values too, for as long as the match is ongoing. A timeline holds at
+ * most {@link #MAX_TIMELINE_SIZE} changes: beyond it, its oldest changes are overwritten by
+ * the new ones, so the timeline of a long match keeps its most recent changes. The timeline
+ * of a terminated match is trimmed and moved to an archive, which holds at most a given
+ * number of timelines, for at most a given duration, the earliest terminated being evicted
+ * first. As the archive is indexed by match ID, the timeline of a match is replaced by the
+ * one of a later match given the same (recycled) ID.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class MatchHistory {
+
+    /** Kind of the events starting a match (with a score of 0 - 0). */
+    public static final int STARTED = 0;
+
+    /** Kind of the events changing the scores of a match. */
+    public static final int SCORE_CHANGED = 1;
+
+    /** Kind of the events terminating a match (with its final scores). */
+    public static final int TERMINATED = 2;
+
+    /** Maximal number of events of a chunk of the log. */
+    static final int CHUNK_SIZE = 1024;
+
+    /** Initial number of events of a timeline. */
+    private static final int INITIAL_TIMELINE_CAPACITY = 4;
+
+    /** Maximal number of changes held by the timeline of a match (25 KB). */
+    public static final int MAX_TIMELINE_SIZE = 1024;
+
+    /** Number of events of each chunk of the log. */
+    private final int chunkSize;
+
+    /** The chunks of the log, as a ring starting at {@link #firstChunk}. */
+    private final Chunk[] chunks;
+
+    /** Index of the oldest chunk of the log in {@link #chunks}. */
+    private int firstChunk;
+
+    /** Number of chunks holding events. */
+    private int nbChunks;
+
+    /** Sequence number of the oldest event held by the log. */
+    private long firstSequence;
+
+    /** Sequence number of the next event recorded, i.e. the number of events ever recorded. */
+    private long nextSequence;
+
+    /** Maximal number of timelines of the archive. */
+    private final int maxArchivedMatches;
+
+    /** Maximal duration a timeline stays in the archive, in milliseconds. */
+    private final long maxArchiveAgeMillis;
+
+    /** The timelines of the ongoing matches, by match ID. */
+    private final Map<Integer, Timeline> liveTimelines;
+
+    /** The timelines of the terminated matches, by match ID, in termination order. */
+    private final LinkedHashMap<Integer, Timeline> archivedTimelines;
+
+    /**
+     * Constructs a new, empty {@code MatchHistory}.
+     *
+     * @param maxEvents the minimal number of most recent events held by the log (at least 1)
+     * @param maxArchivedMatches the maximal number of timelines of the archive
+     * @param maxArchiveAgeMillis the maximal duration a timeline stays in the archive, in
+     *        milliseconds
+     */
+    public MatchHistory(int maxEvents, int maxArchivedMatches, long maxArchiveAgeMillis) {
+        this.chunkSize = Math.min(MatchHistory.CHUNK_SIZE, maxEvents);
+        // One more chunk than needed, as the oldest one is only partly overwritten
+        this.chunks = new Chunk[(maxEvents + this.chunkSize - 1) / this.chunkSize + 1];
+        this.firstChunk = 0;
+        this.nbChunks = 0;
+        this.firstSequence = 0L;
+        this.nextSequence = 0L;
+        this.maxArchivedMatches = maxArchivedMatches;
+        this.maxArchiveAgeMillis = maxArchiveAgeMillis;
+        this.liveTimelines = new HashMap<>();
+        this.archivedTimelines = new LinkedHashMap<>();
+    }
+
+    /**
+     * Records a change of a match, in the log and in the timeline of the match.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param timestamp the time of the change, in milliseconds since the epoch
+     * @param kind the kind of the change ({@link #STARTED}, {@link #SCORE_CHANGED} or {@link #TERMINATED})
+     * @param matchId the ID of the match
+     * @param homeTeamId the ID of the home team
+     * @param visitorTeamId the ID of the visiting team
+     * @param scores the packed scores of the match after the change (see {@link Match#packScores})
+     */
+    public void record(long version, long timestamp, int kind, int matchId, int homeTeamId, int visitorTeamId,
+                       long scores) {
+        this.append(version, timestamp, kind, matchId, ((long) homeTeamId << 32) | (visitorTeamId & 0xFFFFFFFFL),
+            scores);
+
+        Timeline timeline;
+        if (kind == MatchHistory.STARTED) {
+            timeline = new Timeline(matchId, homeTeamId, visitorTeamId);
+            this.liveTimelines.put(matchId, timeline);
+        } else {
+            timeline = (kind == MatchHistory.TERMINATED) ? this.liveTimelines.remove(matchId)
+                : this.liveTimelines.get(matchId);
+            if (timeline == null) {
+                // The match was already ongoing when the history started
+                timeline = new Timeline(matchId, homeTeamId, visitorTeamId);
+                if (kind != MatchHistory.TERMINATED) {
+                    this.liveTimelines.put(matchId, timeline);
+                }
+            }
+        }
+        timeline.add(version, timestamp, kind, scores);
+
+        if (kind == MatchHistory.TERMINATED) {
+            timeline.terminate(timestamp);
+            // A timeline archived again is moved to the end of the termination order
+            this.archivedTimelines.remove(matchId);
+            this.archivedTimelines.put(matchId, timeline);
+        }
+        if (kind != MatchHistory.SCORE_CHANGED) {
+            this.evictArchive(timestamp);
+        }
+    }
+
+    /**
+     * Appends an event to the log, dropping its oldest chunk if it is full.
+     *
+     * @param version the version of the scoreboard right after the change
+     * @param timestamp the time of the change, in milliseconds since the epoch
+     * @param kind the kind of the change
+     * @param matchId the ID of the match
+     * @param teams the IDs of the home and visiting teams, packed in a single value
+     * @param scores the packed scores of the match after the change
+     */
+    private void append(long version, long timestamp, int kind, int matchId, long teams, long scores) {
+        Chunk last = (this.nbChunks == 0) ? null
+            : this.chunks[(this.firstChunk + this.nbChunks - 1) % this.chunks.length];
+        if (last == null || last.size == this.chunkSize) {
+            if (this.nbChunks == this.chunks.length) {
+                // The oldest chunk is dropped, and its arrays are reused for the new events
+                last = this.chunks[this.firstChunk];
+                this.firstChunk = (this.firstChunk + 1) % this.chunks.length;
+                this.firstSequence += last.size;
+                last.size = 0;
+            } else {
+                int index = (this.firstChunk + this.nbChunks) % this.chunks.length;
+                if (this.chunks[index] == null) {
+                    this.chunks[index] = new Chunk(this.chunkSize);
+                }
+                last = this.chunks[index];
+                this.nbChunks++;
+            }
+        }
+        int i = last.size;
+        last.versions[i] = version;
+        last.timestamps[i] = timestamp;
+        last.kinds[i] = (byte) kind;
+        last.matchIds[i] = matchId;
+        last.teams[i] = teams;
+        last.scores[i] = scores;
+        last.size++;
+        this.nextSequence++;
+    }
+
+    /**
+     * Evicts from the archive the timelines in excess, and the ones terminated for too long.
+     *
+     * @param now the current time, in milliseconds since the epoch
+     */
+    private void evictArchive(long now) {
+        Iterator<Timeline> timelines = this.archivedTimelines.values().iterator();
+        while (timelines.hasNext()) {
+            Timeline timeline = timelines.next();
+            if (this.archivedTimelines.size() <= this.maxArchivedMatches && !this.isExpired(timeline, now)) {
+                // The following timelines were terminated later
+                return;
+            }
+            timelines.remove();
+        }
+    }
+
+    /**
+     * Tells whether an archived timeline was terminated for too long to be kept.
+     *
+     * @param timeline the archived timeline
+     * @param now the current time, in milliseconds since the epoch
+     * @return true if the timeline must be evicted
+     */
+    private boolean isExpired(Timeline timeline, long now) {
+        return now - timeline.terminationTime > this.maxArchiveAgeMillis;
+    }
+
+    /**
+     * Returns the sequence number of the oldest event held by the log.
+     *
+     * @return the first sequence number
+     */
+    public long getFirstSequence() {
+        return this.firstSequence;
+    }
+
+    /**
+     * Returns the sequence number of the next event recorded, i.e. the number of events
+     * ever recorded.
+     *
+     * @return the next sequence number
+     */
+    public long getNextSequence() {
+        return this.nextSequence;
+    }
+
+    /**
+     * Finds the oldest event of the log whose version is at least a given version. The
+     * versions of the events never decrease, so the chunks, and then the events of the
+     * chunk, are searched by bisection.
+     *
+     * @param fromVersion the version
+     * @return the sequence number of the event, or {@link #getNextSequence()} if there is none
+     */
+    public long findSequence(long fromVersion) {
+        int low = 0;
+        int high = this.nbChunks;
+        // The first chunk whose last event is at least at the version
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Chunk chunk = this.chunkAt(middle);
+            if (chunk.versions[chunk.size - 1] < fromVersion) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low == this.nbChunks) {
+            return this.nextSequence;
+        }
+        Chunk chunk = this.chunkAt(low);
+        int first = 0;
+        int last = chunk.size - 1;
+        while (first < last) {
+            int middle = (first + last) >>> 1;
+            if (chunk.versions[middle] < fromVersion) {
+                first = middle + 1;
+            } else {
+                last = middle;
+            }
+        }
+        return this.firstSequence + (long) low * this.chunkSize + first;
+    }
+
+    /**
+     * Visits the events of the log, in recording order, starting with a given event (or
+     * with the oldest event held, if it was already dropped).
+     *
+     * @param fromSequence the sequence number of the first event to visit
+     * @param toSequence the sequence number after the last event to visit
+     * @param maxEvents the maximal number of events to visit
+     * @param visitor the visitor of the events
+     * @return the sequence number following the last visited event
+     */
+    public long visitEvents(long fromSequence, long toSequence, int maxEvents, EventVisitor visitor) {
+        long sequence = Math.max(fromSequence, this.firstSequence);
+        long end = Math.min(Math.min(toSequence, this.nextSequence), sequence + maxEvents);
+        while (sequence < end) {
+            long offset = sequence - this.firstSequence;
+            Chunk chunk = this.chunkAt((int) (offset / this.chunkSize));
+            int i = (int) (offset % this.chunkSize);
+            long teams = chunk.teams[i];
+            visitor.visit(chunk.versions[i], chunk.timestamps[i], chunk.kinds[i], chunk.matchIds[i],
+                (int) (teams >>> 32), (int) teams, chunk.scores[i]);
+            sequence++;
+        }
+        return sequence;
+    }
+
+    /**
+     * Returns a chunk of the log.
+     *
+     * @param index the index of the chunk, 0 being the oldest one
+     * @return the chunk
+     */
+    private Chunk chunkAt(int index) {
+        return this.chunks[(this.firstChunk + index) % this.chunks.length];
+    }
+
+    /**
+     * Returns the timeline of an ongoing match, or of an archived one.
+     *
+     * @param matchId the ID of the match
+     * @param now the current time, in milliseconds since the epoch
+     * @return the timeline, or null if the match has no timeline, or if its timeline expired
+     */
+    public Timeline getTimeline(int matchId, long now) {
+        Timeline timeline = this.liveTimelines.get(matchId);
+        if (timeline != null) {
+            return timeline;
+        }
+        timeline = this.archivedTimelines.get(matchId);
+        // The expired timelines are only evicted by the next start or termination
+        return (timeline == null || this.isExpired(timeline, now)) ? null : timeline;
+    }
+
+    /**
+     * Returns the number of timelines of the archive, including the expired ones not yet
+     * evicted.
+     *
+     * @return the number of archived timelines
+     */
+    public int getArchivedMatches() {
+        return this.archivedTimelines.size();
+    }
+
+    /**
+     * The {@code EventVisitor} interface receives the events of a {@link MatchHistory}.
+     */
+    @FunctionalInterface
+    public interface EventVisitor {
+
+        /**
+         * Visits an event.
+         *
+         * @param version the version of the scoreboard right after the change
+         * @param timestamp the time of the change, in milliseconds since the epoch
+         * @param kind the kind of the change
+         * @param matchId the ID of the match
+         * @param homeTeamId the ID of the home team
+         * @param visitorTeamId the ID of the visiting team
+         * @param scores the packed scores of the match after the change
+         */
+        void visit(long version, long timestamp, int kind, int matchId, int homeTeamId, int visitorTeamId,
+                   long scores);
+    }
+
+    /**
+     * The {@code Timeline} class holds the changes of a single match, in arrays of
+     * primitive values.
+     */
+    public static final class Timeline {
+
+        /** The ID of the match. */
+        private final int matchId;
+
+        /** The ID of the home team. */
+        private final int homeTeamId;
+
+        /** The ID of the visiting team. */
+        private final int visitorTeamId;
+
+        /** The versions of the scoreboard right after the changes. */
+        private long[] versions;
+
+        /** The times of the changes, in milliseconds since the epoch. */
+        private long[] timestamps;
+
+        /** The kinds of the changes. */
+        private byte[] kinds;
+
+        /** The packed scores of the match after the changes. */
+        private long[] scores;
+
+        /** Index of the oldest change in the arrays, non-zero once the timeline is full. */
+        private int first;
+
+        /** Number of changes. */
+        private int size;
+
+        /** Time of the termination of the match, in milliseconds since the epoch (if terminated). */
+        private long terminationTime;
+
+        /** Whether the match is terminated. */
+        private boolean terminated;
+
+        /**
+         * Constructs the empty timeline of a match.
+         *
+         * @param matchId the ID of the match
+         * @param homeTeamId the ID of the home team
+         * @param visitorTeamId the ID of the visiting team
+         */
+        private Timeline(int matchId, int homeTeamId, int visitorTeamId) {
+            this.matchId = matchId;
+            this.homeTeamId = homeTeamId;
+            this.visitorTeamId = visitorTeamId;
+            this.versions = new long[MatchHistory.INITIAL_TIMELINE_CAPACITY];
+            this.timestamps = new long[MatchHistory.INITIAL_TIMELINE_CAPACITY];
+            this.kinds = new byte[MatchHistory.INITIAL_TIMELINE_CAPACITY];
+            this.scores = new long[MatchHistory.INITIAL_TIMELINE_CAPACITY];
+            this.first = 0;
+            this.size = 0;
+            this.terminated = false;
+        }
+
+        /**
+         * Adds a change at the end of the timeline, in place of its oldest change if the
+         * timeline is full.
+         *
+         * @param version the version of the scoreboard right after the change
+         * @param timestamp the time of the change, in milliseconds since the epoch
+         * @param kind the kind of the change
+         * @param scores the packed scores of the match after the change
+         */
+        private void add(long version, long timestamp, int kind, long scores) {
+            int index;
+            if (this.size < MatchHistory.MAX_TIMELINE_SIZE) {
+                if (this.size == this.versions.length) {
+                    this.resize(Math.min(2 * this.size, MatchHistory.MAX_TIMELINE_SIZE));
+                }
+                index = this.size;
+                this.size++;
+            } else {
+                // The arrays are full: they are used as a ring, from the oldest change
+                index = this.first;
+                this.first = (this.first + 1) % this.size;
+            }
+            this.versions[index] = version;
+            this.timestamps[index] = timestamp;
+            this.kinds[index] = (byte) kind;
+            this.scores[index] = scores;
+        }
+
+        /**
+         * Marks the match as terminated, and trims the arrays of the timeline, which is
+         * not modified anymore.
+         *
+         * @param timestamp the time of the termination, in milliseconds since the epoch
+         */
+        private void terminate(long timestamp) {
+            this.terminated = true;
+            this.terminationTime = timestamp;
+            if (this.size < this.versions.length) {
+                this.resize(this.size);
+            }
+        }
+
+        /**
+         * Resizes the arrays of the timeline, which are not used as a ring yet.
+         *
+         * @param capacity the new number of changes the arrays can hold
+         */
+        private void resize(int capacity) {
+            this.versions = Arrays.copyOf(this.versions, capacity);
+            this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.scores = Arrays.copyOf(this.scores, capacity);
+        }
+
+        /**
+         * Returns the ID of the match.
+         *
+         * @return the match ID
+         */
+        public int getMatchId() {
+            return this.matchId;
+        }
+
+        /**
+         * Returns the ID of the home team.
+         *
+         * @return the ID of the home team
+         */
+        public int getHomeTeamId() {
+            return this.homeTeamId;
+        }
+
+        /**
+         * Returns the ID of the visiting team.
+         *
+         * @return the ID of the visiting team
+         */
+        public int getVisitorTeamId() {
+            return this.visitorTeamId;
+        }
+
+        /**
+         * Tells whether the match is terminated.
+         *
+         * @return true if the match is terminated
+         */
+        public boolean isTerminated() {
+            return this.terminated;
+        }
+
+        /**
+         * Returns the number of changes of the timeline.
+         *
+         * @return the number of changes
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Visits the changes of the timeline, in chronological order.
+         *
+         * @param visitor the visitor of the changes
+         */
+        public void visit(EventVisitor visitor) {
+            for (int i = 0; i < this.size; i++) {
+                int index = (this.first + i) % this.size;
+                visitor.visit(this.versions[index], this.timestamps[index], this.kinds[index], this.matchId,
+                    this.homeTeamId, this.visitorTeamId, this.scores[index]);
+            }
+        }
+    }
+
+    /**
+     * The {@code Chunk} class holds consecutive events of the log, in arrays of primitive values.
+     */
+    private static final class Chunk {
+
+        /** The versions of the scoreboard right after the changes. */
+        private final long[] versions;
+
+        /** The times of the changes, in milliseconds since the epoch. */
+        private final long[] timestamps;
+
+        /** The kinds of the changes. */
+        private final byte[] kinds;
+
+        /** The IDs of the matches. */
+        private final int[] matchIds;
+
+        /** The IDs of the home and visiting teams, packed in a single value. */
+        private final long[] teams;
+
+        /** The packed scores of the matches after the changes. */
+        private final long[] scores;
+
+        /** Number of events of the chunk. */
+        private int size;
+
+        /**
+         * Constructs an empty chunk.
+         *
+         * @param capacity the number of events the chunk can hold
+         */
+        private Chunk(int capacity) {
+            this.versions = new long[capacity];
+            this.timestamps = new long[capacity];
+            this.kinds = new byte[capacity];
+            this.matchIds = new int[capacity];
+            this.teams = new long[capacity];
+            this.scores = new long[capacity];
+            this.size = 0;
+        }
+    }
+}
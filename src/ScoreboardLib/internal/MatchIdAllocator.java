@@ -0,0 +1,264 @@
+package ScoreboardLib.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code MatchIdAllocator} class allocates the unique IDs of the matches of a board,
+ * and the start orders ranking the matches having the same total score.
+ * <p>
+ * Each board has its own allocator (the shards of a sharded board share one), so the
+ * boards of a process never contend on a common counter, and the allocations never take
+ * any lock. The start orders are allocated by a 64-bit counter, which never wraps around in
+ * practice (one start per nanosecond would take almost 300 years), so the most recently
+ * started match is always the one having the highest start order. A match ID is the low
+ * part of its epoch-tagged 64-bit start order: the IDs follow the start order, from
+ * {@link #FIRST_MATCH_ID} to {@link Integer#MAX_VALUE}, and then wrap around to
+ * {@link #FIRST_MATCH_ID} rather than becoming negative, so the caller must skip the IDs
+ * still used by an ongoing match once {@link #hasWrapped()} is true.
+ * <p>
+ * Optionally, the IDs of the terminated matches are recycled: they are queued in a bounded
+ * lock-free ring, and allocated again before any new ID, oldest first, while the new IDs
+ * are allocated by a separate counter, which keeps the IDs (and the structures indexed by
+ * them) dense when matches are started and terminated endlessly. An ID released while the
+ * ring is full is simply not recycled. The recycled IDs no longer follow the start order,
+ * but the start orders still do.
+ * <p>
+ * This class is thread-safe.
+ */
+public class MatchIdAllocator {
+
+    /** The ID of the first match of a board. */
+    public static final int FIRST_MATCH_ID = 1;
+
+    /** Number of terminated IDs the ring of the recycled IDs can hold (a power of 2). */
+    static final int RECYCLED_CAPACITY = 1 << 14;
+
+    /** The next start order, not allocated yet. */
+    private final AtomicLong nextStartOrder;
+
+    /** The next new match ID, not allocated yet, if the IDs are recycled (null otherwise). */
+    private final AtomicInteger nextMatchId;
+
+    /** Whether the match IDs have wrapped around at least once. */
+    private volatile boolean wrapped;
+
+    /**
+     * The recycled IDs, by slot, or null if the IDs are not recycled. As in a
+     * {@link CommandRing}, each slot holds a sequence number telling whether it is free or
+     * holds an ID, but both ends of the ring are shared by several threads.
+     */
+    private final int[] recycledIds;
+
+    /**
+     * The sequence numbers of the slots: the slot of the sequence number {@code s} is free
+     * for the thread releasing an ID at {@code s} when it holds {@code s}, and holds an ID
+     * for the thread allocating it at {@code s} when it holds {@code s + 1}.
+     */
+    private final AtomicLongArray recycledSequences;
+
+    /** The sequence number of the next recycled ID to allocate. */
+    private final AtomicLong recycledHead;
+
+    /** The sequence number of the next released ID. */
+    private final AtomicLong recycledTail;
+
+    /**
+     * Constructs a new {@code MatchIdAllocator}, whose first ID is {@link #FIRST_MATCH_ID}.
+     *
+     * @param recycling whether the IDs of the terminated matches are allocated again
+     */
+    public MatchIdAllocator(boolean recycling) {
+        this.nextStartOrder = new AtomicLong();
+        this.wrapped = false;
+        if (recycling) {
+            this.nextMatchId = new AtomicInteger(MatchIdAllocator.FIRST_MATCH_ID);
+            this.recycledIds = new int[MatchIdAllocator.RECYCLED_CAPACITY];
+            this.recycledSequences = new AtomicLongArray(MatchIdAllocator.RECYCLED_CAPACITY);
+            for (int i = 0; i < MatchIdAllocator.RECYCLED_CAPACITY; i++) {
+                this.recycledSequences.set(i, i);
+            }
+            this.recycledHead = new AtomicLong();
+            this.recycledTail = new AtomicLong();
+        } else {
+            this.nextMatchId = null;
+            this.recycledIds = null;
+            this.recycledSequences = null;
+            this.recycledHead = null;
+            this.recycledTail = null;
+        }
+    }
+
+    /**
+     * Tells whether the IDs of the terminated matches are allocated again.
+     *
+     * @return true if the IDs are recycled
+     */
+    public boolean isRecycling() {
+        return this.recycledIds != null;
+    }
+
+    /**
+     * Tells whether the match IDs have wrapped around, so an allocated ID may still be used
+     * by an ongoing match. A recycled ID is never used by an ongoing match before.
+     *
+     * @return true if the allocated IDs must be checked against the ongoing matches
+     */
+    public boolean hasWrapped() {
+        return this.wrapped;
+    }
+
+    /**
+     * Allocates the start order of a new match, which is higher than the start orders of
+     * all the matches started before.
+     *
+     * @return the start order
+     */
+    public long allocateStartOrder() {
+        return this.nextStartOrder.getAndIncrement();
+    }
+
+    /**
+     * Allocates the ID of a new match: the low part of its start order, or if the IDs are
+     * recycled, the oldest recycled ID if there is one, otherwise a new one.
+     *
+     * @param startOrder the start order allocated to the match by {@link #allocateStartOrder()}
+     * @return the match ID (never negative)
+     */
+    public int allocateMatchId(long startOrder) {
+        if (this.recycledIds == null) {
+            if (startOrder >= Integer.MAX_VALUE && !this.wrapped) {
+                this.wrapped = true;
+            }
+            return MatchIdAllocator.matchIdOf(startOrder);
+        }
+        int recycledId = this.pollRecycled();
+        if (recycledId >= 0) {
+            return recycledId;
+        }
+        int matchId = this.nextMatchId.getAndUpdate(MatchIdAllocator::following);
+        if (matchId == Integer.MAX_VALUE) {
+            this.wrapped = true;
+        }
+        return matchId;
+    }
+
+    /**
+     * Releases the ID of a terminated match, which is allocated again if the IDs are
+     * recycled (and ignored otherwise).
+     *
+     * @param matchId the ID of the terminated match
+     */
+    public void release(int matchId) {
+        if (this.recycledIds == null) {
+            return;
+        }
+        int mask = MatchIdAllocator.RECYCLED_CAPACITY - 1;
+        while (true) {
+            long claimed = this.recycledTail.get();
+            int slot = (int) claimed & mask;
+            long sequence = this.recycledSequences.get(slot);
+            if (sequence < claimed) {
+                // The ring is full: the ID is not recycled
+                return;
+            }
+            if (sequence == claimed && this.recycledTail.compareAndSet(claimed, claimed + 1)) {
+                this.recycledIds[slot] = matchId;
+                this.recycledSequences.lazySet(slot, claimed + 1);
+                return;
+            }
+            // Another thread released an ID in the slot first: we try the next one
+        }
+    }
+
+    /**
+     * Takes the oldest recycled ID.
+     *
+     * @return the recycled ID, or -1 if there is none
+     */
+    private int pollRecycled() {
+        int mask = MatchIdAllocator.RECYCLED_CAPACITY - 1;
+        while (true) {
+            long claimed = this.recycledHead.get();
+            int slot = (int) claimed & mask;
+            long sequence = this.recycledSequences.get(slot);
+            if (sequence < claimed + 1) {
+                // The ring is empty, or its oldest ID is not published yet
+                return -1;
+            }
+            if (sequence == claimed + 1 && this.recycledHead.compareAndSet(claimed, claimed + 1)) {
+                int matchId = this.recycledIds[slot];
+                // The slot is freed for the thread releasing an ID at the next lap
+                this.recycledSequences.lazySet(slot, claimed + MatchIdAllocator.RECYCLED_CAPACITY);
+                return matchId;
+            }
+            // Another thread took the ID first: we try the next one
+        }
+    }
+
+    /**
+     * Returns the next new match ID, not allocated yet.
+     *
+     * @return the next new match ID
+     */
+    public int peekNextMatchId() {
+        return (this.nextMatchId == null) ? MatchIdAllocator.matchIdOf(this.nextStartOrder.get())
+            : this.nextMatchId.get();
+    }
+
+    /**
+     * Returns the next start order, not allocated yet.
+     *
+     * @return the next start order
+     */
+    public long peekNextStartOrder() {
+        return this.nextStartOrder.get();
+    }
+
+    /**
+     * Makes sure that the new IDs and start orders allocated afterwards do not collide
+     * with the ones of restored matches.
+     *
+     * @param nextMatchId the minimal next new match ID
+     * @param nextStartOrder the minimal next start order
+     */
+    public void reserve(int nextMatchId, long nextStartOrder) {
+        long startOrder = this.nextStartOrder.accumulateAndGet(nextStartOrder, Math::max);
+        if (this.nextMatchId != null) {
+            this.nextMatchId.accumulateAndGet(nextMatchId, Math::max);
+        } else if (startOrder > Integer.MAX_VALUE) {
+            this.wrapped = true;
+        }
+    }
+
+    /**
+     * Makes sure that the new IDs and start orders allocated afterwards do not collide
+     * with the ones of a restored match.
+     *
+     * @param matchId the ID of the restored match
+     * @param startOrder the start order of the restored match
+     */
+    public void reserveAfter(int matchId, long startOrder) {
+        if (matchId == Integer.MAX_VALUE) {
+            this.wrapped = true;
+        }
+        this.reserve(MatchIdAllocator.following(matchId), startOrder + 1);
+    }
+
+    /**
+     * Returns the match ID tagged by a start order: its remainder modulo
+     * {@link Integer#MAX_VALUE}, shifted by {@link #FIRST_MATCH_ID}.
+     */
+    private static int matchIdOf(long startOrder) {
+        return MatchIdAllocator.FIRST_MATCH_ID + (int) (startOrder % Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the match ID following a given one, wrapping around to
+     * {@link #FIRST_MATCH_ID} after {@link Integer#MAX_VALUE}.
+     */
+    private static int following(int matchId) {
+        return (matchId == Integer.MAX_VALUE) ? MatchIdAllocator.FIRST_MATCH_ID : matchId + 1;
+    }
+}
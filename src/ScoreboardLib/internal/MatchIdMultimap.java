@@ -0,0 +1,190 @@
+package ScoreboardLib.internal;
+
+import java.util.Arrays;
+
+/**
+ * The {@code MatchIdMultimap} class indexes match IDs by a primitive {@code long} key (a
+ * team ID, or a pair of team IDs), each key being associated with the IDs of all its
+ * matches.
+ * <p>
+ * It is an open-addressing hash table (with linear probing) whose slots hold a key and a
+ * growable array of match IDs, so neither the keys nor the IDs are boxed. A key is
+ * removed once it has no match anymore, so the table only holds the keys of ongoing
+ * matches. Adding or removing a match costs O(1), plus a scan of the matches of its key
+ * for a removal, as a key (a team) rarely has more than a few ongoing matches.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class MatchIdMultimap {
+
+    /** Initial number of slots of the table (must be a power of 2). */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Initial number of match IDs of a key. */
+    private static final int INITIAL_VALUES_CAPACITY = 2;
+
+    /** The keys of the slots. */
+    private long[] keys;
+
+    /** The match IDs of the keys, a null array being an empty slot. */
+    private int[][] matchIds;
+
+    /** The number of match IDs of the keys. */
+    private int[] nbMatchIds;
+
+    /** Number of keys stored in the table. */
+    private int nbKeys;
+
+    /**
+     * Constructs a new, empty {@code MatchIdMultimap}.
+     */
+    public MatchIdMultimap() {
+        this.keys = new long[MatchIdMultimap.INITIAL_CAPACITY];
+        this.matchIds = new int[MatchIdMultimap.INITIAL_CAPACITY][];
+        this.nbMatchIds = new int[MatchIdMultimap.INITIAL_CAPACITY];
+        this.nbKeys = 0;
+    }
+
+    /**
+     * Associates a match ID with a key.
+     *
+     * @param key the key
+     * @param matchId the ID of the match, which must not be already associated with the key
+     */
+    public void add(long key, int matchId) {
+        int slot = this.slotOf(key);
+        if (this.matchIds[slot] == null) {
+            // The load factor is kept under 1/2, so the probe sequences stay short
+            if (2 * (this.nbKeys + 1) > this.keys.length) {
+                this.resize(2 * this.keys.length);
+                slot = this.slotOf(key);
+            }
+            this.keys[slot] = key;
+            this.matchIds[slot] = new int[MatchIdMultimap.INITIAL_VALUES_CAPACITY];
+            this.nbKeys++;
+        } else if (this.nbMatchIds[slot] == this.matchIds[slot].length) {
+            this.matchIds[slot] = Arrays.copyOf(this.matchIds[slot], 2 * this.nbMatchIds[slot]);
+        }
+        this.matchIds[slot][this.nbMatchIds[slot]++] = matchId;
+    }
+
+    /**
+     * Dissociates a match ID from a key. Does nothing if they are not associated.
+     *
+     * @param key the key
+     * @param matchId the ID of the match
+     */
+    public void remove(long key, int matchId) {
+        int slot = this.slotOf(key);
+        int[] keyMatchIds = this.matchIds[slot];
+        if (keyMatchIds == null) {
+            return;
+        }
+        int last = this.nbMatchIds[slot] - 1;
+        for (int i = last; i >= 0; i--) {
+            if (keyMatchIds[i] == matchId) {
+                // The order of the match IDs of a key does not matter
+                keyMatchIds[i] = keyMatchIds[last];
+                this.nbMatchIds[slot] = last;
+                break;
+            }
+        }
+        if (this.nbMatchIds[slot] == 0) {
+            this.removeSlot(slot);
+        }
+    }
+
+    /**
+     * Returns the match IDs associated with a key.
+     *
+     * @param key the key
+     * @return the IDs of the matches of the key, in ascending order (possibly empty)
+     */
+    public int[] get(long key) {
+        int slot = this.slotOf(key);
+        if (this.matchIds[slot] == null) {
+            return new int[0];
+        }
+        int[] keyMatchIds = Arrays.copyOf(this.matchIds[slot], this.nbMatchIds[slot]);
+        Arrays.sort(keyMatchIds);
+        return keyMatchIds;
+    }
+
+    /**
+     * Returns the greatest match ID associated with a key.
+     *
+     * @param key the key
+     * @return the greatest ID of the matches of the key, or -1 if the key has no match
+     */
+    public int getLast(long key) {
+        int slot = this.slotOf(key);
+        int last = -1;
+        for (int i = 0; i < this.nbMatchIds[slot]; i++) {
+            last = Math.max(last, this.matchIds[slot][i]);
+        }
+        return last;
+    }
+
+    /**
+     * Returns the slot of a key, or the empty slot where it would be inserted.
+     */
+    private int slotOf(long key) {
+        int mask = this.keys.length - 1;
+        int slot = MatchIdMultimap.hash(key) & mask;
+        while (this.matchIds[slot] != null && this.keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot, shifting back the following keys of the probe sequence, as in a
+     * {@link MatchTable}.
+     */
+    private void removeSlot(int slot) {
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; this.matchIds[next] != null; next = (next + 1) & mask) {
+            int home = MatchIdMultimap.hash(this.keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                this.matchIds[hole] = this.matchIds[next];
+                this.nbMatchIds[hole] = this.nbMatchIds[next];
+                hole = next;
+            }
+        }
+        this.matchIds[hole] = null;
+        this.nbMatchIds[hole] = 0;
+        this.nbKeys--;
+    }
+
+    /**
+     * Reallocates the slots of the table.
+     *
+     * @param capacity the new number of slots (must be a power of 2)
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        int[][] oldMatchIds = this.matchIds;
+        int[] oldNbMatchIds = this.nbMatchIds;
+        this.keys = new long[capacity];
+        this.matchIds = new int[capacity][];
+        this.nbMatchIds = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldMatchIds[i] != null) {
+                int slot = this.slotOf(oldKeys[i]);
+                this.keys[slot] = oldKeys[i];
+                this.matchIds[slot] = oldMatchIds[i];
+                this.nbMatchIds[slot] = oldNbMatchIds[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key, as the keys are small consecutive integers.
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
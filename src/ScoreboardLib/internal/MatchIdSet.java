@@ -0,0 +1,138 @@
+package ScoreboardLib.internal;
+
+import java.util.Arrays;
+
+/**
+ * The {@code MatchIdSet} class is a set of match IDs, stored as a bitmap of the range of
+ * IDs between the lowest and the greatest stored ID, so it keeps them sorted by start
+ * order (as the IDs are allocated in ascending order).
+ * <p>
+ * Adding or removing an ID costs O(1), and the IDs greater than a given ID are listed in
+ * O(k + r / 64) for k listed IDs in a range of r IDs. The bitmap takes one bit per ID of
+ * its range: the words before the lowest stored ID are dropped when the bitmap grows, so
+ * the range follows the ongoing matches, which are usually the most recently started.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class MatchIdSet {
+
+    /** Initial number of words of the bitmap. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The words of the bitmap: the ID {@code id} is stored in the word {@code id / 64 - firstWord}. */
+    private long[] words;
+
+    /** The index of the word of ID 0, relative to which the words are stored. */
+    private int firstWord;
+
+    /** Number of IDs stored in the set. */
+    private int size;
+
+    /**
+     * Constructs a new, empty {@code MatchIdSet}.
+     */
+    public MatchIdSet() {
+        this.words = new long[MatchIdSet.INITIAL_CAPACITY];
+        this.firstWord = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Adds a match ID to the set.
+     *
+     * @param matchId the ID of the match, which must not be already stored
+     */
+    public void add(int matchId) {
+        int word = (matchId >>> 6) - this.firstWord;
+        if (word < 0 || word >= this.words.length) {
+            this.reframe(matchId >>> 6);
+            word = (matchId >>> 6) - this.firstWord;
+        }
+        this.words[word] |= 1L << matchId;
+        this.size++;
+    }
+
+    /**
+     * Removes a match ID from the set. Does nothing if it is not stored.
+     *
+     * @param matchId the ID of the match
+     */
+    public void remove(int matchId) {
+        int word = (matchId >>> 6) - this.firstWord;
+        if (word >= 0 && word < this.words.length && (this.words[word] & (1L << matchId)) != 0) {
+            this.words[word] &= ~(1L << matchId);
+            this.size--;
+        }
+    }
+
+    /**
+     * Returns the stored IDs greater than a given ID.
+     *
+     * @param matchId the ID after which the IDs are listed
+     * @return the stored IDs greater than the given ID, in ascending order
+     */
+    public int[] idsAfter(int matchId) {
+        int[] ids = new int[Math.min(this.size, 16)];
+        int nbIds = 0;
+        // The IDs are non-negative, so listing the IDs after a negative ID lists them all
+        int firstId = (matchId < 0) ? 0 : matchId + 1;
+        if (firstId < 0) {
+            return new int[0];
+        }
+        int word = Math.max((firstId >>> 6) - this.firstWord, 0);
+        for (; word < this.words.length; word++) {
+            long bits = this.words[word];
+            if (word == (firstId >>> 6) - this.firstWord) {
+                bits &= -1L << firstId;
+            }
+            while (bits != 0) {
+                if (nbIds == ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max(2 * nbIds, 16));
+                }
+                ids[nbIds++] = ((this.firstWord + word) << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return (nbIds == ids.length) ? ids : Arrays.copyOf(ids, nbIds);
+    }
+
+    /**
+     * Returns the number of stored IDs.
+     *
+     * @return the number of IDs
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Reallocates the bitmap so it covers the range of the stored IDs and a new word.
+     * The leading empty words are dropped, and the capacity is doubled until at least half
+     * of the words are free, so the reallocations are amortized.
+     *
+     * @param newWord the index of the word of the ID to add
+     */
+    private void reframe(int newWord) {
+        int lowest = newWord;
+        int highest = newWord;
+        for (int i = 0; i < this.words.length; i++) {
+            if (this.words[i] != 0) {
+                lowest = Math.min(lowest, this.firstWord + i);
+                highest = Math.max(highest, this.firstWord + i);
+            }
+        }
+        int capacity = this.words.length;
+        while (capacity < 2 * (highest - lowest + 1)) {
+            capacity *= 2;
+        }
+        // We keep the unused words after the range, where the next (greater) IDs go
+        long[] newWords = new long[capacity];
+        for (int i = 0; i < this.words.length; i++) {
+            if (this.words[i] != 0) {
+                newWords[this.firstWord + i - lowest] = this.words[i];
+            }
+        }
+        this.words = newWords;
+        this.firstWord = lowest;
+    }
+}
@@ -0,0 +1,337 @@
+package ScoreboardLib.internal;
+
+import java.util.function.Consumer;
+
+/**
+ * The {@code MatchRanking} class keeps the ongoing matches permanently sorted in the
+ * summary order (see {@link Match#compareTo(Match)}).
+ * <p>
+ * It is an order-statistic treap: a binary search tree on the match ordering, which is
+ * balanced by a heap on a pseudo-random priority derived from the match ID. The tree is
+ * intrusive, meaning that the {@link Match} objects are the nodes themselves, so
+ * inserting, removing or repositioning a match does not allocate anything.
+ * Each node also stores the size of its subtree, which allows to answer positional
+ * queries in O(log n).
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ * As the position of a match depends on its score, a match must be removed from the
+ * ranking before its score is modified, and inserted back afterwards.
+ */
+public class MatchRanking {
+
+    /** Root node of the treap, or null if the ranking is empty. */
+    private Match root;
+
+    /**
+     * Constructs a new, empty {@code MatchRanking}.
+     */
+    public MatchRanking() {
+        this.root = null;
+    }
+
+    /**
+     * Returns the number of matches in the ranking.
+     *
+     * @return the number of ranked matches
+     */
+    public int size() {
+        return MatchRanking.sizeOf(this.root);
+    }
+
+    /**
+     * Tells whether a match is currently part of the ranking.
+     *
+     * @param match the match
+     * @return true if the match is ranked
+     */
+    public boolean contains(Match match) {
+        return match.rankSize > 0;
+    }
+
+    /**
+     * Returns the position of a ranked match in the summary order, in O(log n).
+     *
+     * @param match the match, which must be part of the ranking
+     * @return the position of the match (0 for the highest ranked match)
+     */
+    public int rankOf(Match match) {
+        int rank = 0;
+        Match node = this.root;
+        while (node != null) {
+            int comparison = match.compareTo(node);
+            if (comparison == 0) {
+                return rank + MatchRanking.sizeOf(node.rankLeft);
+            }
+            if (comparison < 0) {
+                node = node.rankLeft;
+            } else {
+                rank += MatchRanking.sizeOf(node.rankLeft) + 1;
+                node = node.rankRight;
+            }
+        }
+        throw new IllegalStateException("Trying to get the position of a match which is not ranked");
+    }
+
+    /**
+     * Inserts a match at its position in the ranking.
+     * The match must not already be part of the ranking.
+     *
+     * @param match the match to insert
+     */
+    public void insert(Match match) {
+        match.rankLeft = null;
+        match.rankRight = null;
+        match.rankSize = 1;
+        this.root = MatchRanking.insert(this.root, match);
+    }
+
+    /**
+     * Fills an empty ranking with matches already sorted in the summary order, in O(n)
+     * rather than O(n log n) for as many insertions.
+     * <p>
+     * The tree is built from left to right, keeping the path from the root to the last
+     * inserted match (its right spine) in a stack: each new match becomes the right child of
+     * the last node of the spine having a higher priority, and the nodes of lower priority
+     * it replaces become its left subtree. A node leaves the spine once its subtree is
+     * complete, which is when its size is computed.
+     *
+     * @param sortedMatches the matches, sorted in the summary order
+     */
+    public void buildFrom(Match[] sortedMatches) {
+        Match[] spine = new Match[sortedMatches.length];
+        int height = 0;
+        for (Match match : sortedMatches) {
+            match.rankRight = null;
+            match.rankSize = 1;
+            Match lastPopped = null;
+            while (height > 0 && MatchRanking.priorityOf(spine[height - 1]) < MatchRanking.priorityOf(match)) {
+                lastPopped = spine[--height];
+                MatchRanking.updateSize(lastPopped);
+            }
+            match.rankLeft = lastPopped;
+            if (height > 0) {
+                spine[height - 1].rankRight = match;
+            }
+            spine[height++] = match;
+        }
+        while (height > 0) {
+            MatchRanking.updateSize(spine[--height]);
+        }
+        this.root = (sortedMatches.length > 0) ? spine[0] : null;
+    }
+
+    /**
+     * Removes a match from the ranking.
+     * The match must be part of the ranking, with the same score as when it was inserted.
+     *
+     * @param match the match to remove
+     */
+    public void remove(Match match) {
+        this.root = MatchRanking.remove(this.root, match);
+        match.rankLeft = null;
+        match.rankRight = null;
+        match.rankSize = 0;
+    }
+
+    /**
+     * Visits all the ranked matches, in the summary order (highest ranked first).
+     *
+     * @param visitor the action applied to each match
+     */
+    public void forEach(Consumer<Match> visitor) {
+        MatchRanking.forEach(this.root, visitor);
+    }
+
+    /**
+     * Copies consecutive ranked matches, and their current scores, in the summary order.
+     * The ranked matches before {@code firstRank} are skipped in O(log n), using the sizes
+     * of the subtrees, so copying k matches costs O(log n + k).
+     *
+     * @param firstRank the rank of the first match to copy (0 for the highest ranked match)
+     * @param matches the array receiving the matches
+     * @param scores the array receiving the packed scores of the matches
+     * @return the number of copied matches, which is lower than the length of the arrays
+     *         if the ranking does not contain enough matches
+     * @throws IllegalStateException if the walk visits more nodes than the tree holds, which
+     *         only happens when the tree is modified while being copied
+     */
+    public int copyTo(int firstRank, Match[] matches, long[] scores) {
+        // A consistent tree never needs more visits than it has nodes
+        int[] remainingVisits = {MatchRanking.sizeOf(this.root)};
+        return MatchRanking.copyTo(this.root, firstRank, matches, scores, 0, remainingVisits);
+    }
+
+    /**
+     * Returns the size of the subtree rooted at the given node.
+     *
+     * @param node the root of the subtree (possibly null)
+     * @return the number of nodes of the subtree
+     */
+    private static int sizeOf(Match node) {
+        return (node == null) ? 0 : node.rankSize;
+    }
+
+    /**
+     * Returns the heap priority of a node.
+     *
+     * @param node the node
+     * @return the priority of the node
+     */
+    private static int priorityOf(Match node) {
+        return MatchRanking.priorityOf(node.getMatchUniqueId());
+    }
+
+    /**
+     * Returns the heap priority of a match in a treap.
+     * The priority is a hash of the (unique) match ID, so it behaves as a random number
+     * while not requiring any additional state.
+     *
+     * @param matchId the ID of the match
+     * @return the priority of the match
+     */
+    static int priorityOf(int matchId) {
+        // Murmur3 32 bits finalizer
+        int h = matchId;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Recomputes the subtree size of a node from its children.
+     *
+     * @param node the node to update
+     */
+    private static void updateSize(Match node) {
+        node.rankSize = 1 + MatchRanking.sizeOf(node.rankLeft) + MatchRanking.sizeOf(node.rankRight);
+    }
+
+    private static Match rotateRight(Match node) {
+        Match left = node.rankLeft;
+        node.rankLeft = left.rankRight;
+        left.rankRight = node;
+        MatchRanking.updateSize(node);
+        MatchRanking.updateSize(left);
+        return left;
+    }
+
+    private static Match rotateLeft(Match node) {
+        Match right = node.rankRight;
+        node.rankRight = right.rankLeft;
+        right.rankLeft = node;
+        MatchRanking.updateSize(node);
+        MatchRanking.updateSize(right);
+        return right;
+    }
+
+    private static Match insert(Match node, Match match) {
+        if (node == null) {
+            return match;
+        }
+
+        // The new node is inserted as a leaf, then moved up with rotations
+        // until the heap property on the priorities is restored.
+        if (match.compareTo(node) < 0) {
+            node.rankLeft = MatchRanking.insert(node.rankLeft, match);
+            node.rankSize++;
+            if (MatchRanking.priorityOf(node.rankLeft) > MatchRanking.priorityOf(node)) {
+                node = MatchRanking.rotateRight(node);
+            }
+        } else {
+            node.rankRight = MatchRanking.insert(node.rankRight, match);
+            node.rankSize++;
+            if (MatchRanking.priorityOf(node.rankRight) > MatchRanking.priorityOf(node)) {
+                node = MatchRanking.rotateLeft(node);
+            }
+        }
+        return node;
+    }
+
+    private static Match remove(Match node, Match match) {
+        if (node == null) {
+            throw new IllegalStateException("Trying to remove a match which is not ranked");
+        }
+
+        // Start orders are unique, so the comparison only returns 0 for the match itself
+        int comparison = match.compareTo(node);
+        if (comparison == 0) {
+            return MatchRanking.merge(node.rankLeft, node.rankRight);
+        }
+        if (comparison < 0) {
+            node.rankLeft = MatchRanking.remove(node.rankLeft, match);
+        } else {
+            node.rankRight = MatchRanking.remove(node.rankRight, match);
+        }
+        node.rankSize--;
+        return node;
+    }
+
+    /**
+     * Merges two treaps, all the nodes of {@code left} being ranked before
+     * all the nodes of {@code right}.
+     */
+    private static Match merge(Match left, Match right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (MatchRanking.priorityOf(left) > MatchRanking.priorityOf(right)) {
+            left.rankRight = MatchRanking.merge(left.rankRight, right);
+            MatchRanking.updateSize(left);
+            return left;
+        }
+        right.rankLeft = MatchRanking.merge(left, right.rankLeft);
+        MatchRanking.updateSize(right);
+        return right;
+    }
+
+    /**
+     * Copies the matches of a subtree, starting at the given rank within the subtree,
+     * until the arrays are full, or the budget of visited nodes is exhausted.
+     *
+     * @return the index following the last copied match in the arrays
+     * @throws IllegalStateException if the budget of visited nodes is exhausted
+     */
+    private static int copyTo(Match node, int firstRank, Match[] matches, long[] scores, int index,
+                              int[] remainingVisits) {
+        while (node != null && index < matches.length) {
+            if (--remainingVisits[0] < 0) {
+                throw new IllegalStateException("The ranking was modified while being copied");
+            }
+            int leftSize = MatchRanking.sizeOf(node.rankLeft);
+            if (firstRank < leftSize) {
+                // The copy starts in the left subtree, and then goes on with this node
+                index = MatchRanking.copyTo(node.rankLeft, firstRank, matches, scores, index, remainingVisits);
+                firstRank = 0;
+                if (index >= matches.length) {
+                    break;
+                }
+            } else {
+                firstRank -= leftSize;
+            }
+
+            if (firstRank == 0) {
+                matches[index] = node;
+                scores[index] = node.getPackedScores();
+                index++;
+            } else {
+                firstRank--;
+            }
+            node = node.rankRight;
+        }
+        return index;
+    }
+
+    private static void forEach(Match node, Consumer<Match> visitor) {
+        while (node != null) {
+            MatchRanking.forEach(node.rankLeft, visitor);
+            visitor.accept(node);
+            node = node.rankRight;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package ScoreboardLib.internal;
+
+/**
+ * The {@code MatchStore} class stores the ongoing matches of a board: it indexes them by
+ * their unique match ID, and keeps them permanently sorted in the summary order (see
+ * {@link Match#compareTo(Match)}).
+ * <p>
+ * The matches are designated by handles, small non-negative integers returned by
+ * {@link #find(int)} and {@link #add(int, long, int, int)}, so a match is looked up once, and
+ * then read or modified without being looked up again. A handle stays valid until the
+ * next match is added to or removed from the store.
+ * <p>
+ * A match can also be read as a detached copy (see {@link #get(int)}), by the callers
+ * which do not need the handles.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ * As in a {@link MatchRanking}, a match must be ranked (see {@link #isRanked(int)}) for
+ * its position to be queried.
+ */
+public abstract class MatchStore {
+
+    /** Registry of the teams of the stored matches. */
+    private final TeamRegistry teams;
+
+    /**
+     * Constructs a new, empty {@code MatchStore}.
+     *
+     * @param teams the registry of the teams of the stored matches
+     */
+    protected MatchStore(TeamRegistry teams) {
+        this.teams = teams;
+    }
+
+    /**
+     * Returns the registry of the teams of the stored matches.
+     *
+     * @return the registry of the teams
+     */
+    public TeamRegistry getTeams() {
+        return this.teams;
+    }
+
+    /**
+     * Returns the handle of the match having the given ID.
+     *
+     * @param matchId the unique ID of the match
+     * @return the handle of the match, or -1 if there is no such match in the store
+     */
+    public abstract int find(int matchId);
+
+    /**
+     * Adds a new match, with a 0 - 0 score, and ranks it.
+     * A match having the same ID must not already be stored.
+     *
+     * @param matchId the unique ID of the match
+     * @param startOrder the unique start order of the match
+     * @param homeTeamId the ID of the home team in the registry
+     * @param visitorTeamId the ID of the visiting team in the registry
+     * @return the handle of the match
+     */
+    public abstract int add(int matchId, long startOrder, int homeTeamId, int visitorTeamId);
+
+    /**
+     * Removes a match from the store (and from the ranking, if it is ranked).
+     *
+     * @param handle the handle of the match
+     */
+    public abstract void removeAt(int handle);
+
+    /**
+     * Returns the unique ID of a stored match.
+     *
+     * @param handle the handle of the match
+     * @return the unique match ID
+     */
+    public abstract int getMatchId(int handle);
+
+    /**
+     * Returns the start order of a stored match.
+     *
+     * @param handle the handle of the match
+     * @return the order in which the match was started
+     */
+    public abstract long getStartOrder(int handle);
+
+    /**
+     * Returns the ID of the home team of a stored match.
+     *
+     * @param handle the handle of the match
+     * @return the ID of the home team in the registry
+     */
+    public abstract int getHomeTeamId(int handle);
+
+    /**
+     * Returns the ID of the visiting team of a stored match.
+     *
+     * @param handle the handle of the match
+     * @return the ID of the visiting team in the registry
+     */
+    public abstract int getVisitorTeamId(int handle);
+
+    /**
+     * Returns the scores of a stored match.
+     *
+     * @param handle the handle of the match
+     * @return the packed scores of both teams (see {@link Match#packScores(int, int)})
+     */
+    public abstract long getScores(int handle);
+
+    /**
+     * Sets the scores of a stored match. If the match is ranked, it is moved to its new
+     * position.
+     *
+     * @param handle the handle of the match
+     * @param scores the packed scores of both teams (see {@link Match#packScores(int, int)})
+     */
+    public abstract void setScores(int handle, long scores);
+
+    /**
+     * Tells whether a stored match is currently part of the ranking.
+     *
+     * @param handle the handle of the match
+     * @return true if the match is ranked
+     */
+    public abstract boolean isRanked(int handle);
+
+    /**
+     * Inserts a stored match, which is not ranked, at its position in the ranking.
+     *
+     * @param handle the handle of the match
+     */
+    public abstract void rank(int handle);
+
+    /**
+     * Takes a ranked match out of the ranking, typically before modifying the scores of
+     * several matches, which are then ranked again once each.
+     *
+     * @param handle the handle of the match
+     */
+    public abstract void unrank(int handle);
+
+    /**
+     * Returns the position of a ranked match in the summary order, in O(log n).
+     *
+     * @param handle the handle of the match
+     * @return the position of the match (0 for the highest ranked match)
+     */
+    public abstract int rankOf(int handle);
+
+    /**
+     * Copies consecutive ranked matches, and their current scores, in the summary order,
+     * in O(log n + k) for k copied matches.
+     *
+     * @param firstRank the rank of the first match to copy (0 for the highest ranked match)
+     * @param matchIds the array receiving the IDs of the matches
+     * @param startOrders the array receiving the start orders of the matches
+     * @param homeTeamIds the array receiving the IDs of the home teams
+     * @param visitorTeamIds the array receiving the IDs of the visiting teams
+     * @param scores the array receiving the packed scores of the matches
+     * @return the number of copied matches, which is lower than the length of the arrays
+     *         if the ranking does not contain enough matches
+     */
+    public abstract int copyTo(int firstRank, int[] matchIds, long[] startOrders, int[] homeTeamIds,
+                               int[] visitorTeamIds, long[] scores);
+
+    /**
+     * Copies the IDs of the stored matches and of their teams, in no particular order,
+     * for the scans which need neither the summary order nor the scores.
+     *
+     * @param matchIds the array receiving the IDs of the matches
+     * @param homeTeamIds the array receiving the IDs of the home teams
+     * @param visitorTeamIds the array receiving the IDs of the visiting teams
+     * @return the number of copied matches, which is lower than the length of the arrays
+     *         if the store does not contain enough matches
+     */
+    public abstract int copyTeamsTo(int[] matchIds, int[] homeTeamIds, int[] visitorTeamIds);
+
+    /**
+     * Fills an empty store with matches already sorted in the summary order, and ranks
+     * them in O(n).
+     *
+     * @param matchIds the IDs of the matches, sorted in the summary order
+     * @param startOrders the start orders of the matches
+     * @param homeTeamIds the IDs of the home teams
+     * @param visitorTeamIds the IDs of the visiting teams
+     * @param scores the packed scores of the matches
+     */
+    public abstract void buildFrom(int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                                   long[] scores);
+
+    /**
+     * Returns the number of stored matches.
+     *
+     * @return the number of matches
+     */
+    public abstract int size();
+
+    /**
+     * Returns a copy of the match having the given ID. The copy is detached from the
+     * store: it does not follow the changes of the match, and modifying it does not
+     * modify the store.
+     *
+     * @param matchId the unique ID of the match
+     * @return the copy of the match, or null if there is no such match in the store
+     */
+    public Match get(int matchId) {
+        int handle = this.find(matchId);
+        if (handle < 0) {
+            return null;
+        }
+        Match match = new Match(this.getMatchId(handle), this.getStartOrder(handle), this.teams,
+            this.getHomeTeamId(handle), this.getVisitorTeamId(handle));
+        match.setPackedScores(this.getScores(handle));
+        return match;
+    }
+}
@@ -0,0 +1,249 @@
+package ScoreboardLib.internal;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The {@code MatchTable} class stores the ongoing matches, indexed by their unique match ID.
+ * <p>
+ * It is an open-addressing hash table (with linear probing) keyed by primitive {@code int}
+ * IDs, so looking up a match with {@link #get(int)} neither boxes the ID nor allocates
+ * anything. The key of a slot is the ID of the match it contains, so the table only needs
+ * a single array. It also implements the {@code Map<Integer, Match>} interface, for the
+ * callers which do not need the primitive accessors.
+ * <p>
+ * This class is not thread-safe: the callers are responsible for the synchronization.
+ */
+public class MatchTable extends AbstractMap<Integer, Match> {
+
+    /** Initial number of slots of the table (must be a power of 2). */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The slots of the table, a null slot being empty. */
+    private Match[] slots;
+
+    /** Number of matches stored in the table. */
+    private int nbMatches;
+
+    /**
+     * Constructs a new, empty {@code MatchTable}.
+     */
+    public MatchTable() {
+        this.slots = new Match[MatchTable.INITIAL_CAPACITY];
+        this.nbMatches = 0;
+    }
+
+    /**
+     * Returns the match having the given ID.
+     *
+     * @param matchId the unique ID of the match
+     * @return the match, or null if there is no such match in the table
+     */
+    public Match get(int matchId) {
+        int mask = this.slots.length - 1;
+        for (int slot = MatchTable.hash(matchId) & mask; ; slot = (slot + 1) & mask) {
+            Match match = this.slots[slot];
+            if (match == null || match.getMatchUniqueId() == matchId) {
+                return match;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot containing the match having the given ID.
+     * The slot stays valid until the next match is added to or removed from the table.
+     *
+     * @param matchId the unique ID of the match
+     * @return the slot of the match, or -1 if there is no such match in the table
+     */
+    public int slotOf(int matchId) {
+        int mask = this.slots.length - 1;
+        for (int slot = MatchTable.hash(matchId) & mask; ; slot = (slot + 1) & mask) {
+            Match match = this.slots[slot];
+            if (match == null) {
+                return -1;
+            }
+            if (match.getMatchUniqueId() == matchId) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the match contained in a slot.
+     *
+     * @param slot a slot returned by {@link #slotOf(int)} or {@link #add(Match)}, or lower
+     *        than {@link #capacity()}
+     * @return the match, or null if the slot is empty
+     */
+    public Match getAt(int slot) {
+        return this.slots[slot];
+    }
+
+    /**
+     * Returns the number of slots of the table, which can be visited with
+     * {@link #getAt(int)}, an empty slot containing null.
+     *
+     * @return the number of slots
+     */
+    public int capacity() {
+        return this.slots.length;
+    }
+
+    /**
+     * Adds a match to the table. A match having the same ID must not already be stored.
+     *
+     * @param match the match to add
+     * @return the slot of the match
+     */
+    public int add(Match match) {
+        // The load factor is kept under 1/2, so the probe sequences stay short
+        if (2 * (this.nbMatches + 1) > this.slots.length) {
+            this.resize(2 * this.slots.length);
+        }
+        this.nbMatches++;
+        return MatchTable.insert(this.slots, match);
+    }
+
+    /**
+     * Removes the match having the given ID from the table.
+     *
+     * @param matchId the unique ID of the match
+     * @return the removed match, or null if there is no such match in the table
+     */
+    public Match remove(int matchId) {
+        int mask = this.slots.length - 1;
+        int slot = MatchTable.hash(matchId) & mask;
+        while (this.slots[slot] != null && this.slots[slot].getMatchUniqueId() != matchId) {
+            slot = (slot + 1) & mask;
+        }
+        Match removed = this.slots[slot];
+        if (removed == null) {
+            return null;
+        }
+
+        // Rather than leaving a tombstone, the following matches of the probe sequence
+        // are shifted back, so the lookups never have to skip deleted slots.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; this.slots[next] != null; next = (next + 1) & mask) {
+            int home = MatchTable.hash(this.slots[next].getMatchUniqueId()) & mask;
+            // The match can fill the hole only if its home slot is not located
+            // (cyclically) between the hole and its current slot.
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                this.slots[hole] = this.slots[next];
+                hole = next;
+            }
+        }
+        this.slots[hole] = null;
+        this.nbMatches--;
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return this.nbMatches;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof Integer) && this.get(((Integer) key).intValue()) != null;
+    }
+
+    @Override
+    public Match get(Object key) {
+        return (key instanceof Integer) ? this.get(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public Match put(Integer key, Match match) {
+        if (key.intValue() != match.getMatchUniqueId()) {
+            throw new IllegalArgumentException("The key must be the ID of the match");
+        }
+        Match previous = this.remove(key.intValue());
+        this.add(match);
+        return previous;
+    }
+
+    @Override
+    public Match remove(Object key) {
+        return (key instanceof Integer) ? this.remove(((Integer) key).intValue()) : null;
+    }
+
+    @Override
+    public Set<Map.Entry<Integer, Match>> entrySet() {
+        return new AbstractSet<Map.Entry<Integer, Match>>() {
+            @Override
+            public int size() {
+                return MatchTable.this.nbMatches;
+            }
+
+            @Override
+            public Iterator<Map.Entry<Integer, Match>> iterator() {
+                return new Iterator<Map.Entry<Integer, Match>>() {
+                    private int nextSlot = this.findSlot(0);
+
+                    private int findSlot(int from) {
+                        Match[] slots = MatchTable.this.slots;
+                        while (from < slots.length && slots[from] == null) {
+                            from++;
+                        }
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.nextSlot < MatchTable.this.slots.length;
+                    }
+
+                    @Override
+                    public Map.Entry<Integer, Match> next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Match match = MatchTable.this.slots[this.nextSlot];
+                        this.nextSlot = this.findSlot(this.nextSlot + 1);
+                        return new AbstractMap.SimpleImmutableEntry<>(match.getMatchUniqueId(), match);
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Reallocates the slots of the table.
+     *
+     * @param capacity the new number of slots (must be a power of 2)
+     */
+    private void resize(int capacity) {
+        Match[] newSlots = new Match[capacity];
+        for (Match match : this.slots) {
+            if (match != null) {
+                MatchTable.insert(newSlots, match);
+            }
+        }
+        this.slots = newSlots;
+    }
+
+    private static int insert(Match[] slots, Match match) {
+        int mask = slots.length - 1;
+        int slot = MatchTable.hash(match.getMatchUniqueId()) & mask;
+        while (slots[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = match;
+        return slot;
+    }
+
+    /**
+     * Spreads the bits of a match ID, as consecutive IDs would otherwise
+     * fill consecutive slots.
+     */
+    static int hash(int matchId) {
+        int h = matchId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
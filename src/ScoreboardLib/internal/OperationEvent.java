@@ -0,0 +1,37 @@
+package ScoreboardLib.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The {@code OperationEvent} class is the JFR event emitted for each operation timed by the
+ * metrics of a scoreboard (see {@code ScoreboardMetrics.Timer}), while they are enabled.
+ * <p>
+ * The event is committed once the operation is complete, with its measured duration as its
+ * latency field (the duration of the event itself is zero, as it is not begun).
+ */
+@Name("ScoreboardLib.Operation")
+@Label("Scoreboard Operation")
+@Category("Scoreboard")
+@Description("An operation timed by the metrics of a scoreboard")
+@StackTrace(false)
+public class OperationEvent extends Event {
+
+    /** The name of the timer of the operation. */
+    @Label("Operation")
+    public String operation;
+
+    /** The ID of the match of the operation, or -1 if it does not concern a single match. */
+    @Label("Match ID")
+    public int matchId;
+
+    /** The measured duration of the operation. */
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+}
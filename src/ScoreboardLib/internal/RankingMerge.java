@@ -0,0 +1,134 @@
+package ScoreboardLib.internal;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * The {@code RankingMerge} class merges several rankings, each one sorted in the summary
+ * order (see {@link Match#compareTo(Match)}), into a single ranking, as a fork-join task.
+ * <p>
+ * The k rankings are merged as a balanced tree of two-way merges: each task forks the
+ * merge of the first half of its rankings, merges the second half itself, and then merges
+ * both results, so the independent merges run in parallel, and each match is copied
+ * O(log k) times. The rankings themselves are obtained by the leaf tasks, so they can be
+ * copied in parallel as well.
+ * <p>
+ * As the matches compare by total score and then by start order, the merged ranking is in
+ * the summary order, provided that the start orders are allocated by a single
+ * {@link MatchIdAllocator} shared by the rankings. All the
+ * rankings must share the same registry of teams.
+ */
+public class RankingMerge extends RecursiveTask<RankingSnapshot> {
+
+    /** Serialization version (the task is never serialized, as a fork-join task). */
+    private static final long serialVersionUID = 1L;
+
+    /** Provides the rankings to merge, by index. */
+    private final transient IntFunction<RankingSnapshot> rankings;
+
+    /** The index of the first ranking merged by this task. */
+    private final int from;
+
+    /** The index after the last ranking merged by this task. */
+    private final int to;
+
+    /** The maximal number of matches of the merged ranking, its last matches being dropped. */
+    private final int maxSize;
+
+    /**
+     * Constructs the task merging a range of rankings.
+     *
+     * @param rankings provides the rankings to merge, by index
+     * @param from the index of the first ranking to merge
+     * @param to the index after the last ranking to merge
+     * @param maxSize the maximal number of matches of the merged ranking
+     */
+    private RankingMerge(IntFunction<RankingSnapshot> rankings, int from, int to, int maxSize) {
+        this.rankings = rankings;
+        this.from = from;
+        this.to = to;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Merges rankings in parallel, in the common fork-join pool, and returns a page of the
+     * merged ranking.
+     *
+     * @param rankings provides the rankings to merge, by index (called once per index,
+     *        possibly by several threads at once)
+     * @param nbRankings the number of rankings to merge (at least 1)
+     * @param offset the rank of the first match of the returned page
+     * @param limit the maximal number of matches of the returned page
+     * @return the page of the merged ranking
+     */
+    public static RankingSnapshot merge(IntFunction<RankingSnapshot> rankings, int nbRankings, int offset,
+                                        int limit) {
+        // Only the first offset + limit matches of each ranking can be part of the page
+        int maxSize = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+        RankingSnapshot merged = ForkJoinPool.commonPool().invoke(new RankingMerge(rankings, 0, nbRankings, maxSize));
+        if (offset == 0 && merged.size() <= limit) {
+            return merged;
+        }
+        int end = (int) Math.min((long) offset + limit, merged.size());
+        int start = Math.min(offset, end);
+        int[] matchIds = new int[end - start];
+        long[] startOrders = new long[end - start];
+        int[] homeTeamIds = new int[end - start];
+        int[] visitorTeamIds = new int[end - start];
+        long[] scores = new long[end - start];
+        for (int i = start; i < end; i++) {
+            matchIds[i - start] = merged.getMatchId(i);
+            startOrders[i - start] = merged.getStartOrder(i);
+            homeTeamIds[i - start] = merged.getHomeTeamId(i);
+            visitorTeamIds[i - start] = merged.getVisitorTeamId(i);
+            scores[i - start] = merged.getScores(i);
+        }
+        return new RankingSnapshot(merged.getTeams(), matchIds, startOrders, homeTeamIds, visitorTeamIds, scores);
+    }
+
+    @Override
+    protected RankingSnapshot compute() {
+        if (this.to - this.from == 1) {
+            return this.rankings.apply(this.from);
+        }
+        int middle = (this.from + this.to) >>> 1;
+        RankingMerge firstHalf = new RankingMerge(this.rankings, this.from, middle, this.maxSize);
+        firstHalf.fork();
+        RankingSnapshot second = new RankingMerge(this.rankings, middle, this.to, this.maxSize).compute();
+        return RankingMerge.mergeTwo(firstHalf.join(), second, this.maxSize);
+    }
+
+    /**
+     * Merges two rankings sorted in the summary order.
+     *
+     * @param first the first ranking
+     * @param second the second ranking
+     * @param maxSize the maximal number of matches of the merged ranking
+     * @return the merged ranking
+     */
+    private static RankingSnapshot mergeTwo(RankingSnapshot first, RankingSnapshot second, int maxSize) {
+        int size = (int) Math.min((long) first.size() + second.size(), maxSize);
+        int[] matchIds = new int[size];
+        long[] startOrders = new long[size];
+        int[] homeTeamIds = new int[size];
+        int[] visitorTeamIds = new int[size];
+        long[] scores = new long[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            // We take the match of the first ranking unless the second one is ranked before it
+            boolean fromFirst = j == second.size() || (i < first.size()
+                && Match.compare(first.getStartOrder(i), first.getScores(i), second.getStartOrder(j),
+                    second.getScores(j)) <= 0);
+            RankingSnapshot source = fromFirst ? first : second;
+            int index = fromFirst ? i++ : j++;
+            matchIds[k] = source.getMatchId(index);
+            startOrders[k] = source.getStartOrder(index);
+            homeTeamIds[k] = source.getHomeTeamId(index);
+            visitorTeamIds[k] = source.getVisitorTeamId(index);
+            scores[k] = source.getScores(index);
+        }
+        return new RankingSnapshot(first.getTeams(), matchIds, startOrders, homeTeamIds, visitorTeamIds, scores);
+    }
+}
@@ -0,0 +1,592 @@
+package ScoreboardLib.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The {@code RankingSnapshot} class is an immutable copy of the ranking of a
+ * {@link MatchStore}: the ranked matches, in the summary order, together with the scores
+ * they had when the copy was taken.
+ * <p>
+ * Taking the copy is cheap (a few primitive arrays, without any string), so it can be done
+ * within a critical section, while the much more expensive rendering of the summary is done
+ * afterwards, without holding any lock. The summary is streamed line by line to its
+ * destination, without building any intermediate string.
+ * <p>
+ * The full summary is rather assembled from the lines of the matches, rendered once per
+ * snapshot (see {@link #renderLines(RankingSnapshot)}): the line of a match which has not
+ * changed since a previous snapshot is taken from it, rather than rendered again, so a
+ * summary following a few changes only renders the lines of the changed matches. The
+ * lines can also be rendered in parallel, by chunks, in the common fork-join pool (see
+ * {@link #renderLines(RankingSnapshot, int)}), which the summaries do not do until a
+ * crossover is measured on a multi-core host.
+ */
+public class RankingSnapshot {
+
+    /** Initial size of the buffer used to write the summary to a byte channel. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Maximal number of characters of a score (a positive int). */
+    private static final int MAX_SCORE_LENGTH = 10;
+
+    /** Separator between the name of a team and its score. */
+    private static final byte SPACE = ' ';
+
+    /** Separator between the home team and the visiting team. */
+    private static final byte[] TEAM_SEPARATOR = {' ', '-', ' '};
+
+    /** Separator between two matches of the summary. */
+    private static final byte LINE_SEPARATOR = '\n';
+
+    /** Number of lines rendered by each task of a parallel rendering. */
+    private static final int RENDER_CHUNK_SIZE = 1 << 13;
+
+    /** Registry of the teams of the matches. */
+    private final TeamRegistry teams;
+
+    /** The IDs of the matches, in the summary order. */
+    private final int[] matchIds;
+
+    /** The start orders of the matches. */
+    private final long[] startOrders;
+
+    /** The IDs of the home teams of the matches. */
+    private final int[] homeTeamIds;
+
+    /** The IDs of the visiting teams of the matches. */
+    private final int[] visitorTeamIds;
+
+    /** The packed scores of the matches, when the snapshot was taken. */
+    private final long[] scores;
+
+    /** The lines of the matches, in the summary order, or null if not rendered yet. */
+    private volatile String[] lines;
+
+    /**
+     * Takes a snapshot of the ranking of the given store.
+     * The store must not be modified while the snapshot is being taken.
+     *
+     * @param store the store of the matches to copy
+     */
+    public RankingSnapshot(MatchStore store) {
+        this(store, 0, store.size());
+    }
+
+    /**
+     * Takes a snapshot of a part of the ranking of the given store: at most {@code limit}
+     * consecutive matches, starting with the one at rank {@code offset}. The cost is
+     * O(log n + limit). The store must not be modified while the snapshot is being taken.
+     *
+     * @param store the store of the matches to copy
+     * @param offset the rank of the first match to copy (0 for the highest ranked match)
+     * @param limit the maximal number of matches to copy
+     */
+    public RankingSnapshot(MatchStore store, int offset, int limit) {
+        int size = Math.max(0, Math.min(limit, store.size() - offset));
+        this.teams = store.getTeams();
+        this.matchIds = new int[size];
+        this.startOrders = new long[size];
+        this.homeTeamIds = new int[size];
+        this.visitorTeamIds = new int[size];
+        this.scores = new long[size];
+        store.copyTo(offset, this.matchIds, this.startOrders, this.homeTeamIds, this.visitorTeamIds, this.scores);
+    }
+
+    /**
+     * Constructs a snapshot from matches already copied, in the summary order, for
+     * instance by a {@link RankingMerge}.
+     *
+     * @param teams the registry of the teams of the matches
+     * @param matchIds the IDs of the matches, in the summary order
+     * @param startOrders the start orders of the matches
+     * @param homeTeamIds the IDs of the home teams
+     * @param visitorTeamIds the IDs of the visiting teams
+     * @param scores the packed scores of the matches
+     */
+    RankingSnapshot(TeamRegistry teams, int[] matchIds, long[] startOrders, int[] homeTeamIds, int[] visitorTeamIds,
+                    long[] scores) {
+        this.teams = teams;
+        this.matchIds = matchIds;
+        this.startOrders = startOrders;
+        this.homeTeamIds = homeTeamIds;
+        this.visitorTeamIds = visitorTeamIds;
+        this.scores = scores;
+    }
+
+    /**
+     * Returns the number of matches of the snapshot.
+     *
+     * @return the number of matches
+     */
+    public int size() {
+        return this.matchIds.length;
+    }
+
+    /**
+     * Returns the unique ID of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot (0 for the highest ranked match)
+     * @return the unique match ID
+     */
+    public int getMatchId(int index) {
+        return this.matchIds[index];
+    }
+
+    /**
+     * Returns the start order of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the order in which the match was started
+     */
+    long getStartOrder(int index) {
+        return this.startOrders[index];
+    }
+
+    /**
+     * Returns the ID of the home team of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the ID of the home team in the registry of the teams
+     */
+    int getHomeTeamId(int index) {
+        return this.homeTeamIds[index];
+    }
+
+    /**
+     * Returns the ID of the visiting team of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the ID of the visiting team in the registry of the teams
+     */
+    int getVisitorTeamId(int index) {
+        return this.visitorTeamIds[index];
+    }
+
+    /**
+     * Returns the packed scores of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the packed scores of both teams (see {@link Match#packScores(int, int)})
+     */
+    long getScores(int index) {
+        return this.scores[index];
+    }
+
+    /**
+     * Returns the registry of the teams of the matches of the snapshot.
+     *
+     * @return the registry of the teams
+     */
+    TeamRegistry getTeams() {
+        return this.teams;
+    }
+
+    /**
+     * Returns the name of the home team of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the name of the home team
+     */
+    public String getNameHomeTeam(int index) {
+        return this.teams.getName(this.homeTeamIds[index]);
+    }
+
+    /**
+     * Returns the name of the visiting team of a match of the snapshot.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the name of the visiting team
+     */
+    public String getNameVisitorTeam(int index) {
+        return this.teams.getName(this.visitorTeamIds[index]);
+    }
+
+    /**
+     * Returns the score of the home team of a match, when the snapshot was taken.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the score of the home team
+     */
+    public int getHomeScore(int index) {
+        return Match.homeScoreOf(this.scores[index]);
+    }
+
+    /**
+     * Returns the score of the visiting team of a match, when the snapshot was taken.
+     *
+     * @param index the index of the match in the snapshot
+     * @return the score of the visiting team
+     */
+    public int getVisitorScore(int index) {
+        return Match.visitorScoreOf(this.scores[index]);
+    }
+
+    /**
+     * Renders the summary of the matches, assembled from their lines (see
+     * {@link #renderLines(RankingSnapshot)}).
+     *
+     * @param previous a previous snapshot of the same board whose lines are rendered, or null
+     * @return a formatted string containing match summaries, separated by new lines
+     */
+    public String renderSummary(RankingSnapshot previous) {
+        // The lengths of the lines are summed first, so the summary is copied once into a
+        // buffer of the right size
+        return String.join("\n", this.renderLines(previous));
+    }
+
+    /**
+     * Renders the lines of the matches, in the summary order, once: the following calls
+     * return the same lines. The line of a match whose teams and scores are the same in
+     * the given previous snapshot is reused as is, the other ones are rendered.
+     * <p>
+     * The snapshot is immutable, so concurrent first calls render the same lines, and it
+     * does not matter which ones are kept.
+     *
+     * @param previous a previous snapshot of the same board, or null; only its lines
+     *        already rendered are reused
+     * @return the lines of the matches, which must not be modified
+     */
+    public String[] renderLines(RankingSnapshot previous) {
+        return this.renderLines(previous, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Renders the lines of the matches once, as {@link #renderLines(RankingSnapshot)} does,
+     * in the common fork-join pool from the given number of matches. The threshold from
+     * which the parallel rendering pays off depends on the host, and is measured by
+     * {@code SummaryRenderBenchmark}.
+     *
+     * @param previous a previous snapshot of the same board, or null
+     * @param parallelThreshold the minimal number of matches rendered in parallel
+     * @return the lines of the matches, which must not be modified
+     */
+    public String[] renderLines(RankingSnapshot previous, int parallelThreshold) {
+        String[] rendered = this.lines;
+        if (rendered != null) {
+            return rendered;
+        }
+        rendered = new String[this.matchIds.length];
+        String[] previousLines = (previous == null || previous.teams != this.teams) ? null : previous.lines;
+        if (rendered.length >= parallelThreshold) {
+            // The tasks share the index of the previous matches, so it is built beforehand
+            int[] previousIndexes = (previousLines == null) ? null : RankingSnapshot.indexMatchIds(previous.matchIds);
+            ForkJoinPool.commonPool().invoke(new LineRendering(this, previous, previousLines, previousIndexes,
+                rendered, 0, rendered.length));
+        } else {
+            this.renderRange(previous, previousLines, null, rendered, 0, rendered.length);
+        }
+        this.lines = rendered;
+        return rendered;
+    }
+
+    /**
+     * Renders the lines of a range of matches, reusing the unchanged lines of a previous
+     * snapshot.
+     *
+     * @param previous the previous snapshot, or null
+     * @param previousLines the rendered lines of the previous snapshot, or null to render
+     *        all the lines
+     * @param previousIndexes the index of the match IDs of the previous snapshot (see
+     *        {@link #indexMatchIds(int[])}), or null to build it when needed
+     * @param rendered receives the lines
+     * @param from the index of the first match of the range
+     * @param to the index after the last match of the range
+     */
+    private void renderRange(RankingSnapshot previous, String[] previousLines, int[] previousIndexes,
+                             String[] rendered, int from, int to) {
+        // A few changes only move a few matches, shifting the ones ranked in between by one
+        // position, so each match is first looked for at the shift of the previous one
+        int shift = 0;
+        StringBuilder line = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            int j = -1;
+            if (previousLines != null) {
+                j = i + shift;
+                if (j < 0 || j >= previous.matchIds.length || previous.matchIds[j] != this.matchIds[i]) {
+                    if (previousIndexes == null) {
+                        previousIndexes = RankingSnapshot.indexMatchIds(previous.matchIds);
+                    }
+                    j = RankingSnapshot.findIndex(previousIndexes, previous.matchIds, this.matchIds[i]);
+                }
+            }
+            if (j >= 0) {
+                shift = j - i;
+                if (previous.scores[j] == this.scores[i] && previous.homeTeamIds[j] == this.homeTeamIds[i]
+                        && previous.visitorTeamIds[j] == this.visitorTeamIds[i]) {
+                    rendered[i] = previousLines[j];
+                    continue;
+                }
+            }
+            line.setLength(0);
+            line.append(this.getNameHomeTeam(i)).append((char) RankingSnapshot.SPACE)
+                .append(Match.homeScoreOf(this.scores[i])).append(" - ")
+                .append(this.getNameVisitorTeam(i)).append((char) RankingSnapshot.SPACE)
+                .append(Match.visitorScoreOf(this.scores[i]));
+            rendered[i] = line.toString();
+        }
+    }
+
+    /**
+     * Tells whether the lines of the matches have been rendered.
+     *
+     * @return true if {@link #renderLines(RankingSnapshot)} returns without rendering anything
+     */
+    public boolean hasRenderedLines() {
+        return this.lines != null;
+    }
+
+    /**
+     * Indexes match IDs in an open-addressing hash table (with linear probing), holding
+     * the index of each ID plus one, 0 being an empty slot.
+     *
+     * @param matchIds the match IDs to index
+     * @return the slots of the table, whose number is a power of 2
+     */
+    private static int[] indexMatchIds(int[] matchIds) {
+        // The load factor is kept under 1/2, so the probe sequences stay short
+        int[] slots = new int[Integer.highestOneBit(Math.max(1, matchIds.length)) << 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < matchIds.length; i++) {
+            int slot = RankingSnapshot.hash(matchIds[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+        return slots;
+    }
+
+    /**
+     * Finds the index of a match ID indexed by {@link #indexMatchIds(int[])}.
+     *
+     * @param slots the slots of the table
+     * @param matchIds the indexed match IDs
+     * @param matchId the match ID to find
+     * @return the index of the match ID, or -1 if it is not indexed
+     */
+    private static int findIndex(int[] slots, int[] matchIds, int matchId) {
+        int mask = slots.length - 1;
+        int slot = RankingSnapshot.hash(matchId) & mask;
+        while (slots[slot] != 0) {
+            if (matchIds[slots[slot] - 1] == matchId) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Spreads the bits of a match ID, as the consecutive IDs would otherwise fill
+     * consecutive slots.
+     *
+     * @param matchId the match ID
+     * @return the hash of the match ID
+     */
+    private static int hash(int matchId) {
+        return matchId * 0x9E3779B9;
+    }
+
+    /**
+     * Writes the summary of the matches to a character sink.
+     * The format is the same as the one of {@code Scoreboard.getMatchesSummary()}.
+     *
+     * @param out the destination of the summary
+     * @throws IOException if the destination fails to write
+     */
+    public void appendTo(Appendable out) throws IOException {
+        if (out instanceof StringBuilder builder) {
+            this.appendTo(builder);
+            return;
+        }
+
+        // The digits of the scores are formatted in a reusable buffer,
+        // rather than in a new string for each score.
+        char[] digits = new char[RankingSnapshot.MAX_SCORE_LENGTH];
+        CharBuffer digitsView = CharBuffer.wrap(digits);
+
+        for (int i = 0; i < this.matchIds.length; i++) {
+            if (i > 0) {
+                out.append((char) RankingSnapshot.LINE_SEPARATOR);
+            }
+            out.append(this.getNameHomeTeam(i)).append((char) RankingSnapshot.SPACE);
+            int start = RankingSnapshot.formatScore(Match.homeScoreOf(this.scores[i]), digits);
+            out.append(digitsView, start, digits.length);
+            out.append(" - ").append(this.getNameVisitorTeam(i)).append((char) RankingSnapshot.SPACE);
+            start = RankingSnapshot.formatScore(Match.visitorScoreOf(this.scores[i]), digits);
+            out.append(digitsView, start, digits.length);
+        }
+    }
+
+    /**
+     * Writes the summary of the matches to a string builder, which formats
+     * the scores in place by itself.
+     *
+     * @param out the destination of the summary
+     */
+    private void appendTo(StringBuilder out) {
+        for (int i = 0; i < this.matchIds.length; i++) {
+            if (i > 0) {
+                out.append((char) RankingSnapshot.LINE_SEPARATOR);
+            }
+            out.append(this.getNameHomeTeam(i)).append((char) RankingSnapshot.SPACE)
+                .append(Match.homeScoreOf(this.scores[i])).append(" - ")
+                .append(this.getNameVisitorTeam(i)).append((char) RankingSnapshot.SPACE)
+                .append(Match.visitorScoreOf(this.scores[i]));
+        }
+    }
+
+    /**
+     * Writes the UTF-8 encoded summary of the matches to a byte channel.
+     * The format is the same as the one of {@code Scoreboard.getMatchesSummary()}.
+     * <p>
+     * The lines are encoded in a single reusable buffer, which is flushed to the channel
+     * each time it is full, and the team names are copied from their cached encoding.
+     * The channel should be in blocking mode, as this method keeps retrying until the
+     * whole summary is written.
+     *
+     * @param channel the destination of the summary
+     * @throws IOException if the channel fails to write
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RankingSnapshot.BUFFER_SIZE);
+
+        for (int i = 0; i < this.matchIds.length; i++) {
+            byte[] nameHomeTeam = this.teams.getEncodedName(this.homeTeamIds[i]);
+            byte[] nameVisitorTeam = this.teams.getEncodedName(this.visitorTeamIds[i]);
+
+            // Making sure that the whole line fits in the buffer
+            int lineLength = 1 + nameHomeTeam.length + 1 + RankingSnapshot.MAX_SCORE_LENGTH
+                + RankingSnapshot.TEAM_SEPARATOR.length + nameVisitorTeam.length + 1 + RankingSnapshot.MAX_SCORE_LENGTH;
+            if (lineLength > buffer.remaining()) {
+                RankingSnapshot.flush(buffer, channel);
+                if (lineLength > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(lineLength);
+                }
+            }
+
+            if (i > 0) {
+                buffer.put(RankingSnapshot.LINE_SEPARATOR);
+            }
+            buffer.put(nameHomeTeam).put(RankingSnapshot.SPACE);
+            RankingSnapshot.putScore(Match.homeScoreOf(this.scores[i]), buffer);
+            buffer.put(RankingSnapshot.TEAM_SEPARATOR).put(nameVisitorTeam).put(RankingSnapshot.SPACE);
+            RankingSnapshot.putScore(Match.visitorScoreOf(this.scores[i]), buffer);
+        }
+        RankingSnapshot.flush(buffer, channel);
+    }
+
+    /**
+     * The {@code LineRendering} class renders the lines of a range of matches as a
+     * fork-join task, split in halves down to {@link #RENDER_CHUNK_SIZE} lines.
+     */
+    private static final class LineRendering extends RecursiveAction {
+
+        /** Serialization version (the task is never serialized, as a fork-join task). */
+        private static final long serialVersionUID = 1L;
+
+        /** The snapshot whose lines are rendered. */
+        private final transient RankingSnapshot snapshot;
+
+        /** The previous snapshot, or null. */
+        private final transient RankingSnapshot previous;
+
+        /** The rendered lines of the previous snapshot, or null. */
+        private final String[] previousLines;
+
+        /** The index of the match IDs of the previous snapshot, or null. */
+        private final int[] previousIndexes;
+
+        /** Receives the lines. */
+        private final String[] rendered;
+
+        /** The index of the first match of the range. */
+        private final int from;
+
+        /** The index after the last match of the range. */
+        private final int to;
+
+        /**
+         * Constructs the task rendering a range of lines.
+         *
+         * @param snapshot the snapshot whose lines are rendered
+         * @param previous the previous snapshot, or null
+         * @param previousLines the rendered lines of the previous snapshot, or null
+         * @param previousIndexes the index of the match IDs of the previous snapshot, or null
+         * @param rendered receives the lines
+         * @param from the index of the first match of the range
+         * @param to the index after the last match of the range
+         */
+        private LineRendering(RankingSnapshot snapshot, RankingSnapshot previous, String[] previousLines,
+                              int[] previousIndexes, String[] rendered, int from, int to) {
+            this.snapshot = snapshot;
+            this.previous = previous;
+            this.previousLines = previousLines;
+            this.previousIndexes = previousIndexes;
+            this.rendered = rendered;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= RankingSnapshot.RENDER_CHUNK_SIZE) {
+                this.snapshot.renderRange(this.previous, this.previousLines, this.previousIndexes, this.rendered,
+                    this.from, this.to);
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            RecursiveAction.invokeAll(new LineRendering(this.snapshot, this.previous, this.previousLines,
+                    this.previousIndexes, this.rendered, this.from, middle),
+                new LineRendering(this.snapshot, this.previous, this.previousLines, this.previousIndexes,
+                    this.rendered, middle, this.to));
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a score at the end of the given array.
+     *
+     * @param score the score to format (positive)
+     * @param digits the destination array, of {@link #MAX_SCORE_LENGTH} characters
+     * @return the index of the first digit in the array
+     */
+    private static int formatScore(int score, char[] digits) {
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + (score % 10));
+            score /= 10;
+        } while (score != 0);
+        return start;
+    }
+
+    /**
+     * Writes the decimal ASCII digits of a score in a buffer.
+     *
+     * @param score the score to format (positive)
+     * @param buffer the destination buffer
+     */
+    private static void putScore(int score, ByteBuffer buffer) {
+        int nbDigits = 1;
+        for (int power = score / 10; power != 0; power /= 10) {
+            nbDigits++;
+        }
+        int position = buffer.position();
+        for (int i = position + nbDigits - 1; i >= position; i--) {
+            buffer.put(i, (byte) ('0' + (score % 10)));
+            score /= 10;
+        }
+        buffer.position(position + nbDigits);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,716 @@
+package ScoreboardLib.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code ScoreboardJournal} class makes the changes of a scoreboard durable, so its
+ * ongoing matches survive a restart of the JVM.
+ * <p>
+ * Every change is appended as a compact binary record to a journal file. The records are
+ * accumulated in memory by the writers, within their critical section, and written to the
+ * file outside of it: the first writer waiting for its record to be durable writes and
+ * forces all the records accumulated so far, so the writers arriving in the meantime share
+ * the next write (group commit). Each write is framed with its length and its CRC32C, so a
+ * write torn by a crash is detected, and ignored, when the journal is recovered.
+ * <p>
+ * Every {@code checkpointInterval} records, the journal is rotated and a snapshot of the
+ * whole board is written, after which the older files are deleted: recovering a board
+ * consists in loading its latest snapshot, and replaying at most one interval of records.
+ * The snapshots are encoded by the {@link SnapshotCodec}. The files are named after the version of the board they start from:
+ * {@code snapshot-<version>.bin} holds the board at this version, and
+ * {@code journal-<version>.log} holds the changes following this version.
+ * <p>
+ * The methods appending records must be called by the writers of the scoreboard, within
+ * their exclusive critical section, so the records are journaled in the order of the
+ * versions of the board. The other methods are thread-safe.
+ */
+public class ScoreboardJournal implements Closeable {
+
+    /** Identifies a journal file ("SBJL"). */
+    private static final int JOURNAL_MAGIC = 0x53424A4C;
+
+    /** Version of the layout of the journal files, increased by every incompatible change. */
+    private static final short FORMAT_VERSION = 2;
+
+    /** Size of the header of a journal file: magic, format version and base version. */
+    private static final int JOURNAL_HEADER_SIZE = 4 + 2 + 8;
+
+    /** Size of the header of a write: length and checksum of the records. */
+    private static final int FRAME_HEADER_SIZE = 4 + 4;
+
+    /** Initial size of the buffers of records. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Record of a started match: ID, start order, then the lengths and UTF-8 bytes of the team names. */
+    private static final byte START_RECORD = 1;
+
+    /** Record of a score update: ID, home team score, visiting team score. */
+    private static final byte UPDATE_RECORD = 2;
+
+    /** Record of a batch of updates: count, then ID and scores of each update. */
+    private static final byte BATCH_RECORD = 3;
+
+    /** Record of a terminated match: ID. */
+    private static final byte TERMINATE_RECORD = 4;
+
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    /** Directory containing the files of the journal. */
+    private final Path directory;
+
+    /** Number of records after which a snapshot is taken. */
+    private final int checkpointInterval;
+
+    /** Registry of the teams of the board, receiving the teams of the restored matches. */
+    private final TeamRegistry teams;
+
+    /** The allocator of the IDs of the board, whose next IDs are saved by the checkpoints. */
+    private final MatchIdAllocator matchIds;
+
+    /** Lock protecting the buffer of pending records, and the counters of appended records. */
+    private final ReentrantLock bufferLock;
+
+    /** Lock protecting the journal file, held by the writer writing the pending records. */
+    private final ReentrantLock syncLock;
+
+    /** Records appended, and not written to the file yet. */
+    private ByteBuffer pendingRecords;
+
+    /** Records being written to the file, swapped with the pending records by each write. */
+    private ByteBuffer writtenRecords;
+
+    /** Number of record bytes appended since the journal was opened. */
+    private long appendedBytes;
+
+    /** Number of record bytes written to the file and forced to the storage device. */
+    private volatile long durableBytes;
+
+    /** Number of records appended since the last checkpoint. */
+    private int recordsSinceCheckpoint;
+
+    /** The journal file receiving the records. */
+    private FileChannel channel;
+
+    /** Checksum of the writes, used by the writer holding the sync lock. */
+    private final CRC32C checksum;
+
+    /** The error which made a write fail, after which the journal is unusable. */
+    private volatile IOException failure;
+
+    /** Version of the board reached by the recovery. */
+    private long recoveredVersion;
+
+    /**
+     * Constructs a journal, which must then be recovered before appending any record.
+     *
+     * @param directory the directory containing the files of the journal
+     * @param checkpointInterval the number of records after which a snapshot is taken
+     * @param teams the registry of the teams of the board
+     * @param matchIds the allocator of the IDs of the board
+     */
+    private ScoreboardJournal(Path directory, int checkpointInterval, TeamRegistry teams, MatchIdAllocator matchIds) {
+        this.directory = directory;
+        this.checkpointInterval = checkpointInterval;
+        this.teams = teams;
+        this.matchIds = matchIds;
+        this.bufferLock = new ReentrantLock();
+        this.syncLock = new ReentrantLock();
+        this.pendingRecords = ByteBuffer.allocate(ScoreboardJournal.BUFFER_SIZE);
+        this.writtenRecords = ByteBuffer.allocate(ScoreboardJournal.BUFFER_SIZE);
+        this.checksum = new CRC32C();
+    }
+
+    /**
+     * Opens the journal stored in a directory (which is created if needed), and restores
+     * the matches it contains: the latest snapshot is loaded, then the following records
+     * are replayed. A write torn by a crash, at the end of the journal, is discarded.
+     *
+     * @param directory the directory containing the files of the journal
+     * @param checkpointInterval the number of records after which a snapshot is taken
+     * @param store the empty store receiving the restored matches, whose registry receives their teams
+     * @param matchIds the allocator of the IDs of the board, which must not collide with the restored ones
+     * @return the journal, ready to append the following changes
+     * @throws IOException if the files cannot be read or written, or are corrupted
+     */
+    public static ScoreboardJournal open(Path directory, int checkpointInterval, MatchStore store,
+                                         MatchIdAllocator matchIds) throws IOException {
+        Files.createDirectories(directory);
+        ScoreboardJournal journal = new ScoreboardJournal(directory, checkpointInterval, store.getTeams(), matchIds);
+        journal.recover(store);
+        return journal;
+    }
+
+    /**
+     * Returns the version of the board restored from the journal.
+     *
+     * @return the number of changes of the board restored from the journal
+     */
+    public long getRecoveredVersion() {
+        return this.recoveredVersion;
+    }
+
+    /**
+     * Appends the record of a started match.
+     *
+     * @param matchId the unique ID of the new match
+     * @param startOrder the start order of the new match
+     * @param homeTeamId the ID of the home team in the registry
+     * @param visitorTeamId the ID of the visiting team in the registry
+     * @return the position to wait for, with {@link #awaitDurable(long)}, for the record to be durable
+     */
+    public long appendStart(int matchId, long startOrder, int homeTeamId, int visitorTeamId) {
+        byte[] nameHomeTeam = this.teams.getEncodedName(homeTeamId);
+        byte[] nameVisitorTeam = this.teams.getEncodedName(visitorTeamId);
+        int length = 1 + 4 + 8 + 4 + nameHomeTeam.length + 4 + nameVisitorTeam.length;
+        this.bufferLock.lock();
+        try {
+            this.reserve(length).put(ScoreboardJournal.START_RECORD).putInt(matchId).putLong(startOrder)
+                .putInt(nameHomeTeam.length).put(nameHomeTeam)
+                .putInt(nameVisitorTeam.length).put(nameVisitorTeam);
+            return this.endRecord(length);
+        } finally {
+            this.bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the record of a score update.
+     *
+     * @param matchId the unique ID of the updated match
+     * @param scores the new packed scores of the match
+     * @return the position to wait for, with {@link #awaitDurable(long)}, for the record to be durable
+     */
+    public long appendUpdate(int matchId, long scores) {
+        int length = 1 + 4 + 4 + 4;
+        this.bufferLock.lock();
+        try {
+            this.reserve(length).put(ScoreboardJournal.UPDATE_RECORD).putInt(matchId)
+                .putInt(Match.homeScoreOf(scores)).putInt(Match.visitorScoreOf(scores));
+            return this.endRecord(length);
+        } finally {
+            this.bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the record of a batch of score updates, which is replayed atomically.
+     *
+     * @param matchIds the unique IDs of the updated matches (possibly several times the same)
+     * @param scores the new packed scores of the matches
+     * @return the position to wait for, with {@link #awaitDurable(long)}, for the record to be durable
+     */
+    public long appendUpdates(int[] matchIds, long[] scores) {
+        int length = 1 + 4 + matchIds.length * (4 + 4 + 4);
+        this.bufferLock.lock();
+        try {
+            ByteBuffer records = this.reserve(length).put(ScoreboardJournal.BATCH_RECORD).putInt(matchIds.length);
+            for (int i = 0; i < matchIds.length; i++) {
+                records.putInt(matchIds[i])
+                    .putInt(Match.homeScoreOf(scores[i])).putInt(Match.visitorScoreOf(scores[i]));
+            }
+            return this.endRecord(length);
+        } finally {
+            this.bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the record of a terminated match.
+     *
+     * @param matchId the unique ID of the terminated match
+     * @return the position to wait for, with {@link #awaitDurable(long)}, for the record to be durable
+     */
+    public long appendTerminate(int matchId) {
+        int length = 1 + 4;
+        this.bufferLock.lock();
+        try {
+            this.reserve(length).put(ScoreboardJournal.TERMINATE_RECORD).putInt(matchId);
+            return this.endRecord(length);
+        } finally {
+            this.bufferLock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the records appended up to the given position are durable. If nobody is
+     * writing the journal, the pending records (of this writer, and of all the writers which
+     * appended records before it) are written and forced to the storage device.
+     *
+     * @param position the position returned when appending the last record to wait for
+     * @throws IOException if the journal fails to write, now or previously
+     */
+    public void awaitDurable(long position) throws IOException {
+        if (this.durableBytes >= position) {
+            return;
+        }
+        this.syncLock.lock();
+        try {
+            // The records may have been written by the previous holder of the lock
+            if (this.durableBytes < position) {
+                this.writeRecords();
+            }
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the position up to which the appended records are durable: the records whose
+     * position (returned when appending them) is not greater are written and forced.
+     *
+     * @return the position of the last durable record
+     */
+    public long getDurablePosition() {
+        return this.durableBytes;
+    }
+
+    /**
+     * Makes sure that no write of the journal failed, after which the journal is unusable,
+     * so the changes which would be journaled are refused before they are applied.
+     *
+     * @throws IOException if the journal previously failed to write
+     */
+    public void checkUsable() throws IOException {
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException("The journal previously failed to write", failure);
+        }
+    }
+
+    /**
+     * Tells whether enough records were appended since the last checkpoint to take a new one.
+     * Must be called within the exclusive critical section of the scoreboard.
+     *
+     * @return true if a checkpoint should be taken
+     */
+    public boolean needsCheckpoint() {
+        return this.recordsSinceCheckpoint >= this.checkpointInterval;
+    }
+
+    /**
+     * Starts a new journal file, receiving the records following the given version. The
+     * pending records are written to the previous file, which is closed. Must be called
+     * within the exclusive critical section of the scoreboard, before copying the board
+     * to write its snapshot with {@link #writeCheckpoint(long, RankingSnapshot)}.
+     *
+     * @param version the current version of the board
+     * @throws IOException if the journal fails to write
+     */
+    public void rotate(long version) throws IOException {
+        this.syncLock.lock();
+        try {
+            this.writeRecords();
+            FileChannel journal = this.createJournal(version);
+            this.channel.close();
+            this.channel = journal;
+            this.recordsSinceCheckpoint = 0;
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the snapshot of the board at a given version, and deletes the files which are
+     * not needed anymore to restore the board. This method does not need any lock, so it is
+     * called after the critical section in which the journal was rotated, and the board copied.
+     *
+     * @param version the version of the board when it was copied
+     * @param snapshot the copy of the ranking of the board
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void writeCheckpoint(long version, RankingSnapshot snapshot) throws IOException {
+        Path temporary = this.directory.resolve(ScoreboardJournal.SNAPSHOT_PREFIX + version
+            + ScoreboardJournal.TEMPORARY_SUFFIX);
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotCodec.write(version, snapshot, this.matchIds, out);
+            out.force(true);
+        }
+
+        // The snapshot only becomes visible once complete, so a crash while writing it
+        // leaves the previous snapshot and journals untouched.
+        Files.move(temporary, this.directory.resolve(ScoreboardJournal.SNAPSHOT_PREFIX + version
+            + ScoreboardJournal.SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        for (long olderVersion : this.listVersions(ScoreboardJournal.SNAPSHOT_PREFIX, ScoreboardJournal.SNAPSHOT_SUFFIX)) {
+            if (olderVersion < version) {
+                Files.deleteIfExists(this.snapshotPath(olderVersion));
+            }
+        }
+        for (long olderVersion : this.listVersions(ScoreboardJournal.JOURNAL_PREFIX, ScoreboardJournal.JOURNAL_SUFFIX)) {
+            if (olderVersion < version) {
+                Files.deleteIfExists(this.journalPath(olderVersion));
+            }
+        }
+    }
+
+    /**
+     * Writes the pending records, and closes the journal file.
+     *
+     * @throws IOException if the journal fails to write
+     */
+    @Override
+    public void close() throws IOException {
+        this.syncLock.lock();
+        try {
+            if (this.channel.isOpen()) {
+                try {
+                    this.writeRecords();
+                } finally {
+                    this.channel.close();
+                }
+            }
+        } finally {
+            this.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Makes sure that the buffer of pending records can receive a new record.
+     * Must be called with the buffer lock held.
+     *
+     * @param length the length of the record
+     * @return the buffer of pending records
+     */
+    private ByteBuffer reserve(int length) {
+        if (this.pendingRecords.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * this.pendingRecords.capacity(),
+                this.pendingRecords.position() + length));
+            this.pendingRecords.flip();
+            larger.put(this.pendingRecords);
+            this.pendingRecords = larger;
+        }
+        return this.pendingRecords;
+    }
+
+    /**
+     * Accounts for a record appended to the buffer of pending records.
+     * Must be called with the buffer lock held.
+     *
+     * @param length the length of the record
+     * @return the position following the record
+     */
+    private long endRecord(int length) {
+        this.recordsSinceCheckpoint++;
+        this.appendedBytes += length;
+        return this.appendedBytes;
+    }
+
+    /**
+     * Writes all the pending records to the journal file, in a single frame, and forces them
+     * to the storage device. Must be called with the sync lock held.
+     *
+     * @throws IOException if the journal fails to write, now or previously
+     */
+    private void writeRecords() throws IOException {
+        this.checkUsable();
+
+        // We swap the buffers, so the writers can go on appending records while we write
+        ByteBuffer records;
+        long end;
+        this.bufferLock.lock();
+        try {
+            records = this.pendingRecords;
+            this.pendingRecords = this.writtenRecords;
+            this.writtenRecords = records;
+            end = this.appendedBytes;
+        } finally {
+            this.bufferLock.unlock();
+        }
+
+        records.flip();
+        if (records.hasRemaining()) {
+            this.checksum.reset();
+            this.checksum.update(records.duplicate());
+            ByteBuffer header = ByteBuffer.allocate(ScoreboardJournal.FRAME_HEADER_SIZE);
+            header.putInt(records.remaining()).putInt((int) this.checksum.getValue()).flip();
+            ByteBuffer[] frame = {header, records};
+            try {
+                while (records.hasRemaining()) {
+                    this.channel.write(frame);
+                }
+                this.channel.force(false);
+            } catch (IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+        records.clear();
+        this.durableBytes = end;
+    }
+
+    /**
+     * Restores the board from the latest snapshot and the following journals, and opens
+     * the last journal to append the next records.
+     *
+     * @param store the empty store receiving the restored matches
+     * @throws IOException if the files cannot be read or written, or are corrupted
+     */
+    private void recover(MatchStore store) throws IOException {
+        try (DirectoryStream<Path> temporaries = Files.newDirectoryStream(this.directory,
+                "*" + ScoreboardJournal.TEMPORARY_SUFFIX)) {
+            for (Path temporary : temporaries) {
+                Files.delete(temporary);
+            }
+        }
+
+        List<Long> snapshotVersions = this.listVersions(ScoreboardJournal.SNAPSHOT_PREFIX,
+            ScoreboardJournal.SNAPSHOT_SUFFIX);
+        if (!snapshotVersions.isEmpty()) {
+            this.loadSnapshot(snapshotVersions.get(snapshotVersions.size() - 1), store);
+        }
+
+        // The journals older than the snapshot are already part of it (they are only left
+        // when the process stopped before deleting them).
+        List<Long> journalVersions = new ArrayList<>();
+        for (long journalVersion : this.listVersions(ScoreboardJournal.JOURNAL_PREFIX,
+                ScoreboardJournal.JOURNAL_SUFFIX)) {
+            if (journalVersion >= this.recoveredVersion) {
+                journalVersions.add(journalVersion);
+            }
+        }
+        if (journalVersions.isEmpty()) {
+            this.channel = this.createJournal(this.recoveredVersion);
+            return;
+        }
+
+        for (int i = 0; i < journalVersions.size(); i++) {
+            long journalVersion = journalVersions.get(i);
+            if (journalVersion != this.recoveredVersion) {
+                throw new IOException("The journal of the changes following version " + this.recoveredVersion
+                    + " is missing");
+            }
+            boolean last = (i == journalVersions.size() - 1);
+            FileChannel journal = FileChannel.open(this.journalPath(journalVersion), StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            try {
+                long validLength = this.replay(journal, journalVersion, store);
+                if (!last) {
+                    journal.close();
+                } else if (validLength < ScoreboardJournal.JOURNAL_HEADER_SIZE) {
+                    // The process stopped while creating the journal
+                    journal.close();
+                    this.channel = this.createJournal(journalVersion);
+                } else {
+                    // The next records are appended after the last complete write
+                    journal.truncate(validLength);
+                    journal.position(validLength);
+                    this.channel = journal;
+                }
+            } catch (IOException | RuntimeException e) {
+                journal.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Loads a snapshot of the board.
+     *
+     * @param version the version of the snapshot
+     * @param store the empty store receiving the matches
+     * @throws IOException if the snapshot cannot be read, or is corrupted
+     */
+    private void loadSnapshot(long version, MatchStore store) throws IOException {
+        try (FileChannel in = FileChannel.open(this.snapshotPath(version), StandardOpenOption.READ)) {
+            if (SnapshotCodec.read(in, store, this.matchIds) != version) {
+                throw new IOException("Invalid snapshot of version " + version);
+            }
+        }
+        this.recoveredVersion = version;
+    }
+
+    /**
+     * Replays the records of a journal file, until its end or the first torn write.
+     *
+     * @param journal the journal file
+     * @param version the version of the board the journal starts from
+     * @param store the store of the restored matches
+     * @return the length of the valid part of the file
+     * @throws IOException if the journal cannot be read, or is corrupted
+     */
+    private long replay(FileChannel journal, long version, MatchStore store) throws IOException {
+        ByteBuffer content = journal.map(FileChannel.MapMode.READ_ONLY, 0, journal.size());
+        if (content.remaining() < ScoreboardJournal.JOURNAL_HEADER_SIZE
+                || content.getInt() != ScoreboardJournal.JOURNAL_MAGIC) {
+            return 0L;
+        }
+        if (content.getShort() != ScoreboardJournal.FORMAT_VERSION || content.getLong() != version) {
+            return 0L;
+        }
+
+        while (content.remaining() >= ScoreboardJournal.FRAME_HEADER_SIZE) {
+            int start = content.position();
+            int length = content.getInt();
+            int expectedChecksum = content.getInt();
+            if (length <= 0 || length > content.remaining()) {
+                return start;
+            }
+            ByteBuffer records = content.slice(content.position(), length);
+            this.checksum.reset();
+            this.checksum.update(records.duplicate());
+            if ((int) this.checksum.getValue() != expectedChecksum) {
+                return start;
+            }
+            try {
+                this.replayRecords(records, store);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid record in the journal of version " + version, e);
+            }
+            content.position(start + ScoreboardJournal.FRAME_HEADER_SIZE + length);
+        }
+        return content.position();
+    }
+
+    /**
+     * Applies the records of a write to the restored board.
+     *
+     * @param records the records of the write
+     * @param store the store of the restored matches
+     * @throws IOException if a record is invalid
+     */
+    private void replayRecords(ByteBuffer records, MatchStore store) throws IOException {
+        while (records.hasRemaining()) {
+            byte type = records.get();
+            switch (type) {
+                case ScoreboardJournal.START_RECORD -> {
+                    int matchId = records.getInt();
+                    long startOrder = records.getLong();
+                    int homeTeamId = this.teams.intern(ScoreboardJournal.getName(records));
+                    int visitorTeamId = this.teams.intern(ScoreboardJournal.getName(records));
+                    if (store.find(matchId) >= 0) {
+                        throw new IOException("Match " + matchId + " started twice");
+                    }
+                    // The IDs and start orders allocated afterwards must not collide with the restored ones
+                    this.matchIds.reserveAfter(matchId, startOrder);
+                    store.add(matchId, startOrder, homeTeamId, visitorTeamId);
+                }
+                case ScoreboardJournal.UPDATE_RECORD -> {
+                    int match = ScoreboardJournal.getMatch(records, store);
+                    store.setScores(match, Match.packScores(records.getInt(), records.getInt()));
+                }
+                case ScoreboardJournal.BATCH_RECORD -> {
+                    // Same as an update of the scoreboard: each match is taken out of the
+                    // ranking once, and inserted back once all the scores are set.
+                    int[] updated = new int[records.getInt()];
+                    for (int i = 0; i < updated.length; i++) {
+                        updated[i] = ScoreboardJournal.getMatch(records, store);
+                        if (store.isRanked(updated[i])) {
+                            store.unrank(updated[i]);
+                        }
+                        store.setScores(updated[i], Match.packScores(records.getInt(), records.getInt()));
+                    }
+                    for (int match : updated) {
+                        if (!store.isRanked(match)) {
+                            store.rank(match);
+                        }
+                    }
+                }
+                case ScoreboardJournal.TERMINATE_RECORD -> store.removeAt(ScoreboardJournal.getMatch(records, store));
+                default -> throw new IOException("Unknown record type " + type);
+            }
+            this.recoveredVersion++;
+        }
+    }
+
+    /**
+     * Creates a new journal file, and writes its header.
+     *
+     * @param version the version of the board the journal starts from
+     * @return the journal file, positioned after its header
+     * @throws IOException if the file cannot be written
+     */
+    private FileChannel createJournal(long version) throws IOException {
+        FileChannel journal = FileChannel.open(this.journalPath(version), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(ScoreboardJournal.JOURNAL_HEADER_SIZE);
+            header.putInt(ScoreboardJournal.JOURNAL_MAGIC).putShort(ScoreboardJournal.FORMAT_VERSION)
+                .putLong(version);
+            ScoreboardJournal.flush(header, journal);
+            journal.force(true);
+        } catch (IOException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Lists the versions of the files of the journal directory having the given kind.
+     *
+     * @param prefix the prefix of the names of the files
+     * @param suffix the suffix of the names of the files
+     * @return the versions of the files, in ascending order
+     * @throws IOException if the directory cannot be read
+     */
+    private List<Long> listVersions(String prefix, String suffix) throws IOException {
+        List<Long> versions = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    versions.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // We ignore the files which do not belong to the journal
+                }
+            }
+        }
+        Collections.sort(versions);
+        return versions;
+    }
+
+    private Path journalPath(long version) {
+        return this.directory.resolve(ScoreboardJournal.JOURNAL_PREFIX + version + ScoreboardJournal.JOURNAL_SUFFIX);
+    }
+
+    private Path snapshotPath(long version) {
+        return this.directory.resolve(ScoreboardJournal.SNAPSHOT_PREFIX + version + ScoreboardJournal.SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Reads a team name, stored as its length followed by its UTF-8 bytes.
+     */
+    private static String getName(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getInt()];
+        buffer.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a match ID, and returns the handle of the corresponding restored match.
+     */
+    private static int getMatch(ByteBuffer buffer, MatchStore store) throws IOException {
+        int matchId = buffer.getInt();
+        int match = store.find(matchId);
+        if (match < 0) {
+            throw new IOException("Record of the unknown match " + matchId);
+        }
+        return match;
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
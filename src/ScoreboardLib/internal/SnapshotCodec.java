@@ -0,0 +1,269 @@
+package ScoreboardLib.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code SnapshotCodec} class encodes a whole board in a compact binary layout, and
+ * decodes it back. It is used to export and import boards, and by the snapshots of the
+ * {@link ScoreboardJournal}.
+ * <p>
+ * The layout (big-endian) is made of:
+ * <ul>
+ * <li>a header: magic number ("SBSP"), format version (short), version of the board
+ * (long), next match ID (int), next start order (long);</li>
+ * <li>the dictionary of the team names: number of teams (int), then the length (int) and
+ * UTF-8 bytes of each name;</li>
+ * <li>the matches, in the summary order: number of matches (int), then a fixed-width
+ * record of 28 bytes per match: match ID (int), start order (long), index of the home
+ * team in the dictionary (int), index of the visiting team (int), score of the home team
+ * (int), score of the visiting team (int).</li>
+ * </ul>
+ * Each team name is decoded and interned once, whatever the number of matches it plays,
+ * and as the matches are stored in the summary order, the ranking is rebuilt in linear time.
+ * <p>
+ * This class only contains static methods and should not be instantiated.
+ */
+public final class SnapshotCodec {
+
+    /** Identifies a snapshot ("SBSP"). */
+    private static final int MAGIC = 0x53425350;
+
+    /** Version of the layout, increased by every incompatible change. */
+    private static final short FORMAT_VERSION = 2;
+
+    /**
+     * Size of the header: magic, format version, board version, next match ID and next
+     * start order.
+     */
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4 + 8;
+
+    /** Size of the record of a match. */
+    private static final int MATCH_RECORD_SIZE = 5 * 4 + 8;
+
+    /** Initial size of the buffers used to encode and decode a snapshot. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Private constructor, as this class only contains static methods. */
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Encodes a copy of a board to a byte channel, which should be in blocking mode.
+     *
+     * @param version the version of the board when it was copied
+     * @param snapshot the copy of the ranking of the board
+     * @param matchIds the allocator of the IDs of the board
+     * @param channel the destination of the encoded board
+     * @throws IOException if the channel fails to write
+     */
+    public static void write(long version, RankingSnapshot snapshot, MatchIdAllocator matchIds,
+                             WritableByteChannel channel) throws IOException {
+        // We only export the teams playing the exported matches, numbered in the order of
+        // their first appearance: the indexes are mapped from the IDs of the registry.
+        int maxTeamId = -1;
+        for (int i = 0; i < snapshot.size(); i++) {
+            maxTeamId = Math.max(maxTeamId, Math.max(snapshot.getHomeTeamId(i), snapshot.getVisitorTeamId(i)));
+        }
+        int[] teamIndexes = new int[maxTeamId + 1];
+        Arrays.fill(teamIndexes, -1);
+        List<byte[]> teamNames = new ArrayList<>();
+        int[] homeTeams = new int[snapshot.size()];
+        int[] visitorTeams = new int[snapshot.size()];
+        for (int i = 0; i < snapshot.size(); i++) {
+            int homeTeamId = snapshot.getHomeTeamId(i);
+            int visitorTeamId = snapshot.getVisitorTeamId(i);
+            if (teamIndexes[homeTeamId] < 0) {
+                teamIndexes[homeTeamId] = teamNames.size();
+                teamNames.add(snapshot.getTeams().getEncodedName(homeTeamId));
+            }
+            if (teamIndexes[visitorTeamId] < 0) {
+                teamIndexes[visitorTeamId] = teamNames.size();
+                teamNames.add(snapshot.getTeams().getEncodedName(visitorTeamId));
+            }
+            homeTeams[i] = teamIndexes[homeTeamId];
+            visitorTeams[i] = teamIndexes[visitorTeamId];
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(SnapshotCodec.BUFFER_SIZE);
+        buffer.putInt(SnapshotCodec.MAGIC).putShort(SnapshotCodec.FORMAT_VERSION).putLong(version)
+            .putInt(matchIds.peekNextMatchId()).putLong(matchIds.peekNextStartOrder()).putInt(teamNames.size());
+        for (byte[] teamName : teamNames) {
+            buffer = SnapshotCodec.reserve(buffer, channel, 4 + teamName.length);
+            buffer.putInt(teamName.length).put(teamName);
+        }
+        buffer = SnapshotCodec.reserve(buffer, channel, 4);
+        buffer.putInt(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            buffer = SnapshotCodec.reserve(buffer, channel, SnapshotCodec.MATCH_RECORD_SIZE);
+            buffer.putInt(snapshot.getMatchId(i)).putLong(snapshot.getStartOrder(i)).putInt(homeTeams[i])
+                .putInt(visitorTeams[i])
+                .putInt(snapshot.getHomeScore(i)).putInt(snapshot.getVisitorScore(i));
+        }
+        SnapshotCodec.flush(buffer, channel);
+    }
+
+    /**
+     * Decodes a board from a byte channel, which should be in blocking mode. The IDs and
+     * start orders allocated to the matches started afterwards do not collide with the
+     * decoded ones.
+     *
+     * @param channel the source of the encoded board
+     * @param store the empty store receiving the matches, whose registry receives their teams
+     * @param matchIds the allocator of the IDs of the board receiving the matches
+     * @return the version of the board
+     * @throws IOException if the channel fails to read, or the encoded board is invalid
+     */
+    public static long read(ReadableByteChannel channel, MatchStore store, MatchIdAllocator matchIds)
+            throws IOException {
+        TeamRegistry teams = store.getTeams();
+        ByteBuffer buffer = ByteBuffer.allocate(SnapshotCodec.BUFFER_SIZE).flip();
+        buffer = SnapshotCodec.require(buffer, channel, SnapshotCodec.HEADER_SIZE);
+        if (buffer.getInt() != SnapshotCodec.MAGIC) {
+            throw new IOException("Not a snapshot of a scoreboard");
+        }
+        short formatVersion = buffer.getShort();
+        if (formatVersion != SnapshotCodec.FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + formatVersion);
+        }
+        long version = buffer.getLong();
+        int nextMatchId = buffer.getInt();
+        long nextStartOrder = buffer.getLong();
+        if (nextMatchId < 0 || nextStartOrder < 0L) {
+            throw new IOException("Invalid snapshot (negative next match ID or start order)");
+        }
+
+        buffer = SnapshotCodec.require(buffer, channel, 4);
+        int[] teamIds = new int[SnapshotCodec.checkCount(buffer.getInt())];
+        for (int i = 0; i < teamIds.length; i++) {
+            buffer = SnapshotCodec.require(buffer, channel, 4);
+            int length = SnapshotCodec.checkCount(buffer.getInt());
+            buffer = SnapshotCodec.require(buffer, channel, length);
+            String name = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+            if (name.isEmpty()) {
+                throw new IOException("Invalid snapshot (empty team name)");
+            }
+            teamIds[i] = teams.intern(name);
+            buffer.position(buffer.position() + length);
+        }
+
+        buffer = SnapshotCodec.require(buffer, channel, 4);
+        int nbMatches = SnapshotCodec.checkCount(buffer.getInt());
+        int[] decodedIds = new int[nbMatches];
+        long[] startOrders = new long[nbMatches];
+        int[] homeTeamIds = new int[nbMatches];
+        int[] visitorTeamIds = new int[nbMatches];
+        long[] scores = new long[nbMatches];
+        for (int i = 0; i < nbMatches; i++) {
+            buffer = SnapshotCodec.require(buffer, channel, SnapshotCodec.MATCH_RECORD_SIZE);
+            int matchId = buffer.getInt();
+            long startOrder = buffer.getLong();
+            int homeTeam = buffer.getInt();
+            int visitorTeam = buffer.getInt();
+            int scoreHomeTeam = buffer.getInt();
+            int scoreVisitorTeam = buffer.getInt();
+            if (homeTeam < 0 || homeTeam >= teamIds.length || visitorTeam < 0 || visitorTeam >= teamIds.length) {
+                throw new IOException("Invalid team index in the record of match " + matchId);
+            }
+            if (scoreHomeTeam < 0 || scoreVisitorTeam < 0) {
+                throw new IOException("Invalid score in the record of match " + matchId);
+            }
+            if (matchId < 0 || startOrder < 0L) {
+                throw new IOException("Invalid ID or start order in the record of match " + matchId);
+            }
+            decodedIds[i] = matchId;
+            startOrders[i] = startOrder;
+            homeTeamIds[i] = teamIds[homeTeam];
+            visitorTeamIds[i] = teamIds[visitorTeam];
+            scores[i] = Match.packScores(scoreHomeTeam, scoreVisitorTeam);
+
+            // The ranking is only rebuilt in linear time from matches sorted in the summary
+            // order, which also guarantees that the start orders are unique.
+            if (i > 0 && Match.compare(startOrders[i - 1], scores[i - 1], startOrder, scores[i]) >= 0) {
+                throw new IOException("The matches are not sorted in the summary order");
+            }
+            // The IDs and start orders allocated afterwards must not collide with the decoded ones
+            matchIds.reserveAfter(matchId, startOrder);
+        }
+
+        // As the IDs may have wrapped around, or been recycled, they do not follow the
+        // summary order, so their uniqueness is checked separately.
+        int[] sortedIds = decodedIds.clone();
+        Arrays.sort(sortedIds);
+        for (int i = 1; i < sortedIds.length; i++) {
+            if (sortedIds[i - 1] == sortedIds[i]) {
+                throw new IOException("Match " + sortedIds[i] + " is stored twice");
+            }
+        }
+
+        store.buildFrom(decodedIds, startOrders, homeTeamIds, visitorTeamIds, scores);
+        matchIds.reserve(nextMatchId, nextStartOrder);
+        return version;
+    }
+
+    /**
+     * Rejects the negative counts and lengths of an invalid snapshot.
+     */
+    private static int checkCount(int count) throws IOException {
+        if (count < 0) {
+            throw new IOException("Invalid snapshot (negative count)");
+        }
+        return count;
+    }
+
+    /**
+     * Makes sure that an encoding buffer can receive the given number of bytes, flushing
+     * it to the channel, and growing it if needed.
+     *
+     * @return the buffer (possibly a new one) which has enough room
+     */
+    private static ByteBuffer reserve(ByteBuffer buffer, WritableByteChannel channel, int length) throws IOException {
+        if (buffer.remaining() < length) {
+            SnapshotCodec.flush(buffer, channel);
+            if (buffer.capacity() < length) {
+                return ByteBuffer.allocate(length);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Makes sure that a decoding buffer contains at least the given number of bytes,
+     * reading them from the channel, and growing the buffer if needed.
+     *
+     * @return the buffer (possibly a new one), in read mode, with enough remaining bytes
+     * @throws EOFException if the channel ends before
+     */
+    private static ByteBuffer require(ByteBuffer buffer, ReadableByteChannel channel, int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return buffer;
+        }
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length).put(buffer);
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < length) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,41 @@
+package ScoreboardLib.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The {@code SummaryEvent} class is the JFR event emitted for each summary returned by a
+ * scoreboard whose metrics are enabled.
+ * <p>
+ * The event is committed once the summary is returned, with its measured duration as its
+ * latency field (the duration of the event itself is zero, as it is not begun).
+ */
+@Name("ScoreboardLib.Summary")
+@Label("Scoreboard Summary")
+@Category("Scoreboard")
+@Description("A summary of the ongoing matches of a scoreboard")
+@StackTrace(false)
+public class SummaryEvent extends Event {
+
+    /** The number of matches of the summary. */
+    @Label("Matches")
+    public int matches;
+
+    /** The number of characters of the summary. */
+    @Label("Length")
+    public int length;
+
+    /** Whether the summary was already rendered, and returned from the cache. */
+    @Label("Cached")
+    public boolean cached;
+
+    /** The measured duration of the summary. */
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    public long latency;
+}
@@ -0,0 +1,152 @@
+package ScoreboardLib.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code TeamRegistry} class interns the names of the teams: each distinct name is
+ * stored once, and identified by a small integer ID (0 for the first registered team,
+ * then 1, 2...), which the matches store instead of the names themselves.
+ * <p>
+ * Looking up the name of a team, which is what the summaries do for every match, is a
+ * plain array access, without any lock. Registering a new team takes a lock, which only
+ * happens the first time a team plays, and its UTF-8 encoding is computed once for all.
+ * <p>
+ * This class is thread-safe. The names must already be trimmed and validated by the
+ * callers, and a team stays registered as long as the registry exists.
+ */
+public class TeamRegistry {
+
+    /** Initial capacity of the arrays of names. */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** The IDs of the registered teams, indexed by their name. */
+    private final ConcurrentHashMap<String, Integer> teamIds;
+
+    /** Lock serializing the registrations of new teams. */
+    private final ReentrantLock registrationLock;
+
+    /**
+     * The names of the teams, indexed by their ID. The array is replaced by a larger copy
+     * when it is full, and its entries are never modified once set.
+     */
+    private volatile String[] names;
+
+    /** The UTF-8 encodings of the names of the teams, indexed by their ID. */
+    private volatile byte[][] encodedNames;
+
+    /** Number of registered teams, written after their names are published. */
+    private volatile int nbTeams;
+
+    /** Total length of the UTF-8 encodings of the names of the registered teams, in bytes. */
+    private volatile long encodedLength;
+
+    /**
+     * Constructs a new, empty {@code TeamRegistry}.
+     */
+    public TeamRegistry() {
+        this.teamIds = new ConcurrentHashMap<>();
+        this.registrationLock = new ReentrantLock();
+        this.names = new String[TeamRegistry.INITIAL_CAPACITY];
+        this.encodedNames = new byte[TeamRegistry.INITIAL_CAPACITY][];
+        this.nbTeams = 0;
+        this.encodedLength = 0L;
+    }
+
+    /**
+     * Returns the ID of a team, registering it if it is not registered yet.
+     *
+     * @param name the trimmed, non-empty name of the team
+     * @return the ID of the team
+     */
+    public int intern(String name) {
+        Integer teamId = this.teamIds.get(name);
+        if (teamId != null) {
+            return teamId;
+        }
+
+        this.registrationLock.lock();
+        try {
+            // The team may have been registered by another thread in the meantime
+            teamId = this.teamIds.get(name);
+            if (teamId != null) {
+                return teamId;
+            }
+            int newTeamId = this.nbTeams;
+            if (newTeamId == this.names.length) {
+                this.encodedNames = Arrays.copyOf(this.encodedNames, 2 * newTeamId);
+                this.names = Arrays.copyOf(this.names, 2 * newTeamId);
+            }
+            this.encodedNames[newTeamId] = name.getBytes(StandardCharsets.UTF_8);
+            this.encodedLength += this.encodedNames[newTeamId].length;
+            this.names[newTeamId] = name;
+            this.nbTeams = newTeamId + 1;
+            this.teamIds.put(name, newTeamId);
+            return newTeamId;
+        } finally {
+            this.registrationLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the ID of a team, without registering it.
+     *
+     * @param name the trimmed name of the team
+     * @return the ID of the team, or -1 if it is not registered
+     */
+    public int find(String name) {
+        Integer teamId = this.teamIds.get(name);
+        return (teamId == null) ? -1 : teamId;
+    }
+
+    /**
+     * Returns the number of registered teams.
+     *
+     * @return the number of teams (the IDs go from 0 to this number, excluded)
+     */
+    public int size() {
+        return this.nbTeams;
+    }
+
+    /**
+     * Returns the total length of the UTF-8 encodings of the names of the registered teams,
+     * from which the memory taken by the registry can be estimated.
+     *
+     * @return the total length of the encoded names, in bytes
+     */
+    public long getEncodedLength() {
+        return this.encodedLength;
+    }
+
+    /**
+     * Tells whether a team ID is registered.
+     *
+     * @param teamId the ID of the team
+     * @return true if a team has this ID
+     */
+    public boolean contains(int teamId) {
+        return teamId >= 0 && teamId < this.nbTeams;
+    }
+
+    /**
+     * Returns the name of a registered team.
+     *
+     * @param teamId the ID of the team
+     * @return the name of the team
+     */
+    public String getName(int teamId) {
+        return this.names[teamId];
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the name of a registered team.
+     *
+     * @param teamId the ID of the team
+     * @return the encoded name of the team (must not be modified)
+     */
+    public byte[] getEncodedName(int teamId) {
+        return this.encodedNames[teamId];
+    }
+}
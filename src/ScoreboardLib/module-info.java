@@ -1,3 +1,4 @@
 module ScoreboardLib {
+    requires jdk.jfr;
     exports ScoreboardLib.api;
 }
@@ -1,16 +1,81 @@
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.ToIntBiFunction;
+import java.util.stream.Stream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
+import ScoreboardLib.api.BackpressurePolicy;
+import ScoreboardLib.api.IngestionStats;
+import ScoreboardLib.api.LatencyStats;
+import ScoreboardLib.api.MatchIndex;
+import ScoreboardLib.api.MatchStorage;
+import ScoreboardLib.api.MatchSummary;
+import ScoreboardLib.api.MatchTimeline;
 import ScoreboardLib.api.Scoreboard;
+import ScoreboardLib.api.ScoreboardEvent;
+import ScoreboardLib.api.ScoreboardFeed;
+import ScoreboardLib.api.ScoreboardIngestor;
+import ScoreboardLib.api.ScoreboardMetrics;
+import ScoreboardLib.api.ScoreboardRegistry;
+import ScoreboardLib.api.ScoreboardServer;
+import ScoreboardLib.api.ScoreboardSnapshot;
+import ScoreboardLib.api.ShardedScoreboard;
+import ScoreboardLib.api.ScoreUpdate;
+import ScoreboardLib.api.TimelineEvent;
+import ScoreboardLib.internal.LatencyHistogram;
 import ScoreboardLib.internal.Match;
+import ScoreboardLib.internal.MatchHistory;
+import ScoreboardLib.internal.MatchIdAllocator;
+import ScoreboardLib.internal.MatchStore;
+import ScoreboardLib.internal.RankingSnapshot;
 
 /**
  * Unit tests for the Scoreboard class in the ScoreboardLib package.
@@ -28,7 +93,8 @@ class TestScoreboard {
      * It is used for testing purposes to validate the state of the list of matches.
      *
      * @param board The Scoreboard object to retrieve the matches list from.
-     * @return A map containing the matches associated with their unique IDs.
+     * @return A map containing copies of the current matches associated with their unique IDs, in the summary
+     *         order.
      */
     static public Map<Integer, Match> helperGetListMatchesForBoard(Scoreboard board) {
         Map<Integer, Match> retrievedMatches = null;
@@ -36,7 +102,14 @@ class TestScoreboard {
             // Access private fields via reflection for testing purposes
             Field matches = Scoreboard.class.getDeclaredField("listMatches");
             matches.setAccessible(true);
-            retrievedMatches = (Map<Integer, Match>) matches.get(board);
+            MatchStore store = (MatchStore) matches.get(board);
+            int[] matchIds = new int[store.size()];
+            store.copyTo(0, matchIds, new long[matchIds.length], new int[matchIds.length],
+                new int[matchIds.length], new long[matchIds.length]);
+            retrievedMatches = new LinkedHashMap<>();
+            for (int matchId : matchIds) {
+                retrievedMatches.put(matchId, store.get(matchId));
+            }
         } catch (NoSuchFieldException | IllegalAccessException e) {
             e.printStackTrace();
         }
@@ -95,6 +168,7 @@ class TestScoreboard {
             assertTrue(1 == listMatches.size(), "Match1 was not successfully added");
 
             match2Id = board.startMatch(nameTeam3, nameTeam4);
+            listMatches = TestScoreboard.helperGetListMatchesForBoard(board);
 
             // Making sure that the second match has been added to the Scoreboard
             assertTrue(2 == listMatches.size(), "Match2 was not successfully added");
@@ -142,6 +216,60 @@ class TestScoreboard {
         }
     }
 
+    /**
+     * Test class to verify the behavior of the registry of the teams, and of the matches started with team IDs.
+     */
+    @Nested
+    class TeamRegistryTests {
+
+        /**
+         * Test to check that a team registered several times, or playing several matches, keeps the same ID.
+         */
+        @Test
+        void SameTeam_SameId() {
+            Scoreboard board = new Scoreboard();
+            board.startMatch(" Mexico ", "Canada");
+            int mexicoId = board.registerTeam("Mexico");
+
+            assertEquals(mexicoId, board.registerTeam("  Mexico"));
+            assertEquals("Mexico", board.getTeamName(mexicoId));
+            assertTrue(mexicoId != board.registerTeam("Canada"), "Two teams have the same ID");
+        }
+
+        /**
+         * Test to check that the matches started with team IDs are summarized with the names of the teams.
+         */
+        @Test
+        void MatchesStartedWithIds_SummarizedWithNames() {
+            Scoreboard board = new Scoreboard();
+            int mexicoId = board.registerTeam("Mexico");
+            int canadaId = board.registerTeam("Canada");
+
+            int firstMatchId = board.startMatch(mexicoId, canadaId);
+            board.startMatch("Canada", "Mexico");
+            board.updateScore(firstMatchId, 2, 1);
+            assertEquals("Mexico 2 - Canada 1\nCanada 0 - Mexico 0", board.getMatchesSummary());
+        }
+
+        /**
+         * Test to check that invalid team IDs are rejected.
+         */
+        @Test
+        void InvalidTeamIds_MatchNotCreatedAndExceptionThrown() {
+            Scoreboard board = new Scoreboard();
+            int mexicoId = board.registerTeam("Mexico");
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> board.startMatch(mexicoId, mexicoId + 1));
+            assertEquals("Invalid team ID", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.startMatch(mexicoId, mexicoId));
+            assertEquals("Invalid team IDs (the same for both teams)", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> board.getTeamName(-1));
+            assertThrows(IllegalArgumentException.class, () -> board.registerTeam("   "));
+            assertEquals(0, TestScoreboard.helperGetListMatchesForBoard(board).size());
+        }
+    }
+
     /**
      * Test class to verify the behavior of updating scores for a match.
      */
@@ -212,6 +340,105 @@ class TestScoreboard {
             });
             assertEquals("Trying to provide a negative score", exception.getMessage());
         }
+
+        /**
+         * Test to check that the unboxed variant updates the score of a valid match.
+         */
+        @Test
+        void UnboxedUpdateForValidMatchId_ScoreUpdated() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Netherlands", "Morocco");
+
+            board.updateScoreUnboxed(matchId, 1000, 2);
+            assertEquals("Netherlands 1000 - Morocco 2", board.getMatchesSummary(), "Incorrect matches summary");
+        }
+
+        /**
+         * Test to check that the unboxed variant rejects invalid match IDs and negative scores
+         * with the same exceptions as the boxed variant.
+         */
+        @Test
+        void UnboxedUpdateWithInvalidArguments_ExceptionThrown() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Netherlands", "Morocco");
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.updateScoreUnboxed(matchId + 1, 2, 2);
+            });
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+
+            exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.updateScoreUnboxed(matchId, 0, -1);
+            });
+            assertEquals("Trying to provide a negative score", exception.getMessage());
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of applying a batch of score updates.
+     */
+    @Nested
+    class ApplyUpdatesTests {
+
+        /**
+         * Test to check that all the updates of a valid batch are applied, the last update winning for a match
+         * updated several times.
+         */
+        @Test
+        void ValidBatch_AllScoresUpdated() {
+            Scoreboard board = new Scoreboard();
+            int braSerMatchId = board.startMatch("Brazil", "Serbia");
+            int porGhaMatchId = board.startMatch("Portugal", "Ghana");
+            int usaWalMatchId = board.startMatch("USA", "Wales");
+
+            board.applyUpdates(
+                new ScoreUpdate(braSerMatchId, 1, 0),
+                new ScoreUpdate(porGhaMatchId, 3, 2),
+                new ScoreUpdate(braSerMatchId, 2, 0));
+
+            assertEquals("Portugal 3 - Ghana 2\nBrazil 2 - Serbia 0\nUSA 0 - Wales 0",
+                board.getMatchesSummary(), "Incorrect matches summary");
+        }
+
+        /**
+         * Test to check that a batch containing an invalid match ID is rejected as a whole.
+         */
+        @Test
+        void BatchWithInvalidMatchId_NoScoreUpdatedAndExceptionThrown() {
+            Scoreboard board = new Scoreboard();
+            int braSerMatchId = board.startMatch("Brazil", "Serbia");
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.applyUpdates(new ScoreUpdate(braSerMatchId, 1, 0), new ScoreUpdate(braSerMatchId + 1, 1, 1));
+            });
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+            assertEquals("Brazil 0 - Serbia 0", board.getMatchesSummary(), "The batch should not have been applied");
+        }
+
+        /**
+         * Test to check that a batch containing a negative score or a null update is rejected.
+         */
+        @Test
+        void BatchWithInvalidUpdates_ExceptionThrown() {
+            Scoreboard board = new Scoreboard();
+            int braSerMatchId = board.startMatch("Brazil", "Serbia");
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.applyUpdates(new ScoreUpdate(braSerMatchId, 1, 0), new ScoreUpdate(braSerMatchId, -1, 0));
+            });
+            assertEquals("Trying to provide a negative score", exception.getMessage());
+
+            exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.applyUpdates(new ScoreUpdate(braSerMatchId, 1, 0), null);
+            });
+            assertEquals("Trying to apply a null update", exception.getMessage());
+
+            exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.applyUpdates((ScoreUpdate[]) null);
+            });
+            assertEquals("Trying to apply a null batch of updates", exception.getMessage());
+            assertEquals("Brazil 0 - Serbia 0", board.getMatchesSummary(), "No batch should have been applied");
+        }
     }
 
     /**
@@ -405,5 +632,2634 @@ class TestScoreboard {
 
             assertTrue(matchesSummary.equals(expectedResult), "Incorrect matches summary");
         }
+
+        /**
+         * Test to check that a match is moved to its new position each time its score is updated.
+         */
+        @Test
+        void SeveralScoreUpdates_MatchRepositioned() {
+            Scoreboard board = new Scoreboard();
+            Integer mexCanMatchId = board.startMatch("Mexico", "Canada");
+            Integer spaBraMatchId = board.startMatch("Spain", "Brazil");
+            Integer gerFraMatchId = board.startMatch("Germany", "France");
+
+            board.updateScore(mexCanMatchId, 3, 0);
+            assertEquals("Mexico 3 - Canada 0\nGermany 0 - France 0\nSpain 0 - Brazil 0",
+                board.getMatchesSummary(), "Incorrect matches summary");
+
+            board.updateScore(spaBraMatchId, 2, 2);
+            board.updateScore(mexCanMatchId, 3, 1);
+            assertEquals("Spain 2 - Brazil 2\nMexico 3 - Canada 1\nGermany 0 - France 0",
+                board.getMatchesSummary(), "Incorrect matches summary");
+
+            // Lowering a score is not forbidden, the match must go down in the summary
+            board.updateScore(spaBraMatchId, 0, 0);
+            assertEquals("Mexico 3 - Canada 1\nGermany 0 - France 0\nSpain 0 - Brazil 0",
+                board.getMatchesSummary(), "Incorrect matches summary");
+        }
+
+        /**
+         * Test to check that a terminated match does not appear in the summary anymore.
+         */
+        @Test
+        void MatchTerminated_MatchRemovedFromSummary() {
+            Scoreboard board = new Scoreboard();
+            Integer uruItaMatchId = board.startMatch("Uruguay", "Italy");
+            Integer argAusMatchId = board.startMatch("Argentina", "Australia");
+            board.updateScore(uruItaMatchId, 6, 6);
+            board.updateScore(argAusMatchId, 3, 1);
+
+            board.terminateMatch(uruItaMatchId);
+            assertEquals("Argentina 3 - Australia 1", board.getMatchesSummary(), "Incorrect matches summary");
+
+            board.terminateMatch(argAusMatchId);
+            assertEquals("", board.getMatchesSummary(), "The summary should be empty");
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the top-k and paginated summaries.
+     */
+    @Nested
+    class TopMatchesAndPagesTests {
+
+        /**
+         * Helper method creating a board with 5 matches, whose summary is
+         * "E 5 - e 0", "D 4 - d 0", "C 3 - c 0", "B 2 - b 0", "A 1 - a 0".
+         *
+         * @return the created board
+         */
+        private Scoreboard helperCreateBoard() {
+            Scoreboard board = new Scoreboard();
+            String[] names = {"A", "B", "C", "D", "E"};
+            for (int i = 0; i < names.length; i++) {
+                int matchId = board.startMatch(names[i], names[i].toLowerCase());
+                board.updateScoreUnboxed(matchId, i + 1, 0);
+            }
+            return board;
+        }
+
+        /**
+         * Test to check that the top matches are the first lines of the summary.
+         */
+        @Test
+        void TopMatches_FirstLinesOfSummary() {
+            Scoreboard board = helperCreateBoard();
+            assertEquals("E 5 - e 0\nD 4 - d 0", board.getTopMatches(2));
+            assertEquals(board.getMatchesSummary(), board.getTopMatches(10));
+            assertEquals("", board.getTopMatches(0));
+        }
+
+        /**
+         * Test to check that a page contains the expected lines of the summary, and that a page
+         * beyond the last match is empty.
+         */
+        @Test
+        void MatchesPage_ExpectedLinesOfSummary() {
+            Scoreboard board = helperCreateBoard();
+            assertEquals("C 3 - c 0\nB 2 - b 0", board.getMatchesPage(2, 2));
+            assertEquals("A 1 - a 0", board.getMatchesPage(4, 2));
+            assertEquals("", board.getMatchesPage(5, 2));
+        }
+
+        /**
+         * Test to check that the structured records match the formatted page.
+         */
+        @Test
+        void MatchSummariesPage_RecordsMatchFormattedPage() {
+            Scoreboard board = helperCreateBoard();
+            List<MatchSummary> page = board.getMatchSummariesPage(1, 2);
+
+            assertEquals(2, page.size());
+            assertEquals("D", page.get(0).nameHomeTeam());
+            assertEquals(4, page.get(0).scoreHomeTeam());
+            assertEquals("d", page.get(0).nameVisitorTeam());
+            assertEquals(0, page.get(0).scoreVisitorTeam());
+            assertEquals(board.getMatchesPage(1, 2),
+                page.get(0) + "\n" + page.get(1), "The records should match the formatted page");
+            assertEquals(board.getTopMatches(3).split("\n")[2], board.getTopMatchSummaries(3).get(2).toString());
+            assertThrows(UnsupportedOperationException.class, () -> page.remove(0));
+        }
+
+        /**
+         * Test to check that a negative offset or limit throws an IllegalArgumentException.
+         */
+        @Test
+        void NegativeOffsetOrLimit_ExceptionThrown() {
+            Scoreboard board = helperCreateBoard();
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.getMatchesPage(-1, 2);
+            });
+            assertEquals("Trying to get a page with a negative offset", exception.getMessage());
+
+            exception = assertThrows(IllegalArgumentException.class, () -> {
+                board.getTopMatches(-1);
+            });
+            assertEquals("Trying to get a negative number of matches", exception.getMessage());
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of writing the summary to a character sink or a byte channel.
+     */
+    @Nested
+    class WriteMatchesSummaryTests {
+
+        /**
+         * Helper method creating a board whose summary does not fit in the internal buffers, with non-ASCII team
+         * names, large scores and a very long team name.
+         *
+         * @return the created board
+         */
+        private Scoreboard helperCreateLargeBoard() {
+            Scoreboard board = new Scoreboard();
+            for (int i = 0; i < 2000; i++) {
+                int matchId = board.startMatch("Cura\u00e7ao" + i, "C\u00f4te d'Ivoire" + i);
+                board.updateScoreUnboxed(matchId, i % 11, i * 1000003);
+            }
+            board.startMatch("Team with a very long name".repeat(500), "T\u00fcrkiye");
+            return board;
+        }
+
+        /**
+         * Test to check that the summary written to a character sink is the same as the returned summary.
+         */
+        @Test
+        void WriteToAppendable_SameAsSummary() throws IOException {
+            Scoreboard board = helperCreateLargeBoard();
+            StringWriter writer = new StringWriter();
+
+            board.writeMatchesSummary(writer);
+            assertEquals(board.getMatchesSummary(), writer.toString(), "Incorrect written summary");
+        }
+
+        /**
+         * Test to check that the summary written to a byte channel is the UTF-8 encoding of the returned summary.
+         */
+        @Test
+        void WriteToChannel_SameAsEncodedSummary() throws IOException {
+            Scoreboard board = helperCreateLargeBoard();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            board.writeMatchesSummary(Channels.newChannel(output));
+            assertEquals(board.getMatchesSummary(), output.toString(StandardCharsets.UTF_8), "Incorrect written summary");
+        }
+
+        /**
+         * Test to check that an empty board writes an empty summary.
+         */
+        @Test
+        void NoMatchTracked_NothingWritten() throws IOException {
+            Scoreboard board = new Scoreboard();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            StringWriter writer = new StringWriter();
+
+            board.writeMatchesSummary(Channels.newChannel(output));
+            board.writeMatchesSummary(writer);
+            assertEquals(0, output.size(), "Nothing should have been written");
+            assertEquals("", writer.toString(), "Nothing should have been written");
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the versioned snapshots.
+     */
+    @Nested
+    class SnapshotTests {
+
+        /**
+         * Test to check that a snapshot is not affected by the later modifications of the scoreboard.
+         */
+        @Test
+        void ScoreboardModified_SnapshotUnchanged() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Ecuador", "Qatar");
+            board.updateScoreUnboxed(matchId, 2, 0);
+
+            ScoreboardSnapshot snapshot = board.snapshot();
+            board.updateScoreUnboxed(matchId, 3, 0);
+            board.startMatch("Wales", "Iran");
+
+            assertEquals("Ecuador 2 - Qatar 0", snapshot.getMatchesSummary(), "The snapshot should not have changed");
+            assertEquals(1, snapshot.size());
+            assertEquals(2, snapshot.getMatches().get(0).scoreHomeTeam());
+            assertEquals("Ecuador 3 - Qatar 0\nWales 0 - Iran 0", board.snapshot().getMatchesSummary());
+        }
+
+        /**
+         * Test to check that the version is increased by every successful modification, and only by them.
+         */
+        @Test
+        void Modifications_VersionIncreased() {
+            Scoreboard board = new Scoreboard();
+            long initialVersion = board.getVersion();
+            assertEquals(initialVersion, board.snapshot().getVersion());
+
+            int matchId = board.startMatch("Ecuador", "Qatar");
+            assertTrue(board.hasChangedSince(initialVersion), "Starting a match should change the version");
+            long version = board.getVersion();
+
+            assertThrows(IllegalArgumentException.class, () -> board.updateScoreUnboxed(matchId, -1, 0));
+            assertThrows(IllegalArgumentException.class, () -> board.terminateMatch(matchId + 1));
+            board.getMatchesSummary();
+            assertTrue(!board.hasChangedSince(version), "Failed operations and reads should not change the version");
+
+            board.updateScoreUnboxed(matchId, 1, 0);
+            assertTrue(board.hasChangedSince(version), "Updating a score should change the version");
+            version = board.getVersion();
+
+            board.terminateMatch(matchId);
+            assertTrue(board.hasChangedSince(version), "Terminating a match should change the version");
+            assertEquals(board.getVersion(), board.snapshot().getVersion());
+        }
+
+        /**
+         * Test to check that the snapshots taken while batches are concurrently applied never show a batch
+         * partially applied.
+         */
+        @Test
+        void ConcurrentBatches_SnapshotsAlwaysConsistent() throws Exception {
+            Scoreboard board = new Scoreboard();
+            int firstMatchId = board.startMatch("Tunisia", "Denmark");
+            int secondMatchId = board.startMatch("Poland", "Saudi Arabia");
+            AtomicBoolean writerDone = new AtomicBoolean(false);
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+
+            // Both matches always receive the same scores, in the same batch
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    board.applyUpdates(new ScoreUpdate(firstMatchId, i, 0), new ScoreUpdate(secondMatchId, i, 0));
+                }
+                writerDone.set(true);
+            });
+            List<Future<Boolean>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 2; reader++) {
+                readers.add(executor.submit(() -> {
+                    boolean consistent = true;
+                    while (!writerDone.get()) {
+                        List<MatchSummary> matches = board.snapshot().getMatches();
+                        consistent &= matches.size() == 2
+                            && matches.get(0).scoreHomeTeam() == matches.get(1).scoreHomeTeam()
+                            && matches.get(0).matchId() == secondMatchId;
+                    }
+                    return consistent;
+                }));
+            }
+
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<Boolean> reader : readers) {
+                assertTrue(reader.get(60, TimeUnit.SECONDS), "A snapshot showed a partially applied batch");
+            }
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the cache of the rendered summary.
+     */
+    @Nested
+    class SummaryCacheTests {
+
+        /**
+         * Test to check that the summary is rendered once between two modifications, and that the hits and misses
+         * are counted.
+         */
+        @Test
+        void RepeatedSummaries_RenderedOnce() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Cameroon", "Switzerland");
+
+            String firstSummary = board.getMatchesSummary();
+            String secondSummary = board.getMatchesSummary();
+            assertSame(firstSummary, secondSummary, "The cached summary should have been returned");
+            assertEquals(1, board.getSummaryCacheMisses());
+            assertEquals(1, board.getSummaryCacheHits());
+
+            board.updateScoreUnboxed(matchId, 0, 1);
+            assertEquals("Cameroon 0 - Switzerland 1", board.getMatchesSummary(), "The cache was not invalidated");
+            assertEquals(2, board.getSummaryCacheMisses());
+            assertEquals(1, board.getSummaryCacheHits());
+        }
+
+        /**
+         * Test to check that the snapshot is reused as long as the scoreboard is not modified.
+         */
+        @Test
+        void UnmodifiedScoreboard_SameSnapshot() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Cameroon", "Switzerland");
+
+            ScoreboardSnapshot snapshot = board.snapshot();
+            assertSame(snapshot, board.snapshot(), "The snapshot should have been reused");
+            board.terminateMatch(matchId);
+            assertEquals(0, board.snapshot().size(), "The cached snapshot was not invalidated");
+        }
+
+        /**
+         * Returns the lines rendered by the summary of a snapshot.
+         */
+        private String[] renderedLines(ScoreboardSnapshot snapshot) throws ReflectiveOperationException {
+            Field ranking = ScoreboardSnapshot.class.getDeclaredField("ranking");
+            ranking.setAccessible(true);
+            RankingSnapshot rankingSnapshot = (RankingSnapshot) ranking.get(snapshot);
+            assertTrue(rankingSnapshot.hasRenderedLines());
+            return rankingSnapshot.renderLines(null);
+        }
+
+        /**
+         * Test to check that the summary following a modification reuses the lines of the unchanged matches, and
+         * renders the other ones, including a recycled match ID given to other teams.
+         */
+        @Test
+        void ModifiedScoreboard_UnchangedLinesReused() throws ReflectiveOperationException {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withRecycledMatchIds(storage);
+                int mexicoId = board.startMatch("Mexico", "Canada");
+                int spainId = board.startMatch("Spain", "Brazil");
+                int germanyId = board.startMatch("Germany", "France");
+                board.updateScore(spainId, 1, 0);
+                assertEquals("Spain 1 - Brazil 0\nGermany 0 - France 0\nMexico 0 - Canada 0", board.getMatchesSummary());
+                String[] firstLines = this.renderedLines(board.snapshot());
+
+                board.updateScore(mexicoId, 0, 2);
+                // A snapshot whose summary is never rendered does not break the reuse
+                board.snapshot();
+                board.terminateMatch(germanyId);
+                assertEquals(germanyId, board.startMatch("Uruguay", "Italy"));
+                assertEquals("Mexico 0 - Canada 2\nSpain 1 - Brazil 0\nUruguay 0 - Italy 0", board.getMatchesSummary());
+                String[] secondLines = this.renderedLines(board.snapshot());
+                assertSame(firstLines[0], secondLines[1]);
+                assertEquals("Uruguay 0 - Italy 0", secondLines[2]);
+            }
+        }
+
+        /**
+         * Test to check that the lines of a large snapshot rendered in parallel are the ones rendered sequentially,
+         * with and without a previous snapshot.
+         */
+        @Test
+        void LargeSnapshot_ParallelLinesRenderedAsSequentialOnes() throws ReflectiveOperationException {
+            // Both boards play the same matches, whose lines are rendered in parallel on the first one only
+            Scoreboard parallelBoard = new Scoreboard();
+            Scoreboard sequentialBoard = new Scoreboard();
+            int nbMatches = 20_000;
+            for (Scoreboard board : List.of(parallelBoard, sequentialBoard)) {
+                for (int i = 0; i < nbMatches; i++) {
+                    board.updateScore(board.startMatch("Home " + i, "Visitor " + i), i % 7, i % 3);
+                }
+            }
+            RankingSnapshot first = this.rankingOf(parallelBoard.snapshot());
+            assertArrayEquals(this.rankingOf(sequentialBoard.snapshot()).renderLines(null, Integer.MAX_VALUE),
+                first.renderLines(null, 0));
+
+            for (Scoreboard board : List.of(parallelBoard, sequentialBoard)) {
+                for (int matchId = 1; matchId <= nbMatches; matchId += 97) {
+                    board.updateScore(matchId, 9, matchId % 5);
+                }
+                board.terminateMatch(2);
+                board.startMatch("Mexico", "Canada");
+            }
+            assertArrayEquals(this.rankingOf(sequentialBoard.snapshot()).renderLines(null, Integer.MAX_VALUE),
+                this.rankingOf(parallelBoard.snapshot()).renderLines(first, 0));
+        }
+
+        /**
+         * Returns the ranking of a snapshot.
+         */
+        private RankingSnapshot rankingOf(ScoreboardSnapshot snapshot) throws ReflectiveOperationException {
+            Field ranking = ScoreboardSnapshot.class.getDeclaredField("ranking");
+            ranking.setAccessible(true);
+            return (RankingSnapshot) ranking.get(snapshot);
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the subscriptions to the changes of the scoreboard.
+     */
+    @Nested
+    class SubscriptionTests {
+
+        /**
+         * Subscriber recording the events it receives, and requesting them on demand.
+         */
+        private static class RecordingSubscriber implements Flow.Subscriber<ScoreboardEvent> {
+            private final List<ScoreboardEvent> events = new ArrayList<>();
+            private final long initialRequest;
+            private Flow.Subscription subscription;
+
+            RecordingSubscriber(long initialRequest) {
+                this.initialRequest = initialRequest;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                if (this.initialRequest > 0) {
+                    subscription.request(this.initialRequest);
+                }
+            }
+
+            @Override
+            public void onNext(ScoreboardEvent event) {
+                this.events.add(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail("Unexpected error: " + throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        }
+
+        /**
+         * Test to check that the subscriber receives all the changes, in order, with the versions of the scoreboard
+         * and the moves of the matches in the summary.
+         */
+        @Test
+        void AllChanges_ReceivedInOrder() {
+            Scoreboard board = new Scoreboard();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            board.subscribe(subscriber, 16, BackpressurePolicy.BLOCK, Runnable::run);
+
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            int secondMatchId = board.startMatch("Spain", "Brazil");
+            board.updateScore(firstMatchId, 1, 0);
+            board.terminateMatch(secondMatchId);
+
+            List<ScoreboardEvent> expected = List.of(
+                new ScoreboardEvent.MatchStarted(1, firstMatchId, "Mexico", "Canada", 0),
+                new ScoreboardEvent.MatchStarted(2, secondMatchId, "Spain", "Brazil", 0),
+                new ScoreboardEvent.ScoreUpdated(3, firstMatchId, 1, 0),
+                new ScoreboardEvent.RankChanged(3, firstMatchId, 1, 0),
+                new ScoreboardEvent.MatchTerminated(4, secondMatchId, 1));
+            assertEquals(expected, subscriber.events);
+            assertEquals(board.getVersion(), subscriber.events.get(expected.size() - 1).version());
+        }
+
+        /**
+         * Test to check that a batch of updates produces a single event per match, with its final scores.
+         */
+        @Test
+        void BatchOfUpdates_OneEventPerMatch() {
+            Scoreboard board = new Scoreboard();
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            int secondMatchId = board.startMatch("Spain", "Brazil");
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            board.subscribe(subscriber, 16, BackpressurePolicy.BLOCK, Runnable::run);
+
+            board.applyUpdates(new ScoreUpdate(firstMatchId, 1, 0), new ScoreUpdate(secondMatchId, 0, 1),
+                new ScoreUpdate(firstMatchId, 2, 0));
+
+            List<ScoreboardEvent> expected = List.of(
+                new ScoreboardEvent.ScoreUpdated(3, firstMatchId, 2, 0),
+                new ScoreboardEvent.RankChanged(3, firstMatchId, 1, 0),
+                new ScoreboardEvent.ScoreUpdated(3, secondMatchId, 0, 1),
+                new ScoreboardEvent.RankChanged(3, secondMatchId, 0, 1));
+            assertEquals(expected, subscriber.events);
+        }
+
+        /**
+         * Test to check that the oldest events are dropped, and counted, when the subscriber does not keep up.
+         */
+        @Test
+        void SlowSubscriber_OldestEventsDropped() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            RecordingSubscriber subscriber = new RecordingSubscriber(0);
+            board.subscribe(subscriber, 2, BackpressurePolicy.DROP_OLDEST, Runnable::run);
+
+            for (int score = 1; score <= 5; score++) {
+                board.updateScore(matchId, score, 0);
+            }
+            assertTrue(subscriber.events.isEmpty(), "No event was requested");
+            assertEquals(3, board.getDroppedEvents());
+
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertEquals(List.of(new ScoreboardEvent.ScoreUpdated(5, matchId, 4, 0),
+                new ScoreboardEvent.ScoreUpdated(6, matchId, 5, 0)), subscriber.events);
+        }
+
+        /**
+         * Test to check that only the latest pending update of each match is delivered with the coalescing policy.
+         */
+        @Test
+        void SlowSubscriber_UpdatesCoalesced() {
+            Scoreboard board = new Scoreboard();
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            int secondMatchId = board.startMatch("Spain", "Brazil");
+            RecordingSubscriber subscriber = new RecordingSubscriber(0);
+            board.subscribe(subscriber, 4, BackpressurePolicy.COALESCE, Runnable::run);
+
+            board.updateScore(firstMatchId, 0, 1);
+            board.updateScore(firstMatchId, 0, 2);
+            board.terminateMatch(secondMatchId);
+            board.updateScore(firstMatchId, 0, 3);
+
+            subscriber.subscription.request(Long.MAX_VALUE);
+            assertEquals(List.of(new ScoreboardEvent.RankChanged(3, firstMatchId, 1, 0),
+                new ScoreboardEvent.MatchTerminated(5, secondMatchId, 1),
+                new ScoreboardEvent.ScoreUpdated(6, firstMatchId, 0, 3)), subscriber.events);
+            assertEquals(0, board.getDroppedEvents());
+        }
+
+        /**
+         * Test to check that a cancelled subscription does not receive any new event.
+         */
+        @Test
+        void CancelledSubscription_NoMoreEvents() {
+            Scoreboard board = new Scoreboard();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            board.subscribe(subscriber, 16, BackpressurePolicy.BLOCK, Runnable::run);
+
+            int matchId = board.startMatch("Mexico", "Canada");
+            subscriber.subscription.cancel();
+            board.updateScore(matchId, 1, 0);
+            assertEquals(1, subscriber.events.size(), "The subscription was not cancelled");
+        }
+
+        /**
+         * Test to check that the events are delivered asynchronously to the subscribers of the publisher.
+         */
+        @Test
+        void Publisher_EventsDeliveredAsynchronously() throws InterruptedException {
+            Scoreboard board = new Scoreboard();
+            CountDownLatch terminated = new CountDownLatch(1);
+            board.asPublisher(16, BackpressurePolicy.BLOCK).subscribe(new RecordingSubscriber(Long.MAX_VALUE) {
+                @Override
+                public void onNext(ScoreboardEvent event) {
+                    if (event instanceof ScoreboardEvent.MatchTerminated) {
+                        terminated.countDown();
+                    }
+                }
+            });
+
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.updateScore(matchId, 1, 0);
+            board.terminateMatch(matchId);
+            assertTrue(terminated.await(10, TimeUnit.SECONDS), "The events were not delivered");
+        }
+
+        /**
+         * Test to check that a blocking subscriber without demand blocks the writers only once their change is
+         * applied, without blocking the readers nor the other writers while they hold the lock.
+         */
+        @Test
+        void BlockingSubscriberWithoutDemand_BoardNotFrozen() throws Exception {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.startMatch("Spain", "Brazil");
+            RecordingSubscriber subscriber = new RecordingSubscriber(0);
+            board.subscribe(subscriber, 1, BackpressurePolicy.BLOCK);
+
+            ExecutorService updater = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> update = updater.submit(() -> board.updateScore(matchId, 0, 1));
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    while (board.getVersion() < 3) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals("Mexico 0 - Canada 1\nSpain 0 - Brazil 0", board.getMatchesSummary());
+                });
+                assertTrue(!update.isDone(), "The writer did not wait for room in the queue");
+
+                subscriber.subscription.request(Long.MAX_VALUE);
+                update.get(10, TimeUnit.SECONDS);
+            } finally {
+                updater.shutdownNow();
+            }
+        }
+
+        /**
+         * Test to check that a blocking subscriber can read and modify the scoreboard from its onNext method.
+         */
+        @Test
+        void BlockingSubscriberUsingBoard_NoDeadlock() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            List<String> summaries = new ArrayList<>();
+            board.subscribe(new RecordingSubscriber(Long.MAX_VALUE) {
+                @Override
+                public void onNext(ScoreboardEvent event) {
+                    summaries.add(board.getMatchesSummary());
+                    if (event instanceof ScoreboardEvent.RankChanged) {
+                        board.updateScore(matchId, 2, 0);
+                    }
+                }
+            }, 1, BackpressurePolicy.BLOCK, Runnable::run);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                board.startMatch("Spain", "Brazil");
+                board.updateScore(matchId, 1, 0);
+            });
+            assertEquals("Mexico 2 - Canada 0\nSpain 0 - Brazil 0", board.getMatchesSummary());
+            assertEquals(4, summaries.size());
+        }
+
+        /**
+         * Test to check that a request of a non-positive number of events ends the subscription with an error.
+         */
+        @Test
+        void NonPositiveRequest_ErrorSignaled() {
+            Scoreboard board = new Scoreboard();
+            List<Throwable> errors = new ArrayList<>();
+            RecordingSubscriber subscriber = new RecordingSubscriber(0) {
+                @Override
+                public void onError(Throwable throwable) {
+                    errors.add(throwable);
+                }
+            };
+            board.subscribe(subscriber, 16, BackpressurePolicy.BLOCK, Runnable::run);
+
+            subscriber.subscription.request(0);
+            subscriber.subscription.request(-1);
+            board.startMatch("Mexico", "Canada");
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0) instanceof IllegalArgumentException);
+            assertTrue(subscriber.events.isEmpty(), "The failed subscription received an event");
+        }
+
+        /**
+         * Test to check that closing the scoreboard completes its subscriptions, after the requested events.
+         */
+        @Test
+        void ClosedBoard_SubscriptionCompleted() throws IOException {
+            Scoreboard board = new Scoreboard();
+            List<String> signals = new ArrayList<>();
+            board.subscribe(new RecordingSubscriber(1) {
+                @Override
+                public void onNext(ScoreboardEvent event) {
+                    signals.add("next");
+                }
+
+                @Override
+                public void onComplete() {
+                    signals.add("complete");
+                }
+            }, 16, BackpressurePolicy.DROP_OLDEST, Runnable::run);
+
+            board.startMatch("Mexico", "Canada");
+            board.startMatch("Spain", "Brazil");
+            board.close();
+            assertEquals(List.of("next", "complete"), signals);
+        }
+
+        /**
+         * Test to check that a subscription whose executor rejects the delivery is ended with the rejection, rather
+         * than stalling the blocked writers.
+         */
+        @Test
+        void RejectingExecutor_SubscriptionFailed() {
+            Scoreboard board = new Scoreboard();
+            List<Throwable> errors = new ArrayList<>();
+            board.subscribe(new RecordingSubscriber(Long.MAX_VALUE) {
+                @Override
+                public void onError(Throwable throwable) {
+                    errors.add(throwable);
+                }
+            }, 1, BackpressurePolicy.BLOCK, runnable -> {
+                throw new RejectedExecutionException();
+            });
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                int matchId = board.startMatch("Mexico", "Canada");
+                board.updateScore(matchId, 1, 0);
+            });
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0) instanceof RejectedExecutionException);
+        }
+
+        /**
+         * Test to check that invalid subscriptions are rejected.
+         */
+        @Test
+        void InvalidArguments_ExceptionThrown() {
+            Scoreboard board = new Scoreboard();
+            assertThrows(IllegalArgumentException.class,
+                () -> board.subscribe(null, 16, BackpressurePolicy.BLOCK));
+            assertThrows(IllegalArgumentException.class,
+                () -> board.subscribe(new RecordingSubscriber(1), 0, BackpressurePolicy.BLOCK));
+            assertThrows(IllegalArgumentException.class,
+                () -> board.subscribe(new RecordingSubscriber(1), 16, null));
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the binary export and import of a whole scoreboard.
+     */
+    @Nested
+    class ExportImportTests {
+
+        /**
+         * Exports a scoreboard to an array of bytes.
+         */
+        private byte[] export(Scoreboard board) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            board.exportSnapshot(Channels.newChannel(out));
+            return out.toByteArray();
+        }
+
+        /**
+         * Imports a scoreboard from an array of bytes.
+         */
+        private Scoreboard load(byte[] exported) throws IOException {
+            return Scoreboard.importSnapshot(Channels.newChannel(new ByteArrayInputStream(exported)));
+        }
+
+        /**
+         * Test to check that an imported scoreboard is identical to the exported one, and behaves the same way
+         * when it is modified afterwards.
+         */
+        @Test
+        void ExportedScoreboard_ImportedIdentically() throws IOException {
+            Scoreboard board = new Scoreboard();
+            Random random = new Random(42);
+            List<Integer> matchIds = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int matchId = board.startMatch("Home" + random.nextInt(50), "Visitor" + random.nextInt(50));
+                board.updateScore(matchId, random.nextInt(5), random.nextInt(5));
+                matchIds.add(matchId);
+            }
+
+            Scoreboard imported = this.load(this.export(board));
+            assertEquals(board.getMatchesSummary(), imported.getMatchesSummary());
+            assertEquals(board.getVersion(), imported.getVersion());
+
+            for (int i = 0; i < 1000; i++) {
+                int matchId = matchIds.get(random.nextInt(matchIds.size()));
+                int scoreHomeTeam = random.nextInt(5);
+                int scoreVisitorTeam = random.nextInt(5);
+                board.updateScore(matchId, scoreHomeTeam, scoreVisitorTeam);
+                imported.updateScore(matchId, scoreHomeTeam, scoreVisitorTeam);
+            }
+            board.terminateMatch(matchIds.get(0));
+            imported.terminateMatch(matchIds.get(0));
+            assertEquals(board.getMatchesSummary(), imported.getMatchesSummary());
+            assertTrue(imported.startMatch("Mexico", "Canada") > matchIds.get(matchIds.size() - 1),
+                "A match ID was reused");
+        }
+
+        /**
+         * Test to check that each team name is exported once, followed by a fixed-width record per match.
+         */
+        @Test
+        void RepeatedTeams_ExportedOnce() throws IOException {
+            Scoreboard board = new Scoreboard();
+            for (int i = 0; i < 100; i++) {
+                board.startMatch((i % 2 == 0) ? "Mexico" : "Spain", (i % 2 == 0) ? "Canada" : "Brazil");
+            }
+
+            int headerSize = 4 + 2 + 8 + 4 + 8;
+            int dictionarySize = 4 + 4 * 4 + "MexicoCanadaSpainBrazil".length();
+            assertEquals(headerSize + dictionarySize + 4 + 100 * 28, this.export(board).length);
+        }
+
+        /**
+         * Test to check that invalid or truncated exports are rejected.
+         */
+        @Test
+        void InvalidExport_ExceptionThrown() throws IOException {
+            Scoreboard board = new Scoreboard();
+            board.startMatch("Mexico", "Canada");
+            byte[] exported = this.export(board);
+
+            assertThrows(IOException.class, () -> this.load(Arrays.copyOf(exported, exported.length - 1)));
+            exported[0] = 'X';
+            assertThrows(IOException.class, () -> this.load(exported));
+            assertThrows(IllegalArgumentException.class, () -> board.exportSnapshot(null));
+            assertThrows(IllegalArgumentException.class, () -> Scoreboard.importSnapshot(null));
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the persistent scoreboards.
+     */
+    @Nested
+    class JournalTests {
+
+        /** Directory of the journal, deleted after each test. */
+        @TempDir
+        Path journalDirectory;
+
+        /**
+         * Test to check that the journaled matches, scores and version are restored after a crash (the first
+         * scoreboard is never closed), and that the new matches do not reuse the restored IDs.
+         */
+        @Test
+        void JournaledChanges_RestoredAfterCrash() throws IOException {
+            Scoreboard board = new Scoreboard(this.journalDirectory);
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            int secondMatchId = board.startMatch("Spain", "Brazil");
+            int thirdMatchId = board.startMatch("Germany", "France");
+            board.updateScore(firstMatchId, 0, 5);
+            board.applyUpdates(new ScoreUpdate(secondMatchId, 10, 2), new ScoreUpdate(thirdMatchId, 2, 2),
+                new ScoreUpdate(secondMatchId, 1, 2));
+            board.terminateMatch(thirdMatchId);
+
+            Scoreboard restored = new Scoreboard(this.journalDirectory);
+            assertEquals(board.getMatchesSummary(), restored.getMatchesSummary());
+            assertEquals(board.getVersion(), restored.getVersion());
+            assertTrue(restored.startMatch("Germany", "France") > thirdMatchId, "A match ID was reused");
+            restored.updateScore(secondMatchId, 2, 2);
+            assertEquals("Mexico 0 - Canada 5\nSpain 2 - Brazil 2\nGermany 0 - France 0",
+                new Scoreboard(this.journalDirectory).getMatchesSummary());
+        }
+
+        /**
+         * Test to check that the snapshots replace the older journals, and that the board is restored from them.
+         */
+        @Test
+        void RegularSnapshots_OlderJournalsDeleted() throws IOException {
+            Scoreboard board = new Scoreboard(this.journalDirectory, 10);
+            int matchId = board.startMatch("Mexico", "Canada");
+            for (int score = 1; score <= 95; score++) {
+                board.updateScore(matchId, score, 0);
+            }
+
+            try (Stream<Path> files = Files.list(this.journalDirectory)) {
+                assertEquals(List.of("journal-90.log", "snapshot-90.bin"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+            }
+            Scoreboard restored = new Scoreboard(this.journalDirectory, 10);
+            assertEquals("Mexico 95 - Canada 0", restored.getMatchesSummary());
+            assertEquals(96, restored.getVersion());
+        }
+
+        /**
+         * Test to check that a write torn by a crash, at the end of the journal, is discarded.
+         */
+        @Test
+        void TornWrite_Discarded() throws IOException {
+            Scoreboard board = new Scoreboard(this.journalDirectory);
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.updateScore(matchId, 1, 0);
+
+            // A frame announcing more records than the file contains
+            Files.write(this.journalDirectory.resolve("journal-0.log"), new byte[] {0, 0, 0, 42, 1, 2, 3},
+                StandardOpenOption.APPEND);
+            Scoreboard restored = new Scoreboard(this.journalDirectory);
+            assertEquals("Mexico 1 - Canada 0", restored.getMatchesSummary());
+
+            restored.updateScore(matchId, 2, 0);
+            assertEquals("Mexico 2 - Canada 0", new Scoreboard(this.journalDirectory).getMatchesSummary());
+        }
+
+        /**
+         * Test to check that closing a scoreboard writes a final snapshot, from which it is restored.
+         */
+        @Test
+        void ClosedScoreboard_RestoredFromSnapshot() throws IOException {
+            try (Scoreboard board = new Scoreboard(this.journalDirectory)) {
+                int matchId = board.startMatch("Mexico", "Canada");
+                board.updateScore(matchId, 3, 1);
+                board.startMatch("Spain", "Brazil");
+            }
+
+            assertTrue(Files.exists(this.journalDirectory.resolve("snapshot-3.bin")), "No final snapshot");
+            assertEquals("Mexico 3 - Canada 1\nSpain 0 - Brazil 0",
+                new Scoreboard(this.journalDirectory).getMatchesSummary());
+        }
+
+        /**
+         * Test to check that a missing journal is reported, rather than silently losing changes.
+         */
+        @Test
+        void MissingJournal_ExceptionThrown() throws IOException {
+            try (Scoreboard board = new Scoreboard(this.journalDirectory, 2)) {
+                int matchId = board.startMatch("Mexico", "Canada");
+                for (int score = 1; score <= 4; score++) {
+                    board.updateScore(matchId, score, 0);
+                }
+            }
+            Files.delete(this.journalDirectory.resolve("snapshot-5.bin"));
+            assertThrows(IOException.class, () -> new Scoreboard(this.journalDirectory, 2));
+        }
+
+        /**
+         * Test to check that the changes the journal fails to write are rolled back, and that the scoreboard then
+         * refuses any change, before applying it.
+         */
+        @Test
+        void FailedJournalWrite_ChangesRolledBackAndRefused() throws Exception {
+            Scoreboard board = new Scoreboard(this.journalDirectory);
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            int secondMatchId = board.startMatch("Spain", "Brazil");
+            board.updateScore(firstMatchId, 1, 0);
+            List<ScoreboardEvent> events = new ArrayList<>();
+            board.subscribe(new Flow.Subscriber<ScoreboardEvent>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(ScoreboardEvent event) {
+                    events.add(event);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                }
+
+                @Override
+                public void onComplete() {
+                }
+            }, 16, BackpressurePolicy.BLOCK, Runnable::run);
+
+            // The next write of the journal fails
+            Field journalField = Scoreboard.class.getDeclaredField("journal");
+            journalField.setAccessible(true);
+            Object journal = journalField.get(board);
+            Field channelField = journal.getClass().getDeclaredField("channel");
+            channelField.setAccessible(true);
+            ((FileChannel) channelField.get(journal)).close();
+
+            assertThrows(UncheckedIOException.class, () -> board.applyUpdates(new ScoreUpdate(firstMatchId, 0, 0),
+                new ScoreUpdate(secondMatchId, 3, 3)));
+            assertEquals("Mexico 1 - Canada 0\nSpain 0 - Brazil 0", board.getMatchesSummary());
+            assertEquals(List.of(
+                new ScoreboardEvent.ScoreUpdated(4, firstMatchId, 0, 0),
+                new ScoreboardEvent.RankChanged(4, firstMatchId, 0, 1),
+                new ScoreboardEvent.ScoreUpdated(4, secondMatchId, 3, 3),
+                new ScoreboardEvent.RankChanged(4, secondMatchId, 1, 0),
+                new ScoreboardEvent.ScoreUpdated(5, secondMatchId, 0, 0),
+                new ScoreboardEvent.ScoreUpdated(6, firstMatchId, 1, 0),
+                new ScoreboardEvent.RankChanged(6, firstMatchId, 1, 0)), events);
+
+            long version = board.getVersion();
+            assertThrows(UncheckedIOException.class, () -> board.startMatch("Germany", "France"));
+            assertThrows(UncheckedIOException.class, () -> board.updateScore(firstMatchId, 2, 0));
+            assertThrows(UncheckedIOException.class, () -> board.terminateMatch(secondMatchId));
+            assertEquals(version, board.getVersion());
+            assertEquals("Mexico 1 - Canada 0\nSpain 0 - Brazil 0", board.getMatchesSummary());
+            assertEquals(board.getMatchesSummary(), new Scoreboard(this.journalDirectory).getMatchesSummary());
+        }
+
+        /**
+         * Test to check that a started or terminated match is rolled back when the journal fails to write it.
+         */
+        @Test
+        void FailedJournalWrite_StartAndTerminationRolledBack() throws Exception {
+            Path[] directories = {this.journalDirectory.resolve("start"), this.journalDirectory.resolve("terminate")};
+            for (Path directory : directories) {
+                Scoreboard board = new Scoreboard(directory);
+                int matchId = board.startMatch("Mexico", "Canada");
+                board.updateScore(matchId, 2, 1);
+                board.startMatch("Spain", "Brazil");
+                Field journalField = Scoreboard.class.getDeclaredField("journal");
+                journalField.setAccessible(true);
+                Object journal = journalField.get(board);
+                Field channelField = journal.getClass().getDeclaredField("channel");
+                channelField.setAccessible(true);
+                ((FileChannel) channelField.get(journal)).close();
+
+                if (directory == directories[0]) {
+                    assertThrows(UncheckedIOException.class, () -> board.startMatch("Germany", "France"));
+                } else {
+                    assertThrows(UncheckedIOException.class, () -> board.terminateMatch(matchId));
+                }
+                assertEquals("Mexico 2 - Canada 1\nSpain 0 - Brazil 0", board.getMatchesSummary());
+                assertEquals(5, board.getVersion());
+                assertEquals(List.of(matchId), board.findMatchesByTeam("Canada"));
+            }
+        }
+
+        /**
+         * Test to check that invalid journal parameters are rejected.
+         */
+        @Test
+        void InvalidArguments_ExceptionThrown() {
+            assertThrows(IllegalArgumentException.class, () -> new Scoreboard(null));
+            assertThrows(IllegalArgumentException.class, () -> new Scoreboard(this.journalDirectory, 0));
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the scoreboards storing their matches in compact arrays.
+     */
+    @Nested
+    class CompactStorageTests {
+
+        /**
+         * Test to check that a compact scoreboard behaves exactly as the default one, including when the records
+         * of the terminated matches are reused by the next started matches.
+         */
+        @Test
+        void RandomOperations_SameSummariesAsDefaultStorage() {
+            Scoreboard board = new Scoreboard();
+            Scoreboard compactBoard = Scoreboard.withStorage(MatchStorage.COMPACT);
+            Random random = new Random(7);
+            List<Integer> matchIds = new ArrayList<>();
+            List<Integer> compactMatchIds = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                int operation = random.nextInt(10);
+                if (operation < 3 || matchIds.isEmpty()) {
+                    String nameHomeTeam = "Home" + random.nextInt(100);
+                    String nameVisitorTeam = "Visitor" + random.nextInt(100);
+                    matchIds.add(board.startMatch(nameHomeTeam, nameVisitorTeam));
+                    compactMatchIds.add(compactBoard.startMatch(nameHomeTeam, nameVisitorTeam));
+                } else if (operation < 6) {
+                    int index = random.nextInt(matchIds.size());
+                    int scoreHomeTeam = random.nextInt(6);
+                    int scoreVisitorTeam = random.nextInt(6);
+                    board.updateScore(matchIds.get(index), scoreHomeTeam, scoreVisitorTeam);
+                    compactBoard.updateScore(compactMatchIds.get(index), scoreHomeTeam, scoreVisitorTeam);
+                } else if (operation < 8) {
+                    int first = random.nextInt(matchIds.size());
+                    int second = random.nextInt(matchIds.size());
+                    board.applyUpdates(new ScoreUpdate(matchIds.get(first), 1, 2),
+                        new ScoreUpdate(matchIds.get(second), 3, 0), new ScoreUpdate(matchIds.get(first), 2, 2));
+                    compactBoard.applyUpdates(new ScoreUpdate(compactMatchIds.get(first), 1, 2),
+                        new ScoreUpdate(compactMatchIds.get(second), 3, 0),
+                        new ScoreUpdate(compactMatchIds.get(first), 2, 2));
+                } else {
+                    int index = random.nextInt(matchIds.size());
+                    board.terminateMatch(matchIds.remove(index));
+                    compactBoard.terminateMatch(compactMatchIds.remove(index));
+                }
+
+                if (i % 100 == 0) {
+                    assertEquals(board.getMatchesSummary(), compactBoard.getMatchesSummary());
+                    assertEquals(board.getMatchesPage(10, 20), compactBoard.getMatchesPage(10, 20));
+                }
+            }
+            assertEquals(board.getMatchesSummary(), compactBoard.getMatchesSummary());
+            assertEquals(matchIds.size(), TestScoreboard.helperGetListMatchesForBoard(compactBoard).size());
+        }
+
+        /**
+         * Test to check that the matches read from both stores are detached copies, whose modification leaves the
+         * ranking of the board unchanged.
+         */
+        @Test
+        void MatchesReadFromStore_CopiesDetachedFromRanking() {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withStorage(storage);
+                int firstMatchId = board.startMatch("Mexico", "Canada");
+                board.startMatch("Spain", "Brazil");
+                String summary = board.getMatchesSummary();
+
+                Match copy = TestScoreboard.helperGetListMatchesForBoard(board).get(firstMatchId);
+                copy.setScores(5, 0);
+                assertEquals(summary, board.getMatchesSummary());
+                assertEquals(Match.packScores(0, 0),
+                    TestScoreboard.helperGetListMatchesForBoard(board).get(firstMatchId).getPackedScores());
+            }
+        }
+
+        /**
+         * Test to check that a compact scoreboard rejects the invalid operations as the default one does.
+         */
+        @Test
+        void InvalidOperations_ExceptionThrown() {
+            Scoreboard board = Scoreboard.withStorage(MatchStorage.COMPACT);
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.terminateMatch(matchId);
+
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> board.updateScore(matchId, 1, 0));
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.terminateMatch(matchId));
+            assertEquals("Trying to terminate a match with invalid ID", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> Scoreboard.withStorage(null));
+        }
+
+        /**
+         * Test to check that a board exported from a storage is imported identically in the other one.
+         */
+        @Test
+        void ExportedScoreboard_ImportedInOtherStorage() throws IOException {
+            Scoreboard board = Scoreboard.withStorage(MatchStorage.COMPACT);
+            for (int i = 0; i < 100; i++) {
+                int matchId = board.startMatch("Home" + i, "Visitor" + i);
+                board.updateScore(matchId, i % 7, i % 3);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            board.exportSnapshot(Channels.newChannel(out));
+
+            Scoreboard imported = Scoreboard.importSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(out.toByteArray())));
+            Scoreboard compactImported = Scoreboard.importSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(out.toByteArray())), MatchStorage.COMPACT);
+            assertEquals(board.getMatchesSummary(), imported.getMatchesSummary());
+            assertEquals(board.getMatchesSummary(), compactImported.getMatchesSummary());
+        }
+
+        /**
+         * Test to check that a board journaled with the default storage is restored in a compact one.
+         */
+        @Test
+        void JournaledScoreboard_RestoredInCompactStorage(@TempDir Path journalDirectory) throws IOException {
+            Scoreboard board = new Scoreboard(journalDirectory, 3);
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.startMatch("Spain", "Brazil");
+            board.updateScore(matchId, 0, 2);
+            board.startMatch("Germany", "France");
+
+            Scoreboard restored = new Scoreboard(journalDirectory, 3, MatchStorage.COMPACT);
+            assertEquals(board.getMatchesSummary(), restored.getMatchesSummary());
+            assertEquals(board.getVersion(), restored.getVersion());
+        }
+    }
+
+    /**
+     * Test class to verify the secondary indexes of the Scoreboard, and the queries they serve.
+     */
+    @Nested
+    class SecondaryIndexTests {
+
+        /**
+         * Test to check the queries on a small board of each storage, with the indexes disabled and then enabled.
+         */
+        @Test
+        void IndexedQueries_SameResultsAsScans() {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withStorage(storage);
+                int firstMatchId = board.startMatch("Mexico", "Canada");
+                int secondMatchId = board.startMatch("Spain", "Mexico");
+                int thirdMatchId = board.startMatch("Germany", "France");
+                board.terminateMatch(thirdMatchId);
+                int fourthMatchId = board.startMatch("Mexico", "Canada");
+
+                for (MatchIndex index : MatchIndex.values()) {
+                    assertEquals(List.of(firstMatchId, secondMatchId, fourthMatchId),
+                        board.findMatchesByTeam(" Mexico "));
+                    assertEquals(List.of(), board.findMatchesByTeam("France"));
+                    assertEquals(List.of(), board.findMatchesByTeam("Italy"));
+                    assertEquals(fourthMatchId, board.findActiveMatch("Mexico", "Canada"));
+                    assertEquals(null, board.findActiveMatch("Canada", "Mexico"));
+                    assertEquals(null, board.findActiveMatch("Italy", "Mexico"));
+                    assertEquals(List.of(secondMatchId, fourthMatchId), board.getMatchIdsStartedAfter(firstMatchId));
+                    assertEquals(List.of(fourthMatchId), board.getMatchIdsStartedAfter(thirdMatchId));
+                    assertEquals(List.of(), board.getMatchIdsStartedAfter(Integer.MAX_VALUE));
+                    board.enableIndex(index);
+                    assertTrue(board.isIndexEnabled(index));
+                }
+            }
+        }
+
+        /**
+         * Test to check that the indexes follow the starts and terminations of matches, by comparing their results
+         * with the ones of a board without index.
+         */
+        @Test
+        void RandomOperations_IndexesFollowMatches() {
+            Scoreboard board = new Scoreboard();
+            Scoreboard indexedBoard = Scoreboard.withStorage(MatchStorage.COMPACT);
+            indexedBoard.enableIndex(MatchIndex.TEAM);
+            Random random = new Random(11);
+            List<Integer> matchIds = new ArrayList<>();
+            List<Integer> indexedMatchIds = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                if (i == 1000) {
+                    // The indexes enabled on a populated board are built from its matches
+                    indexedBoard.enableIndex(MatchIndex.TEAMS_PAIR);
+                    indexedBoard.enableIndex(MatchIndex.START_ORDER);
+                }
+                if (random.nextInt(5) < 3 || matchIds.isEmpty()) {
+                    String nameHomeTeam = "Team" + random.nextInt(30);
+                    String nameVisitorTeam = "Team" + (30 + random.nextInt(30));
+                    matchIds.add(board.startMatch(nameHomeTeam, nameVisitorTeam));
+                    indexedMatchIds.add(indexedBoard.startMatch(nameHomeTeam, nameVisitorTeam));
+                } else {
+                    int index = random.nextInt(matchIds.size());
+                    board.terminateMatch(matchIds.remove(index));
+                    indexedBoard.terminateMatch(indexedMatchIds.remove(index));
+                }
+
+                if (matchIds.isEmpty()) {
+                    continue;
+                }
+                // Both boards start their matches in the same order, so their IDs are shifted by a constant
+                int shift = indexedMatchIds.get(0) - matchIds.get(0);
+                String nameTeam = "Team" + random.nextInt(60);
+                assertEquals(shifted(board.findMatchesByTeam(nameTeam), shift), indexedBoard.findMatchesByTeam(nameTeam));
+                String nameVisitorTeam = "Team" + (30 + random.nextInt(30));
+                Integer activeMatchId = board.findActiveMatch(nameTeam, nameVisitorTeam);
+                assertEquals((activeMatchId == null) ? null : activeMatchId + shift,
+                    indexedBoard.findActiveMatch(nameTeam, nameVisitorTeam));
+                int afterMatchId = matchIds.get(random.nextInt(matchIds.size())) - 1;
+                assertEquals(shifted(board.getMatchIdsStartedAfter(afterMatchId), shift),
+                    indexedBoard.getMatchIdsStartedAfter(afterMatchId + shift));
+            }
+        }
+
+        /**
+         * Test to check that a disabled index falls back to the scans, and that invalid arguments are rejected.
+         */
+        @Test
+        void DisabledIndexAndInvalidArguments_Handled() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.enableIndex(MatchIndex.TEAM);
+            board.disableIndex(MatchIndex.TEAM);
+            board.disableIndex(MatchIndex.TEAM);
+            assertTrue(!board.isIndexEnabled(MatchIndex.TEAM));
+            assertEquals(List.of(matchId), board.findMatchesByTeam("Canada"));
+
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> board.findMatchesByTeam(null));
+            assertEquals("Team names must be non-null", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.findActiveMatch("Mexico", " "));
+            assertEquals("Team names must be non-empty", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.enableIndex(null));
+            assertEquals("Trying to enable a null index", exception.getMessage());
+        }
+
+        /**
+         * Shifts match IDs by a constant.
+         */
+        private List<Integer> shifted(List<Integer> matchIds, int shift) {
+            return matchIds.stream().map(matchId -> matchId + shift).toList();
+        }
+    }
+
+    /**
+     * Test class to verify that a ShardedScoreboard behaves as a Scoreboard.
+     */
+    @Nested
+    class ShardedScoreboardTests {
+
+        /**
+         * Test to check that the merged summaries and pages of a sharded scoreboard are the ones of a single
+         * scoreboard receiving the same operations.
+         */
+        @Test
+        void RandomOperations_SameSummariesAsSingleScoreboard() {
+            Scoreboard board = new Scoreboard();
+            ShardedScoreboard shardedBoard = new ShardedScoreboard(5);
+            Random random = new Random(13);
+            List<Integer> matchIds = new ArrayList<>();
+            List<Integer> shardedMatchIds = new ArrayList<>();
+            for (int i = 0; i < 4000; i++) {
+                int operation = random.nextInt(10);
+                if (operation < 3 || matchIds.isEmpty()) {
+                    String nameHomeTeam = "Home" + random.nextInt(50);
+                    String nameVisitorTeam = "Visitor" + random.nextInt(50);
+                    matchIds.add(board.startMatch(nameHomeTeam, nameVisitorTeam));
+                    shardedMatchIds.add(shardedBoard.startMatch(nameHomeTeam, nameVisitorTeam));
+                } else if (operation < 6) {
+                    int index = random.nextInt(matchIds.size());
+                    int scoreHomeTeam = random.nextInt(6);
+                    int scoreVisitorTeam = random.nextInt(6);
+                    board.updateScore(matchIds.get(index), scoreHomeTeam, scoreVisitorTeam);
+                    shardedBoard.updateScore(shardedMatchIds.get(index), scoreHomeTeam, scoreVisitorTeam);
+                } else if (operation < 8) {
+                    int first = random.nextInt(matchIds.size());
+                    int second = random.nextInt(matchIds.size());
+                    board.applyUpdates(new ScoreUpdate(matchIds.get(first), 1, 2),
+                        new ScoreUpdate(matchIds.get(second), 3, 0));
+                    shardedBoard.applyUpdates(new ScoreUpdate(shardedMatchIds.get(first), 1, 2),
+                        new ScoreUpdate(shardedMatchIds.get(second), 3, 0));
+                } else {
+                    int index = random.nextInt(matchIds.size());
+                    board.terminateMatch(matchIds.remove(index));
+                    shardedBoard.terminateMatch(shardedMatchIds.remove(index));
+                }
+
+                if (i % 100 == 0) {
+                    assertEquals(board.getMatchesSummary(), shardedBoard.getMatchesSummary());
+                    assertEquals(board.getMatchesPage(7, 30), shardedBoard.getMatchesPage(7, 30));
+                    assertEquals(board.getTopMatchSummaries(10).toString(), shardedBoard.getTopMatchSummaries(10).toString());
+                }
+            }
+            assertEquals(board.getMatchesSummary(), shardedBoard.getMatchesSummary());
+            assertEquals(board.getMatchesPage(matchIds.size() - 3, 10),
+                shardedBoard.getMatchesPage(matchIds.size() - 3, 10));
+            assertEquals("", shardedBoard.getMatchesPage(matchIds.size(), 10));
+        }
+
+        /**
+         * Test to check that the merged summary is cached until a shard is modified.
+         */
+        @Test
+        void UnchangedShards_SummaryServedFromCache() {
+            ShardedScoreboard board = new ShardedScoreboard(3);
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            board.startMatch("Spain", "Brazil");
+            board.updateScore(firstMatchId, 0, 5);
+
+            ScoreboardSnapshot snapshot = board.snapshot();
+            assertSame(snapshot, board.snapshot());
+            assertEquals(board.getVersion(), snapshot.getVersion());
+            assertEquals("Mexico 0 - Canada 5\nSpain 0 - Brazil 0", board.getMatchesSummary());
+            board.getMatchesSummary();
+            assertEquals(1, board.getSummaryCacheHits());
+
+            board.terminateMatch(firstMatchId);
+            assertTrue(board.hasChangedSince(snapshot.getVersion()));
+            assertEquals("Spain 0 - Brazil 0", board.getMatchesSummary());
+        }
+
+        /**
+         * Test to check that a sharded scoreboard rejects the invalid operations as a Scoreboard does.
+         */
+        @Test
+        void InvalidOperations_ExceptionThrown() {
+            ShardedScoreboard board = new ShardedScoreboard(4);
+            int matchId = board.startMatch("Mexico", "Canada");
+
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> new ShardedScoreboard(0));
+            assertEquals("The number of shards must be positive", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.startMatch("Mexico", " Mexico"));
+            assertEquals("Invalid team names (the same for both teams)", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.startMatch(null, "Canada"));
+            assertEquals("Team names must be non-null", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.updateScore(matchId + 1, 1, 0));
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.updateScoreUnboxed(-1, 1, 0));
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.terminateMatch(null));
+            assertEquals("Trying to terminate a match with null ID", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class, () -> board.getMatchesPage(-1, 10));
+            assertEquals("Trying to get a page with a negative offset", exception.getMessage());
+        }
+
+        /**
+         * Test to check that the invalid team names of a sharded scoreboard are rejected before any match ID is
+         * allocated.
+         */
+        @Test
+        void InvalidTeamNames_NoMatchIdConsumed() throws Exception {
+            ShardedScoreboard board = new ShardedScoreboard(4);
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            assertThrows(IllegalArgumentException.class, () -> board.startMatch("Spain", " Spain"));
+            assertThrows(IllegalArgumentException.class, () -> board.startMatch(" ", "Brazil"));
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> board.startMatchAsync(null, "Brazil").get(10, TimeUnit.SECONDS));
+            assertEquals("Team names must be non-null", exception.getCause().getMessage());
+
+            assertEquals(firstMatchId + 1, board.startMatchAsync("Spain", "Brazil").get(10, TimeUnit.SECONDS));
+            assertEquals(firstMatchId + 2, board.startMatch("Germany", "France"));
+        }
+
+        /**
+         * Test to check that matches started, updated and terminated by several threads at once are all found in
+         * the merged summary, in the summary order.
+         */
+        @Test
+        void ConcurrentWriters_AllMatchesMerged() throws Exception {
+            ShardedScoreboard board = new ShardedScoreboard(4);
+            int nbThreads = 4;
+            int nbMatchesPerThread = 500;
+            ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nbThreads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < nbMatchesPerThread; i++) {
+                        int matchId = board.startMatch("Home" + thread + "_" + i, "Visitor" + thread + "_" + i);
+                        board.updateScore(matchId, i % 5, i % 3);
+                        if (i % 2 == 0) {
+                            board.terminateMatch(matchId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            List<MatchSummary> matches = board.snapshot().getMatches();
+            assertEquals(nbThreads * nbMatchesPerThread / 2, matches.size());
+            for (int i = 1; i < matches.size(); i++) {
+                MatchSummary previous = matches.get(i - 1);
+                MatchSummary current = matches.get(i);
+                int previousTotal = previous.scoreHomeTeam() + previous.scoreVisitorTeam();
+                int currentTotal = current.scoreHomeTeam() + current.scoreVisitorTeam();
+                assertTrue(previousTotal > currentTotal
+                    || (previousTotal == currentTotal && previous.matchId() > current.matchId()));
+            }
+        }
+    }
+
+    /**
+     * Test class to verify the non-blocking and asynchronous modifications of the Scoreboard.
+     */
+    @Nested
+    class AsyncModificationTests {
+
+        /**
+         * Test to check that an update with a timeout is applied when the board is not locked, and given up when it
+         * stays locked.
+         */
+        @Test
+        void TryUpdateScore_GivenUpWhenLocked() throws Exception {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            assertTrue(board.tryUpdateScore(matchId, 1, 0, Duration.ofSeconds(1)));
+            assertEquals("Mexico 1 - Canada 0", board.getMatchesSummary());
+
+            // Access the private lock via reflection, to hold it as a long writer would
+            Field lockField = Scoreboard.class.getDeclaredField("lock");
+            lockField.setAccessible(true);
+            StampedLock lock = (StampedLock) lockField.get(board);
+            long stamp = lock.writeLock();
+            try {
+                assertTrue(!board.tryUpdateScore(matchId, 2, 0, Duration.ofMillis(20)));
+                assertTrue(!board.tryUpdateScore(matchId, 2, 0, Duration.ZERO));
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            assertEquals("Mexico 1 - Canada 0", board.getMatchesSummary());
+
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                () -> board.tryUpdateScore(matchId, 1, 0, null));
+            assertEquals("Trying to update a match with a null timeout", exception.getMessage());
+            exception = assertThrows(IllegalArgumentException.class,
+                () -> board.tryUpdateScore(matchId + 1, 1, 0, Duration.ofDays(365_000_000L)));
+            assertEquals("Trying to update an invalid match", exception.getMessage());
+        }
+
+        /**
+         * Test to check that the asynchronous modifications are applied in submission order, and that their failures
+         * complete their futures exceptionally.
+         */
+        @Test
+        void AsyncModifications_AppliedInOrder() throws Exception {
+            Scoreboard board = new Scoreboard();
+            CompletableFuture<Integer> firstMatch = board.startMatchAsync("Mexico", "Canada");
+            CompletableFuture<Integer> secondMatch = board.startMatchAsync("Spain", "Brazil");
+            int firstMatchId = firstMatch.get(10, TimeUnit.SECONDS);
+            board.updateScoreAsync(firstMatchId, 0, 5);
+            board.updateScoreAsync(secondMatch.get(10, TimeUnit.SECONDS), 10, 2).get(10, TimeUnit.SECONDS);
+            assertTrue(firstMatchId < secondMatch.get());
+            assertEquals("Spain 10 - Brazil 2\nMexico 0 - Canada 5", board.getMatchesSummary());
+
+            board.terminateMatchAsync(firstMatchId).get(10, TimeUnit.SECONDS);
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> board.terminateMatchAsync(firstMatchId).get(10, TimeUnit.SECONDS));
+            assertEquals(IllegalArgumentException.class, exception.getCause().getClass());
+            assertEquals("Trying to terminate a match with invalid ID", exception.getCause().getMessage());
+            exception = assertThrows(ExecutionException.class,
+                () -> board.startMatchAsync("Italy", " Italy").get(10, TimeUnit.SECONDS));
+            assertEquals("Invalid team names (the same for both teams)", exception.getCause().getMessage());
+            assertEquals("Spain 10 - Brazil 2", board.getMatchesSummary());
+        }
+
+        /**
+         * Test to check that closing a board applies the pending asynchronous modifications, and rejects the next
+         * ones.
+         */
+        @Test
+        void ClosedScoreboard_AsyncModificationsRejected() throws Exception {
+            Scoreboard board = new Scoreboard();
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                futures.add(board.startMatchAsync("Home" + i, "Visitor" + i));
+            }
+            board.close();
+            for (CompletableFuture<Integer> future : futures) {
+                assertTrue(future.isDone() && !future.isCompletedExceptionally());
+            }
+            assertEquals(100, TestScoreboard.helperGetListMatchesForBoard(board).size());
+
+            ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> board.startMatchAsync("Mexico", "Canada").get(10, TimeUnit.SECONDS));
+            assertEquals(RejectedExecutionException.class, exception.getCause().getClass());
+        }
+
+        /**
+         * Test to check the asynchronous modifications of a sharded board, whose IDs follow the submission order.
+         */
+        @Test
+        void ShardedAsyncModifications_Applied() throws Exception {
+            ShardedScoreboard board = new ShardedScoreboard(3);
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                futures.add(board.startMatchAsync("Home" + i, "Visitor" + i));
+            }
+            List<Integer> matchIds = new ArrayList<>();
+            for (CompletableFuture<Integer> future : futures) {
+                matchIds.add(future.get(10, TimeUnit.SECONDS));
+            }
+            for (int i = 1; i < matchIds.size(); i++) {
+                assertTrue(matchIds.get(i - 1) < matchIds.get(i));
+            }
+            board.updateScoreAsync(matchIds.get(0), 3, 3).get(10, TimeUnit.SECONDS);
+            assertTrue(board.tryUpdateScore(matchIds.get(1), 2, 3, Duration.ofSeconds(1)));
+            board.terminateMatchAsync(matchIds.get(2)).get(10, TimeUnit.SECONDS);
+            assertEquals(List.of(matchIds.get(0), matchIds.get(1), matchIds.get(29)),
+                board.getTopMatchSummaries(3).stream().map(MatchSummary::matchId).toList());
+            assertEquals(29, board.snapshot().size());
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the ScoreboardIngestor, feeding a Scoreboard through a single owner thread.
+     */
+    @Nested
+    class IngestorTests {
+
+        /**
+         * Test to check that the published commands are applied in publication order once flushed, and that the
+         * invalid ones are counted and skipped.
+         */
+        @Test
+        void PublishedCommands_AppliedInOrder() throws Exception {
+            Scoreboard board = new Scoreboard();
+            try (ScoreboardIngestor ingestor = new ScoreboardIngestor(board, 16)) {
+                int firstMatchId = ingestor.publishStart("Mexico", "Canada");
+                int secondMatchId = ingestor.publishStart(board.registerTeam("Spain"), board.registerTeam("Brazil"));
+                assertTrue(firstMatchId < secondMatchId);
+                ingestor.publishUpdate(firstMatchId, 0, 5);
+                ingestor.publishUpdate(secondMatchId, 10, 2);
+                ingestor.publishTerminate(firstMatchId);
+                assertTrue(ingestor.tryPublishUpdate(firstMatchId, 1, 5));
+                ingestor.flush();
+                assertEquals("Spain 10 - Brazil 2", board.getMatchesSummary());
+                assertEquals(0, ingestor.getQueueDepth());
+
+                IngestionStats stats = ingestor.getStats();
+                assertEquals(5L, stats.appliedCommands() + stats.coalescedUpdates());
+                assertEquals(1L, stats.rejectedCommands());
+                assertTrue(stats.drains() >= 1L && stats.maxDrainNanos() >= stats.lastDrainNanos());
+
+                Exception exception = assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.publishStart("Italy", " Italy"));
+                assertEquals("Invalid team names (the same for both teams)", exception.getMessage());
+                exception = assertThrows(IllegalArgumentException.class,
+                    () -> ingestor.publishUpdate(secondMatchId, -1, 0));
+                assertEquals("Trying to provide a negative score", exception.getMessage());
+                exception = assertThrows(IllegalArgumentException.class, () -> ingestor.publishStart(-1, 0));
+                assertEquals("Invalid team ID", exception.getMessage());
+            }
+        }
+
+        /**
+         * Test to check that an ingested start consumes a single ID, shared with the direct starts, so the IDs stay
+         * consecutive and follow the start order.
+         */
+        @Test
+        void IngestedAndDirectStarts_ConsecutiveIds() throws Exception {
+            Scoreboard board = new Scoreboard();
+            try (ScoreboardIngestor ingestor = new ScoreboardIngestor(board)) {
+                int firstMatchId = board.startMatch("Mexico", "Canada");
+                int ingestedMatchId = ingestor.publishStart("Spain", "Brazil");
+                ingestor.flush();
+                int lastMatchId = board.startMatch("Germany", "France");
+
+                assertEquals(firstMatchId + 1, ingestedMatchId);
+                assertEquals(firstMatchId + 2, lastMatchId);
+                assertEquals("Germany 0 - France 0\nSpain 0 - Brazil 0\nMexico 0 - Canada 0",
+                    board.getMatchesSummary());
+            }
+        }
+
+        /**
+         * Test to check that the updates of a match drained together are coalesced into the last one.
+         */
+        @Test
+        void UpdatesDrainedTogether_Coalesced() throws Exception {
+            Scoreboard board = new Scoreboard();
+            try (ScoreboardIngestor ingestor = new ScoreboardIngestor(board)) {
+                int matchId = ingestor.publishStart("Mexico", "Canada");
+                ingestor.flush();
+
+                // Access the private lock via reflection, so the owner thread waits for it with its first update
+                Field lockField = Scoreboard.class.getDeclaredField("lock");
+                lockField.setAccessible(true);
+                StampedLock lock = (StampedLock) lockField.get(board);
+                long stamp = lock.writeLock();
+                try {
+                    ingestor.publishUpdate(matchId, 1, 0);
+                    while (ingestor.getQueueDepth() > 0) {
+                        Thread.sleep(1);
+                    }
+                    ingestor.publishUpdate(matchId, 2, 0);
+                    ingestor.publishUpdate(matchId, 3, 0);
+                    ingestor.publishUpdate(matchId, 4, 0);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                ingestor.flush();
+                assertEquals("Mexico 4 - Canada 0", board.getMatchesSummary());
+                IngestionStats stats = ingestor.getStats();
+                assertEquals(2L, stats.coalescedUpdates());
+                assertEquals(3L, stats.appliedCommands());
+            }
+        }
+
+        /**
+         * Test to check that an update followed by the termination of its match is not coalesced with a later
+         * update of the same ID drained with them.
+         */
+        @Test
+        void UpdateThenTerminationDrainedTogether_UpdateKept() throws Exception {
+            Scoreboard board = new Scoreboard();
+            board.enableHistory();
+            try (ScoreboardIngestor ingestor = new ScoreboardIngestor(board)) {
+                int matchId = ingestor.publishStart("Mexico", "Canada");
+                ingestor.flush();
+
+                // Access the private lock via reflection, so the owner thread waits for it with its first update
+                Field lockField = Scoreboard.class.getDeclaredField("lock");
+                lockField.setAccessible(true);
+                StampedLock lock = (StampedLock) lockField.get(board);
+                long stamp = lock.writeLock();
+                try {
+                    ingestor.publishUpdate(matchId, 1, 0);
+                    while (ingestor.getQueueDepth() > 0) {
+                        Thread.sleep(1);
+                    }
+                    ingestor.publishUpdate(matchId, 2, 1);
+                    ingestor.publishTerminate(matchId);
+                    ingestor.publishUpdate(matchId, 3, 1);
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+                ingestor.flush();
+                assertEquals("", board.getMatchesSummary());
+                List<String> events = new ArrayList<>();
+                for (TimelineEvent event : board.getTimeline(matchId).events()) {
+                    events.add(event.kind() + " " + event.scoreHomeTeam() + "-" + event.scoreVisitorTeam());
+                }
+                assertEquals(List.of("STARTED 0-0", "SCORE_CHANGED 1-0", "SCORE_CHANGED 2-1", "TERMINATED 2-1"),
+                    events);
+                IngestionStats stats = ingestor.getStats();
+                assertEquals(0L, stats.coalescedUpdates());
+                assertEquals(4L, stats.appliedCommands());
+                assertEquals(1L, stats.rejectedCommands());
+            }
+        }
+
+        /**
+         * Test to check that many producers publishing at once through a small ring lose none of their commands.
+         */
+        @Test
+        void ConcurrentProducers_AllCommandsApplied() throws Exception {
+            Scoreboard board = new Scoreboard();
+            ScoreboardIngestor ingestor = new ScoreboardIngestor(board, 64);
+            int nbProducers = 8;
+            int nbMatchesPerProducer = 50;
+            ExecutorService executor = Executors.newFixedThreadPool(nbProducers);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < nbProducers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < nbMatchesPerProducer; i++) {
+                        int matchId = ingestor.publishStart("Home" + producer + "-" + i, "Visitor" + producer + "-" + i);
+                        for (int goals = 1; goals <= 10; goals++) {
+                            ingestor.publishUpdate(matchId, goals, i % 2 == 0 ? goals : 0);
+                        }
+                        if (i % 2 == 1) {
+                            ingestor.publishTerminate(matchId);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            ingestor.close();
+
+            List<MatchSummary> matches = board.getTopMatchSummaries(Integer.MAX_VALUE);
+            assertEquals(nbProducers * nbMatchesPerProducer / 2, matches.size());
+            for (MatchSummary match : matches) {
+                assertEquals(10, match.scoreHomeTeam());
+                assertEquals(10, match.scoreVisitorTeam());
+            }
+            IngestionStats stats = ingestor.getStats();
+            assertEquals(nbProducers * nbMatchesPerProducer * 23L / 2,
+                stats.appliedCommands() + stats.coalescedUpdates());
+            assertEquals(0L, stats.rejectedCommands());
+            assertTrue(stats.maxDrainSize() <= 64);
+
+            Exception exception = assertThrows(IllegalStateException.class, () -> ingestor.publishTerminate(0));
+            assertEquals("Trying to publish a command to a closed ingestor", exception.getMessage());
+        }
+    }
+
+    /**
+     * Test class to verify the metrics of the Scoreboard, and their JFR events.
+     */
+    @Nested
+    class MetricsTests {
+
+        /**
+         * Test to check that the metrics are disabled by default, and then count the timed operations.
+         */
+        @Test
+        void EnabledMetrics_CountOperations() {
+            Scoreboard board = new Scoreboard();
+            board.startMatch("Mexico", "Canada");
+            assertEquals(null, board.getMetrics());
+
+            ScoreboardMetrics metrics = board.enableMetrics();
+            assertSame(metrics, board.enableMetrics());
+            int firstMatchId = board.startMatch("Spain", "Brazil");
+            int secondMatchId = board.startMatch(board.registerTeam("Germany"), board.registerTeam("France"));
+            board.updateScore(firstMatchId, 10, 2);
+            board.updateScoreUnboxed(secondMatchId, 2, 2);
+            board.terminateMatch(secondMatchId);
+            String summary = board.getMatchesSummary();
+            assertEquals(summary, board.getMatchesSummary());
+
+            assertEquals(2L, metrics.getLatency(ScoreboardMetrics.Timer.START_MATCH).count());
+            assertEquals(2L, metrics.getLatency(ScoreboardMetrics.Timer.UPDATE_SCORE).count());
+            assertEquals(1L, metrics.getLatency(ScoreboardMetrics.Timer.TERMINATE_MATCH).count());
+            LatencyStats summaries = metrics.getLatency(ScoreboardMetrics.Timer.GET_MATCHES_SUMMARY);
+            assertEquals(2L, summaries.count());
+            assertTrue(summaries.p50Nanos() <= summaries.p99Nanos() && summaries.p99Nanos() <= summaries.maxNanos());
+            assertEquals(1L, metrics.getLatency(ScoreboardMetrics.Timer.RANKING_COPY).count());
+            assertEquals(0L, metrics.getLatency(ScoreboardMetrics.Timer.LOCK_WAIT).count());
+            assertEquals(2, metrics.getLiveMatches());
+            assertEquals(summary.length(), metrics.getLastSummaryLength());
+            assertEquals(summary.length(), metrics.getMaxSummaryLength());
+
+            board.disableMetrics();
+            assertEquals(null, board.getMetrics());
+            board.updateScore(firstMatchId, 11, 2);
+            assertEquals(2L, metrics.getLatency(ScoreboardMetrics.Timer.UPDATE_SCORE).count());
+
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> metrics.getLatency(null));
+            assertEquals("Trying to get the latency of a null timer", exception.getMessage());
+        }
+
+        /**
+         * Test to check that the estimated percentiles of the latencies are at most 12.5% above the actual ones.
+         */
+        @Test
+        void LatencyHistogram_PercentilesEstimated() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            assertEquals(0L, histogram.getPercentileNanos(99.0));
+            for (long nanos = 1; nanos <= 100_000; nanos++) {
+                histogram.record(nanos);
+            }
+            assertEquals(100_000L, histogram.getCount());
+            assertEquals(100_000L, histogram.getMaxNanos());
+            assertEquals(100_000L * 100_001L / 2, histogram.getTotalNanos());
+            for (double percentile : new double[] {0.0, 50.0, 90.0, 99.0, 99.9, 100.0}) {
+                long actual = Math.max(1L, (long) Math.ceil(percentile * 1_000));
+                long estimate = histogram.getPercentileNanos(percentile);
+                assertTrue(estimate >= actual && estimate <= actual * 1.125, percentile + ": " + estimate);
+            }
+        }
+
+        /**
+         * Test to check that the timed operations are emitted as JFR events while the metrics are enabled.
+         */
+        @Test
+        void EnabledMetrics_JfrEventsRecorded(@TempDir Path directory) throws IOException {
+            Scoreboard board = new Scoreboard();
+            board.enableMetrics();
+            Path dump = directory.resolve("scoreboard.jfr");
+            try (Recording recording = new Recording()) {
+                recording.enable("ScoreboardLib.Operation");
+                recording.enable("ScoreboardLib.Summary");
+                recording.start();
+                int matchId = board.startMatch("Mexico", "Canada");
+                board.updateScore(matchId, 1, 0);
+                board.getMatchesSummary();
+                recording.stop();
+                recording.dump(dump);
+            }
+
+            List<String> operations = new ArrayList<>();
+            int nbSummaries = 0;
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (event.getEventType().getName().equals("ScoreboardLib.Operation")) {
+                    operations.add(event.getString("operation"));
+                } else if (event.getEventType().getName().equals("ScoreboardLib.Summary")) {
+                    assertEquals(1, event.getInt("matches"));
+                    assertEquals("Mexico 1 - Canada 0".length(), event.getInt("length"));
+                    nbSummaries++;
+                }
+            }
+            assertEquals(List.of("START_MATCH", "UPDATE_SCORE", "RANKING_COPY"), operations);
+            assertEquals(1, nbSummaries);
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the Scoreboard when it is used by several threads at once.
+     */
+    @Nested
+    class ConcurrencyTests {
+
+        /** Number of writer threads used by the stress tests. */
+        private static final int NB_WRITERS = 8;
+
+        /** Number of matches started by each writer thread. */
+        private static final int NB_MATCHES_PER_WRITER = 50;
+
+        /** Number of score updates applied to each match. */
+        private static final int NB_UPDATES_PER_MATCH = 100;
+
+        /**
+         * Helper method checking that each line of a summary is ranked with respect to the previous one,
+         * i.e. that the total number of goals never increases from one line to the next one.
+         *
+         * @param summary the summary to verify
+         * @return true if the summary is properly ordered
+         */
+        private boolean helperIsSummaryOrdered(String summary) {
+            int previousTotal = Integer.MAX_VALUE;
+            for (String line : summary.split("\n")) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // Line format: "HomeTeam HomeScore - VisitorTeam VisitorScore"
+                String[] parts = line.split(" ");
+                int total = Integer.parseInt(parts[1]) + Integer.parseInt(parts[4]);
+                if (total > previousTotal) {
+                    return false;
+                }
+                previousTotal = total;
+            }
+            return true;
+        }
+
+        /**
+         * Test to check that matches started, updated and terminated by concurrent writers, while other threads
+         * keep generating summaries, end up in a consistent state, and that every intermediate summary is ordered.
+         */
+        @Test
+        void ConcurrentWritersAndReaders_ConsistentFinalSummary() throws Exception {
+            Scoreboard board = new Scoreboard();
+            ExecutorService executor = Executors.newFixedThreadPool(NB_WRITERS + 2);
+            CountDownLatch startSignal = new CountDownLatch(1);
+            AtomicBoolean writersDone = new AtomicBoolean(false);
+            AtomicBoolean unorderedSummarySeen = new AtomicBoolean(false);
+
+            List<Future<List<Integer>>> writers = new ArrayList<>();
+            for (int writer = 0; writer < NB_WRITERS; writer++) {
+                final int writerIndex = writer;
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    List<Integer> keptMatches = new ArrayList<>();
+                    for (int i = 0; i < NB_MATCHES_PER_WRITER; i++) {
+                        Integer matchId = board.startMatch("Home" + writerIndex + "_" + i, "Visitor" + writerIndex + "_" + i);
+                        for (int update = 1; update <= NB_UPDATES_PER_MATCH; update++) {
+                            board.updateScore(matchId, update % 7, (update + i) % 5);
+                        }
+                        // One match out of two is terminated, the other ones are kept on the board
+                        if (i % 2 == 0) {
+                            board.terminateMatch(matchId);
+                        } else {
+                            keptMatches.add(matchId);
+                        }
+                    }
+                    return keptMatches;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int reader = 0; reader < 2; reader++) {
+                readers.add(executor.submit(() -> {
+                    startSignal.await();
+                    while (!writersDone.get()) {
+                        if (!helperIsSummaryOrdered(board.getMatchesSummary())) {
+                            unorderedSummarySeen.set(true);
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            startSignal.countDown();
+            List<Integer> keptMatches = new ArrayList<>();
+            for (Future<List<Integer>> writer : writers) {
+                keptMatches.addAll(writer.get(60, TimeUnit.SECONDS));
+            }
+            writersDone.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            assertTrue(!unorderedSummarySeen.get(), "A summary was not properly ordered");
+            assertEquals(NB_WRITERS * NB_MATCHES_PER_WRITER / 2, keptMatches.size());
+            assertEquals(keptMatches.size(), TestScoreboard.helperGetListMatchesForBoard(board).size(),
+                "Some matches were lost or not terminated");
+            assertEquals(keptMatches.size(), keptMatches.stream().distinct().count(), "Some match IDs are not unique");
+
+            // Every kept match i received (NB_UPDATES_PER_MATCH % 7) - ((NB_UPDATES_PER_MATCH + i) % 5) as final score
+            String summary = board.getMatchesSummary();
+            assertTrue(helperIsSummaryOrdered(summary), "The final summary is not properly ordered");
+            for (String line : summary.split("\n")) {
+                String[] parts = line.split(" ");
+                int matchIndex = Integer.parseInt(parts[0].substring(parts[0].indexOf('_') + 1));
+                assertEquals(NB_UPDATES_PER_MATCH % 7, Integer.parseInt(parts[1]), "Incorrect home score: " + line);
+                assertEquals((NB_UPDATES_PER_MATCH + matchIndex) % 5, Integer.parseInt(parts[4]),
+                    "Incorrect visitor score: " + line);
+            }
+        }
+
+        /**
+         * Helper method timing NB_WRITERS threads updating the scores of their own matches at once.
+         *
+         * @param startMatch starts a match on the measured board, and returns its ID
+         * @param updateScore updates the score of a match on the measured board
+         * @return the time taken by all the updates, in nanoseconds
+         */
+        private long helperTimeConcurrentUpdates(ToIntBiFunction<String, String> startMatch,
+                Consumer<ScoreUpdate> updateScore) throws Exception {
+            int nbMatchesPerWriter = 100;
+            int nbUpdatesPerWriter = 200_000;
+            ExecutorService executor = Executors.newFixedThreadPool(NB_WRITERS);
+            CountDownLatch startSignal = new CountDownLatch(1);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < NB_WRITERS; writer++) {
+                int[] matchIds = new int[nbMatchesPerWriter];
+                for (int i = 0; i < nbMatchesPerWriter; i++) {
+                    matchIds[i] = startMatch.applyAsInt("Home" + writer + "_" + i, "Visitor" + writer + "_" + i);
+                }
+                writers.add(executor.submit(() -> {
+                    startSignal.await();
+                    for (int update = 0; update < nbUpdatesPerWriter; update++) {
+                        updateScore.accept(new ScoreUpdate(matchIds[update % nbMatchesPerWriter], update % 7, update % 5));
+                    }
+                    return null;
+                }));
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(120, TimeUnit.SECONDS);
+            }
+            long duration = System.nanoTime() - start;
+            executor.shutdown();
+            return duration;
+        }
+
+        /**
+         * Test to check that, on 8 cores or more, the updates of unrelated matches by concurrent writers run faster
+         * on a sharded scoreboard, whose shards are written in parallel, than on a single scoreboard, whose writers
+         * take turns.
+         */
+        @Test
+        void ConcurrentUpdatesOfUnrelatedMatches_FasterWhenSharded() throws Exception {
+            assumeTrue(Runtime.getRuntime().availableProcessors() >= NB_WRITERS, "Needs at least 8 cores");
+            long singleBoardNanos = Long.MAX_VALUE;
+            long shardedBoardNanos = Long.MAX_VALUE;
+            // The best of several runs is kept, the first ones warming the JIT up
+            for (int run = 0; run < 3; run++) {
+                Scoreboard board = new Scoreboard();
+                singleBoardNanos = Math.min(singleBoardNanos, this.helperTimeConcurrentUpdates(board::startMatch,
+                    update -> board.updateScoreUnboxed(update.matchId(), update.scoreHomeTeam(),
+                        update.scoreVisitorTeam())));
+                ShardedScoreboard shardedBoard = new ShardedScoreboard(NB_WRITERS);
+                shardedBoardNanos = Math.min(shardedBoardNanos, this.helperTimeConcurrentUpdates(
+                    shardedBoard::startMatch, update -> shardedBoard.updateScoreUnboxed(update.matchId(),
+                        update.scoreHomeTeam(), update.scoreVisitorTeam())));
+            }
+            double speedup = (double) singleBoardNanos / shardedBoardNanos;
+            assertTrue(speedup >= 1.5, "Speedup of the sharded scoreboard: " + speedup);
+        }
+
+        /**
+         * Test to check that a match terminated concurrently by several threads is terminated exactly once.
+         */
+        @Test
+        void ConcurrentTerminations_OnlyOneSucceeds() throws Exception {
+            Scoreboard board = new Scoreboard();
+            Integer matchId = board.startMatch("Japan", "Senegal");
+            ExecutorService executor = Executors.newFixedThreadPool(NB_WRITERS);
+            CountDownLatch startSignal = new CountDownLatch(1);
+
+            List<Future<Boolean>> terminations = new ArrayList<>();
+            for (int i = 0; i < NB_WRITERS; i++) {
+                terminations.add(executor.submit(() -> {
+                    startSignal.await();
+                    try {
+                        board.terminateMatch(matchId);
+                        return true;
+                    } catch (IllegalArgumentException e) {
+                        return false;
+                    }
+                }));
+            }
+            startSignal.countDown();
+            int nbSuccesses = 0;
+            for (Future<Boolean> termination : terminations) {
+                nbSuccesses += termination.get(60, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            executor.shutdown();
+
+            assertEquals(1, nbSuccesses, "The match should have been terminated exactly once");
+            assertEquals("", board.getMatchesSummary(), "The summary should be empty");
+        }
+    }
+
+    /**
+     * Test class to verify the allocation of the match IDs, per scoreboard, across their wraparound, and when
+     * they are recycled.
+     */
+    @Nested
+    class MatchIdTests {
+
+        /**
+         * Returns the private allocator of the match IDs of a scoreboard.
+         */
+        private MatchIdAllocator helperGetMatchIds(Scoreboard board) throws ReflectiveOperationException {
+            Field matchIds = Scoreboard.class.getDeclaredField("matchIds");
+            matchIds.setAccessible(true);
+            return (MatchIdAllocator) matchIds.get(board);
+        }
+
+        /**
+         * Test to check that each scoreboard allocates its own IDs, independently of the other scoreboards.
+         */
+        @Test
+        void SeveralBoards_IndependentIds() {
+            Scoreboard firstBoard = new Scoreboard();
+            Scoreboard secondBoard = Scoreboard.withStorage(MatchStorage.COMPACT);
+            assertEquals(MatchIdAllocator.FIRST_MATCH_ID, firstBoard.startMatch("Mexico", "Canada"));
+            assertEquals(MatchIdAllocator.FIRST_MATCH_ID, secondBoard.startMatch("Spain", "Brazil"));
+            assertEquals(MatchIdAllocator.FIRST_MATCH_ID + 1, secondBoard.startMatch("Germany", "France"));
+            assertEquals(MatchIdAllocator.FIRST_MATCH_ID + 1, firstBoard.startMatch("Uruguay", "Italy"));
+            assertEquals("Uruguay 0 - Italy 0\nMexico 0 - Canada 0", firstBoard.getMatchesSummary());
+        }
+
+        /**
+         * Test to check that the IDs wrap around without becoming negative, skip the IDs of the ongoing matches,
+         * and that the most recently started match is still ranked first among the matches having the same score.
+         */
+        @Test
+        void WrappedIds_NeverNegativeNorDuplicated() throws ReflectiveOperationException {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withStorage(storage);
+                int firstMatchId = board.startMatch("Mexico", "Canada");
+                this.helperGetMatchIds(board).reserve(0, Integer.MAX_VALUE - 1L);
+
+                assertEquals(Integer.MAX_VALUE, board.startMatch("Spain", "Brazil"));
+                int wrappedMatchId = board.startMatch("Germany", "France");
+                assertEquals(firstMatchId + 1, wrappedMatchId);
+                assertEquals("Germany 0 - France 0\nSpain 0 - Brazil 0\nMexico 0 - Canada 0",
+                    board.getMatchesSummary());
+
+                board.updateScore(firstMatchId, 1, 0);
+                board.updateScore(wrappedMatchId, 1, 0);
+                assertEquals("Germany 1 - France 0\nMexico 1 - Canada 0\nSpain 0 - Brazil 0",
+                    board.getMatchesSummary());
+            }
+        }
+
+        /**
+         * Test to check that a wrapped ID taken by an ongoing match when the match is started leaves the board
+         * unchanged, so the caller starts the match with the next free ID rather than failing.
+         */
+        @Test
+        void WrappedIdTakenAtStart_BoardUnchanged() throws ReflectiveOperationException {
+            Scoreboard board = new Scoreboard();
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            MatchIdAllocator matchIds = this.helperGetMatchIds(board);
+            matchIds.reserve(0, Integer.MAX_VALUE);
+            assertEquals(firstMatchId + 1, board.startMatch("Spain", "Brazil"));
+
+            Method startRegisteredMatch = Scoreboard.class.getDeclaredMethod("startRegisteredMatch", int.class,
+                long.class, int.class, int.class);
+            startRegisteredMatch.setAccessible(true);
+            long version = board.getVersion();
+            assertEquals(-1, startRegisteredMatch.invoke(board, firstMatchId, matchIds.allocateStartOrder(),
+                board.registerTeam("Germany"), board.registerTeam("France")));
+            assertEquals(version, board.getVersion());
+            assertEquals("Spain 0 - Brazil 0\nMexico 0 - Canada 0", board.getMatchesSummary());
+            assertEquals(firstMatchId + 3, board.startMatch("Germany", "France"));
+        }
+
+        /**
+         * Test to check that a recycling scoreboard allocates the IDs of the terminated matches again, oldest
+         * first, and still ranks the matches having the same score by start order.
+         */
+        @Test
+        void RecycledIds_ReusedInTerminationOrder() {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withRecycledMatchIds(storage);
+                int firstMatchId = board.startMatch("Mexico", "Canada");
+                int secondMatchId = board.startMatch("Spain", "Brazil");
+                int thirdMatchId = board.startMatch("Germany", "France");
+                board.terminateMatch(secondMatchId);
+                board.terminateMatch(firstMatchId);
+
+                assertEquals(secondMatchId, board.startMatch("Uruguay", "Italy"));
+                assertEquals(firstMatchId, board.startMatch("Argentina", "Australia"));
+                assertEquals(thirdMatchId + 1, board.startMatch("Japan", "Korea"));
+                assertEquals("Japan 0 - Korea 0\nArgentina 0 - Australia 0\nUruguay 0 - Italy 0\n"
+                    + "Germany 0 - France 0", board.getMatchesSummary());
+            }
+        }
+
+        /**
+         * Test to check that the start orders of the recycled matches survive an export and an import, and that
+         * the sharded scoreboards recycle their IDs as well.
+         */
+        @Test
+        void RecycledIds_KeptByExportsAndShards() throws IOException {
+            Scoreboard board = Scoreboard.withRecycledMatchIds(MatchStorage.OBJECTS);
+            int firstMatchId = board.startMatch("Mexico", "Canada");
+            board.startMatch("Spain", "Brazil");
+            board.terminateMatch(firstMatchId);
+            assertEquals(firstMatchId, board.startMatch("Germany", "France"));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            board.exportSnapshot(Channels.newChannel(out));
+
+            Scoreboard imported = Scoreboard.importSnapshot(Channels.newChannel(
+                new ByteArrayInputStream(out.toByteArray())));
+            assertEquals("Germany 0 - France 0\nSpain 0 - Brazil 0", imported.getMatchesSummary());
+            int newMatchId = imported.startMatch("Uruguay", "Italy");
+            assertTrue(newMatchId > firstMatchId);
+            assertEquals("Uruguay 0 - Italy 0\nGermany 0 - France 0\nSpain 0 - Brazil 0",
+                imported.getMatchesSummary());
+
+            ShardedScoreboard shardedBoard = ShardedScoreboard.withRecycledMatchIds(2, MatchStorage.COMPACT);
+            int shardedMatchId = shardedBoard.startMatch("Mexico", "Canada");
+            shardedBoard.startMatch("Spain", "Brazil");
+            shardedBoard.terminateMatch(shardedMatchId);
+            assertEquals(shardedMatchId, shardedBoard.startMatch("Germany", "France"));
+            assertEquals("Germany 0 - France 0\nSpain 0 - Brazil 0", shardedBoard.getMatchesSummary());
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the history of the matches.
+     */
+    @Nested
+    class HistoryTests {
+
+        /**
+         * Returns the kinds and scores of the events of a timeline or a replay, as "KIND h-v" strings.
+         */
+        private List<String> describe(List<TimelineEvent> events) {
+            List<String> descriptions = new ArrayList<>();
+            for (TimelineEvent event : events) {
+                descriptions.add(event.kind() + " " + event.scoreHomeTeam() + "-" + event.scoreVisitorTeam());
+            }
+            return descriptions;
+        }
+
+        /**
+         * Test to check that the timeline of a match holds its start, its goals and its termination, and that
+         * the updates which do not change the scores are not recorded.
+         */
+        @Test
+        void Timeline_GoalsRecordedUntilTermination() {
+            for (MatchStorage storage : MatchStorage.values()) {
+                Scoreboard board = Scoreboard.withStorage(storage);
+                board.enableHistory();
+                assertTrue(board.isHistoryEnabled());
+                int matchId = board.startMatch("Mexico", "Canada");
+                int otherMatchId = board.startMatch("Spain", "Brazil");
+                board.updateScore(matchId, 1, 0);
+                board.updateScore(matchId, 1, 0);
+                board.applyUpdates(new ScoreUpdate(matchId, 1, 1), new ScoreUpdate(otherMatchId, 0, 1),
+                    new ScoreUpdate(matchId, 2, 1));
+
+                MatchTimeline timeline = board.getTimeline(matchId);
+                assertTrue(timeline.ongoing());
+                assertEquals("Mexico", timeline.nameHomeTeam());
+                assertEquals("Canada", timeline.nameVisitorTeam());
+                assertEquals(List.of("STARTED 0-0", "SCORE_CHANGED 1-0", "SCORE_CHANGED 2-1"),
+                    this.describe(timeline.events()));
+
+                board.terminateMatch(matchId);
+                timeline = board.getTimeline(matchId);
+                assertTrue(!timeline.ongoing());
+                assertEquals(List.of("STARTED 0-0", "SCORE_CHANGED 1-0", "SCORE_CHANGED 2-1", "TERMINATED 2-1"),
+                    this.describe(timeline.events()));
+                assertEquals(board.getVersion(), timeline.events().get(3).version());
+                for (int i = 1; i < timeline.events().size(); i++) {
+                    assertTrue(timeline.events().get(i - 1).version() < timeline.events().get(i).version());
+                    assertTrue(!timeline.events().get(i - 1).timestamp().isAfter(timeline.events().get(i).timestamp()));
+                }
+                assertThrows(UnsupportedOperationException.class, () -> board.getTimeline(matchId).events().clear());
+            }
+        }
+
+        /**
+         * Test to check that the changes are replayed from a given version, in order, and that the returned
+         * version resumes the replay after the last replayed change.
+         */
+        @Test
+        void Replay_FromVersionAndResumed() {
+            Scoreboard board = new Scoreboard();
+            board.enableHistory();
+            int matchId = board.startMatch("Mexico", "Canada");
+            int otherMatchId = board.startMatch("Spain", "Brazil");
+            long versionBeforeGoal = board.getVersion();
+            board.updateScore(otherMatchId, 1, 0);
+            board.terminateMatch(matchId);
+
+            List<TimelineEvent> replayed = new ArrayList<>();
+            long nextVersion = board.replay(versionBeforeGoal + 1, replayed::add);
+            assertEquals(List.of("SCORE_CHANGED 1-0", "TERMINATED 0-0"), this.describe(replayed));
+            assertEquals(otherMatchId, replayed.get(0).matchId());
+            assertEquals("Spain", replayed.get(0).nameHomeTeam());
+            assertEquals(matchId, replayed.get(1).matchId());
+            assertEquals(board.getVersion() + 1, nextVersion);
+
+            replayed.clear();
+            assertEquals(nextVersion, board.replay(nextVersion, replayed::add));
+            assertTrue(replayed.isEmpty());
+            board.updateScore(otherMatchId, 2, 0);
+            board.replay(nextVersion, replayed::add);
+            assertEquals(List.of("SCORE_CHANGED 2-0"), this.describe(replayed));
+
+            replayed.clear();
+            board.replay(0L, replayed::add);
+            assertEquals(List.of("STARTED 0-0", "STARTED 0-0", "SCORE_CHANGED 1-0", "TERMINATED 0-0",
+                "SCORE_CHANGED 2-0"), this.describe(replayed));
+        }
+
+        /**
+         * Test to check that the replayable changes are bounded, as well as the timelines of the ongoing matches,
+         * and that a long replay may modify the scoreboard.
+         */
+        @Test
+        void Replay_BoundedNumberOfChanges() {
+            Scoreboard board = new Scoreboard();
+            board.enableHistory(100, 10, Duration.ofHours(1));
+            int matchId = board.startMatch("Mexico", "Canada");
+            for (int goal = 1; goal <= 5000; goal++) {
+                board.updateScoreUnboxed(matchId, goal, 0);
+            }
+
+            List<TimelineEvent> replayed = new ArrayList<>();
+            long nextVersion = board.replay(0L, event -> {
+                replayed.add(event);
+                // The consumer is called outside of the critical sections
+                board.getMatchesSummary();
+            });
+            assertTrue(replayed.size() >= 100 && replayed.size() <= 200);
+            assertEquals(5000, replayed.get(replayed.size() - 1).scoreHomeTeam());
+            assertEquals(board.getVersion() + 1, nextVersion);
+            for (int i = 1; i < replayed.size(); i++) {
+                assertEquals(replayed.get(i - 1).version() + 1, replayed.get(i).version());
+            }
+            List<TimelineEvent> events = board.getTimeline(matchId).events();
+            assertEquals(MatchHistory.MAX_TIMELINE_SIZE, events.size());
+            assertEquals(5000 - MatchHistory.MAX_TIMELINE_SIZE + 1, events.get(0).scoreHomeTeam());
+            assertEquals(5000, events.get(events.size() - 1).scoreHomeTeam());
+        }
+
+        /**
+         * Test to check that the timeline of a long match terminated once full keeps its most recent changes, in
+         * chronological order.
+         */
+        @Test
+        void LongMatchTerminated_TimelineKeepsMostRecentChanges() {
+            Scoreboard board = new Scoreboard();
+            board.enableHistory(100, 10, Duration.ofHours(1));
+            int matchId = board.startMatch("Mexico", "Canada");
+            for (int goal = 1; goal <= MatchHistory.MAX_TIMELINE_SIZE + 10; goal++) {
+                board.updateScoreUnboxed(matchId, 0, goal);
+            }
+            board.terminateMatch(matchId);
+
+            MatchTimeline timeline = board.getTimeline(matchId);
+            assertTrue(!timeline.ongoing());
+            List<TimelineEvent> events = timeline.events();
+            assertEquals(MatchHistory.MAX_TIMELINE_SIZE, events.size());
+            assertEquals(12, events.get(0).scoreVisitorTeam());
+            for (int i = 1; i < events.size(); i++) {
+                assertEquals(events.get(i - 1).version() + 1, events.get(i).version());
+            }
+            assertEquals(MatchHistory.MAX_TIMELINE_SIZE + 10, events.get(events.size() - 1).scoreVisitorTeam());
+        }
+
+        /**
+         * Test to check that the timelines of the terminated matches are evicted beyond the maximal number of
+         * archived matches, or after the maximal duration.
+         */
+        @Test
+        void Archive_EvictedBySizeAndAge() throws InterruptedException {
+            Scoreboard board = new Scoreboard();
+            board.enableHistory(1000, 2, Duration.ofHours(1));
+            int[] matchIds = new int[3];
+            for (int i = 0; i < matchIds.length; i++) {
+                matchIds[i] = board.startMatch("Home" + i, "Visitor" + i);
+            }
+            for (int matchId : matchIds) {
+                board.terminateMatch(matchId);
+            }
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> board.getTimeline(matchIds[0]));
+            assertEquals("Trying to get the timeline of an unknown match", exception.getMessage());
+            assertEquals(2, board.getTimeline(matchIds[1]).events().size());
+            assertEquals(2, board.getTimeline(matchIds[2]).events().size());
+
+            board.enableHistory(1000, 10, Duration.ZERO);
+            int matchId = board.startMatch("Mexico", "Canada");
+            board.terminateMatch(matchId);
+            Thread.sleep(5);
+            assertThrows(IllegalArgumentException.class, () -> board.getTimeline(matchId));
+        }
+
+        /**
+         * Test to check the timelines of the matches started before the history, and the behavior of a
+         * disabled history.
+         */
+        @Test
+        void History_EnabledOnOngoingMatches() {
+            Scoreboard board = new Scoreboard();
+            int matchId = board.startMatch("Mexico", "Canada");
+            IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> board.getTimeline(matchId));
+            assertEquals("The history of the scoreboard is not enabled", exception.getMessage());
+            assertThrows(IllegalStateException.class, () -> board.replay(0L, event -> { }));
+
+            board.enableHistory();
+            MatchTimeline timeline = board.getTimeline(matchId);
+            assertTrue(timeline.ongoing());
+            assertTrue(timeline.events().isEmpty());
+            board.updateScore(matchId, 0, 1);
+            board.terminateMatch(matchId);
+            assertEquals(List.of("SCORE_CHANGED 0-1", "TERMINATED 0-1"),
+                this.describe(board.getTimeline(matchId).events()));
+
+            board.disableHistory();
+            assertTrue(!board.isHistoryEnabled());
+            assertThrows(IllegalStateException.class, () -> board.getTimeline(matchId));
+            assertThrows(IllegalArgumentException.class, () -> board.enableHistory(0, 1, Duration.ZERO));
+            assertThrows(IllegalArgumentException.class, () -> board.enableHistory(1, -1, Duration.ZERO));
+            assertThrows(IllegalArgumentException.class, () -> board.enableHistory(1, 1, Duration.ofSeconds(-1)));
+            assertThrows(IllegalArgumentException.class, () -> board.replay(0L, null));
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the registry of scoreboards.
+     */
+    @Nested
+    class RegistryTests {
+
+        /**
+         * Returns the heap used once the garbage collector has run, in bytes.
+         */
+        private long helperGetUsedHeap() throws InterruptedException {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+
+        /**
+         * Test to check that the boards are created on demand, and that the boards of a tenant share their
+         * teams and their match IDs, independently of the other tenants.
+         */
+        @Test
+        void Boards_CreatedOnDemandPerTenant() {
+            ScoreboardRegistry registry = new ScoreboardRegistry(Long.MAX_VALUE);
+            int groupA = registry.withBoard("fifa", "groupA", board -> board.startMatch("Mexico", "Canada"));
+            int groupB = registry.withBoard("fifa", "groupB", board -> board.startMatch("Spain", "Brazil"));
+            int room = registry.withBoard("fantasy", "room1", board -> board.startMatch("Spain", "Brazil"));
+            assertEquals(groupA + 1, groupB);
+            assertEquals(groupA, room);
+            int spainId = registry.withBoard("fifa", "groupA", board -> board.registerTeam("Spain"));
+            assertEquals(spainId, (int) registry.withBoard("fifa", "groupB", board -> board.registerTeam("Spain")));
+            assertEquals(0, (int) registry.withBoard("fantasy", "room2", board -> board.registerTeam("Spain")));
+            assertEquals("Mexico 0 - Canada 0", registry.withBoard("fifa", "groupA", Scoreboard::getMatchesSummary));
+            assertEquals(4, registry.countBoards());
+            assertEquals(0L, registry.getEvictions());
+
+            assertTrue(registry.removeBoard("fantasy", "room1"));
+            assertTrue(!registry.removeBoard("fantasy", "room1"));
+            assertEquals("", registry.withBoard("fantasy", "room1", Scoreboard::getMatchesSummary));
+            assertThrows(IllegalArgumentException.class, () -> registry.withBoard(null, "room1", board -> null));
+            assertThrows(IllegalArgumentException.class, () -> registry.withBoard("fifa", "groupA", null));
+            assertThrows(IllegalArgumentException.class, () -> new ScoreboardRegistry(-1L));
+        }
+
+        /**
+         * Test to check that the idle boards are evicted beyond the memory budget, least recently used first,
+         * and imported back with their matches on their next use.
+         */
+        @Test
+        void IdleBoards_EvictedAndRehydrated() {
+            for (MatchStorage storage : MatchStorage.values()) {
+                ScoreboardRegistry registry = new ScoreboardRegistry(20_000L, storage);
+                for (int i = 0; i < 20; i++) {
+                    String key = "board" + i;
+                    registry.withBoard("fifa", key, board -> {
+                        for (int j = 0; j < 10; j++) {
+                            board.updateScore(board.startMatch("Home" + j, "Visitor" + j), j, 0);
+                        }
+                        return null;
+                    });
+                }
+                assertEquals(20, registry.countBoards());
+                assertTrue(registry.countResidentBoards() < 20);
+                assertTrue(registry.getEvictions() > 0L);
+                assertTrue(registry.getEstimatedMemory() <= 20_000L);
+
+                long rehydrations = registry.getRehydrations();
+                String summary = registry.withBoard("fifa", "board0", Scoreboard::getMatchesSummary);
+                assertTrue(summary.startsWith("Home9 9 - Visitor9 0\nHome8 8 - Visitor8 0\n"));
+                assertEquals(rehydrations + 1, registry.getRehydrations());
+                int matchId = registry.withBoard("fifa", "board0", board -> board.startMatch("Mexico", "Canada"));
+                assertEquals(201, matchId);
+                assertTrue(registry.withBoard("fifa", "board0", Scoreboard::getMatchesSummary).endsWith(
+                    "Home0 0 - Visitor0 0"));
+            }
+        }
+
+        /**
+         * Test to check that a board is never evicted while an action uses it.
+         */
+        @Test
+        void BoardInUse_NeverEvicted() {
+            ScoreboardRegistry registry = new ScoreboardRegistry(0L);
+            registry.withBoard("fifa", "groupA", board -> {
+                int matchId = board.startMatch("Mexico", "Canada");
+                registry.withBoard("fifa", "groupB", other -> other.startMatch("Spain", "Brazil"));
+                assertEquals(1, registry.countResidentBoards());
+                board.updateScore(matchId, 1, 0);
+                return null;
+            });
+            assertEquals(0, registry.countResidentBoards());
+            assertEquals("Mexico 1 - Canada 0", registry.withBoard("fifa", "groupA", Scoreboard::getMatchesSummary));
+            assertEquals("Spain 0 - Brazil 0", registry.withBoard("fifa", "groupB", Scoreboard::getMatchesSummary));
+        }
+
+        /**
+         * Test to check that a board whose eviction waits for its pending asynchronous modifications does not
+         * block the boards of the other tenants.
+         */
+        @Test
+        void SlowEviction_OtherBoardsNotBlocked() throws Exception {
+            ScoreboardRegistry registry = new ScoreboardRegistry(0L);
+            Flow.Subscription[] subscription = new Flow.Subscription[1];
+            Thread[] evictingThread = new Thread[1];
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> slowBoard = executor.submit(() -> registry.withBoard("fifa", "groupA", board -> {
+                    // The second asynchronous start waits for the subscriber, and the eviction for the start
+                    board.subscribe(new Flow.Subscriber<ScoreboardEvent>() {
+                        @Override
+                        public void onSubscribe(Flow.Subscription newSubscription) {
+                            subscription[0] = newSubscription;
+                        }
+
+                        @Override
+                        public void onNext(ScoreboardEvent event) {
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                        }
+
+                        @Override
+                        public void onComplete() {
+                        }
+                    }, 1, BackpressurePolicy.BLOCK);
+                    board.startMatchAsync("Mexico", "Canada");
+                    evictingThread[0] = Thread.currentThread();
+                    return board.startMatchAsync("Spain", "Brazil");
+                }));
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                    while (evictingThread[0] == null || evictingThread[0].getState() != Thread.State.TIMED_WAITING) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals("Germany 0 - France 0", registry.withBoard("fantasy", "room1", board -> {
+                        board.startMatch("Germany", "France");
+                        return board.getMatchesSummary();
+                    }));
+                });
+
+                subscription[0].request(Long.MAX_VALUE);
+                slowBoard.get(10, TimeUnit.SECONDS);
+                assertEquals(0, registry.countResidentBoards());
+                assertEquals("Spain 0 - Brazil 0\nMexico 0 - Canada 0",
+                    registry.withBoard("fifa", "groupA", Scoreboard::getMatchesSummary));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Test to check that the heap really taken by many small boards, resident or evicted, stays close to the
+         * memory budget, and not only their estimated memory.
+         */
+        @Test
+        void ManySmallBoards_HeapBoundedByBudget() throws InterruptedException {
+            long memoryBudget = 1L << 20;
+            long usedHeapBefore = this.helperGetUsedHeap();
+            ScoreboardRegistry registry = new ScoreboardRegistry(memoryBudget);
+            for (int i = 0; i < 1000; i++) {
+                int index = i;
+                registry.withBoard("fifa", "board" + i, board -> board.startMatch("Home" + index, "Visitor" + index));
+            }
+            long usedHeap = this.helperGetUsedHeap() - usedHeapBefore;
+
+            assertTrue(registry.getEstimatedMemory() <= memoryBudget);
+            assertTrue(registry.countResidentBoards() > 0 && registry.countResidentBoards() < 1000);
+            assertTrue(usedHeap < memoryBudget * 3 / 2, "The boards take " + usedHeap + " bytes");
+            assertEquals(1000, registry.countBoards());
+        }
+
+        /**
+         * Test to check that the registries of teams of the tenants are part of the estimated memory, until their
+         * last board is removed.
+         */
+        @Test
+        void TeamRegistries_PartOfEstimatedMemory() {
+            ScoreboardRegistry registry = new ScoreboardRegistry(Long.MAX_VALUE);
+            registry.withBoard("fifa", "groupA", board -> board.startMatch("Mexico", "Canada"));
+            long boardMemory = registry.getEstimatedMemory();
+            registry.withBoard("fifa", "groupA", board -> board.registerTeam("Argentina"));
+            assertTrue(registry.getEstimatedMemory() > boardMemory, "The new team was not counted");
+
+            assertTrue(registry.removeBoard("fifa", "groupA"));
+            assertEquals(0L, registry.getEstimatedMemory());
+        }
+    }
+
+    /**
+     * Test class to verify the behavior of the server of a scoreboard and of its clients.
+     */
+    @Nested
+    class ServerTests {
+
+        /**
+         * Test to check that a client receives the snapshot of the board when it connects, and then the changes
+         * of the board, so its copy of the board stays identical to the served one.
+         */
+        @Test
+        void Client_CopyFollowsServedBoard() throws IOException {
+            Scoreboard board = new Scoreboard();
+            int mexicoId = board.startMatch("Mexico", "Canada");
+            int spainId = board.startMatch("Spain", "Brazil");
+            board.updateScore(mexicoId, 1, 0);
+            try (ScoreboardServer server = new ScoreboardServer(board, this.loopback());
+                 ScoreboardFeed feed = new ScoreboardFeed(server.getAddress())) {
+                this.follow(feed, board);
+                assertEquals("Mexico 1 - Canada 0\nSpain 0 - Brazil 0", feed.getMatchesSummary());
+
+                int germanyId = board.startMatch("Germany", "France");
+                board.updateScore(spainId, 1, 0);
+                board.updateScore(germanyId, 0, 1);
+                board.terminateMatch(mexicoId);
+                board.startMatch("Uruguay", "Italy");
+                this.follow(feed, board);
+                assertEquals(board.getMatchesSummary(), feed.getMatchesSummary());
+                assertEquals(board.snapshot().getMatches(), feed.getMatches());
+                assertEquals(1, server.countConnections());
+            }
+        }
+
+        /**
+         * Test to check that many clients, connected at different versions of the board, all follow the changes,
+         * and are disconnected when the server is closed.
+         */
+        @Test
+        void ManyClients_FollowChangesUntilClosed() throws IOException {
+            Scoreboard board = new Scoreboard();
+            Random random = new Random(7);
+            List<Integer> matchIds = new ArrayList<>();
+            ScoreboardServer server = new ScoreboardServer(board, this.loopback());
+            List<ScoreboardFeed> feeds = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                feeds.add(new ScoreboardFeed(server.getAddress()));
+                for (int j = 0; j < 50; j++) {
+                    if (matchIds.isEmpty() || random.nextInt(4) == 0) {
+                        matchIds.add(board.startMatch("Home " + i + "-" + j, "Visitor " + i + "-" + j));
+                    } else if (random.nextInt(8) == 0) {
+                        board.terminateMatch(matchIds.remove(random.nextInt(matchIds.size())));
+                    } else {
+                        board.updateScore(matchIds.get(random.nextInt(matchIds.size())), random.nextInt(5),
+                            random.nextInt(5));
+                    }
+                }
+            }
+            for (ScoreboardFeed feed : feeds) {
+                this.follow(feed, board);
+                assertEquals(board.getMatchesSummary(), feed.getMatchesSummary());
+            }
+
+            server.close();
+            for (ScoreboardFeed feed : feeds) {
+                assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(EOFException.class, () -> {
+                    while (true) {
+                        feed.read();
+                    }
+                }));
+                feed.close();
+            }
+            assertEquals(0, server.countConnections());
+            assertThrows(IllegalArgumentException.class, () -> new ScoreboardServer(null, this.loopback()));
+        }
+
+        /**
+         * Returns a loopback address with a free port.
+         */
+        private InetSocketAddress loopback() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        }
+
+        /**
+         * Reads the frames sent to a client until its copy has the version of the served board.
+         */
+        private void follow(ScoreboardFeed feed, Scoreboard board) {
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (feed.getVersion() != board.getVersion()) {
+                    feed.read();
+                }
+            });
+        }
     }
 }